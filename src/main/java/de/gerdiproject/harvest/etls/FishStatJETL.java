@@ -16,6 +16,8 @@
 package de.gerdiproject.harvest.etls;
 
 import de.gerdiproject.harvest.config.Configuration;
+import de.gerdiproject.harvest.config.parameters.BooleanParameter;
+import de.gerdiproject.harvest.config.parameters.IntegerParameter;
 import de.gerdiproject.harvest.config.parameters.StringParameter;
 import de.gerdiproject.harvest.config.parameters.constants.ParameterMappingFunctions;
 import de.gerdiproject.harvest.etls.extractors.FishStatJCollectionVO;
@@ -23,6 +25,8 @@ import de.gerdiproject.harvest.etls.extractors.FishStatJExtractor;
 import de.gerdiproject.harvest.etls.transformers.FishStatJTransformer;
 import de.gerdiproject.harvest.fishstatj.constants.FishStatJLanguageConstants;
 import de.gerdiproject.harvest.fishstatj.constants.FishStatJParameterConstants;
+import de.gerdiproject.harvest.fishstatj.utils.FishStatJCollectionStates;
+import de.gerdiproject.harvest.fishstatj.utils.SubjectDictionary;
 import de.gerdiproject.json.datacite.DataCiteJson;
 
 
@@ -35,6 +39,27 @@ import de.gerdiproject.json.datacite.DataCiteJson;
 public class FishStatJETL extends StaticIteratorETL<FishStatJCollectionVO, DataCiteJson>
 {
     private StringParameter languageParam;
+    private IntegerParameter concurrentCollectionsParam;
+    private StringParameter executionModeParam;
+    private BooleanParameter concurrentFetchesParam;
+    private StringParameter archiveModeParam;
+    private BooleanParameter incrementalHarvestParam;
+    private IntegerParameter pageCacheSizeParam;
+    private IntegerParameter archiveStoreQuotaParam;
+    private IntegerParameter httpClientThreadsParam;
+    private IntegerParameter requestRateParam;
+    private BooleanParameter resumableDownloadsParam;
+    private BooleanParameter csvSubjectCacheParam;
+    private StringParameter csvParserParam;
+    private IntegerParameter csvParsingThreadsParam;
+    private IntegerParameter concurrentTransformationsParam;
+    private StringParameter outputModeParam;
+    private IntegerParameter maxSubjectsParam;
+    private IntegerParameter subjectMemoryBudgetParam;
+    private BooleanParameter csvStatisticsParam;
+
+    private final SubjectDictionary subjectDictionary = new SubjectDictionary();
+    private final FishStatJCollectionStates collectionStates = new FishStatJCollectionStates();
 
 
     /**
@@ -57,6 +82,118 @@ public class FishStatJETL extends StaticIteratorETL<FishStatJCollectionVO, DataC
                                      getName(),
                                      FishStatJParameterConstants.LANGUAGE_DEFAULT,
                                      ParameterMappingFunctions.createStringListMapper(FishStatJLanguageConstants.LANGUAGE_MAP.keySet())));
+
+        this.concurrentCollectionsParam = Configuration.registerParameter(
+                                              new IntegerParameter(
+                                                  FishStatJParameterConstants.CONCURRENT_COLLECTIONS_KEY,
+                                                  getName(),
+                                                  FishStatJParameterConstants.CONCURRENT_COLLECTIONS_DEFAULT));
+
+        this.executionModeParam = Configuration.registerParameter(
+                                      new StringParameter(
+                                          FishStatJParameterConstants.EXECUTION_MODE_KEY,
+                                          getName(),
+                                          FishStatJParameterConstants.EXECUTION_MODE_DEFAULT,
+                                          ParameterMappingFunctions.createStringListMapper(FishStatJParameterConstants.EXECUTION_MODES)));
+
+        this.concurrentFetchesParam = Configuration.registerParameter(
+                                          new BooleanParameter(
+                                              FishStatJParameterConstants.CONCURRENT_FETCHES_KEY,
+                                              getName(),
+                                              FishStatJParameterConstants.CONCURRENT_FETCHES_DEFAULT));
+
+        this.archiveModeParam = Configuration.registerParameter(
+                                    new StringParameter(
+                                        FishStatJParameterConstants.ARCHIVE_MODE_KEY,
+                                        getName(),
+                                        FishStatJParameterConstants.ARCHIVE_MODE_DEFAULT,
+                                        ParameterMappingFunctions.createStringListMapper(FishStatJParameterConstants.ARCHIVE_MODES)));
+
+        this.incrementalHarvestParam = Configuration.registerParameter(
+                                           new BooleanParameter(
+                                               FishStatJParameterConstants.INCREMENTAL_HARVEST_KEY,
+                                               getName(),
+                                               FishStatJParameterConstants.INCREMENTAL_HARVEST_DEFAULT));
+
+        this.pageCacheSizeParam = Configuration.registerParameter(
+                                      new IntegerParameter(
+                                          FishStatJParameterConstants.PAGE_CACHE_SIZE_KEY,
+                                          getName(),
+                                          FishStatJParameterConstants.PAGE_CACHE_SIZE_DEFAULT));
+
+        this.archiveStoreQuotaParam = Configuration.registerParameter(
+                                          new IntegerParameter(
+                                              FishStatJParameterConstants.ARCHIVE_STORE_QUOTA_KEY,
+                                              getName(),
+                                              FishStatJParameterConstants.ARCHIVE_STORE_QUOTA_DEFAULT));
+
+        this.httpClientThreadsParam = Configuration.registerParameter(
+                                          new IntegerParameter(
+                                              FishStatJParameterConstants.HTTP_CLIENT_THREADS_KEY,
+                                              getName(),
+                                              FishStatJParameterConstants.HTTP_CLIENT_THREADS_DEFAULT));
+
+        this.requestRateParam = Configuration.registerParameter(
+                                    new IntegerParameter(
+                                        FishStatJParameterConstants.REQUEST_RATE_KEY,
+                                        getName(),
+                                        FishStatJParameterConstants.REQUEST_RATE_DEFAULT));
+
+        this.resumableDownloadsParam = Configuration.registerParameter(
+                                           new BooleanParameter(
+                                               FishStatJParameterConstants.RESUMABLE_DOWNLOADS_KEY,
+                                               getName(),
+                                               FishStatJParameterConstants.RESUMABLE_DOWNLOADS_DEFAULT));
+
+        this.csvSubjectCacheParam = Configuration.registerParameter(
+                                        new BooleanParameter(
+                                            FishStatJParameterConstants.CSV_SUBJECT_CACHE_KEY,
+                                            getName(),
+                                            FishStatJParameterConstants.CSV_SUBJECT_CACHE_DEFAULT));
+
+        this.csvParserParam = Configuration.registerParameter(
+                                  new StringParameter(
+                                      FishStatJParameterConstants.CSV_PARSER_KEY,
+                                      getName(),
+                                      FishStatJParameterConstants.CSV_PARSER_DEFAULT,
+                                      ParameterMappingFunctions.createStringListMapper(FishStatJParameterConstants.CSV_PARSERS)));
+
+        this.csvParsingThreadsParam = Configuration.registerParameter(
+                                          new IntegerParameter(
+                                              FishStatJParameterConstants.CSV_PARSING_THREADS_KEY,
+                                              getName(),
+                                              FishStatJParameterConstants.CSV_PARSING_THREADS_DEFAULT));
+
+        this.concurrentTransformationsParam = Configuration.registerParameter(
+                                                  new IntegerParameter(
+                                                      FishStatJParameterConstants.CONCURRENT_TRANSFORMATIONS_KEY,
+                                                      getName(),
+                                                      FishStatJParameterConstants.CONCURRENT_TRANSFORMATIONS_DEFAULT));
+
+        this.outputModeParam = Configuration.registerParameter(
+                                   new StringParameter(
+                                       FishStatJParameterConstants.OUTPUT_MODE_KEY,
+                                       getName(),
+                                       FishStatJParameterConstants.OUTPUT_MODE_DEFAULT,
+                                       ParameterMappingFunctions.createStringListMapper(FishStatJParameterConstants.OUTPUT_MODES)));
+
+        this.maxSubjectsParam = Configuration.registerParameter(
+                                    new IntegerParameter(
+                                        FishStatJParameterConstants.MAX_SUBJECTS_KEY,
+                                        getName(),
+                                        FishStatJParameterConstants.MAX_SUBJECTS_DEFAULT));
+
+        this.subjectMemoryBudgetParam = Configuration.registerParameter(
+                                            new IntegerParameter(
+                                                FishStatJParameterConstants.SUBJECT_MEMORY_BUDGET_KEY,
+                                                getName(),
+                                                FishStatJParameterConstants.SUBJECT_MEMORY_BUDGET_DEFAULT));
+
+        this.csvStatisticsParam = Configuration.registerParameter(
+                                      new BooleanParameter(
+                                          FishStatJParameterConstants.CSV_STATISTICS_KEY,
+                                          getName(),
+                                          FishStatJParameterConstants.CSV_STATISTICS_DEFAULT));
     }
 
 
@@ -69,4 +206,248 @@ public class FishStatJETL extends StaticIteratorETL<FishStatJCollectionVO, DataC
     {
         return FishStatJLanguageConstants.LANGUAGE_MAP.get(languageParam.getValue());
     }
+
+
+    /**
+     * Retrieves the maximum number of collections that are to be extracted concurrently.
+     *
+     * @return the maximum number of collections that are to be extracted concurrently
+     */
+    public int getConcurrentCollections()
+    {
+        return concurrentCollectionsParam.getValue();
+    }
+
+
+    /**
+     * Retrieves the mode that determines which threads extract collections concurrently.
+     *
+     * @return one of the values of {@linkplain FishStatJParameterConstants#EXECUTION_MODES}
+     */
+    public String getExecutionMode()
+    {
+        return executionModeParam.getValue();
+    }
+
+
+    /**
+     * Checks if the contacts page and the archive of each collection are to be
+     * retrieved concurrently.
+     *
+     * @return true if the contacts page and the archive are retrieved concurrently
+     */
+    public boolean isFetchingConcurrently()
+    {
+        return concurrentFetchesParam.getValue();
+    }
+
+
+    /**
+     * Retrieves the mode that determines how collection archives are processed.
+     *
+     * @return one of the values of {@linkplain FishStatJParameterConstants#ARCHIVE_MODES}
+     */
+    public String getArchiveMode()
+    {
+        return archiveModeParam.getValue();
+    }
+
+
+    /**
+     * Checks if collections that have not changed since the last harvest are to be skipped.
+     *
+     * @return true if only changed collections are to be harvested
+     */
+    public boolean isIncrementalHarvest()
+    {
+        return incrementalHarvestParam.getValue();
+    }
+
+
+    /**
+     * Retrieves the maximum number of collection and contact pages that are
+     * cached on disk and revalidated in subsequent harvests.
+     *
+     * @return the maximum number of cached pages, or 0 if pages are not to be cached
+     */
+    public int getPageCacheSize()
+    {
+        return pageCacheSizeParam.getValue();
+    }
+
+
+    /**
+     * Retrieves the disk space in megabytes that downloaded archives may occupy
+     * in order to be reused in subsequent harvests. Stored archives are always
+     * downloaded resumably and verified.
+     *
+     * @return the archive store quota in megabytes, or 0 if archives are not to be stored
+     */
+    public int getArchiveStoreQuota()
+    {
+        return archiveStoreQuotaParam.getValue();
+    }
+
+
+    /**
+     * Retrieves the number of threads of the HTTP client that retrieve pages asynchronously.
+     * Archives are always transferred via the HTTP client, which reuses keep-alive connections.
+     *
+     * @return the number of HTTP client threads, or 0 if pages are retrieved via the harvester library
+     */
+    public int getHttpClientThreads()
+    {
+        return httpClientThreadsParam.getValue();
+    }
+
+
+    /**
+     * Retrieves the maximum number of requests per second that are sent to a single host.
+     * If requests are throttled, the number of concurrent requests adapts to the
+     * responsiveness of the host, and failed requests are retried.
+     *
+     * @return the maximum number of requests per second, or 0 if requests are not throttled
+     */
+    public int getRequestRate()
+    {
+        return requestRateParam.getValue();
+    }
+
+
+    /**
+     * Checks if archives are to be downloaded to a file first, resuming interrupted
+     * downloads and verifying the archives before they are unzipped.
+     *
+     * @return true if archive downloads are resumable
+     */
+    public boolean isResumingDownloads()
+    {
+        return resumableDownloadsParam.getValue();
+    }
+
+
+    /**
+     * Checks if the subjects of single csv files of remote archives, or of archives that
+     * are extracted selectively, are to be cached, so that unchanged csv files are not
+     * parsed again. This has no effect if the number of subjects per collection is
+     * limited, or if csv statistics are computed.
+     *
+     * @return true if the subjects of csv files are to be cached
+     */
+    public boolean isCachingCsvSubjects()
+    {
+        return csvSubjectCacheParam.getValue();
+    }
+
+
+    /**
+     * Retrieves the parser that is used for reading extracted csv files.
+     *
+     * @return one of the values of {@linkplain FishStatJParameterConstants#CSV_PARSERS}
+     */
+    public String getCsvParser()
+    {
+        return csvParserParam.getValue();
+    }
+
+
+    /**
+     * Retrieves the number of threads that parse the csv files of a collection in parallel.
+     *
+     * @return the number of csv parsing threads, or 1 if csv files are parsed sequentially
+     */
+    public int getCsvParsingThreads()
+    {
+        return csvParsingThreadsParam.getValue();
+    }
+
+
+    /**
+     * Retrieves the number of collections that are transformed concurrently.
+     *
+     * @return the number of concurrent transformations, or 1 if collections are transformed sequentially
+     */
+    public int getConcurrentTransformations()
+    {
+        return concurrentTransformationsParam.getValue();
+    }
+
+
+    /**
+     * Retrieves the mode that determines how transformed documents are passed on.
+     * In the NDJSON mode, documents are only written to a file in the cache folder,
+     * and the loader receives null instead of the document of each collection,
+     * so that harvested collections are still counted. The distinct csv subjects of
+     * a collection are then always spilled to disk if they exceed the subject
+     * memory budget, which is 64 megabytes unless it is configured.
+     *
+     * @return one of the values of {@linkplain FishStatJParameterConstants#OUTPUT_MODES}
+     */
+    public String getOutputMode()
+    {
+        return outputModeParam.getValue();
+    }
+
+
+    /**
+     * Retrieves the maximum number of csv subjects per collection. If the number
+     * is limited, only the most frequent subjects are retained.
+     *
+     * @return the maximum number of csv subjects per collection, or 0 if all subjects are retained
+     */
+    public int getMaxSubjects()
+    {
+        return maxSubjectsParam.getValue();
+    }
+
+
+    /**
+     * Retrieves the memory in megabytes that the distinct csv subjects of a collection
+     * may occupy while they are determined, before they are sorted and written to disk.
+     *
+     * @return the subject memory budget in megabytes, or 0 if subjects are only kept in memory
+     */
+    public int getSubjectMemoryBudget()
+    {
+        return subjectMemoryBudgetParam.getValue();
+    }
+
+
+    /**
+     * Retrieves the dictionary that interns the subjects
+     * of all collections of a harvest.
+     *
+     * @return the subject dictionary of the harvest
+     */
+    public SubjectDictionary getSubjectDictionary()
+    {
+        return subjectDictionary;
+    }
+
+
+    /**
+     * Retrieves the fingerprints of harvested collections, which are marked as
+     * extracted by the extractor and as harvested once they were passed on to the loader.
+     *
+     * @return the collection states of the harvest
+     */
+    public FishStatJCollectionStates getCollectionStates()
+    {
+        return collectionStates;
+    }
+
+
+    /**
+     * Checks if the year range and the numbers of distinct countries and species
+     * are to be computed while the subjects of the csv files of a collection are parsed.
+     * This applies to all archive modes, and disables the csv subject cache. If transformed
+     * documents are written to an NDJSON file, only archives that are parsed while they
+     * are retrieved have statistics, because downloaded csv files are streamed into the file.
+     *
+     * @return true if csv statistics are to be added to the documents
+     */
+    public boolean isComputingCsvStatistics()
+    {
+        return csvStatisticsParam.getValue();
+    }
 }
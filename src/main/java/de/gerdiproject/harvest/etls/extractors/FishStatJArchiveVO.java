@@ -0,0 +1,55 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.etls.extractors;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+
+import de.gerdiproject.harvest.fishstatj.utils.CsvColumnStatistics;
+import de.gerdiproject.json.datacite.Rights;
+import de.gerdiproject.json.datacite.Subject;
+import de.gerdiproject.json.datacite.abstr.AbstractDate;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+/**
+ * This value object contains metadata that was parsed from the files
+ * of a FishStatJ collection archive, and optionally the statistics of its csv files.
+ *
+ * @author Robin Weiss
+ */
+@Value
+@AllArgsConstructor
+public class FishStatJArchiveVO
+{
+    private final List<Rights> rights;
+    private final List<AbstractDate> dates;
+    private final Collection<Subject> subjects;
+    private final CsvColumnStatistics statistics;
+
+
+    /**
+     * Constructor that creates empty collections, which can be filled
+     * while the files of an archive are parsed one by one.
+     */
+    public FishStatJArchiveVO()
+    {
+        this(new LinkedList<>(), new LinkedList<>(), new HashSet<>(), null);
+    }
+}
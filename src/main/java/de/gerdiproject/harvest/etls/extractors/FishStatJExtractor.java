@@ -20,12 +20,26 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipInputStream;
@@ -42,9 +56,27 @@ import de.gerdiproject.harvest.etls.FishStatJETL;
 import de.gerdiproject.harvest.etls.FishStatJLanguageVO;
 import de.gerdiproject.harvest.event.EventSystem;
 import de.gerdiproject.harvest.fishstatj.constants.FishStatJFileConstants;
+import de.gerdiproject.harvest.fishstatj.constants.FishStatJParameterConstants;
 import de.gerdiproject.harvest.fishstatj.constants.FishStatJSourceConstants;
+import de.gerdiproject.harvest.fishstatj.utils.ArchiveStore;
+import de.gerdiproject.harvest.fishstatj.utils.ConditionalPageCache;
+import de.gerdiproject.harvest.fishstatj.utils.CsvSubjectCache;
+import de.gerdiproject.harvest.fishstatj.utils.FishStatJCollectionStates;
+import de.gerdiproject.harvest.fishstatj.utils.FishStatJExtractionPlan;
+import de.gerdiproject.harvest.fishstatj.utils.FishStatJFileParser;
+import de.gerdiproject.harvest.fishstatj.utils.FishStatJFingerprinter;
+import de.gerdiproject.harvest.fishstatj.utils.PooledHttpClient;
+import de.gerdiproject.harvest.fishstatj.utils.PrefetchingIterator;
+import de.gerdiproject.harvest.fishstatj.utils.RemoteZipEntry;
+import de.gerdiproject.harvest.fishstatj.utils.RemoteZipReader;
+import de.gerdiproject.harvest.fishstatj.utils.RequestThrottle;
+import de.gerdiproject.harvest.fishstatj.utils.ResumableDownloader;
+import de.gerdiproject.harvest.fishstatj.utils.VirtualThreadExecutor;
 import de.gerdiproject.harvest.utils.data.HttpRequester;
 import de.gerdiproject.harvest.utils.file.FileUtils;
+import lombok.AllArgsConstructor;
+import net.lingala.zip4j.core.ZipFile;
+import net.lingala.zip4j.model.FileHeader;
 
 /**
  * This {@linkplain AbstractIteratorExtractor} implementation retrieves FishStatJ collections
@@ -57,11 +89,34 @@ public class FishStatJExtractor extends AbstractIteratorExtractor<FishStatJColle
     protected static final Logger LOGGER = LoggerFactory.getLogger(FishStatJExtractor.class);
 
     protected final HttpRequester httpRequester = new HttpRequester();
+    protected final FishStatJFileParser fileParser = new FishStatJFileParser();
 
     protected FishStatJLanguageVO languageVo;
     protected Iterator<Element> sourceIterator;
     private String version;
     private int fishStatJPageCount = -1;
+    private int concurrentCollections;
+    private String archiveMode;
+    private String executionMode;
+
+    private ExecutorService executor;
+    private PrefetchingIterator<Element, FishStatJCollectionVO> prefetchingIterator;
+
+    private FishStatJFingerprinter fingerprinter;
+    private final Map<String, ScannedPage> collectionPages = new ConcurrentHashMap<>();
+    private final Map<String, String> collectionFingerprints = new ConcurrentHashMap<>();
+    private FishStatJCollectionStates collectionStates;
+    private ConditionalPageCache pageCache;
+    private ArchiveStore archiveStore;
+    private FishStatJExtractionPlan extractionPlan;
+    private CsvSubjectCache subjectCache;
+    private PooledHttpClient httpClient;
+    private boolean isPoolingPageRequests;
+    private ExecutorService fetchExecutor;
+    private int requestRate;
+    private ResumableDownloader downloader;
+    private File downloadFolder;
+    private final Map<String, RequestThrottle> requestThrottles = new ConcurrentHashMap<>();
 
 
     @Override
@@ -69,21 +124,154 @@ public class FishStatJExtractor extends AbstractIteratorExtractor<FishStatJColle
     {
         super.init(etl);
         this.languageVo = ((FishStatJETL) etl).getLanguageVO();
+        this.concurrentCollections = ((FishStatJETL) etl).getConcurrentCollections();
+        this.archiveMode = ((FishStatJETL) etl).getArchiveMode();
+        this.executionMode = ((FishStatJETL) etl).getExecutionMode();
+        this.requestRate = ((FishStatJETL) etl).getRequestRate();
+        this.requestThrottles.clear();
+        this.collectionStates = ((FishStatJETL) etl).getCollectionStates();
+        this.extractionPlan = new FishStatJExtractionPlan(languageVo);
         this.httpRequester.setCharset(etl.getCharset());
+        this.fileParser.setSubjectDictionary(((FishStatJETL) etl).getSubjectDictionary());
+        this.fileParser.setMaxSubjects(((FishStatJETL) etl).getMaxSubjects());
+        this.fileParser.setComputingCsvStatistics(((FishStatJETL) etl).isComputingCsvStatistics());
+        this.collectionPages.clear();
+        this.collectionFingerprints.clear();
+
+        if (httpClient != null)
+            httpClient.shutdown();
+
+        // files are always transferred via the HTTP client, whereas pages are only
+        // retrieved via the HTTP client if it has threads that retrieve them asynchronously
+        final int httpClientThreads = ((FishStatJETL) etl).getHttpClientThreads();
+        this.httpClient = new PooledHttpClient(httpClientThreads, FishStatJFileConstants.HTTP_REQUEST_TIMEOUT, etl.getCharset());
+        this.isPoolingPageRequests = httpClientThreads > 0;
+
+        // archive headers are requested like all other requests
+        this.fingerprinter = new FishStatJFingerprinter(httpClient, this::getRequestThrottle);
+
+        if (fetchExecutor != null)
+            fetchExecutor.shutdownNow();
+
+        // each collection fetches its contacts page and its archive concurrently
+        final int concurrentFetches = 2 * Math.max(1, concurrentCollections);
+
+        if (((FishStatJETL) etl).isFetchingConcurrently()) {
+            this.fetchExecutor = FishStatJParameterConstants.EXECUTION_MODE_VIRTUAL.equals(executionMode)
+                                 ? VirtualThreadExecutor.create(concurrentFetches)
+                                 : Executors.newFixedThreadPool(concurrentFetches);
+        } else
+            this.fetchExecutor = null;
+
+        final int pageCacheSize = ((FishStatJETL) etl).getPageCacheSize();
+        final File cacheFolder = EventSystem.sendSynchronousEvent(new GetCacheFolderEvent());
+        this.pageCache = pageCacheSize > 0
+                         ? new ConditionalPageCache(
+                             new File(cacheFolder, FishStatJFileConstants.PAGE_CACHE_FOLDER),
+                             pageCacheSize,
+                             httpClient)
+                         : null;
+
+        this.downloadFolder = new File(cacheFolder, FishStatJFileConstants.DOWNLOAD_FOLDER);
+        this.downloader = ((FishStatJETL) etl).isResumingDownloads()
+                          ? new ResumableDownloader(
+                              httpClient,
+                              this::getRequestThrottle,
+                              FishStatJFileConstants.MAX_DOWNLOAD_ATTEMPTS,
+                              FishStatJFileConstants.PART_FILE_LIFETIME)
+                          : null;
+
+        // partial downloads of archives that are no longer harvested would never be resumed
+        if (downloader != null)
+            downloader.deleteExpiredPartFiles(downloadFolder);
+
+        // stored archives are always downloaded resumably, because they are kept across harvests
+        final int archiveStoreQuota = ((FishStatJETL) etl).getArchiveStoreQuota();
+        this.archiveStore = archiveStoreQuota > 0
+                            ? new ArchiveStore(
+                                new File(cacheFolder, FishStatJFileConstants.ARCHIVE_STORE_FOLDER),
+                                archiveStoreQuota * FishStatJFileConstants.ARCHIVE_STORE_QUOTA_UNIT,
+                                httpClient,
+                                this::getRequestThrottle,
+                                downloader != null
+                                ? downloader
+                                : new ResumableDownloader(
+                                    httpClient,
+                                    this::getRequestThrottle,
+                                    FishStatJFileConstants.MAX_DOWNLOAD_ATTEMPTS,
+                                    FishStatJFileConstants.PART_FILE_LIFETIME))
+                            : null;
+
+        // neither frequencies of subjects nor csv rows are cached, so the most frequent subjects
+        // and csv statistics cannot be determined from the cache
+        this.subjectCache = ((FishStatJETL) etl).isCachingCsvSubjects()
+                            && ((FishStatJETL) etl).getMaxSubjects() == 0
+                            && !((FishStatJETL) etl).isComputingCsvStatistics()
+                            ? new CsvSubjectCache(new File(cacheFolder, FishStatJFileConstants.CSV_SUBJECT_CACHE_FOLDER))
+                            : null;
 
         final String mainUrl = String.format(FishStatJSourceConstants.MAIN_PAGE_URL, languageVo.getApiName());
-        final Document baseWebsite = httpRequester.getHtmlFromUrl(mainUrl);
+        final Document baseWebsite = getThrottledPage(mainUrl, () -> requestHtml(mainUrl));
 
         if (baseWebsite == null)
             throw new ETLPreconditionException(FishStatJSourceConstants.FISHSTAT_TIMEOUT_ERROR);
 
         final List<Element> fishStatJSources = baseWebsite.select(FishStatJSourceConstants.MAIN_PAGE_LINKS_SELECTION);
 
-        this.fishStatJPageCount = fishStatJSources.size();
+        // request all collection pages and archive headers at once, if they can be retrieved asynchronously,
+        // and reduce each page to its content right away, so that no HTML document is retained until extraction
+        final List<CompletableFuture<ScannedPage>> pendingPages = new LinkedList<>();
+
+        for (final Element source : fishStatJSources) {
+            final String url = source.attr(FishStatJSourceConstants.HREF_ATTRIBUTE);
+            pendingPages.add(httpClient.supplyAsync(() -> {
+                final Document collectionPage = getHtmlFromUrl(url);
+                final String fingerprint = fingerprinter.getCollectionFingerprint(collectionPage);
+
+                // collections without a fingerprint are harvested again
+                if (fingerprint != null)
+                    collectionFingerprints.put(url, fingerprint);
+
+                return scanCollectionPage(collectionPage);
+            }));
+        }
+
+        // wait for all collection pages in order to combine the fingerprints of their content
+        final List<String> fingerprints = new LinkedList<>();
+        final Iterator<CompletableFuture<ScannedPage>> pendingPageIter = pendingPages.iterator();
+
+        for (final Element source : fishStatJSources) {
+            final String url = source.attr(FishStatJSourceConstants.HREF_ATTRIBUTE);
+            final ScannedPage collectionPage = pendingPageIter.next().join();
+
+            if (collectionPage != null)
+                collectionPages.put(url, collectionPage);
+
+            fingerprints.add(collectionFingerprints.get(url));
+        }
+
+        this.version = fingerprinter.combine(fingerprints);
+
+        // skip collections that have not changed since the last harvest
+        if (((FishStatJETL) etl).isIncrementalHarvest()) {
+            collectionStates.load(
+                new File(cacheFolder, String.format(FishStatJFileConstants.COLLECTION_STATES_FILE, languageVo.getApiName())));
 
-        // TODO replace with something better
-        this.version = String.valueOf(fishStatJSources.size());
+            final int sourceCount = fishStatJSources.size();
+            fishStatJSources.removeIf((final Element source) -> {
+                final String url = source.attr(FishStatJSourceConstants.HREF_ATTRIBUTE);
+                final boolean isUnchanged = collectionStates.isUnchanged(url, collectionFingerprints.get(url));
 
+                if (isUnchanged)
+                    collectionPages.remove(url);
+
+                return isUnchanged;
+            });
+            LOGGER.info(String.format(FishStatJFileConstants.SKIPPED_COLLECTIONS, sourceCount - fishStatJSources.size()));
+        } else
+            collectionStates.clear();
+
+        this.fishStatJPageCount = fishStatJSources.size();
         this.sourceIterator = fishStatJSources.iterator();
     }
 
@@ -105,179 +293,896 @@ public class FishStatJExtractor extends AbstractIteratorExtractor<FishStatJColle
     @Override
     protected Iterator<FishStatJCollectionVO> extractAll() throws ExtractorException
     {
-        return new FishStatJIterator();
+        if (concurrentCollections <= 1)
+            return new FishStatJIterator();
+
+        // virtual threads are cheap, so the number of concurrent collections is only limited by a semaphore
+        this.executor = FishStatJParameterConstants.EXECUTION_MODE_VIRTUAL.equals(executionMode)
+                        ? VirtualThreadExecutor.create(concurrentCollections)
+                        : Executors.newFixedThreadPool(concurrentCollections);
+        this.prefetchingIterator = new PrefetchingIterator<>(
+            sourceIterator,
+            this::extractCollection,
+            this::discardCollection,
+            executor,
+            concurrentCollections);
+
+        return prefetchingIterator;
     }
 
 
     /**
-     * This {@linkplain Iterator} iterates through FishStatJ collections and
-     * generates a {@linkplain FishStatJCollectionVO} for each of them.
+     * Deletes the downloaded files of a collection that was extracted,
+     * but will never be transformed, because the harvest was aborted.
      *
-     * @author Robin Weiss
+     * @param collection the extracted collection, or null
      */
-    private class FishStatJIterator implements Iterator<FishStatJCollectionVO>
+    private void discardCollection(final FishStatJCollectionVO collection)
     {
-        @Override
-        public boolean hasNext()
-        {
-            return sourceIterator.hasNext();
+        if (collection != null && collection.getDownloadFolder() != null)
+            FileUtils.deleteFile(collection.getDownloadFolder());
+    }
+
+
+    /**
+     * Retrieves all web pages and files that belong to a FishStatJ collection
+     * and bundles them in a {@linkplain FishStatJCollectionVO}.
+     *
+     * @param source the link element of the main page that points to the collection
+     *
+     * @return a {@linkplain FishStatJCollectionVO}, or null if the collection page could not be retrieved
+     */
+    private FishStatJCollectionVO extractCollection(final Element source)
+    {
+        final String url = source.attr(FishStatJSourceConstants.HREF_ATTRIBUTE);
+
+        // use the collection page that was scanned for the fingerprint, and release it afterwards
+        final ScannedPage prefetchedPage = collectionPages.remove(url);
+        final ScannedPage collectionPage = prefetchedPage == null
+                                           ? scanCollectionPage(getHtmlFromUrl(url))
+                                           : prefetchedPage;
+
+        if (collectionPage == null) {
+            LOGGER.warn(String.format(FishStatJFileConstants.COLLECTION_SKIPPED, url));
+            return null;
         }
 
+        final FishStatJPageVO collectionContent = collectionPage.content;
 
-        @Override
-        public FishStatJCollectionVO next()
-        {
-            final Element nextSource = sourceIterator.next();
-            final String url = nextSource.attr(FishStatJSourceConstants.HREF_ATTRIBUTE);
-            final Document collectionPage = httpRequester.getHtmlFromUrl(url);
+        if (fetchExecutor != null)
+            return fetchConcurrently(url, collectionPage.contactsUrl, collectionContent);
+
+        final FishStatJPageVO page = extractionPlan.addContacts(collectionContent, getContactsPage(collectionPage.contactsUrl));
+        final ArchiveContent archiveContent = fetchArchive(url, page.getZipLink());
+
+        return createCollection(url, page, archiveContent);
+    }
+
+
+    /**
+     * Bundles the content of a collection in a {@linkplain FishStatJCollectionVO}, and
+     * marks the collection as extracted if its archive was retrieved successfully.
+     *
+     * @param url the URL of the collection page
+     * @param page the content of the collection page and its contacts page
+     * @param archiveContent the downloaded or parsed content of the archive
+     *
+     * @return a {@linkplain FishStatJCollectionVO}
+     */
+    private FishStatJCollectionVO createCollection(final String url, final FishStatJPageVO page, final ArchiveContent archiveContent)
+    {
+        // collections of which the archive could not be retrieved are harvested again next time
+        if (page.getZipLink() == null || archiveContent.downloadFolder != null || archiveContent.archive != null)
+            collectionStates.setExtracted(url, collectionFingerprints.get(url));
+
+        return new FishStatJCollectionVO(
+                   url,
+                   page,
+                   archiveContent.downloadFolder,
+                   archiveContent.archive);
+    }
+
+
+    /**
+     * Retrieves the contacts page and the archive of a collection concurrently.
+     * If the archive fails or the extraction is cancelled, the contacts page is
+     * cancelled as well. If the contacts page fails, the archive is still kept,
+     * because it may have been large. A collection of which a part could not be
+     * retrieved is not marked as extracted, so that it is harvested again next time.
+     *
+     * @param url the URL of the collection page
+     * @param contactsUrl the URL of the contacts page of the collection, or null
+     * @param collectionContent the content of the collection page without contacts
+     *
+     * @return a {@linkplain FishStatJCollectionVO}, or null if the extraction was interrupted
+     */
+    private FishStatJCollectionVO fetchConcurrently(final String url, final String contactsUrl, final FishStatJPageVO collectionContent)
+    {
+        final FishStatJLinkVO zipLink = collectionContent.getZipLink();
+        final CompletionService<Object> completionService = new ExecutorCompletionService<>(fetchExecutor);
+
+        // both tasks fail with an exception instead of returning null, so that failures can be told apart
+        final Future<Object> contactsTask = completionService.submit(() -> {
+            final Document contactsPage = getContactsPage(contactsUrl);
+
+            if (contactsUrl != null && contactsPage == null)
+                throw new IOException(String.format(FishStatJFileConstants.REQUEST_ERROR, contactsUrl));
+
+            return contactsPage;
+        });
+        final Future<Object> archiveTask = completionService.submit(() -> {
+            final ArchiveContent archiveContent = fetchArchive(url, zipLink);
+
+            if (zipLink != null && archiveContent.downloadFolder == null && archiveContent.archive == null)
+                throw new IOException(String.format(FishStatJFileConstants.DOWNLOAD_ERROR, zipLink.getUrl()));
 
-            if (collectionPage != null && collectionPage.hasText())
+            return archiveContent;
+        });
+
+        try {
+            // wait for both tasks, failing as soon as the archive fails
+            for (int i = 0; i < 2; i++) {
+                if (completionService.take() == archiveTask)
+                    archiveTask.get();
+            }
+
+            final ArchiveContent archiveContent = (ArchiveContent) archiveTask.get();
+
+            try {
+                final FishStatJPageVO page = extractionPlan.addContacts(collectionContent, (Document) contactsTask.get());
+                return createCollection(url, page, archiveContent);
+
+            } catch (final ExecutionException e) {
+                rethrowUnchecked(e.getCause());
+                LOGGER.warn(e.getCause().getMessage());
+
+                // keep the archive, but do not mark the collection as extracted
                 return new FishStatJCollectionVO(
                            url,
-                           collectionPage,
-                           getContactsPage(collectionPage),
-                           downloadAndUnzipCollection(collectionPage));
-            else
-                return null;
+                           extractionPlan.addContacts(collectionContent, null),
+                           archiveContent.downloadFolder,
+                           archiveContent.archive);
+            }
+
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            contactsTask.cancel(true);
+            archiveTask.cancel(true);
+
+            // the collection is never transformed, so its downloaded files must be removed here
+            final ArchiveContent archiveContent = (ArchiveContent) getCompletedResult(archiveTask);
+
+            if (archiveContent != null && archiveContent.downloadFolder != null)
+                FileUtils.deleteFile(archiveContent.downloadFolder);
+
+            return null;
+
+        } catch (final ExecutionException e) {
+            rethrowUnchecked(e.getCause());
+            LOGGER.warn(e.getCause().getMessage());
+            contactsTask.cancel(true);
+
+            // keep the contacts page if it was retrieved before the archive failed
+            final Document contactsPage = (Document) getCompletedResult(contactsTask);
+
+            return new FishStatJCollectionVO(
+                       url,
+                       extractionPlan.addContacts(collectionContent, contactsPage),
+                       null,
+                       null);
+
+        } finally {
+            // cancel the contacts page if the archive failed
+            contactsTask.cancel(true);
+            archiveTask.cancel(true);
         }
+    }
 
 
-        /**
-         * Retrieves a web page that contains contact information regarding a collection.
-         *
-         * @param collectionPage the main web page of the FishStatJ collection
-         *
-         * @return a web page concerning contact information of a collection
-         */
-        private Document getContactsPage(final Document collectionPage)
-        {
-            // find the "Contact" element on the web page
-            final String contactsSelection = String.format(
-                                                 FishStatJSourceConstants.CONTAINS_TEXT_SELECTION,
-                                                 languageVo.getContactsTabTitle());
-            final Element contactsLink = collectionPage.selectFirst(contactsSelection);
+    /**
+     * Re-throws the cause of a failed task if it is unchecked.
+     *
+     * @param cause the cause of the failure of a task
+     */
+    private static void rethrowUnchecked(final Throwable cause)
+    {
+        if (cause instanceof RuntimeException)
+            throw (RuntimeException) cause;
+        else if (cause instanceof Error)
+            throw (Error) cause;
+    }
 
-            if (contactsLink == null)
-                return null;
 
-            final String contactsUrl = String.format(
-                                           FishStatJSourceConstants.SITE_URL,
-                                           contactsLink.attr(FishStatJSourceConstants.HREF_ATTRIBUTE));
+    /**
+     * Retrieves the result of a task that completed successfully.
+     *
+     * @param task a task that may still be running, or may have failed or been cancelled
+     *
+     * @return the result of the task, or null if it did not complete successfully
+     */
+    private static Object getCompletedResult(final Future<Object> task)
+    {
+        if (!task.isDone() || task.isCancelled())
+            return null;
 
-            return httpRequester.getHtmlFromUrl(contactsUrl);
+        try {
+            return task.get();
+
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+
+        } catch (final ExecutionException e) {
+            return null;
         }
+    }
 
 
-        /**
-         * Checks if the collection web page offers a zip file download, and downloads
-         * and deflates the zip file if available.
-         *
-         * @param collectionPage the main web page of the FishStatJ collection
-         *
-         * @return a local directory containing the deflated zip archive, or null if there
-         *          were problems downloading or deflating the archive
-         */
-        private File downloadAndUnzipCollection(final Document collectionPage)
-        {
-            // look for a link-element for downloading a zip-file
-            final Element zipLinkElement = collectionPage.selectFirst(FishStatJSourceConstants.ZIP_LINKS_SELECTION);
+    /**
+     * Retrieves the archive of a collection, as specified by the archive mode.
+     *
+     * @param url the URL of the collection page
+     * @param zipLink the link that points to the zip file of the collection, or null
+     *
+     * @return the downloaded or parsed content of the archive
+     */
+    private ArchiveContent fetchArchive(final String url, final FishStatJLinkVO zipLink)
+    {
+        File downloadFolder = null;
+        FishStatJArchiveVO archive = null;
 
-            if (zipLinkElement == null)
-                return null;
+        if (zipLink != null) {
+            switch (archiveMode) {
+                case FishStatJParameterConstants.ARCHIVE_MODE_STREAM:
+                    archive = downloadAndParseCollection(zipLink);
+                    break;
 
-            // retrieve URL from link-element
-            final String zipUrl = zipLinkElement.attr(FishStatJSourceConstants.HREF_ATTRIBUTE);
+                case FishStatJParameterConstants.ARCHIVE_MODE_REMOTE:
+                    archive = parseRemoteCollection(zipLink);
+                    break;
 
-            if (zipUrl == null)
-                return null;
+                case FishStatJParameterConstants.ARCHIVE_MODE_SELECTIVE:
+                    // csv files with cached subjects are not extracted, so their subjects are passed on separately
+                    archive = subjectCache == null ? null : fileParser.createArchive();
+                    downloadFolder = downloadAndExtractCollection(url, zipLink, archive);
+
+                    if (downloadFolder == null)
+                        archive = null;
+
+                    break;
+
+                default:
+                    downloadFolder = downloadAndUnzipCollection(url, zipLink);
+            }
+        }
+
+        return new ArchiveContent(downloadFolder, archive);
+    }
+
+
+    /**
+     * Reduces a collection page to its content and the URL of its contacts page,
+     * so that the page itself does not need to be retained.
+     *
+     * @param collectionPage the main web page of the FishStatJ collection, or null
+     *
+     * @return the scanned content of the page, or null if the page is missing or empty
+     */
+    private ScannedPage scanCollectionPage(final Document collectionPage)
+    {
+        if (collectionPage == null || !collectionPage.hasText())
+            return null;
+
+        // find the "Contact" element on the web page
+        final String contactsSelection = String.format(
+                                             FishStatJSourceConstants.CONTAINS_TEXT_SELECTION,
+                                             languageVo.getContactsTabTitle());
+        final Element contactsLink = collectionPage.selectFirst(contactsSelection);
+
+        final String contactsUrl = contactsLink == null
+                                   ? null
+                                   : String.format(
+                                       FishStatJSourceConstants.SITE_URL,
+                                       contactsLink.attr(FishStatJSourceConstants.HREF_ATTRIBUTE));
+
+        return new ScannedPage(extractionPlan.scan(collectionPage), contactsUrl);
+    }
+
+
+    /**
+     * Retrieves a web page that contains contact information regarding a collection.
+     *
+     * @param contactsUrl the URL of the contacts page of the collection, or null
+     *
+     * @return a web page concerning contact information of a collection,
+     *          or null if there is none
+     */
+    private Document getContactsPage(final String contactsUrl)
+    {
+        if (contactsUrl == null)
+            return null;
+
+        return getHtmlFromUrl(contactsUrl);
+    }
+
+
+    /**
+     * Retrieves a collection or contacts page, using the conditional page cache if it is enabled.
+     *
+     * @param url the URL of the page
+     *
+     * @return the parsed HTML page, or null if it could not be retrieved
+     */
+    private Document getHtmlFromUrl(final String url)
+    {
+        return getThrottledPage(url, () -> {
+            if (pageCache != null)
+                return pageCache.requestHtml(url);
+
+            return requestHtml(url);
+        });
+    }
+
+
+    /**
+     * Retrieves a page via the HTTP client if it retrieves pages, or via the
+     * {@linkplain HttpRequester}, which does not report why a page could not be retrieved.
+     *
+     * @param url the URL of the page
+     *
+     * @return the parsed HTML page
+     *
+     * @throws IOException thrown when the page could not be retrieved
+     */
+    private Document requestHtml(final String url) throws IOException
+    {
+        if (isPoolingPageRequests)
+            return httpClient.requestHtml(url);
+
+        final Document page = httpRequester.getHtmlFromUrl(url);
+
+        if (page == null)
+            throw new IOException(String.format(FishStatJFileConstants.REQUEST_ERROR, url));
+
+        return page;
+    }
+
+
+    /**
+     * Retrieves a page via the request throttle of its host, if requests are throttled.
+     * Pages that could not be retrieved are requested again, unless the server responded with a client error.
+     *
+     * @param url the URL of the page
+     * @param pageRequest a function that retrieves the page
+     *
+     * @return the parsed HTML page, or null if it could not be retrieved
+     */
+    private Document getThrottledPage(final String url, final RequestThrottle.Request<Document> pageRequest)
+    {
+        try {
+            return RequestThrottle.send(getRequestThrottle(url), pageRequest);
+
+        } catch (final IOException e) {
+            LOGGER.warn(e.getMessage());
+            return null;
+        }
+    }
+
+
+    /**
+     * Retrieves the request throttle of the host of a URL.
+     *
+     * @param url the URL to which a request is sent
+     *
+     * @return the request throttle of the host, or null if requests are not throttled
+     */
+    private RequestThrottle getRequestThrottle(final String url)
+    {
+        if (requestRate <= 0)
+            return null;
+
+        String host;
+
+        try {
+            host = new URL(url).getHost();
+        } catch (final MalformedURLException e) {
+            host = url;
+        }
+
+        return requestThrottles.computeIfAbsent(host, (final String h) -> new RequestThrottle(
+                                                    h,
+                                                    requestRate,
+                                                    FishStatJFileConstants.MAX_CONCURRENT_REQUESTS,
+                                                    FishStatJFileConstants.MAX_REQUEST_RETRIES));
+    }
+
+
+    /**
+     * Downloads and deflates the zip file of a collection.
+     *
+     * @param collectionUrl the URL of the FishStatJ collection
+     * @param zipLink the link that points to the zip file of the collection
+     *
+     * @return a local directory containing the deflated zip archive, or null if there
+     *          were problems downloading or deflating the archive
+     */
+    private File downloadAndUnzipCollection(final String collectionUrl, final FishStatJLinkVO zipLink)
+    {
+        final String zipUrl = zipLink.getUrl();
+        final File unzipFolder = getUnzipFolder(collectionUrl, zipLink);
+        final boolean isUnzipped = unZipFileFromUrl(zipUrl, unzipFolder);
+
+        if (!isUnzipped)
+            return null;
+
+        return unzipFolder;
+    }
+
+
+    /**
+     * Reads the central directory of the zip file of a collection via HTTP range requests
+     * and only retrieves the files that are required by the {@linkplain FishStatJFileParser}.
+     * If the server does not support range requests, the whole zip file is streamed instead.
+     *
+     * @param zipLink the link that points to the zip file of the collection
+     *
+     * @return the metadata that was parsed from the archive, or null if there
+     *          were problems retrieving or parsing the archive
+     */
+    private FishStatJArchiveVO parseRemoteCollection(final FishStatJLinkVO zipLink)
+    {
+        final String zipUrl = zipLink.getUrl();
+        final RemoteZipReader zipReader = new RemoteZipReader(zipUrl, httpClient, this::getRequestThrottle);
+
+        try {
+            final List<RemoteZipEntry> entries = zipReader.readCentralDirectory();
+
+            if (entries == null) {
+                LOGGER.info(String.format(FishStatJFileConstants.RANGES_NOT_SUPPORTED, zipUrl));
+                return downloadAndParseCollection(zipLink);
+            }
+
+            final FishStatJArchiveVO archive = fileParser.createArchive();
+
+            for (final RemoteZipEntry entry : entries) {
+                final String fileName = new File(entry.getName()).getName();
+
+                if (subjectCache != null && FishStatJFileConstants.CSV_FILE_FILTER.accept(null, fileName))
+                    parseCachedCsvEntry(zipReader, zipUrl, entry, archive);
+
+                else if (fileParser.isRequiredFile(fileName)) {
+                    try
+                        (InputStream entryStream = zipReader.openEntry(entry)) {
+                        fileParser.parseFile(fileName, entryStream, archive);
+                    }
+                }
+            }
+
+            return archive;
+
+        } catch (final ZipException e) {
+            LOGGER.error(String.format(FishStatJFileConstants.UNZIP_ERROR, zipUrl), e);
+
+        } catch (final IOException e) {
+            LOGGER.error(String.format(FishStatJFileConstants.DOWNLOAD_ERROR, zipUrl), e);
+        }
+
+        return null;
+    }
 
-            // unzip file
-            final File unzipRootFolder = EventSystem.sendSynchronousEvent(new GetCacheFolderEvent());
-            final File unzipFolder = new File(unzipRootFolder, FishStatJFileConstants.UNZIP_FOLDER + zipLinkElement.text().replaceAll("\\W", ""));
-            final boolean isUnzipped = unZipFileFromUrl(zipUrl, unzipFolder);
 
-            if (!isUnzipped)
+    /**
+     * Adds the subjects of a csv file of a remote archive to a value object. If the
+     * csv file has not changed since it was last parsed, its subjects are retrieved from
+     * the cache. Otherwise, the file is transferred, parsed, and its subjects are cached.
+     *
+     * @param zipReader a reader of the remote archive
+     * @param zipUrl the URL of the remote archive
+     * @param entry the central directory entry of the csv file
+     * @param archive the value object to which the subjects are added
+     *
+     * @throws IOException thrown when the csv file cannot be transferred or parsed
+     */
+    private void parseCachedCsvEntry(final RemoteZipReader zipReader, final String zipUrl, final RemoteZipEntry entry, final FishStatJArchiveVO archive) throws IOException
+    {
+        Collection<String> values = subjectCache.get(zipUrl, entry);
+
+        if (values == null) {
+            try
+                (InputStream entryStream = zipReader.openEntry(entry)) {
+                values = fileParser.parseSubjectValues(new File(entry.getName()).getName(), entryStream);
+            }
+            subjectCache.put(zipUrl, entry, values);
+        }
+
+        fileParser.addSubjectValues(values, archive);
+    }
+
+
+    /**
+     * Downloads the zip file of a collection and extracts only the files that are
+     * required by the {@linkplain FishStatJFileParser}, using the central directory
+     * of the archive to skip all other files. If csv subjects are cached, csv files
+     * are not extracted, but their subjects are added to a value object instead.
+     *
+     * @param collectionUrl the URL of the FishStatJ collection
+     * @param zipLink the link that points to the zip file of the collection
+     * @param csvSubjects the value object to which the subjects of csv files are added,
+     *          or null if csv files are to be extracted
+     *
+     * @return a local directory containing the extracted files, or null if there
+     *          were problems downloading or extracting the archive
+     */
+    private File downloadAndExtractCollection(final String collectionUrl, final FishStatJLinkVO zipLink, final FishStatJArchiveVO csvSubjects)
+    {
+        final String zipUrl = zipLink.getUrl();
+        final File unzipFolder = getUnzipFolder(collectionUrl, zipLink);
+        final File zipFile;
+
+        // cleanup left over files
+        FileUtils.deleteFile(unzipFolder);
+        FileUtils.createDirectories(unzipFolder);
+
+        // stored archives are kept and pinned during the extraction, whereas temporary downloads are deleted afterwards
+        if (archiveStore != null) {
+            try {
+                zipFile = archiveStore.getArchive(zipUrl);
+            } catch (final IOException e) {
+                LOGGER.error(String.format(FishStatJFileConstants.DOWNLOAD_ERROR, zipUrl), e);
+                return null;
+            }
+        } else
+            zipFile = new File(unzipFolder.getPath() + FishStatJFileConstants.ZIP_FILE_EXTENSION);
+
+        try {
+            if (archiveStore == null && !downloadFile(zipUrl, zipFile))
                 return null;
 
+            final ZipFile archive = new ZipFile(zipFile);
+
+            for (final Object header : archive.getFileHeaders()) {
+                final FileHeader fileHeader = (FileHeader) header;
+                final String fileName = new File(fileHeader.getFileName()).getName();
+
+                if (fileHeader.isDirectory() || !fileParser.isRequiredFile(fileName))
+                    continue;
+
+                if (csvSubjects != null && FishStatJFileConstants.CSV_FILE_FILTER.accept(null, fileName))
+                    parseCachedCsvEntry(archive, zipUrl, fileHeader, csvSubjects);
+                else
+                    archive.extractFile(fileHeader, unzipFolder.getPath(), null, fileName);
+            }
+
             return unzipFolder;
+
+        } catch (final net.lingala.zip4j.exception.ZipException | IOException e) {
+            LOGGER.error(String.format(FishStatJFileConstants.UNZIP_ERROR, zipUrl), e);
+            return null;
+
+        } finally {
+            if (archiveStore == null)
+                FileUtils.deleteFile(zipFile);
+            else
+                archiveStore.releaseArchive(zipFile);
         }
+    }
 
 
-        /**
-         * Reads a file stream from a URL that points to a zip file and extracts the content
-         * to a specified folder.
-         *
-         * @param zipUrl a URL that points to a zip file
-         * @param unzipFolder the folder to which the zip is to be extracted to
-         *
-         * @return true if the zip was extracted successfully
-         */
-        private boolean unZipFileFromUrl(final String zipUrl, final File unzipFolder)
-        {
-            // cleanup left over files
-            FileUtils.deleteFile(unzipFolder);
-            FileUtils.createDirectories(unzipFolder);
+    /**
+     * Adds the subjects of a csv file of a downloaded archive to a value object. If the
+     * csv file has not changed since it was last parsed, its subjects are retrieved from
+     * the cache. Otherwise, the file is parsed without extracting it, and its subjects are cached.
+     * The csv file is identified by its central directory entry, just like in remote archives,
+     * so the cached subjects are shared by both archive modes.
+     *
+     * @param zipFile the downloaded archive
+     * @param zipUrl the URL from which the archive was downloaded
+     * @param fileHeader the central directory entry of the csv file
+     * @param archive the value object to which the subjects are added
+     *
+     * @throws net.lingala.zip4j.exception.ZipException thrown when the csv file cannot be inflated
+     * @throws IOException thrown when the csv file cannot be parsed
+     */
+    private void parseCachedCsvEntry(final ZipFile zipFile, final String zipUrl, final FileHeader fileHeader, final FishStatJArchiveVO archive) throws net.lingala.zip4j.exception.ZipException, IOException
+    {
+        final RemoteZipEntry entry = new RemoteZipEntry(
+            fileHeader.getFileName(),
+            fileHeader.getCompressionMethod(),
+            fileHeader.getCrc32(),
+            fileHeader.getCompressedSize(),
+            fileHeader.getUncompressedSize(),
+            fileHeader.getOffsetLocalHeader());
+
+        Collection<String> values = subjectCache.get(zipUrl, entry);
+
+        if (values == null) {
+            try
+                (InputStream entryStream = zipFile.getInputStream(fileHeader)) {
+                values = fileParser.parseSubjectValues(new File(entry.getName()).getName(), entryStream);
+            }
+            subjectCache.put(zipUrl, entry, values);
+        }
+
+        fileParser.addSubjectValues(values, archive);
+    }
 
-            final URL downloadUrl;
 
+    /**
+     * Retrieves the folder to which the archive of a collection is extracted.
+     * The folder is unique for each collection, allowing concurrent extractions.
+     *
+     * @param collectionUrl the URL of the FishStatJ collection
+     * @param zipLink the link that points to the zip file of the collection
+     *
+     * @return the folder to which the archive of a collection is extracted
+     */
+    private File getUnzipFolder(final String collectionUrl, final FishStatJLinkVO zipLink)
+    {
+        final File unzipRootFolder = EventSystem.sendSynchronousEvent(new GetCacheFolderEvent());
+        final String unzipFolderName = String.format(
+                                           FishStatJFileConstants.UNZIP_FOLDER_NAME,
+                                           zipLink.getText().replaceAll("\\W", ""),
+                                           Integer.toHexString(collectionUrl.hashCode()));
+
+        return new File(unzipRootFolder, FishStatJFileConstants.UNZIP_FOLDER + unzipFolderName);
+    }
+
+
+    /**
+     * Downloads a file from a URL and writes it to disk.
+     *
+     * @param fileUrl the URL of the file that is to be downloaded
+     * @param targetFile the file to which the download is written
+     *
+     * @return true if the file was downloaded successfully
+     */
+    private boolean downloadFile(final String fileUrl, final File targetFile)
+    {
+        if (downloader != null) {
             try {
-                downloadUrl = new URL(zipUrl);
+                downloader.download(fileUrl, targetFile);
+                return true;
 
-            } catch (final MalformedURLException e) {
-                LOGGER.error(String.format(FishStatJFileConstants.DOWNLOAD_ERROR, zipUrl), e);
+            } catch (final IOException e) {
+                LOGGER.error(String.format(FishStatJFileConstants.DOWNLOAD_ERROR, fileUrl), e);
                 return false;
             }
+        }
 
-            try
-                (InputStream urlInputStream = downloadUrl.openStream();
-                 ZipInputStream zipStream = new ZipInputStream(urlInputStream)) {
+        try
+            (InputStream urlInputStream = openUrlStream(fileUrl)) {
+            Files.copy(urlInputStream, targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return true;
 
-                // iterate through the files of the zip input stream
-                while (true) {
-                    final ZipEntry entry = zipStream.getNextEntry();
+        } catch (final IOException e) {
+            LOGGER.error(String.format(FishStatJFileConstants.DOWNLOAD_ERROR, fileUrl), e);
+            return false;
+        }
+    }
 
-                    if (entry == null)
-                        break;
 
-                    // open streams for writing files to disk
-                    try
-                        (OutputStream fileOut = Files.newOutputStream(new File(unzipFolder, entry.getName()).toPath());
-                         BufferedOutputStream bufferedFileOut = new BufferedOutputStream(fileOut, FishStatJFileConstants.ZIP_EXTRACT_BUFFER_SIZE)) {
+    /**
+     * Opens a stream of a zip file, reading it from the archive store if it is enabled.
+     *
+     * @param zipUrl a URL that points to a zip file
+     *
+     * @return a stream of the zip file
+     *
+     * @throws IOException thrown when the zip file could not be retrieved
+     */
+    private InputStream openArchiveStream(final String zipUrl) throws IOException
+    {
+        if (archiveStore != null)
+            return archiveStore.openArchive(zipUrl);
 
-                        // write the file from the stream to disk
-                        final byte[] fileOutBuffer = new byte[FishStatJFileConstants.ZIP_EXTRACT_BUFFER_SIZE];
+        if (downloader == null)
+            return openUrlStream(zipUrl);
+
+        final File zipFile = new File(downloadFolder, FishStatJFingerprinter.getHash(zipUrl) + FishStatJFileConstants.ZIP_FILE_EXTENSION);
+        downloader.download(zipUrl, zipFile);
+
+        // the verified archive is only needed until it was read
+        return Files.newInputStream(zipFile.toPath(), StandardOpenOption.DELETE_ON_CLOSE);
+    }
 
-                        while (true) {
-                            final int readByteCount = zipStream.read(fileOutBuffer, 0, fileOutBuffer.length);
 
-                            if (readByteCount == -1)
-                                break;
-                            else
-                                bufferedFileOut.write(fileOutBuffer, 0, readByteCount);
-                        }
+    /**
+     * Opens a stream of a file, using a pooled connection of the HTTP client.
+     *
+     * @param fileUrl the URL of the file
+     *
+     * @return a stream of the file
+     *
+     * @throws IOException thrown when the file could not be retrieved
+     */
+    private InputStream openUrlStream(final String fileUrl) throws IOException
+    {
+        // only opening the stream is throttled, not reading it
+        return RequestThrottle.send(getRequestThrottle(fileUrl), () -> httpClient.openStream(fileUrl));
+    }
+
+
+    /**
+     * Downloads the zip file of a collection and parses its files while they are
+     * streamed, without writing anything to disk.
+     *
+     * @param zipLink the link that points to the zip file of the collection
+     *
+     * @return the metadata that was parsed from the archive, or null if there
+     *          were problems downloading or parsing the archive
+     */
+    private FishStatJArchiveVO downloadAndParseCollection(final FishStatJLinkVO zipLink)
+    {
+        final String zipUrl = zipLink.getUrl();
+
+        try
+            (InputStream urlInputStream = openArchiveStream(zipUrl);
+             ZipInputStream zipStream = new ZipInputStream(urlInputStream)) {
+            return fileParser.parseArchive(zipStream);
+
+        } catch (final ZipException e) {
+            LOGGER.error(String.format(FishStatJFileConstants.UNZIP_ERROR, zipUrl), e);
+
+        } catch (final IOException e) {
+            LOGGER.error(String.format(FishStatJFileConstants.DOWNLOAD_ERROR, zipUrl), e);
+        }
 
-                        bufferedFileOut.flush();
+        return null;
+    }
+
+
+    /**
+     * Reads a file stream from a URL that points to a zip file and extracts the content
+     * to a specified folder.
+     *
+     * @param zipUrl a URL that points to a zip file
+     * @param unzipFolder the folder to which the zip is to be extracted to
+     *
+     * @return true if the zip was extracted successfully
+     */
+    private boolean unZipFileFromUrl(final String zipUrl, final File unzipFolder)
+    {
+        // cleanup left over files
+        FileUtils.deleteFile(unzipFolder);
+        FileUtils.createDirectories(unzipFolder);
+
+        try
+            (InputStream urlInputStream = openArchiveStream(zipUrl);
+             ZipInputStream zipStream = new ZipInputStream(urlInputStream)) {
+
+            // iterate through the files of the zip input stream
+            while (true) {
+                // stop unzipping if the extraction was cancelled
+                if (Thread.currentThread().isInterrupted())
+                    throw new InterruptedIOException(String.format(FishStatJFileConstants.DOWNLOAD_CANCELLED, zipUrl));
+
+                final ZipEntry entry = zipStream.getNextEntry();
+
+                if (entry == null)
+                    break;
+
+                // open streams for writing files to disk
+                try
+                    (OutputStream fileOut = Files.newOutputStream(new File(unzipFolder, entry.getName()).toPath());
+                     BufferedOutputStream bufferedFileOut = new BufferedOutputStream(fileOut, FishStatJFileConstants.ZIP_EXTRACT_BUFFER_SIZE)) {
+
+                    // write the file from the stream to disk
+                    final byte[] fileOutBuffer = new byte[FishStatJFileConstants.ZIP_EXTRACT_BUFFER_SIZE];
+
+                    while (true) {
+                        final int readByteCount = zipStream.read(fileOutBuffer, 0, fileOutBuffer.length);
+
+                        if (readByteCount == -1)
+                            break;
+                        else
+                            bufferedFileOut.write(fileOutBuffer, 0, readByteCount);
                     }
+
+                    bufferedFileOut.flush();
                 }
+            }
 
-                return true;
+            return true;
 
-            } catch (final ZipException e) {
-                LOGGER.error(String.format(FishStatJFileConstants.UNZIP_ERROR, zipUrl), e);
+        } catch (final ZipException e) {
+            LOGGER.error(String.format(FishStatJFileConstants.UNZIP_ERROR, zipUrl), e);
 
-            } catch (final IOException e) {
-                LOGGER.error(String.format(FishStatJFileConstants.DOWNLOAD_ERROR, zipUrl), e);
-            }
+        } catch (final IOException e) {
+            LOGGER.error(String.format(FishStatJFileConstants.DOWNLOAD_ERROR, zipUrl), e);
+        }
 
-            return false;
+        return false;
+    }
+
+
+    /**
+     * This {@linkplain Iterator} iterates through FishStatJ collections and
+     * generates a {@linkplain FishStatJCollectionVO} for each of them.
+     *
+     * @author Robin Weiss
+     */
+    private class FishStatJIterator implements Iterator<FishStatJCollectionVO>
+    {
+        @Override
+        public boolean hasNext()
+        {
+            return sourceIterator.hasNext();
+        }
+
+
+        @Override
+        public FishStatJCollectionVO next()
+        {
+            return extractCollection(sourceIterator.next());
         }
     }
 
 
+    /**
+     * This class contains the content of a collection archive, which is either
+     * extracted to a folder or parsed while it was streamed.
+     *
+     * @author Robin Weiss
+     */
+    @AllArgsConstructor
+    private static class ArchiveContent
+    {
+        private final File downloadFolder;
+        private final FishStatJArchiveVO archive;
+    }
+
+
+    /**
+     * This class contains the content of a collection page that was scanned
+     * when the page was retrieved, and the URL of its contacts page.
+     *
+     * @author Robin Weiss
+     */
+    @AllArgsConstructor
+    private static class ScannedPage
+    {
+        private final FishStatJPageVO content;
+        private final String contactsUrl;
+    }
+
+
     @Override
     public void clear()
     {
-        // nothing to clean up
+        // abort collections that are still being extracted, before their states and caches are saved
+        if (prefetchingIterator != null) {
+            prefetchingIterator.cancel();
+            prefetchingIterator = null;
+        }
+
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+
+        if (fetchExecutor != null) {
+            fetchExecutor.shutdownNow();
+            fetchExecutor = null;
+        }
 
+        // remember which collections were harvested
+        if (collectionStates != null)
+            collectionStates.save();
+
+        if (pageCache != null)
+            pageCache.save();
+
+        if (archiveStore != null)
+            archiveStore.save();
+
+        if (subjectCache != null)
+            subjectCache.removeUnusedEntries();
+
+        collectionPages.clear();
+
+        if (httpClient != null) {
+            httpClient.shutdown();
+            httpClient = null;
+        }
     }
 }
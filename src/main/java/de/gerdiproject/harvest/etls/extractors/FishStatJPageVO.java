@@ -0,0 +1,69 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.etls.extractors;
+
+import java.util.List;
+import java.util.Map;
+
+import lombok.Value;
+
+/**
+ * This value object contains the content of a FishStatJ collection page and its
+ * contacts page that is required for transforming the collection. It does not
+ * retain any HTML elements, and is identified by a hash of its content, which
+ * allows it to be compared in constant time.
+ *
+ * @author Robin Weiss
+ */
+@Value
+public class FishStatJPageVO
+{
+    private final String title;
+    private final String subTitle;
+    private final Map<String, FishStatJSectionVO> sections;
+    private final List<FishStatJLinkVO> sidebarLinks;
+    private final List<String> contactNames;
+    private final FishStatJLinkVO zipLink;
+    private final String contentHash;
+
+
+    /**
+     * Compares the content hashes of two pages, which are computed from all
+     * other fields.
+     *
+     * @param obj the object that is to be compared to the VO
+     * @return true if the object is equal to this VO
+     */
+    @Override
+    public boolean equals(final Object obj)
+    {
+        if (this == obj)
+            return true;
+
+        if (obj == null || getClass() != obj.getClass())
+            return false;
+
+        return contentHash.equals(((FishStatJPageVO) obj).contentHash);
+    }
+
+
+    @Override
+    public int hashCode()
+    {
+        return contentHash.hashCode();
+    }
+}
@@ -17,28 +17,48 @@
 package de.gerdiproject.harvest.etls.transformers;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import de.gerdiproject.harvest.application.events.GetCacheFolderEvent;
 import de.gerdiproject.harvest.etls.AbstractETL;
 import de.gerdiproject.harvest.etls.FishStatJETL;
 import de.gerdiproject.harvest.etls.FishStatJLanguageVO;
+import de.gerdiproject.harvest.etls.extractors.FishStatJArchiveVO;
 import de.gerdiproject.harvest.etls.extractors.FishStatJCollectionVO;
+import de.gerdiproject.harvest.etls.extractors.FishStatJLinkVO;
+import de.gerdiproject.harvest.etls.extractors.FishStatJPageVO;
+import de.gerdiproject.harvest.etls.extractors.FishStatJSectionVO;
+import de.gerdiproject.harvest.event.EventSystem;
 import de.gerdiproject.harvest.fishstatj.constants.FishStatJDataCiteConstants;
+import de.gerdiproject.harvest.fishstatj.constants.FishStatJFileConstants;
+import de.gerdiproject.harvest.fishstatj.constants.FishStatJParameterConstants;
 import de.gerdiproject.harvest.fishstatj.constants.FishStatJSourceConstants;
+import de.gerdiproject.harvest.fishstatj.utils.CsvColumnStatistics;
+import de.gerdiproject.harvest.fishstatj.utils.FishStatJCollectionStates;
 import de.gerdiproject.harvest.fishstatj.utils.FishStatJFileParser;
+import de.gerdiproject.harvest.fishstatj.utils.NdjsonDocumentWriter;
+import de.gerdiproject.harvest.fishstatj.utils.PrefetchingIterator;
+import de.gerdiproject.harvest.fishstatj.utils.SubjectDictionary;
 import de.gerdiproject.harvest.utils.file.FileUtils;
 import de.gerdiproject.json.datacite.Contributor;
 import de.gerdiproject.json.datacite.DataCiteJson;
+import de.gerdiproject.json.datacite.Date;
 import de.gerdiproject.json.datacite.Description;
 import de.gerdiproject.json.datacite.Rights;
 import de.gerdiproject.json.datacite.Subject;
@@ -59,23 +79,146 @@ import de.gerdiproject.json.datacite.nested.PersonName;
  */
 public class FishStatJTransformer extends AbstractIteratorTransformer<FishStatJCollectionVO, DataCiteJson>
 {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FishStatJTransformer.class);
+    private static final String TRANSFORMATION_ERROR = "Could not transform FishStatJ collection: %s";
+
     private final FishStatJFileParser fileParser = new FishStatJFileParser();
+    private final Set<File> pendingDownloadFolders = ConcurrentHashMap.newKeySet();
     private FishStatJLanguageVO languageVo;
-    private File downloadFolder;
+    private int concurrentTransformations;
+    private NdjsonDocumentWriter documentWriter;
+    private SubjectDictionary subjectDictionary;
+    private boolean isComputingCsvStatistics;
+    private FishStatJCollectionStates collectionStates;
+
+    private ExecutorService executor;
+    private PrefetchingIterator<FishStatJCollectionVO, DataCiteJson> prefetchingIterator;
 
 
     @Override
     public void init(final AbstractETL<?, ?> etl)
     {
         this.languageVo = ((FishStatJETL) etl).getLanguageVO();
+        this.fileParser.setMappingCsvFiles(
+            FishStatJParameterConstants.CSV_PARSER_MAPPED.equals(((FishStatJETL) etl).getCsvParser()));
+        this.fileParser.setCsvParsingThreads(((FishStatJETL) etl).getCsvParsingThreads());
+        this.concurrentTransformations = ((FishStatJETL) etl).getConcurrentTransformations();
+        this.subjectDictionary = ((FishStatJETL) etl).getSubjectDictionary();
+        this.fileParser.setSubjectDictionary(subjectDictionary);
+        this.fileParser.setMaxSubjects(((FishStatJETL) etl).getMaxSubjects());
+        this.isComputingCsvStatistics = ((FishStatJETL) etl).isComputingCsvStatistics();
+        this.collectionStates = ((FishStatJETL) etl).getCollectionStates();
+
+        final boolean isWritingNdjson = FishStatJParameterConstants.OUTPUT_MODE_NDJSON.equals(((FishStatJETL) etl).getOutputMode());
+        final long configuredMemoryBudget = ((FishStatJETL) etl).getSubjectMemoryBudget() * FishStatJFileConstants.SUBJECT_MEMORY_BUDGET_UNIT;
+
+        // NDJSON output must not hold all distinct subjects of a collection in memory, so they are always spilled to disk if needed
+        final long subjectMemoryBudget = isWritingNdjson && configuredMemoryBudget == 0
+                                         ? FishStatJFileConstants.NDJSON_SUBJECT_MEMORY_BUDGET
+                                         : configuredMemoryBudget;
+        final File cacheFolder = subjectMemoryBudget > 0 || isWritingNdjson
+                                 ? EventSystem.sendSynchronousEvent(new GetCacheFolderEvent())
+                                 : null;
+
+        this.fileParser.setSubjectMemoryBudget(
+            subjectMemoryBudget,
+            cacheFolder == null ? null : new File(cacheFolder, FishStatJFileConstants.SUBJECT_SPILL_FOLDER));
+
+        if (isWritingNdjson) {
+            final File outputFile = new File(
+                cacheFolder,
+                String.format(FishStatJFileConstants.NDJSON_OUTPUT_FILE, languageVo.getApiName()));
+            this.documentWriter = new NdjsonDocumentWriter(outputFile);
+            LOGGER.info(String.format(FishStatJFileConstants.NDJSON_OUTPUT_INFO, outputFile));
+        } else
+            this.documentWriter = null;
+    }
+
+
+    @Override
+    public Iterator<DataCiteJson> transform(final Iterator<FishStatJCollectionVO> elements) throws TransformerException
+    {
+        final Iterator<DataCiteJson> documents;
+
+        if (concurrentTransformations <= 1)
+            documents = super.transform(elements);
+        else {
+            this.executor = Executors.newFixedThreadPool(concurrentTransformations);
+            this.prefetchingIterator = new PrefetchingIterator<>(
+                new FolderRegisteringIterator(elements),
+                this::transformConcurrently,
+                this::discardDocument,
+                executor,
+                concurrentTransformations);
+            documents = prefetchingIterator;
+        }
+
+        // the NDJSON file is the only output, so the loader only counts the collections
+        if (documentWriter != null)
+            return new NdjsonWritingIterator(documents);
+
+        return collectionStates.isLoaded()
+               ? new StateRecordingIterator(documents)
+               : documents;
+    }
+
+
+    /**
+     * Transforms a collection on a worker thread. Collections that cannot be
+     * transformed are logged and skipped, in order to not abort the transformations
+     * of other collections that are already in progress.
+     *
+     * @param source the collection that is to be transformed, or null
+     *
+     * @return the transformed document, or null if the collection could not be transformed
+     */
+    private DataCiteJson transformConcurrently(final FishStatJCollectionVO source)
+    {
+        if (source == null)
+            return null;
+
+        try {
+            return transformElement(source);
+
+        } catch (final TransformerException e) {
+            LOGGER.error(String.format(TRANSFORMATION_ERROR, source.getCollectionUrl()), e);
+            return null;
+        }
     }
 
 
     @Override
     protected DataCiteJson transformElement(final FishStatJCollectionVO source) throws TransformerException
     {
-        this.downloadFolder = source.getDownloadFolder();
+        final File downloadFolder = source.getDownloadFolder();
 
+        // make sure that the unzipped files are removed, even if the harvest is aborted
+        if (downloadFolder != null)
+            pendingDownloadFolders.add(downloadFolder);
+
+        try {
+            return transformCollection(source, downloadFolder);
+        } finally {
+            // remove unzipped files
+            if (downloadFolder != null) {
+                FileUtils.deleteFile(downloadFolder);
+                pendingDownloadFolders.remove(downloadFolder);
+            }
+        }
+    }
+
+
+    /**
+     * Transforms a collection to a {@linkplain DataCiteJson} document. This method
+     * does not modify any fields, allowing multiple collections to be transformed concurrently.
+     *
+     * @param source the collection that is to be transformed
+     * @param downloadFolder the folder that contains the unzipped archive of the collection, or null
+     *
+     * @return the transformed document, or null if it could not be prepared for the NDJSON output file
+     */
+    private DataCiteJson transformCollection(final FishStatJCollectionVO source, final File downloadFolder)
+    {
         final DataCiteJson document = new DataCiteJson(source.getCollectionUrl());
         document.setLanguage(languageVo.getApiName());
 
@@ -85,52 +228,157 @@ public class FishStatJTransformer extends AbstractIteratorTransformer<FishStatJC
         document.setPublisher(FishStatJDataCiteConstants.PROVIDER);
         document.addResearchDisciplines(FishStatJDataCiteConstants.RESEARCH_DISCIPLINES);
 
-        // retrieve metadata by parsing web pages
-        document.addTitles(getTitles(source));
-        document.addDescriptions(getDescriptions(source));
-        document.addContributors(getContributors(source));
-        document.addResearchData(getResearchData(source));
-        document.addRights(getRights(source));
+        // retrieve metadata from the content of the web pages
+        final FishStatJPageVO page = source.getPage();
+        document.addTitles(getTitles(page));
+        document.addDescriptions(getDescriptions(page));
+        document.addContributors(getContributors(page));
+        document.addResearchData(getResearchData(page));
+        document.addRights(getRights(page));
         document.addWebLinks(getLogoAndViewWebLinks(source));
-        document.addWebLinks(getSideBarWebLinks(source));
-        document.addWebLinks(getSectionWebLinks(source));
-        document.addSubjects(getSubjects(source));
+        document.addWebLinks(getSideBarWebLinks(page));
+        document.addWebLinks(getSectionWebLinks(page));
+        document.addSubjects(getSubjects(page));
+
+        // retrieve metadata that was parsed while streaming the zip archive
+        final FishStatJArchiveVO archive = source.getArchive();
+
+        if (archive != null) {
+            document.addRights(archive.getRights());
+            document.addDates(archive.getDates());
+
+            // subjects are streamed into the output file instead, if it is enabled
+            if (documentWriter == null)
+                document.addSubjects(archive.getSubjects());
+
+            if (archive.getStatistics() != null)
+                addCsvStatistics(document, archive.getStatistics());
+        }
 
         // retrieve metadata from downloaded zip archive
         if (downloadFolder != null) {
-            document.addRights(fileParser.getRights(downloadFolder));
-            document.addDates(fileParser.getDates(downloadFolder));
+            final FishStatJArchiveVO notes = fileParser.getNotes(downloadFolder);
+            document.addRights(notes.getRights());
+            document.addDates(notes.getDates());
+
+            // subjects are streamed into the output file instead, if it is enabled
+            if (documentWriter == null)
+                addCsvSubjects(document, downloadFolder);
+        }
+
+        if (documentWriter == null)
+            return document;
+
+        return prepareDocument(source, document, downloadFolder) ? document : null;
+    }
+
+
+    /**
+     * Adds the subjects of the csv files of a collection to a document. If csv
+     * statistics are enabled, they are computed in the same pass and added as
+     * a date and a description.
+     *
+     * @param document the document to which the subjects are added
+     * @param downloadFolder the folder that contains the unzipped archive of the collection
+     */
+    private void addCsvSubjects(final DataCiteJson document, final File downloadFolder)
+    {
+        if (!isComputingCsvStatistics) {
             document.addSubjects(fileParser.getSubjects(downloadFolder));
+            return;
+        }
 
-            // remove unzipped files
-            FileUtils.deleteFile(downloadFolder);
+        final CsvColumnStatistics statistics = new CsvColumnStatistics();
+        document.addSubjects(fileParser.getSubjects(downloadFolder, statistics));
+        addCsvStatistics(document, statistics);
+    }
+
+
+    /**
+     * Adds the statistics of the csv files of a collection to a document,
+     * as a date and a description.
+     *
+     * @param document the document to which the statistics are added
+     * @param statistics the statistics of all csv files of the collection
+     */
+    private void addCsvStatistics(final DataCiteJson document, final CsvColumnStatistics statistics)
+    {
+        final Date collectedDate = statistics.getCollectedDate();
+
+        if (collectedDate != null)
+            document.addDates(Arrays.asList(collectedDate));
+
+        final Description statisticsDescription = statistics.getDescription();
+
+        if (statisticsDescription != null)
+            document.addDescriptions(Arrays.asList(statisticsDescription));
+    }
+
+
+    /**
+     * Prepares the line of a document in the NDJSON output file, streaming the
+     * subjects of the archive and of the csv files of the collection directly
+     * into the line, rather than adding them to the document beforehand. The
+     * line is appended to the output file in the order of the collections,
+     * which is why this can be done while other collections are transformed.
+     *
+     * @param source the collection that was transformed
+     * @param document the transformed document without csv subjects
+     * @param downloadFolder the folder that contains the unzipped archive of the collection, or null
+     *
+     * @return true if the document was prepared
+     */
+    private boolean prepareDocument(final FishStatJCollectionVO source, final DataCiteJson document, final File downloadFolder)
+    {
+        try {
+            final FishStatJArchiveVO archive = source.getArchive();
+
+            documentWriter.prepare(document, (final Consumer<String> subjectConsumer) -> {
+                if (archive != null)
+                    archive.getSubjects().forEach((final Subject subject) -> subjectConsumer.accept(subject.getValue()));
+
+                if (downloadFolder != null)
+                    fileParser.forEachSubject(downloadFolder, subjectConsumer);
+            });
+            return true;
+
+        } catch (final IOException e) {
+            LOGGER.error(String.format(TRANSFORMATION_ERROR, source.getCollectionUrl()), e);
+            return false;
         }
+    }
+
 
-        return document;
+    /**
+     * Removes the prepared NDJSON line of a document that was transformed,
+     * but is never going to be retrieved, because the harvest was aborted.
+     *
+     * @param document a transformed document, or null
+     */
+    private void discardDocument(final DataCiteJson document)
+    {
+        if (documentWriter != null && document != null)
+            documentWriter.discard(document);
     }
 
 
     /**
      * Retrieves a {@linkplain List} of {@linkplain Title}s of the FishStatJ collection.
      *
-     * @param source the value object that is to be transformed to a document
+     * @param page the content of the collection page
      *
      * @return a {@linkplain List} of FishStatJ {@linkplain Title}s
      */
-    private List<Title> getTitles(final FishStatJCollectionVO source)
+    private List<Title> getTitles(final FishStatJPageVO page)
     {
         final List<Title> titleList = new LinkedList<Title>();
 
         // add main title
-        final String titleText = source.getCollectionPage()
-                                 .selectFirst(FishStatJSourceConstants.MAIN_TITLE_SELECTION)
-                                 .text();
+        final String titleText = page.getTitle();
         titleList.add(new Title(titleText, null, languageVo.getApiName()));
 
         // add category as sub-title
-        final String categoryText = source.getCollectionPage()
-                                    .selectFirst(FishStatJSourceConstants.SUB_TITLE_SELECTION)
-                                    .text();
+        final String categoryText = page.getSubTitle();
         titleList.add(new Title(categoryText, TitleType.Subtitle, languageVo.getApiName()));
 
         return titleList;
@@ -140,23 +388,23 @@ public class FishStatJTransformer extends AbstractIteratorTransformer<FishStatJC
     /**
      * Retrieves a {@linkplain List} of {@linkplain Description}s of the FishStatJ collection.
      *
-     * @param source the value object that is to be transformed to a document
+     * @param page the content of the collection page
      *
      * @return a {@linkplain List} of FishStatJ {@linkplain Description}s
      */
-    private List<Description> getDescriptions(final FishStatJCollectionVO source)
+    private List<Description> getDescriptions(final FishStatJPageVO page)
     {
         final List<Description> descriptionList = new LinkedList<>();
 
-        final Map<String, Element> sections = getSections(source);
+        final Map<String, FishStatJSectionVO> sections = page.getSections();
 
         // retrieve interesting section text
         for (final String sectionTitle : languageVo.getValidDescriptionMap().keySet()) {
-            final Element sectionBody = sections.get(sectionTitle);
+            final FishStatJSectionVO sectionBody = sections.get(sectionTitle);
 
             if (sectionBody != null) {
                 final Description desc = new Description(
-                    sectionBody.text().trim(),
+                    sectionBody.getText().trim(),
                     languageVo.getValidDescriptionMap().get(sectionTitle),
                     languageVo.getApiName());
                 descriptionList.add(desc);
@@ -170,20 +418,20 @@ public class FishStatJTransformer extends AbstractIteratorTransformer<FishStatJC
     /**
      * Retrieves a {@linkplain List} of {@linkplain Rights} of the FishStatJ collection page.
      *
-     * @param source the value object that is to be transformed to a document
+     * @param page the content of the collection page
      *
      * @return a {@linkplain List} of FishStatJ {@linkplain Rights}
      */
-    private List<Rights> getRights(final FishStatJCollectionVO source)
+    private List<Rights> getRights(final FishStatJPageVO page)
     {
         final List<Rights> rightsList = new LinkedList<>();
 
         // check if one of the sections can be parsed as Rights
-        final Element rightsSection = getSections(source).get(languageVo.getRightsSectionTitle());
+        final FishStatJSectionVO rightsSection = page.getSections().get(languageVo.getRightsSectionTitle());
 
         if (rightsSection != null) {
-            final Element rightsLink = rightsSection.selectFirst(FishStatJSourceConstants.LINKS_SELECTION);
-            final String rightsText = rightsSection.text().trim();
+            final FishStatJLinkVO rightsLink = rightsSection.getLinks().isEmpty() ? null : rightsSection.getLinks().get(0);
+            final String rightsText = rightsSection.getText().trim();
             final String rightsUrl = getUrlFromLink(rightsLink);
 
             final Rights rights = new Rights(rightsText, languageVo.getApiName());
@@ -209,7 +457,6 @@ public class FishStatJTransformer extends AbstractIteratorTransformer<FishStatJC
             FishStatJDataCiteConstants.VIEW_URL_TITLE,
             WebLinkType.ViewURL);
 
-        // search for the subsecti
         return Arrays.asList(viewLink, FishStatJDataCiteConstants.LOGO_LINK);
     }
 
@@ -217,39 +464,29 @@ public class FishStatJTransformer extends AbstractIteratorTransformer<FishStatJC
     /**
      * Retrieves a {@linkplain List} of {@linkplain WebLink}s of the FishStatJ collection.
      *
-     * @param source the value object that is to be transformed to a document
+     * @param page the content of the collection page
      *
      * @return a {@linkplain List} of FishStatJ {@linkplain WebLink}s
      */
-    private List<WebLink> getSectionWebLinks(final FishStatJCollectionVO source)
+    private List<WebLink> getSectionWebLinks(final FishStatJPageVO page)
     {
         // parse links from relevant section
         final List<WebLink> weblinks = new LinkedList<>();
-        final Map<String, Element> sections = getSections(source);
+        final Map<String, FishStatJSectionVO> sections = page.getSections();
 
-        // parse dataset links
-        final Element datasetSection = sections.get(languageVo.getWebLinksSectionTitle());
+        // parse dataset links, using the title above each link as alternative title
+        final FishStatJSectionVO datasetSection = sections.get(languageVo.getWebLinksSectionTitle());
 
         if (datasetSection != null) {
-            final Elements infoLinks = datasetSection.children().select(FishStatJSourceConstants.LINKS_AND_CAPTIONS_SELECTION);
-            String titleAboveLink = "";
-
-            for (final Element ele : infoLinks) {
-                // if the element is a title before a link, store it
-                if (ele.hasClass(FishStatJSourceConstants.CAPTION_CLASS))
-                    titleAboveLink = ele.text().trim();
-                else
-                    weblinks.add(parseWebLink(ele, titleAboveLink));
-            }
+            for (final FishStatJLinkVO link : datasetSection.getLinks())
+                weblinks.add(parseWebLink(link, link.getCaption()));
         }
 
         // parse other related web links
-        for (final Entry<String, Element> section : sections.entrySet()) {
+        for (final Entry<String, FishStatJSectionVO> section : sections.entrySet()) {
             if (!section.getKey().equals(languageVo.getWebLinksSectionTitle())) {
-                final Elements infoLinks = section.getValue().select(FishStatJSourceConstants.LINKS_SELECTION);
-
-                for (final Element ele : infoLinks)
-                    weblinks.add(parseWebLink(ele, null));
+                for (final FishStatJLinkVO link : section.getValue().getLinks())
+                    weblinks.add(parseWebLink(link, null));
             }
         }
 
@@ -260,32 +497,29 @@ public class FishStatJTransformer extends AbstractIteratorTransformer<FishStatJC
     /**
      * Retrieves a {@linkplain List} of {@linkplain ResearchData} of the FishStatJ collection.
      *
-     * @param source the value object that is to be transformed to a document
+     * @param page the content of the collection page
      *
      * @return a {@linkplain List} of FishStatJ {@linkplain ResearchData}
      */
-    private List<ResearchData> getResearchData(final FishStatJCollectionVO source)
+    private List<ResearchData> getResearchData(final FishStatJPageVO page)
     {
         // parse links from relevant section
         final List<ResearchData> downloads = new LinkedList<>();
-        final Element linkSection = getSections(source).
-                                    get(languageVo.getWebLinksSectionTitle());
+        final FishStatJSectionVO linkSection = page.getSections().get(languageVo.getWebLinksSectionTitle());
 
         // if the section does not exist, there are no links
         if (linkSection == null)
             return downloads;
 
-        final Elements infoLinks = linkSection.children().select(FishStatJSourceConstants.LINKS_SELECTION);
-
-        for (final Element linkElement : infoLinks) {
-            final String fileUrl = getUrlFromLink(linkElement);
+        for (final FishStatJLinkVO link : linkSection.getLinks()) {
+            final String fileUrl = getUrlFromLink(link);
 
             // if this is a downloadable file, skip the link
             final Matcher matcher = FishStatJSourceConstants.DOWNLOADABLE_FILE_PATTERN.matcher(fileUrl);
 
             if (matcher.find()) {
                 final String fileName = matcher.group(1);
-                final String fileExtension = linkElement.text().isEmpty() ? matcher.group(2) : linkElement.text();
+                final String fileExtension = link.getText().isEmpty() ? matcher.group(2) : link.getText();
 
                 downloads.add(new ResearchData(fileUrl, fileName, fileExtension));
             }
@@ -298,28 +532,21 @@ public class FishStatJTransformer extends AbstractIteratorTransformer<FishStatJC
     /**
      * Retrieves side bar {@linkplain WebLink}s of the FishStatJ collection.
      *
-     * @param source the value object that is to be transformed to a document
+     * @param page the content of the collection page
      *
      * @return a {@linkplain List} of side bar {@linkplain WebLink}s
      */
-    private List<WebLink> getSideBarWebLinks(final FishStatJCollectionVO source)
+    private List<WebLink> getSideBarWebLinks(final FishStatJPageVO page)
     {
         final List<WebLink> weblinks = new LinkedList<>();
 
         // add side bar links
-        for (final String sideBarTitle : languageVo.getSidebarTitles()) {
-            final String sideBarSelection = String.format(
-                                                FishStatJSourceConstants.CONTAINS_TEXT_SELECTION,
-                                                sideBarTitle);
-            final Element sideBar = source.getCollectionPage().selectFirst(sideBarSelection);
-
-            if (sideBar != null) {
-                final String sideBarUrl = String.format(
-                                              FishStatJSourceConstants.SITE_URL,
-                                              sideBar.attr(FishStatJSourceConstants.HREF_ATTRIBUTE)
-                                          );
-                weblinks.add(new WebLink(sideBarUrl, sideBar.text(), WebLinkType.Related));
-            }
+        for (final FishStatJLinkVO sideBar : page.getSidebarLinks()) {
+            final String sideBarUrl = String.format(
+                                          FishStatJSourceConstants.SITE_URL,
+                                          sideBar.getUrl()
+                                      );
+            weblinks.add(new WebLink(sideBarUrl, sideBar.getText(), WebLinkType.Related));
         }
 
         return weblinks;
@@ -329,52 +556,37 @@ public class FishStatJTransformer extends AbstractIteratorTransformer<FishStatJC
     /**
      * Retrieves a {@linkplain List} of {@linkplain Contributor}s of the FishStatJ collection.
      *
-     * @param source the value object that is to be transformed to a document
+     * @param page the content of the collection page
      *
      * @return a {@linkplain List} of FishStatJ {@linkplain Contributor}s
      */
-    private List<Contributor> getContributors(final FishStatJCollectionVO source)
+    private List<Contributor> getContributors(final FishStatJPageVO page)
     {
         final List<Contributor> contributorList = new LinkedList<>();
 
-        if (source.getContactsPage() != null) {
-            final Elements contactElements = source.getContactsPage().select(FishStatJSourceConstants.CONTACTS_AND_MAILS_SELECTION);
-
-            String fullName = null;
-
-            for (final Element item : contactElements) {
-
-                // if the element is a div, it can be the name of the upcoming mailto link
-                if (item.tagName().equals(FishStatJSourceConstants.DIV))
-                    fullName = item.text().trim();
-
-                // if the element is a mailto-link, we know the previous div is the contact's name
-                else if (fullName != null) {
-
-                    // the contact is an organisation
-                    if (fullName.matches(FishStatJSourceConstants.ORGANISATION_NAME_REGEX)) {
-                        contributorList.add(new Contributor(
-                                                new PersonName(fullName, NameType.Organisational),
-                                                ContributorType.ContactPerson));
-                    }
-                    // the contatct is a person
-                    else {
-                        // retrieve first- and last name and create a contact
-                        final Matcher nameMatcher = FishStatJSourceConstants.PERSON_NAME_PATTERN.matcher(fullName);
-
-                        if (nameMatcher.find()) {
-                            // either groups 1&2 are matching or groups 3&4, two distinct notations of names, both of which are handled here
-                            final String firstName = nameMatcher.group(1) == null ? nameMatcher.group(4) : nameMatcher.group(1);
-                            final String lastName = nameMatcher.group(2) == null ? nameMatcher.group(3) : nameMatcher.group(2);
-
-                            final Contributor contributor = new Contributor(
-                                new PersonName(fullName, NameType.Personal),
-                                ContributorType.ContactPerson);
-                            contributor.setGivenName(firstName);
-                            contributor.setFamilyName(lastName);
-                            contributorList.add(contributor);
-                        }
-                    }
+        for (final String fullName : page.getContactNames()) {
+            // the contact is an organisation
+            if (fullName.matches(FishStatJSourceConstants.ORGANISATION_NAME_REGEX)) {
+                contributorList.add(new Contributor(
+                                        new PersonName(fullName, NameType.Organisational),
+                                        ContributorType.ContactPerson));
+            }
+            // the contatct is a person
+            else {
+                // retrieve first- and last name and create a contact
+                final Matcher nameMatcher = FishStatJSourceConstants.PERSON_NAME_PATTERN.matcher(fullName);
+
+                if (nameMatcher.find()) {
+                    // either groups 1&2 are matching or groups 3&4, two distinct notations of names, both of which are handled here
+                    final String firstName = nameMatcher.group(1) == null ? nameMatcher.group(4) : nameMatcher.group(1);
+                    final String lastName = nameMatcher.group(2) == null ? nameMatcher.group(3) : nameMatcher.group(2);
+
+                    final Contributor contributor = new Contributor(
+                        new PersonName(fullName, NameType.Personal),
+                        ContributorType.ContactPerson);
+                    contributor.setGivenName(firstName);
+                    contributor.setFamilyName(lastName);
+                    contributorList.add(contributor);
                 }
             }
         }
@@ -386,94 +598,65 @@ public class FishStatJTransformer extends AbstractIteratorTransformer<FishStatJC
     /**
      * Retrieves a {@linkplain List} of {@linkplain Subject}s of the FishStatJ collection.
      *
-     * @param source the value object that is to be transformed to a document
+     * @param page the content of the collection page
      *
      * @return a {@linkplain List} of FishStatJ {@linkplain Subject}s
      */
-    private Collection<Subject> getSubjects(final FishStatJCollectionVO source)
+    private Collection<Subject> getSubjects(final FishStatJPageVO page)
     {
         final List<Subject> subjectList = new LinkedList<Subject>();
 
-        final Element subjectSection = getSections(source).get(languageVo.getSubjectsSectionTitle());
+        final FishStatJSectionVO subjectSection = page.getSections().get(languageVo.getSubjectsSectionTitle());
 
         if (subjectSection != null) {
-            final String[] usages = subjectSection.text().split(", ");
+            final String[] usages = subjectSection.getText().split(", ");
             final int len = usages.length;
 
             for (int i = 0; i < len; i++)
-                subjectList.add(new Subject(usages[i], languageVo.getApiName()));
+                subjectList.add(subjectDictionary.getSubject(usages[i], languageVo.getApiName()));
         }
 
         return subjectList;
     }
 
 
-
-
-
     /**
-     * Retrieves a map of collection section titles to corresponding body elements.
-     *
-     * @param source the value object that is to be transformed to a document
-     *
-     * @return a map of collection section titles to corresponding body elements
-     */
-    private static Map<String, Element> getSections(final FishStatJCollectionVO source)
-    {
-        final Map<String, Element> map = new HashMap<>();
-        final Elements subSections = source.getCollectionPage().select(FishStatJSourceConstants.ALL_SECTIONS_SELECTION);
-
-        // disregard the first element, because it's uninteresting
-        int i = 0;
-        final int subSectionCount = subSections.size();
-
-        while (i < subSectionCount) {
-            final String sectionTitle = subSections.get(i++).text().trim();
-            final Element sectionBody = subSections.get(i++);
-            map.put(sectionTitle, sectionBody);
-        }
-
-        return map;
-    }
-
-
-    /**
-     * Retrieves the href attribute from an a-tag and formats it properly
+     * Retrieves the href attribute of a link and formats it properly
      * prior to returning it.
      *
-     * @param linkElement the a-tag of which the link is to be retrieved
+     * @param link the link of which the URL is to be retrieved
      *
-     * @return a formatted URL or null, if the linkElement is empty or lacks a href attribute
+     * @return a formatted URL or null, if the link is null or lacks a href attribute
      */
-    private static String getUrlFromLink(final Element linkElement)
+    private static String getUrlFromLink(final FishStatJLinkVO link)
     {
-        if (linkElement == null || !linkElement.hasAttr(FishStatJSourceConstants.HREF_ATTRIBUTE))
+        if (link == null || link.getUrl() == null)
             return null;
         else
-            return linkElement.attr(FishStatJSourceConstants.HREF_ATTRIBUTE)
+            return link.getUrl()
                    .replaceAll(FishStatJSourceConstants.NEW_WINDOW_LINK_REGEX, FishStatJSourceConstants.NEW_WINDOW_LINK_REPLACE)
                    .replaceAll(FishStatJSourceConstants.RELATIVE_LINK_REGEX, FishStatJSourceConstants.RELATIVE_LINK_REPLACE);
     }
 
 
     /**
-     * Parses a link element and generates a {@linkplain WebLink} from it.
+     * Parses a link and generates a {@linkplain WebLink} from it.
      *
-     * @param linkElement the a-tag of which the link is to be retrieved
+     * @param link the link that is to be parsed
      * @param alternativeTitle if the link has no text, this string is used instead
      *
      * @return a {@linkplain WebLink} or null, if the element is a download link
      */
-    private WebLink parseWebLink(final Element linkElement, final String alternativeTitle)
+    private WebLink parseWebLink(final FishStatJLinkVO link, final String alternativeTitle)
     {
-        final String url = getUrlFromLink(linkElement);
+        final String url = getUrlFromLink(link);
 
         // make sure the title is not a download link
         if (FishStatJSourceConstants.DOWNLOADABLE_FILE_PATTERN.matcher(url).matches())
             return null;
 
         // retrieve the title of the web link
-        String title = linkElement.text().isEmpty() ? alternativeTitle : linkElement.text();
+        String title = link.getText().isEmpty() ? alternativeTitle : link.getText();
 
         // remove the "Click here" part of the title, if applicable
         if (title != null)
@@ -496,10 +679,202 @@ public class FishStatJTransformer extends AbstractIteratorTransformer<FishStatJC
     @Override
     public void clear()
     {
+        // abort collections that are still being transformed
+        if (prefetchingIterator != null) {
+            prefetchingIterator.cancel();
+            prefetchingIterator = null;
+        }
+
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+
+        // remove NDJSON lines that were prepared, but not appended
+        if (documentWriter != null)
+            documentWriter.clear();
+
         // remove temporarily unzipped files
-        if (downloadFolder != null) {
+        for (final File downloadFolder : pendingDownloadFolders) {
             FileUtils.deleteFile(downloadFolder);
-            downloadFolder = null;
+            pendingDownloadFolders.remove(downloadFolder);
+        }
+
+        // release the subjects of the harvest
+        if (subjectDictionary != null) {
+            LOGGER.info(subjectDictionary.getStatistics());
+            subjectDictionary.clear();
+        }
+    }
+
+
+    /**
+     * This {@linkplain Iterator} registers the download folders of collections
+     * as soon as they are retrieved for a concurrent transformation, so that they
+     * can be removed even if the transformation is cancelled before it starts.
+     *
+     * @author Robin Weiss
+     */
+    private class FolderRegisteringIterator implements Iterator<FishStatJCollectionVO>
+    {
+        private final Iterator<FishStatJCollectionVO> collections;
+
+
+        /**
+         * Constructor that wraps an {@linkplain Iterator} of collections.
+         *
+         * @param collections the collections that are to be transformed
+         */
+        FolderRegisteringIterator(final Iterator<FishStatJCollectionVO> collections)
+        {
+            this.collections = collections;
+        }
+
+
+        @Override
+        public boolean hasNext()
+        {
+            return collections.hasNext();
+        }
+
+
+        @Override
+        public FishStatJCollectionVO next()
+        {
+            final FishStatJCollectionVO collection = collections.next();
+
+            if (collection != null && collection.getDownloadFolder() != null)
+                pendingDownloadFolders.add(collection.getDownloadFolder());
+
+            return collection;
+        }
+    }
+
+
+    /**
+     * This {@linkplain Iterator} marks collections as harvested once their documents
+     * were passed on to the loader. A document is considered to be loaded as soon as
+     * the loader requests the next document, or learns that there are no more documents.
+     * Collections that could not be transformed yield no document and are harvested again next time.
+     *
+     * @author Robin Weiss
+     */
+    private class StateRecordingIterator implements Iterator<DataCiteJson>
+    {
+        private final Iterator<DataCiteJson> documents;
+        private String loadingCollectionUrl;
+
+
+        /**
+         * Constructor that wraps an {@linkplain Iterator} of transformed documents.
+         *
+         * @param documents the documents that are passed on to the loader
+         */
+        StateRecordingIterator(final Iterator<DataCiteJson> documents)
+        {
+            this.documents = documents;
+        }
+
+
+        @Override
+        public boolean hasNext()
+        {
+            recordLoadedCollection();
+            return documents.hasNext();
+        }
+
+
+        @Override
+        public DataCiteJson next()
+        {
+            recordLoadedCollection();
+
+            final DataCiteJson document = documents.next();
+
+            if (document != null)
+                loadingCollectionUrl = document.getSourceId();
+
+            return document;
+        }
+
+
+        /**
+         * Marks the collection of the previously returned document as harvested.
+         */
+        private void recordLoadedCollection()
+        {
+            if (loadingCollectionUrl != null) {
+                collectionStates.setHarvested(loadingCollectionUrl);
+                loadingCollectionUrl = null;
+            }
+        }
+    }
+
+
+    /**
+     * This {@linkplain Iterator} writes all transformed documents to the NDJSON
+     * output file, without passing any of them on to the loader. Skipping the loader
+     * is intentional, because the documents in the file already are the result of the
+     * harvest, and documents without their csv subjects must not be submitted anywhere.
+     * The loader still retrieves one element per collection, which is always null,
+     * so that the number of harvested documents and the progress are counted as usual.
+     * <br>
+     * Each document is appended when it is retrieved from the transforming iterator,
+     * so the lines of the output file are in the order of the collections, even
+     * if the collections are transformed concurrently. Once a document is written,
+     * its collection is marked as harvested.
+     *
+     * @author Robin Weiss
+     */
+    private class NdjsonWritingIterator implements Iterator<DataCiteJson>
+    {
+        private final Iterator<DataCiteJson> documents;
+
+
+        /**
+         * Constructor that wraps an {@linkplain Iterator} of prepared documents.
+         *
+         * @param documents the transformed documents, of which the NDJSON lines were prepared
+         */
+        NdjsonWritingIterator(final Iterator<DataCiteJson> documents)
+        {
+            this.documents = documents;
+        }
+
+
+        @Override
+        public boolean hasNext()
+        {
+            return documents.hasNext();
+        }
+
+
+        @Override
+        public DataCiteJson next()
+        {
+            appendDocument(documents.next());
+            return null;
+        }
+
+
+        /**
+         * Appends the prepared line of a document to the NDJSON output file,
+         * and marks its collection as harvested.
+         *
+         * @param document a transformed document, or null if the collection could not be transformed
+         */
+        private void appendDocument(final DataCiteJson document)
+        {
+            if (document == null)
+                return;
+
+            try {
+                documentWriter.append(document);
+                collectionStates.setHarvested(document.getSourceId());
+
+            } catch (final IOException e) {
+                LOGGER.error(String.format(TRANSFORMATION_ERROR, document.getSourceId()), e);
+            }
         }
     }
 }
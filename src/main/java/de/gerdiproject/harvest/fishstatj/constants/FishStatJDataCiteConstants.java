@@ -51,6 +51,10 @@ public class FishStatJDataCiteConstants
     public static final WebLink LOGO_LINK = createLogoLink();
 
     public static final String DATE_INFORMATION = "Version %s - %s";
+    public static final String COLLECTED_DATE_RANGE = "%d/%d";
+    public static final String COLLECTED_DATE_INFORMATION = "Years covered by the statistics";
+    public static final String STATISTICS_DESCRIPTION = "The statistics consist of %d data rows, covering approximately %d countries and %d species.";
+    public static final String STATISTICS_DESCRIPTION_LANGUAGE = "en";
 
 
     /**
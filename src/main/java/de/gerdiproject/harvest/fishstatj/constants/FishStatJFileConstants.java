@@ -33,14 +33,42 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class FishStatJFileConstants
 {
-    public static final String RIGHTS_TEXT_EXCLUDED_PREFIX = "COPYRIGHT & DISCLAIMER CLAUSES\n\n";
+    public static final String RIGHTS_HEADER = "COPYRIGHT & DISCLAIMER CLAUSES";
     public static final String RIGHTS_TEXT_EXCLUDED_SUFFIX = "For comments, views and suggestions";
 
     public static final String DATES_TEXT_EXCLUDED_PREFIX = "Version History:\\n";
     public static final String DATES_TEXT_EXCLUDED_SUFFIX = "\\n\\n© FAO";
+    public static final String DATE_LINE_SEPARATOR = "  ";
 
     public static final String UNZIP_ERROR = "Could not unzip file stream from: %s";
     public static final String DOWNLOAD_ERROR = "Could not download file: %s";
+    public static final String DOWNLOAD_CANCELLED = "Cancelled the download of file: %s";
+    public static final String ZIP_FILE_EXTENSION = ".zip";
+    public static final String RANGES_NOT_SUPPORTED = "Range requests are not supported for %s! Downloading the whole archive instead.";
+    public static final int HTTP_REQUEST_TIMEOUT = 30000;
+    public static final String REQUEST_ERROR = "Could not retrieve page: %s";
+    public static final String COLLECTION_SKIPPED = "Skipping FishStatJ collection, because its page could not be retrieved: %s";
+    public static final int MAX_CONCURRENT_REQUESTS = 16;
+    public static final int MAX_REQUEST_RETRIES = 3;
+
+    public static final String COLLECTION_STATES_FILE = "collectionStates_%s.json";
+    public static final String PAGE_CACHE_FOLDER = "pageCache/";
+    public static final String ARCHIVE_STORE_FOLDER = "archiveStore/";
+    public static final long ARCHIVE_STORE_QUOTA_UNIT = 1024L * 1024L;
+    public static final String CSV_SUBJECT_CACHE_FOLDER = "csvSubjectCache/";
+    public static final String DOWNLOAD_FOLDER = "downloads/";
+    public static final int MAX_DOWNLOAD_ATTEMPTS = 5;
+    public static final long PART_FILE_LIFETIME = 7L * 24L * 60L * 60L * 1000L;
+    public static final String SKIPPED_COLLECTIONS = "Skipping %d unchanged FishStatJ collections.";
+
+    public static final String NOTES_PARSING_ERROR = "Could not parse notes file: %s";
+    public static final String CSV_PARSING_ERROR = "Could not parse csv files in: %s";
+    public static final long CSV_CHUNK_SIZE = 64L * 1024L * 1024L;
+    public static final String NDJSON_OUTPUT_FILE = "documents_%s.ndjson";
+    public static final String NDJSON_OUTPUT_INFO = "Writing FishStatJ documents to %s instead of passing them on to the loader.";
+    public static final long NDJSON_SUBJECT_MEMORY_BUDGET = 64L * 1024L * 1024L;
+    public static final String SUBJECT_SPILL_FOLDER = "subjectRuns/";
+    public static final long SUBJECT_MEMORY_BUDGET_UNIT = 1024L * 1024L;
 
     public static final String README_FILE_NAME = "Notes.txt";
     public static final String ISSUED_DATE_KEYWORD = "release";
@@ -50,6 +78,7 @@ public class FishStatJFileConstants
 
     public static final File DOWNLOADED_ZIP_FILE = new File("downloadedCollection.zip");
     public static final String UNZIP_FOLDER = "unzipped/";
+    public static final String UNZIP_FOLDER_NAME = "%s_%s";
 
     public static final int ZIP_EXTRACT_BUFFER_SIZE = 2048;
 
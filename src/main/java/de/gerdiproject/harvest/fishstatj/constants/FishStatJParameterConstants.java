@@ -15,6 +15,10 @@
  */
 package de.gerdiproject.harvest.fishstatj.constants;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 
@@ -28,4 +32,82 @@ public class FishStatJParameterConstants
 {
     public static final String LANGUAGE_KEY = "language";
     public static final String LANGUAGE_DEFAULT = "en";
+
+    public static final String CONCURRENT_COLLECTIONS_KEY = "concurrentCollections";
+    public static final int CONCURRENT_COLLECTIONS_DEFAULT = 1;
+
+    public static final String EXECUTION_MODE_KEY = "executionMode";
+    public static final String EXECUTION_MODE_PLATFORM = "platform";
+    public static final String EXECUTION_MODE_VIRTUAL = "virtual";
+    public static final String EXECUTION_MODE_DEFAULT = EXECUTION_MODE_PLATFORM;
+    public static final List<String> EXECUTION_MODES = Collections.unmodifiableList(Arrays.asList(
+                                                           EXECUTION_MODE_PLATFORM,
+                                                           EXECUTION_MODE_VIRTUAL));
+
+    public static final String CONCURRENT_FETCHES_KEY = "concurrentFetches";
+    public static final boolean CONCURRENT_FETCHES_DEFAULT = false;
+
+    public static final String ARCHIVE_MODE_KEY = "archiveMode";
+    public static final String ARCHIVE_MODE_UNZIP = "unzip";
+    public static final String ARCHIVE_MODE_STREAM = "stream";
+    public static final String ARCHIVE_MODE_SELECTIVE = "selective";
+    public static final String ARCHIVE_MODE_REMOTE = "remote";
+    public static final String ARCHIVE_MODE_DEFAULT = ARCHIVE_MODE_UNZIP;
+    public static final List<String> ARCHIVE_MODES = Collections.unmodifiableList(Arrays.asList(
+                                                         ARCHIVE_MODE_UNZIP,
+                                                         ARCHIVE_MODE_STREAM,
+                                                         ARCHIVE_MODE_SELECTIVE,
+                                                         ARCHIVE_MODE_REMOTE));
+
+    public static final String INCREMENTAL_HARVEST_KEY = "incrementalHarvest";
+    public static final boolean INCREMENTAL_HARVEST_DEFAULT = false;
+
+    public static final String PAGE_CACHE_SIZE_KEY = "pageCacheSize";
+    public static final int PAGE_CACHE_SIZE_DEFAULT = 0;
+
+    public static final String ARCHIVE_STORE_QUOTA_KEY = "archiveStoreQuota";
+    public static final int ARCHIVE_STORE_QUOTA_DEFAULT = 0;
+
+    public static final String HTTP_CLIENT_THREADS_KEY = "httpClientThreads";
+    public static final int HTTP_CLIENT_THREADS_DEFAULT = 0;
+
+    public static final String REQUEST_RATE_KEY = "requestRate";
+    public static final int REQUEST_RATE_DEFAULT = 0;
+
+    public static final String RESUMABLE_DOWNLOADS_KEY = "resumableDownloads";
+    public static final boolean RESUMABLE_DOWNLOADS_DEFAULT = false;
+
+    public static final String CSV_SUBJECT_CACHE_KEY = "csvSubjectCache";
+    public static final boolean CSV_SUBJECT_CACHE_DEFAULT = false;
+
+    public static final String CSV_PARSER_KEY = "csvParser";
+    public static final String CSV_PARSER_OPENCSV = "opencsv";
+    public static final String CSV_PARSER_MAPPED = "mapped";
+    public static final String CSV_PARSER_DEFAULT = CSV_PARSER_OPENCSV;
+    public static final List<String> CSV_PARSERS = Collections.unmodifiableList(Arrays.asList(
+                                                       CSV_PARSER_OPENCSV,
+                                                       CSV_PARSER_MAPPED));
+
+    public static final String CSV_PARSING_THREADS_KEY = "csvParsingThreads";
+    public static final int CSV_PARSING_THREADS_DEFAULT = 1;
+
+    public static final String CONCURRENT_TRANSFORMATIONS_KEY = "concurrentTransformations";
+    public static final int CONCURRENT_TRANSFORMATIONS_DEFAULT = 1;
+
+    public static final String MAX_SUBJECTS_KEY = "maxSubjects";
+    public static final int MAX_SUBJECTS_DEFAULT = 0;
+
+    public static final String SUBJECT_MEMORY_BUDGET_KEY = "subjectMemoryBudget";
+    public static final int SUBJECT_MEMORY_BUDGET_DEFAULT = 0;
+
+    public static final String CSV_STATISTICS_KEY = "csvStatistics";
+    public static final boolean CSV_STATISTICS_DEFAULT = false;
+
+    public static final String OUTPUT_MODE_KEY = "outputMode";
+    public static final String OUTPUT_MODE_DOCUMENTS = "documents";
+    public static final String OUTPUT_MODE_NDJSON = "ndjson";
+    public static final String OUTPUT_MODE_DEFAULT = OUTPUT_MODE_DOCUMENTS;
+    public static final List<String> OUTPUT_MODES = Collections.unmodifiableList(Arrays.asList(
+                                                        OUTPUT_MODE_DOCUMENTS,
+                                                        OUTPUT_MODE_NDJSON));
 }
@@ -39,15 +39,24 @@ public class FishStatJSourceConstants
 
     public final static String CONTAINS_TEXT_SELECTION = "a:contains(%s)";
 
-    public static final String MAIN_TITLE_SELECTION = "#head_title_instance";
-    public static final String SUB_TITLE_SELECTION = "#head_title_class";
+    public static final String MAIN_TITLE_ID = "head_title_instance";
+    public static final String SUB_TITLE_ID = "head_title_class";
+    public static final String MAIN_TITLE_SELECTION = "#" + MAIN_TITLE_ID;
+    public static final String SUB_TITLE_SELECTION = "#" + SUB_TITLE_ID;
 
     public static final String CONTACTS_AND_MAILS_SELECTION = "#allWidth div.padBottom, #allWidth a[href^=\"mailto\"]";
     public static final String DIV = "div";
+    public static final String SPAN = "span";
 
+    public static final String SECTIONS_CONTAINER_ID = "allWidth";
+    public static final String SECTION_TITLE_CLASS = "tableHead";
+    public static final String PAGE_HEADER_ID = "pageHeader";
+    public static final String CLASS_ATTRIBUTE = "class";
     public static final String ALL_SECTIONS_SELECTION = "#allWidth > [class=tableHead], #allWidth > div:not(#pageHeader)";
+    public static final String FINGERPRINT_SELECTION = MAIN_TITLE_SELECTION + ", " + SUB_TITLE_SELECTION + ", " + ALL_SECTIONS_SELECTION;
 
-    public static final String LINKS_SELECTION = "a";
+    public static final String LINK_TAG = "a";
+    public static final String LINKS_SELECTION = LINK_TAG;
     public static final String CAPTION_CLASS = "subtitle";
     public static final String LINKS_AND_CAPTIONS_SELECTION = "a, span." + CAPTION_CLASS;
     public static final String ZIP_LINKS_SELECTION  = "a[href$=.zip]";
@@ -56,6 +65,14 @@ public class FishStatJSourceConstants
             "Name_en",
             "Scientific_Name"));
 
+    public static final List<String> YEAR_COLUMNS = Collections.unmodifiableList(Arrays.asList(
+            "YEAR",
+            "PERIOD"));
+    public static final List<String> COUNTRY_COLUMNS = Collections.unmodifiableList(Arrays.asList(
+            "COUNTRY"));
+    public static final List<String> SPECIES_COLUMNS = Collections.unmodifiableList(Arrays.asList(
+            "SPECIES"));
+
     public static final Pattern DOWNLOADABLE_FILE_PATTERN = Pattern.compile("(?:.+)/([^/]+)\\.(zip)$");
     public static final String GIF_EXTENSION = ".gif";
     public static final String NEW_WINDOW_LINK_REGEX = "^javascript:new_window\\('([^']+)'.+\\);$";
@@ -0,0 +1,510 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import de.gerdiproject.harvest.utils.file.FileUtils;
+import lombok.AllArgsConstructor;
+
+/**
+ * This class stores downloaded archives on disk, addressed by the SHA-256 hash of
+ * their content. Archives are revalidated via their ETag and Last-Modified headers,
+ * so unchanged archives are never transferred twice, and identical archives that are
+ * linked by multiple URLs are only stored once. If the stored archives exceed a disk
+ * quota, the least recently used archives are evicted. Archives are pinned while they
+ * are in use, and pinned archives are never evicted. Archives are downloaded via a
+ * {@linkplain ResumableDownloader}, which resumes interrupted downloads and verifies
+ * archives before they are stored. Requests are sent via the {@linkplain RequestThrottle}
+ * of the host, if requests are throttled.
+ *
+ * @author Robin Weiss
+ */
+public class ArchiveStore
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArchiveStore.class);
+
+    private static final String INDEX_FILE_NAME = "index.json";
+    private static final String ARCHIVE_FILE_EXTENSION = ".zip";
+    private static final String ARCHIVE_FILE_NAME = "%s" + ARCHIVE_FILE_EXTENSION;
+    private static final String DOWNLOAD_FILE_NAME = "%s.download";
+
+    private static final String LOAD_ERROR = "Could not load archive store index from: %s";
+    private static final String SAVE_ERROR = "Could not save archive store index to: %s";
+    private static final String EVICTED_ARCHIVE = "Evicted archive %s from the archive store.";
+
+    private final Gson gson = new Gson();
+    private final File storeFolder;
+    private final long quota;
+    private final PooledHttpClient httpClient;
+    private final Function<String, RequestThrottle> requestThrottles;
+    private final ResumableDownloader downloader;
+    private final StoreIndex index;
+    private final KeyedLock urlLocks = new KeyedLock();
+    private final Map<String, Integer> pinCounts = new HashMap<>();
+
+
+    /**
+     * Constructor that loads the index of previously stored archives.
+     *
+     * @param storeFolder the folder in which the archives are stored
+     * @param quota the maximum number of bytes that all stored archives may occupy
+     * @param httpClient the client that sends the requests
+     * @param requestThrottles a function that retrieves the request throttle of the host
+     *          of a URL, returning null if requests are not throttled
+     * @param downloader the downloader that downloads and verifies archives
+     */
+    public ArchiveStore(final File storeFolder, final long quota, final PooledHttpClient httpClient, final Function<String, RequestThrottle> requestThrottles, final ResumableDownloader downloader)
+    {
+        this.storeFolder = storeFolder;
+        this.quota = quota;
+        this.httpClient = httpClient;
+        this.requestThrottles = requestThrottles;
+        this.downloader = downloader;
+        this.index = loadIndex();
+
+        // partial downloads of archives that are no longer harvested would never be resumed
+        downloader.deleteExpiredPartFiles(storeFolder);
+    }
+
+
+    /**
+     * Retrieves an archive from the store, downloading it only if it is not stored
+     * yet or has changed since it was stored. The returned file is pinned, which prevents
+     * it from being evicted, until it is released via {@linkplain #releaseArchive(File)}.
+     * The returned file must not be deleted.
+     *
+     * @param zipUrl the URL of the archive
+     *
+     * @return the stored archive file
+     *
+     * @throws IOException thrown when the archive could not be downloaded
+     */
+    public File getArchive(final String zipUrl) throws IOException
+    {
+        // prevent the same archive from being downloaded by multiple threads at once
+        urlLocks.lock(zipUrl);
+
+        try {
+            final UrlEntry cachedEntry = getValidUrlEntry(zipUrl);
+
+            // the headers of the archive are retrieved first, in order to store its validators
+            URLConnection headers = requestHeaders(zipUrl, cachedEntry);
+
+            // use the stored archive if it was not modified and was not evicted in the meantime
+            if (cachedEntry != null
+                && headers instanceof HttpURLConnection
+                && ((HttpURLConnection) headers).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                final File storedArchive = pin(cachedEntry.hash);
+
+                if (storedArchive != null)
+                    return storedArchive;
+
+                headers = requestHeaders(zipUrl, null);
+            }
+
+            final String hash = download(zipUrl);
+
+            synchronized (index) {
+                index.urls.put(zipUrl, new UrlEntry(
+                                   hash,
+                                   headers.getHeaderField(HttpUtils.ETAG_HEADER),
+                                   headers.getHeaderField(HttpUtils.LAST_MODIFIED_HEADER)));
+            }
+
+            evictArchives();
+            return getArchiveFile(hash);
+
+        } finally {
+            urlLocks.unlock(zipUrl);
+        }
+    }
+
+
+    /**
+     * Opens a stream of an archive from the store, downloading it only if it is not stored
+     * yet or has changed since it was stored. The archive is pinned until the stream is closed.
+     *
+     * @param zipUrl the URL of the archive
+     *
+     * @return a stream of the stored archive
+     *
+     * @throws IOException thrown when the archive could not be downloaded or read
+     */
+    public InputStream openArchive(final String zipUrl) throws IOException
+    {
+        final File archive = getArchive(zipUrl);
+
+        try {
+            return new ArchiveInputStream(archive);
+        } catch (final IOException e) {
+            releaseArchive(archive);
+            throw e;
+        }
+    }
+
+
+    /**
+     * Unpins an archive that was retrieved via {@linkplain #getArchive(String)},
+     * allowing it to be evicted once it is no longer used by any other thread.
+     *
+     * @param archive the stored archive file
+     */
+    public void releaseArchive(final File archive)
+    {
+        final String fileName = archive.getName();
+        final String hash = fileName.substring(0, fileName.length() - ARCHIVE_FILE_EXTENSION.length());
+
+        synchronized (index) {
+            pinCounts.computeIfPresent(hash, (final String h, final Integer pinCount) -> pinCount > 1 ? pinCount - 1 : null);
+        }
+
+        evictArchives();
+    }
+
+
+    /**
+     * Evicts archives that exceed the quota, and writes the index of stored archives to disk.
+     */
+    public void save()
+    {
+        // evict archives that were pinned when the quota was exceeded
+        evictArchives();
+
+        final File indexFile = new File(storeFolder, INDEX_FILE_NAME);
+        FileUtils.createDirectories(storeFolder);
+
+        try
+            (Writer writer = Files.newBufferedWriter(indexFile.toPath(), StandardCharsets.UTF_8)) {
+            synchronized (index) {
+                gson.toJson(index, writer);
+            }
+        } catch (final IOException e) {
+            LOGGER.error(String.format(SAVE_ERROR, indexFile), e);
+        }
+    }
+
+
+    /**
+     * Retrieves the headers of an archive via a HEAD request, which is conditional
+     * if the archive is stored already.
+     *
+     * @param zipUrl the URL of the archive
+     * @param cachedEntry the index entry of the URL, or null if the archive is not stored
+     *
+     * @return a connection of which the response headers can be read
+     *
+     * @throws IOException thrown when the server responds with an error or cannot be reached
+     */
+    private URLConnection requestHeaders(final String zipUrl, final UrlEntry cachedEntry) throws IOException
+    {
+        return RequestThrottle.send(requestThrottles.apply(zipUrl), () -> {
+            final URLConnection connection = httpClient.openConnection(zipUrl);
+
+            if (cachedEntry != null) {
+                if (cachedEntry.eTag != null)
+                    connection.setRequestProperty(HttpUtils.IF_NONE_MATCH_HEADER, cachedEntry.eTag);
+
+                if (cachedEntry.lastModified != null)
+                    connection.setRequestProperty(HttpUtils.IF_MODIFIED_SINCE_HEADER, cachedEntry.lastModified);
+            }
+
+            return httpClient.head(connection);
+        });
+    }
+
+
+    /**
+     * Retrieves the index entry of a URL, if the archive it points to is stored
+     * and has the expected size.
+     *
+     * @param zipUrl the URL of the archive
+     *
+     * @return the index entry of the URL, or null if the archive is not validly stored
+     */
+    private UrlEntry getValidUrlEntry(final String zipUrl)
+    {
+        synchronized (index) {
+            final UrlEntry urlEntry = index.urls.get(zipUrl);
+
+            if (urlEntry == null)
+                return null;
+
+            final ArchiveEntry archiveEntry = index.archives.get(urlEntry.hash);
+            final File archiveFile = getArchiveFile(urlEntry.hash);
+
+            if (archiveEntry == null || archiveFile.length() != archiveEntry.size) {
+                index.urls.remove(zipUrl);
+                return null;
+            }
+
+            return urlEntry;
+        }
+    }
+
+
+    /**
+     * Downloads and verifies an archive, computes its hash, and moves it into
+     * the store unless an identical archive is stored already. The download file
+     * is named after the URL, so that an interrupted download can be resumed.
+     * The stored archive is pinned.
+     *
+     * @param zipUrl the URL of the archive
+     *
+     * @return the SHA-256 hash of the archive content
+     *
+     * @throws IOException thrown when the archive could not be downloaded or verified
+     */
+    private String download(final String zipUrl) throws IOException
+    {
+        final File downloadFile = new File(storeFolder, String.format(DOWNLOAD_FILE_NAME, FishStatJFingerprinter.getHash(zipUrl)));
+        downloader.download(zipUrl, downloadFile);
+
+        final String hash;
+
+        try
+            (InputStream fileStream = Files.newInputStream(downloadFile.toPath())) {
+            hash = HttpUtils.getHash(fileStream);
+        } catch (final IOException e) {
+            FileUtils.deleteFile(downloadFile);
+            throw e;
+        }
+
+        final File archiveFile = getArchiveFile(hash);
+
+        synchronized (index) {
+            // deduplicate identical archives
+            if (index.archives.containsKey(hash) && archiveFile.exists())
+                FileUtils.deleteFile(downloadFile);
+            else {
+                Files.move(downloadFile.toPath(), archiveFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                index.archives.put(hash, new ArchiveEntry(archiveFile.length(), System.currentTimeMillis()));
+            }
+
+            pin(hash);
+        }
+
+        return hash;
+    }
+
+
+    /**
+     * Marks a stored archive as recently used, and pins it until it is released.
+     *
+     * @param hash the hash of the archive
+     *
+     * @return the archive file, or null if the archive is not stored
+     */
+    private File pin(final String hash)
+    {
+        final File archiveFile = getArchiveFile(hash);
+
+        synchronized (index) {
+            final ArchiveEntry archiveEntry = index.archives.get(hash);
+
+            if (archiveEntry == null || !archiveFile.exists())
+                return null;
+
+            archiveEntry.lastAccess = System.currentTimeMillis();
+            pinCounts.merge(hash, 1, Integer::sum);
+        }
+
+        return archiveFile;
+    }
+
+
+    /**
+     * Removes the least recently used archives that are not pinned, until the quota is met.
+     */
+    private void evictArchives()
+    {
+        synchronized (index) {
+            long totalSize = 0;
+
+            for (final ArchiveEntry archiveEntry : index.archives.values())
+                totalSize += archiveEntry.size;
+
+            while (totalSize > quota) {
+                String eldestHash = null;
+                long eldestAccess = Long.MAX_VALUE;
+
+                for (final Map.Entry<String, ArchiveEntry> entry : index.archives.entrySet()) {
+                    if (!pinCounts.containsKey(entry.getKey()) && entry.getValue().lastAccess < eldestAccess) {
+                        eldestHash = entry.getKey();
+                        eldestAccess = entry.getValue().lastAccess;
+                    }
+                }
+
+                if (eldestHash == null)
+                    break;
+
+                totalSize -= index.archives.remove(eldestHash).size;
+                FileUtils.deleteFile(getArchiveFile(eldestHash));
+                LOGGER.debug(String.format(EVICTED_ARCHIVE, eldestHash));
+
+                // remove URLs that point to the evicted archive
+                final Iterator<UrlEntry> urlIter = index.urls.values().iterator();
+
+                while (urlIter.hasNext()) {
+                    if (urlIter.next().hash.equals(eldestHash))
+                        urlIter.remove();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Retrieves the file of a stored archive.
+     *
+     * @param hash the hash of the archive
+     *
+     * @return the file of the archive
+     */
+    private File getArchiveFile(final String hash)
+    {
+        return new File(storeFolder, String.format(ARCHIVE_FILE_NAME, hash));
+    }
+
+
+    /**
+     * Reads the index of stored archives from disk.
+     *
+     * @return the index of stored archives
+     */
+    private StoreIndex loadIndex()
+    {
+        final File indexFile = new File(storeFolder, INDEX_FILE_NAME);
+
+        if (indexFile.exists()) {
+            try
+                (Reader reader = Files.newBufferedReader(indexFile.toPath(), StandardCharsets.UTF_8)) {
+                final StoreIndex loadedIndex = gson.fromJson(reader, StoreIndex.class);
+
+                if (loadedIndex != null && loadedIndex.urls != null && loadedIndex.archives != null)
+                    return loadedIndex;
+
+            } catch (IOException | JsonParseException e) {
+                LOGGER.error(String.format(LOAD_ERROR, indexFile), e);
+            }
+        }
+
+        return new StoreIndex();
+    }
+
+
+    /**
+     * This class is the serializable index of the archive store.
+     *
+     * @author Robin Weiss
+     */
+    private static class StoreIndex
+    {
+        private final Map<String, UrlEntry> urls = new HashMap<>();
+        private final Map<String, ArchiveEntry> archives = new HashMap<>();
+    }
+
+
+    /**
+     * This class maps a URL to a stored archive.
+     *
+     * @author Robin Weiss
+     */
+    @AllArgsConstructor
+    private static class UrlEntry
+    {
+        private final String hash;
+        private final String eTag;
+        private final String lastModified;
+    }
+
+
+    /**
+     * This class describes a stored archive.
+     *
+     * @author Robin Weiss
+     */
+    @AllArgsConstructor
+    private static class ArchiveEntry
+    {
+        private final long size;
+        private long lastAccess;
+    }
+
+
+    /**
+     * This {@linkplain FilterInputStream} reads a stored archive
+     * and releases the archive when it is closed.
+     *
+     * @author Robin Weiss
+     */
+    private class ArchiveInputStream extends FilterInputStream
+    {
+        private final File archive;
+        private boolean isClosed;
+
+
+        /**
+         * Constructor that opens a stream of a pinned archive.
+         *
+         * @param archive the pinned archive file
+         *
+         * @throws IOException thrown when the archive cannot be opened
+         */
+        ArchiveInputStream(final File archive) throws IOException
+        {
+            super(Files.newInputStream(archive.toPath()));
+            this.archive = archive;
+        }
+
+
+        @Override
+        public void close() throws IOException
+        {
+            if (isClosed)
+                return;
+
+            isClosed = true;
+
+            try {
+                super.close();
+            } finally {
+                releaseArchive(archive);
+            }
+        }
+    }
+}
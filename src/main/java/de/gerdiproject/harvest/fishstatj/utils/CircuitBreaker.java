@@ -0,0 +1,132 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class stops requests to a host after a number of consecutive failures,
+ * so that an overloaded host is not flooded with requests that are bound to fail.
+ * Requests wait until a cool-down period is over, and then a single trial request
+ * is let through. If it succeeds, all waiting requests are allowed again, otherwise
+ * the cool-down period starts anew.
+ *
+ * @author Robin Weiss
+ */
+public class CircuitBreaker
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+    private static final String OPENED_WARNING = "Suspending requests to %s for %d ms after %d consecutive failures.";
+    private static final String CLOSED_INFO = "Resuming requests to %s.";
+
+    private final String host;
+    private final int failureThreshold;
+    private final long openDuration;
+
+    private int consecutiveFailures;
+    private long openedAt = -1;
+    private boolean isTrialPending;
+
+
+    /**
+     * Constructor that starts with allowed requests.
+     *
+     * @param host the name of the host of which the requests are monitored
+     * @param failureThreshold the number of consecutive failures that suspend requests
+     * @param openDuration the number of milliseconds for which requests are suspended
+     */
+    public CircuitBreaker(final String host, final int failureThreshold, final long openDuration)
+    {
+        this.host = host;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+    }
+
+
+    /**
+     * Waits until a request may be sent. If requests are suspended and the cool-down
+     * period is over, the calling request becomes the trial request, and all other
+     * requests wait until its outcome is recorded.
+     *
+     * @return true if the calling request is the trial request
+     *
+     * @throws InterruptedException thrown when the thread is interrupted while waiting
+     */
+    public synchronized boolean awaitAllowed() throws InterruptedException
+    {
+        while (openedAt != -1) {
+            final long remainingDuration = openedAt + openDuration - System.currentTimeMillis();
+
+            if (isTrialPending)
+                wait();
+
+            else if (remainingDuration > 0)
+                wait(remainingDuration);
+
+            else {
+                isTrialPending = true;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Records the outcome of a request that was allowed.
+     *
+     * @param isTrial true if the request was the trial request
+     * @param isSuccessful true if the request succeeded
+     */
+    public synchronized void record(final boolean isTrial, final boolean isSuccessful)
+    {
+        if (isTrial)
+            isTrialPending = false;
+
+        if (isSuccessful) {
+            if (openedAt != -1)
+                LOGGER.info(String.format(CLOSED_INFO, host));
+
+            consecutiveFailures = 0;
+            openedAt = -1;
+
+        } else {
+            consecutiveFailures++;
+
+            if (isTrial || openedAt == -1 && consecutiveFailures >= failureThreshold) {
+                openedAt = System.currentTimeMillis();
+                LOGGER.warn(String.format(OPENED_WARNING, host, openDuration, consecutiveFailures));
+            }
+        }
+
+        notifyAll();
+    }
+
+
+    /**
+     * Gives up the trial request without an outcome, for instance because it
+     * was interrupted before it was sent, so that another request becomes the
+     * trial request.
+     */
+    public synchronized void abortTrial()
+    {
+        isTrialPending = false;
+        notifyAll();
+    }
+}
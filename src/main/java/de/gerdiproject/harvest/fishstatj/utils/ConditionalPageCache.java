@@ -0,0 +1,267 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import de.gerdiproject.harvest.utils.file.FileUtils;
+import lombok.AllArgsConstructor;
+
+/**
+ * This class retrieves HTML pages and stores them on disk, together with their
+ * ETag and Last-Modified headers. Subsequent requests of the same page are
+ * conditional, and the stored page is used if the server responds that it has
+ * not been modified. The least recently used pages are evicted when the cache is full.
+ *
+ * @author Robin Weiss
+ */
+public class ConditionalPageCache
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConditionalPageCache.class);
+
+    private static final String INDEX_FILE_NAME = "index.json";
+    private static final String PAGE_FILE_NAME = "%s.html";
+    private static final Type INDEX_TYPE = new TypeToken<LinkedHashMap<String, CacheEntry>>() {}.getType();
+
+    private static final String REQUEST_ERROR = "Could not retrieve page: %s";
+    private static final String LOAD_ERROR = "Could not load page cache index from: %s";
+    private static final String SAVE_ERROR = "Could not save page cache index to: %s";
+
+    private final Gson gson = new Gson();
+    private final File cacheFolder;
+    private final int maxEntries;
+    private final PooledHttpClient httpClient;
+    private final Map<String, CacheEntry> index;
+
+
+    /**
+     * Constructor that loads the index of previously cached pages.
+     *
+     * @param cacheFolder the folder in which the pages are stored
+     * @param maxEntries the maximum number of pages that are stored
+     * @param httpClient the client that sends the requests
+     */
+    public ConditionalPageCache(final File cacheFolder, final int maxEntries, final PooledHttpClient httpClient)
+    {
+        this.cacheFolder = cacheFolder;
+        this.maxEntries = maxEntries;
+        this.httpClient = httpClient;
+
+        // an access-ordered map keeps the least recently used page first
+        this.index = new LinkedHashMap<>(maxEntries, 0.75f, true);
+        this.index.putAll(loadIndex());
+        evictEntries();
+    }
+
+
+    /**
+     * Retrieves an HTML page, either from the server or, if it was not modified,
+     * from the cache.
+     *
+     * @param url the URL of the HTML page
+     *
+     * @return the parsed HTML page
+     *
+     * @throws IOException thrown when the page can neither be retrieved from the server nor from the cache
+     */
+    public Document requestHtml(final String url) throws IOException
+    {
+        CacheEntry cachedEntry;
+
+        synchronized (index) {
+            cachedEntry = index.get(url);
+        }
+
+        // only revalidate pages that are still on disk
+        if (cachedEntry != null && !new File(cacheFolder, cachedEntry.fileName).exists())
+            cachedEntry = null;
+
+        final URLConnection connection = httpClient.openHtmlConnection(url);
+
+        if (cachedEntry != null) {
+            if (cachedEntry.eTag != null)
+                connection.setRequestProperty(HttpUtils.IF_NONE_MATCH_HEADER, cachedEntry.eTag);
+
+            if (cachedEntry.lastModified != null)
+                connection.setRequestProperty(HttpUtils.IF_MODIFIED_SINCE_HEADER, cachedEntry.lastModified);
+        }
+
+        // serve the cached page if it was not modified
+        if (connection instanceof HttpURLConnection
+            && ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            // the response has no content, but closing it returns the connection to the pool
+            httpClient.getResponseStream(connection).close();
+
+            final String cachedHtml = readCachedPage(cachedEntry);
+
+            if (cachedHtml == null)
+                throw new IOException(String.format(REQUEST_ERROR, url));
+
+            return Jsoup.parse(cachedHtml, url);
+        }
+
+        final String html = httpClient.readHtml(connection);
+        storePage(url, html, connection.getHeaderField(HttpUtils.ETAG_HEADER), connection.getHeaderField(HttpUtils.LAST_MODIFIED_HEADER));
+        return Jsoup.parse(html, url);
+    }
+
+
+    /**
+     * Writes the index of cached pages to disk.
+     */
+    public void save()
+    {
+        final File indexFile = new File(cacheFolder, INDEX_FILE_NAME);
+        FileUtils.createDirectories(cacheFolder);
+
+        try
+            (Writer writer = Files.newBufferedWriter(indexFile.toPath(), StandardCharsets.UTF_8)) {
+            synchronized (index) {
+                gson.toJson(index, INDEX_TYPE, writer);
+            }
+        } catch (final IOException e) {
+            LOGGER.error(String.format(SAVE_ERROR, indexFile), e);
+        }
+    }
+
+
+    /**
+     * Stores a page on disk if it has validators, and evicts the least
+     * recently used pages if necessary.
+     *
+     * @param url the URL of the page
+     * @param html the content of the page
+     * @param eTag the ETag header of the page, or null
+     * @param lastModified the Last-Modified header of the page, or null
+     *
+     * @throws IOException thrown when the page cannot be written to disk
+     */
+    private void storePage(final String url, final String html, final String eTag, final String lastModified) throws IOException
+    {
+        // pages without validators cannot be revalidated
+        if (eTag == null && lastModified == null)
+            return;
+
+        final String fileName = String.format(PAGE_FILE_NAME, FishStatJFingerprinter.getHash(url));
+        FileUtils.createDirectories(cacheFolder);
+        Files.write(new File(cacheFolder, fileName).toPath(), html.getBytes(StandardCharsets.UTF_8));
+
+        synchronized (index) {
+            index.put(url, new CacheEntry(fileName, eTag, lastModified));
+            evictEntries();
+        }
+    }
+
+
+    /**
+     * Reads a cached page from disk.
+     *
+     * @param entry the index entry of the page
+     *
+     * @return the content of the page, or null if it is not stored
+     */
+    private String readCachedPage(final CacheEntry entry)
+    {
+        if (entry == null)
+            return null;
+
+        final File pageFile = new File(cacheFolder, entry.fileName);
+
+        try {
+            return pageFile.exists()
+                   ? new String(Files.readAllBytes(pageFile.toPath()), StandardCharsets.UTF_8)
+                   : null;
+        } catch (final IOException e) {
+            LOGGER.warn(String.format(REQUEST_ERROR, pageFile), e);
+            return null;
+        }
+    }
+
+
+    /**
+     * Removes the least recently used pages until the cache is within its bounds.
+     */
+    private void evictEntries()
+    {
+        synchronized (index) {
+            while (index.size() > maxEntries) {
+                final Map.Entry<String, CacheEntry> eldest = index.entrySet().iterator().next();
+                FileUtils.deleteFile(new File(cacheFolder, eldest.getValue().fileName));
+                index.remove(eldest.getKey());
+            }
+        }
+    }
+
+
+    /**
+     * Reads the index of cached pages from disk.
+     *
+     * @return a map of URLs to cache entries, ordered from least to most recently used
+     */
+    private Map<String, CacheEntry> loadIndex()
+    {
+        final File indexFile = new File(cacheFolder, INDEX_FILE_NAME);
+
+        if (indexFile.exists()) {
+            try
+                (Reader reader = Files.newBufferedReader(indexFile.toPath(), StandardCharsets.UTF_8)) {
+                final Map<String, CacheEntry> loadedIndex = gson.fromJson(reader, INDEX_TYPE);
+
+                if (loadedIndex != null)
+                    return loadedIndex;
+
+            } catch (IOException | JsonParseException e) {
+                LOGGER.error(String.format(LOAD_ERROR, indexFile), e);
+            }
+        }
+
+        return new LinkedHashMap<>();
+    }
+
+
+    /**
+     * This class represents a cached page in the index.
+     *
+     * @author Robin Weiss
+     */
+    @AllArgsConstructor
+    private static class CacheEntry
+    {
+        private final String fileName;
+        private final String eTag;
+        private final String lastModified;
+    }
+}
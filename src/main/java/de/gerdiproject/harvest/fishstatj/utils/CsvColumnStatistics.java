@@ -0,0 +1,172 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import java.util.Collection;
+
+import de.gerdiproject.harvest.fishstatj.constants.FishStatJDataCiteConstants;
+import de.gerdiproject.harvest.fishstatj.constants.FishStatJSourceConstants;
+import de.gerdiproject.json.datacite.Date;
+import de.gerdiproject.json.datacite.Description;
+import de.gerdiproject.json.datacite.enums.DateType;
+import de.gerdiproject.json.datacite.enums.DescriptionType;
+
+/**
+ * This {@linkplain CsvRowAggregator} computes statistics of the data rows of the
+ * csv files of a collection while their subjects are extracted. The year columns are
+ * aggregated to a range of years, and the country and species columns are aggregated
+ * to estimated numbers of distinct values, using a fixed amount of memory.
+ * This class is not thread-safe.
+ *
+ * @author Robin Weiss
+ */
+public class CsvColumnStatistics implements CsvRowAggregator
+{
+    private final IntRange years = new IntRange();
+    private final HyperLogLog countries = new HyperLogLog();
+    private final HyperLogLog species = new HyperLogLog();
+    private long dataRowCount;
+
+    private int yearIndex;
+    private int countryIndex;
+    private int speciesIndex;
+
+
+    @Override
+    public void startFile(final String[] titleRow, final int columnShift)
+    {
+        yearIndex = getColumnIndex(titleRow, FishStatJSourceConstants.YEAR_COLUMNS, columnShift);
+        countryIndex = getColumnIndex(titleRow, FishStatJSourceConstants.COUNTRY_COLUMNS, columnShift);
+        speciesIndex = getColumnIndex(titleRow, FishStatJSourceConstants.SPECIES_COLUMNS, columnShift);
+    }
+
+
+    @Override
+    public void acceptRow(final String[] row)
+    {
+        // only rows of files with statistical columns are data rows
+        if (yearIndex == -1 && countryIndex == -1 && speciesIndex == -1)
+            return;
+
+        dataRowCount++;
+
+        if (yearIndex != -1 && yearIndex < row.length) {
+            final int year = parseYear(row[yearIndex]);
+
+            if (year != -1)
+                years.accept(year);
+        }
+
+        if (countryIndex != -1 && countryIndex < row.length && !row[countryIndex].isEmpty())
+            countries.offer(row[countryIndex]);
+
+        if (speciesIndex != -1 && speciesIndex < row.length && !row[speciesIndex].isEmpty())
+            species.offer(row[speciesIndex]);
+    }
+
+
+    /**
+     * Retrieves the range of years that are covered by the aggregated rows.
+     *
+     * @return a collected {@linkplain Date} range, or null if no year was aggregated
+     */
+    public Date getCollectedDate()
+    {
+        if (years.isEmpty())
+            return null;
+
+        final Date collectedDate = new Date(
+            String.format(FishStatJDataCiteConstants.COLLECTED_DATE_RANGE, years.getMin(), years.getMax()),
+            DateType.Collected);
+        collectedDate.setInformation(FishStatJDataCiteConstants.COLLECTED_DATE_INFORMATION);
+        return collectedDate;
+    }
+
+
+    /**
+     * Retrieves a summary of the number of aggregated data rows and the estimated
+     * numbers of distinct countries and species.
+     *
+     * @return a technical {@linkplain Description}, or null if no data row was aggregated
+     */
+    public Description getDescription()
+    {
+        if (dataRowCount == 0)
+            return null;
+
+        return new Description(
+                   String.format(
+                       FishStatJDataCiteConstants.STATISTICS_DESCRIPTION,
+                       dataRowCount,
+                       countries.cardinality(),
+                       species.cardinality()),
+                   DescriptionType.TechnicalInfo,
+                   FishStatJDataCiteConstants.STATISTICS_DESCRIPTION_LANGUAGE);
+    }
+
+
+    /**
+     * Looks up the index of the first title of a title row that matches one of
+     * the specified titles, ignoring the case.
+     *
+     * @param titleRow the first row of a csv file
+     * @param columnTitles the titles of the column that is to be looked up
+     * @param columnShift an offset that is added to the found index
+     *
+     * @return the shifted index of the column, or -1 if none of the titles are part of the title row
+     */
+    private static int getColumnIndex(final String[] titleRow, final Collection<String> columnTitles, final int columnShift)
+    {
+        for (int i = 0; i < titleRow.length; i++) {
+            for (final String columnTitle : columnTitles) {
+                if (columnTitle.equalsIgnoreCase(titleRow[i].trim()))
+                    return i + columnShift;
+            }
+        }
+
+        return -1;
+    }
+
+
+    /**
+     * Parses a year from a csv value without creating intermediate objects.
+     *
+     * @param value a csv value that consists of up to four digits
+     *
+     * @return the parsed year, or -1 if the value is not a year
+     */
+    private static int parseYear(final String value)
+    {
+        final int length = value.length();
+
+        if (length == 0 || length > 4)
+            return -1;
+
+        int year = 0;
+
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+
+            if (c < '0' || c > '9')
+                return -1;
+
+            year = year * 10 + c - '0';
+        }
+
+        return year;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+/**
+ * This interface represents an aggregation stage that receives all rows of
+ * csv files while they are read, so that values of arbitrary columns can be
+ * aggregated in the same pass in which other columns are projected.
+ *
+ * @author Robin Weiss
+ */
+public interface CsvRowAggregator
+{
+    /**
+     * Prepares the aggregation of a csv file.
+     *
+     * @param titleRow the first row of the csv file
+     * @param columnShift an offset that is to be added to the indices of the titles,
+     *         for files in which the title row is shifted relative to the values
+     */
+    void startFile(String[] titleRow, int columnShift);
+
+
+    /**
+     * Aggregates a single row of the csv file that was started last.
+     *
+     * @param row a row of the csv file, excluding the title row
+     */
+    void acceptRow(String[] row);
+}
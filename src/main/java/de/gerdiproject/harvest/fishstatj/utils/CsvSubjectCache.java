@@ -0,0 +1,170 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import de.gerdiproject.harvest.utils.file.FileUtils;
+
+/**
+ * This class stores the subject values that were parsed from single csv files of
+ * collection archives on disk. The values are identified by the URL of the archive
+ * and by the name, size, and CRC-32 of the csv file as listed in the central directory
+ * of the archive, so unchanged csv files of changed archives do not need to be
+ * transferred, inflated, or parsed again.
+ * <br>
+ * Entries that have not been used for a while are removed when the cache is cleaned up.
+ *
+ * @author Robin Weiss
+ */
+public class CsvSubjectCache
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(CsvSubjectCache.class);
+
+    private static final String ENTRY_KEY = "%s|%s|%d|%d";
+    private static final String ENTRY_FILE_NAME = "%s.json";
+    private static final String TEMP_FILE_NAME = "%s_%d.part";
+    private static final Type VALUES_TYPE = new TypeToken<List<String>>() {}.getType();
+    private static final long RETENTION_TIME = TimeUnit.DAYS.toMillis(30);
+
+    private static final String LOAD_ERROR = "Could not load cached csv subjects from: %s";
+    private static final String SAVE_ERROR = "Could not cache csv subjects in: %s";
+
+    private final Gson gson = new Gson();
+    private final File cacheFolder;
+
+
+    /**
+     * Constructor that sets the folder in which the subject values are stored.
+     *
+     * @param cacheFolder the folder in which the subject values are stored
+     */
+    public CsvSubjectCache(final File cacheFolder)
+    {
+        this.cacheFolder = cacheFolder;
+    }
+
+
+    /**
+     * Retrieves the cached subject values of a csv file, and marks them as recently used.
+     *
+     * @param archiveUrl the URL of the archive that contains the csv file
+     * @param entry the central directory entry of the csv file
+     *
+     * @return the subject values of the csv file, or null if they are not cached
+     */
+    public List<String> get(final String archiveUrl, final RemoteZipEntry entry)
+    {
+        final File entryFile = getEntryFile(archiveUrl, entry);
+
+        if (!entryFile.exists())
+            return null;
+
+        try
+            (Reader reader = Files.newBufferedReader(entryFile.toPath(), StandardCharsets.UTF_8)) {
+            final List<String> values = gson.fromJson(reader, VALUES_TYPE);
+
+            if (values != null)
+                entryFile.setLastModified(System.currentTimeMillis());
+
+            return values;
+
+        } catch (IOException | JsonParseException e) {
+            LOGGER.warn(String.format(LOAD_ERROR, entryFile), e);
+            return null;
+        }
+    }
+
+
+    /**
+     * Stores the subject values of a csv file.
+     *
+     * @param archiveUrl the URL of the archive that contains the csv file
+     * @param entry the central directory entry of the csv file
+     * @param values the subject values that were parsed from the csv file
+     */
+    public void put(final String archiveUrl, final RemoteZipEntry entry, final Collection<String> values)
+    {
+        final File entryFile = getEntryFile(archiveUrl, entry);
+        final File tempFile = new File(cacheFolder, String.format(TEMP_FILE_NAME, entryFile.getName(), Thread.currentThread().getId()));
+        FileUtils.createDirectories(cacheFolder);
+
+        // write to a temporary file first, so that an identical archive that is parsed concurrently cannot read partial values
+        try {
+            try
+                (Writer writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+                gson.toJson(values, VALUES_TYPE, writer);
+            }
+            Files.move(tempFile.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        } catch (final IOException e) {
+            LOGGER.warn(String.format(SAVE_ERROR, entryFile), e);
+            FileUtils.deleteFile(tempFile);
+        }
+    }
+
+
+    /**
+     * Removes all cached subject values that have not been used within the retention time.
+     */
+    public void removeUnusedEntries()
+    {
+        final File[] entryFiles = cacheFolder.listFiles();
+
+        if (entryFiles == null)
+            return;
+
+        final long oldestAllowedAccess = System.currentTimeMillis() - RETENTION_TIME;
+
+        for (final File entryFile : entryFiles) {
+            if (entryFile.lastModified() < oldestAllowedAccess)
+                FileUtils.deleteFile(entryFile);
+        }
+    }
+
+
+    /**
+     * Retrieves the file in which the subject values of a csv file are stored.
+     *
+     * @param archiveUrl the URL of the archive that contains the csv file
+     * @param entry the central directory entry of the csv file
+     *
+     * @return the file in which the subject values are stored
+     */
+    private File getEntryFile(final String archiveUrl, final RemoteZipEntry entry)
+    {
+        final String entryKey = String.format(ENTRY_KEY, archiveUrl, entry.getName(), entry.getUncompressedSize(), entry.getCrc());
+        return new File(cacheFolder, String.format(ENTRY_FILE_NAME, FishStatJFingerprinter.getHash(entryKey)));
+    }
+}
@@ -18,10 +18,22 @@ package de.gerdiproject.harvest.fishstatj.utils;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,66 +53,283 @@ import lombok.NoArgsConstructor;
 public class CsvUtils
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(CsvUtils.class);
-    private static final String CSV_GET_COLUMN_ERROR = "Could not retrieve column %d from %s!";
-    private static final String CSV_GET_ROW_ERROR = "Could not retrieve row %d from %s!";
+    private static final String CSV_PROJECT_COLUMNS_ERROR = "Could not retrieve columns %s from %s!";
 
 
     /**
-     * Retrieves a row from a specified csv file.
+     * Reads a csv file once and passes the values of the columns with the specified
+     * titles to a {@linkplain Consumer}, without buffering whole columns. The title
+     * row itself is skipped.
      *
-     * @param rowIndex the index of the row to be retrieved
      * @param csvFile the csv file that is to be read
      * @param charset the charset that is used to read the csv file
+     * @param columnTitles the titles of the columns that are to be projected
+     * @param columnShift an offset that is added to the indices of the titles,
+     *         for files in which the title row is shifted relative to the values
+     * @param valueConsumer a function that processes a single value of a projected column
      *
-     * @return the row with the specified index, or null if it could not be retrieved
+     * @return true if the file was read successfully
      */
-    public static List<String> getRow(final int rowIndex, final File csvFile, final Charset charset)
+    public static boolean projectColumns(final File csvFile, final Charset charset, final Collection<String> columnTitles, final int columnShift, final Consumer<String> valueConsumer)
+    {
+        return projectColumns(csvFile, charset, columnTitles, columnShift, valueConsumer, null);
+    }
+
+
+    /**
+     * Reads a csv file once and passes the values of the columns with the specified
+     * titles to a {@linkplain Consumer}, and all rows to a {@linkplain CsvRowAggregator}
+     * in the same pass. The title row itself is only passed to the aggregator
+     * when the file is started.
+     *
+     * @param csvFile the csv file that is to be read
+     * @param charset the charset that is used to read the csv file
+     * @param columnTitles the titles of the columns that are to be projected
+     * @param columnShift an offset that is added to the indices of the titles,
+     *         for files in which the title row is shifted relative to the values
+     * @param valueConsumer a function that processes a single value of a projected column
+     * @param aggregator an aggregator of all rows, or null if only the projected columns are of interest
+     *
+     * @return true if the file was read successfully
+     */
+    public static boolean projectColumns(final File csvFile, final Charset charset, final Collection<String> columnTitles, final int columnShift, final Consumer<String> valueConsumer, final CsvRowAggregator aggregator)
     {
         try
-            (BufferedReader fileReader = FileUtils.getReader(csvFile, charset);
-             CSVReader reader = new CSVReader(fileReader)) {
-            reader.skip(rowIndex);
-            return Arrays.asList(reader.readNext());
+            (BufferedReader fileReader = FileUtils.getReader(csvFile, charset)) {
+            projectColumns(fileReader, columnTitles, columnShift, valueConsumer, aggregator);
+            return true;
 
         } catch (final IOException e) {
-            LOGGER.error(String.format(CSV_GET_ROW_ERROR, rowIndex, csvFile.toString()), e);
-            return null;
+            LOGGER.error(String.format(CSV_PROJECT_COLUMNS_ERROR, columnTitles, csvFile.toString()), e);
+            return false;
         }
     }
 
 
     /**
-     * Retrieves a column from a specified csv file.
+     * Memory-maps a csv file and passes the values of the columns with the specified
+     * titles to a {@linkplain Consumer}, using a {@linkplain MappedCsvTokenizer} that
+     * only decodes the values of projected columns. The title row itself is skipped.
+     * Files that are too large to be mapped at once are read via OpenCSV instead.
      *
-     * @param columnIndex the index of the column to be retrieved
      * @param csvFile the csv file that is to be read
-     * @param charset the charset that is used to read the csv file
+     * @param charset an ASCII compatible charset that is used to read the csv file
+     * @param columnTitles the titles of the columns that are to be projected
+     * @param columnShift an offset that is added to the indices of the titles,
+     *         for files in which the title row is shifted relative to the values
+     * @param valueConsumer a function that processes a single value of a projected column
      *
-     * @return the column with the specified index, or null if it could not be retrieved
+     * @return true if the file was read successfully
      */
-    public static List<String> getColumn(final int columnIndex, final File csvFile, final Charset charset)
+    public static boolean projectMappedColumns(final File csvFile, final Charset charset, final Collection<String> columnTitles, final int columnShift, final Consumer<String> valueConsumer)
     {
-        final List<String> column = new LinkedList<>();
+        if (csvFile.length() > Integer.MAX_VALUE)
+            return projectColumns(csvFile, charset, columnTitles, columnShift, valueConsumer);
 
         try
-            (BufferedReader fileReader = FileUtils.getReader(csvFile, charset);
-             CSVReader reader = new CSVReader(fileReader)) {
+            (FileChannel channel = FileChannel.open(csvFile.toPath(), StandardOpenOption.READ)) {
+            final MappedByteBuffer mappedFile = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            final MappedCsvTokenizer tokenizer = new MappedCsvTokenizer(mappedFile, charset);
+            final List<String> titleRow = tokenizer.readRow();
 
-            while (true) {
-                final String [] row = reader.readNext();
+            if (titleRow == null)
+                return true;
+
+            final boolean[] projectedColumns = getProjectedColumns(titleRow, columnTitles, columnShift);
+
+            // skip the remaining rows if none of the columns exist
+            if (projectedColumns == null)
+                return true;
+
+            while (tokenizer.hasNextRow())
+                tokenizer.readRow(projectedColumns, valueConsumer);
+
+            return true;
+
+        } catch (final IOException e) {
+            LOGGER.error(String.format(CSV_PROJECT_COLUMNS_ERROR, columnTitles, csvFile.toString()), e);
+            return false;
+        }
+    }
 
-                if (row == null)
-                    break;
-                else
-                    column.add(row[columnIndex]);
-            }
 
-        } catch (IOException | ArrayIndexOutOfBoundsException e) {
-            LOGGER.error(String.format(CSV_GET_COLUMN_ERROR, columnIndex, csvFile.toString()), e);
+    /**
+     * Memory-maps a csv file, splits it into chunks of whole rows, and tokenizes the
+     * chunks in parallel, passing the values of the columns with the specified titles to
+     * one accumulator per chunk. Because each chunk has its own accumulator, they do
+     * not need to be thread-safe. The parallel tasks are executed by the
+     * {@linkplain java.util.concurrent.ForkJoinPool} that calls this method.
+     * Files that are too large to be mapped at once are read via OpenCSV instead.
+     *
+     * @param csvFile the csv file that is to be read
+     * @param charset an ASCII compatible charset that is used to read the csv file
+     * @param columnTitles the titles of the columns that are to be projected
+     * @param columnShift an offset that is added to the indices of the titles,
+     *         for files in which the title row is shifted relative to the values
+     * @param chunkCount the maximum number of chunks that are tokenized in parallel
+     * @param accumulatorFactory a function that creates the accumulator of a chunk
+     * @param accumulator a function that adds a single value of a projected column to an accumulator
+     * @param <A> the type of the accumulators
+     *
+     * @return the accumulators of all chunks, or null if the file could not be read
+     */
+    public static <A> List<A> projectMappedColumnsInChunks(final File csvFile, final Charset charset, final Collection<String> columnTitles, final int columnShift, final int chunkCount, final Supplier<A> accumulatorFactory, final BiConsumer<A, String> accumulator)
+    {
+        if (csvFile.length() > Integer.MAX_VALUE) {
+            final A fileAccumulator = accumulatorFactory.get();
+            final boolean isRead = projectColumns(csvFile, charset, columnTitles, columnShift, (final String value) -> accumulator.accept(fileAccumulator, value));
+            return isRead ? Collections.singletonList(fileAccumulator) : null;
+        }
+
+        try
+            (FileChannel channel = FileChannel.open(csvFile.toPath(), StandardOpenOption.READ)) {
+            final MappedByteBuffer mappedFile = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            final MappedCsvTokenizer titleTokenizer = new MappedCsvTokenizer(mappedFile, charset);
+            final List<String> titleRow = titleTokenizer.readRow();
+            final boolean[] projectedColumns = titleRow == null
+                                               ? null
+                                               : getProjectedColumns(titleRow, columnTitles, columnShift);
+
+            // skip the remaining rows if none of the columns exist
+            if (projectedColumns == null)
+                return new LinkedList<>();
+
+            final int[] chunkBoundaries = MappedCsvTokenizer.findRowBoundaries(mappedFile, titleTokenizer.getPosition(), chunkCount);
+
+            return IntStream.range(0, chunkBoundaries.length - 1).parallel().mapToObj((final int i) -> {
+                final ByteBuffer chunk = mappedFile.duplicate();
+                chunk.limit(chunkBoundaries[i + 1]);
+                chunk.position(chunkBoundaries[i]);
+
+                final A chunkAccumulator = accumulatorFactory.get();
+                final MappedCsvTokenizer chunkTokenizer = new MappedCsvTokenizer(chunk, charset);
+
+                while (chunkTokenizer.hasNextRow())
+                    chunkTokenizer.readRow(projectedColumns, (final String value) -> accumulator.accept(chunkAccumulator, value));
+
+                return chunkAccumulator;
+            }).collect(Collectors.toList());
+
+        } catch (final IOException e) {
+            LOGGER.error(String.format(CSV_PROJECT_COLUMNS_ERROR, columnTitles, csvFile.toString()), e);
             return null;
         }
+    }
+
+
+    /**
+     * Reads a csv stream once and passes the values of the columns with the specified
+     * titles to a {@linkplain Consumer}, without buffering whole columns. The title
+     * row itself is skipped. The reader is not closed by this method, allowing it to
+     * be used for reading single entries of zip archives.
+     *
+     * @param reader a reader of csv formatted text
+     * @param columnTitles the titles of the columns that are to be projected
+     * @param columnShift an offset that is added to the indices of the titles,
+     *         for files in which the title row is shifted relative to the values
+     * @param valueConsumer a function that processes a single value of a projected column
+     *
+     * @throws IOException thrown when the reader cannot be read
+     */
+    public static void projectColumns(final Reader reader, final Collection<String> columnTitles, final int columnShift, final Consumer<String> valueConsumer) throws IOException
+    {
+        projectColumns(reader, columnTitles, columnShift, valueConsumer, null);
+    }
+
+
+    /**
+     * Reads a csv stream once and passes the values of the columns with the specified
+     * titles to a {@linkplain Consumer}, and all rows to a {@linkplain CsvRowAggregator}
+     * in the same pass. The title row itself is only passed to the aggregator when
+     * the stream is started. The reader is not closed by this method.
+     *
+     * @param reader a reader of csv formatted text
+     * @param columnTitles the titles of the columns that are to be projected
+     * @param columnShift an offset that is added to the indices of the titles,
+     *         for files in which the title row is shifted relative to the values
+     * @param valueConsumer a function that processes a single value of a projected column
+     * @param aggregator an aggregator of all rows, or null if only the projected columns are of interest
+     *
+     * @throws IOException thrown when the reader cannot be read
+     */
+    public static void projectColumns(final Reader reader, final Collection<String> columnTitles, final int columnShift, final Consumer<String> valueConsumer, final CsvRowAggregator aggregator) throws IOException
+    {
+        @SuppressWarnings("resource") // closing the CSVReader would close the underlying stream
+        final CSVReader csvReader = new CSVReader(reader);
+        final String[] titleRow = csvReader.readNext();
+
+        if (titleRow == null)
+            return;
+
+        final int[] columnIndices = getColumnIndices(titleRow, columnTitles, columnShift);
+
+        // skip the remaining rows if none of the columns exist and nothing is aggregated
+        if (columnIndices.length == 0 && aggregator == null)
+            return;
+
+        if (aggregator != null)
+            aggregator.startFile(titleRow, columnShift);
+
+        while (true) {
+            final String [] row = csvReader.readNext();
+
+            if (row == null)
+                break;
+
+            if (aggregator != null)
+                aggregator.acceptRow(row);
+
+            for (final int columnIndex : columnIndices) {
+                if (columnIndex < row.length)
+                    valueConsumer.accept(row[columnIndex]);
+            }
+        }
+    }
+
+
+    /**
+     * Marks the columns of a title row that are to be projected.
+     *
+     * @param titleRow the first row of a csv file
+     * @param columnTitles the titles of the columns that are to be projected
+     * @param columnShift an offset that is added to each found index
+     *
+     * @return an array that is true at the shifted indices of all titles that are
+     *          part of the title row, or null if none of them are
+     */
+    private static boolean[] getProjectedColumns(final List<String> titleRow, final Collection<String> columnTitles, final int columnShift)
+    {
+        final int[] columnIndices = getColumnIndices(titleRow.toArray(new String[titleRow.size()]), columnTitles, columnShift);
+
+        if (columnIndices.length == 0)
+            return null;
 
-        return column;
+        final boolean[] projectedColumns = new boolean[Arrays.stream(columnIndices).max().getAsInt() + 1];
+
+        for (final int columnIndex : columnIndices)
+            projectedColumns[columnIndex] = true;
+
+        return projectedColumns;
+    }
+
+
+    /**
+     * Looks up the indices of columns in a title row.
+     *
+     * @param titleRow the first row of a csv file
+     * @param columnTitles the titles of the columns that are to be looked up
+     * @param columnShift an offset that is added to each found index
+     *
+     * @return the shifted indices of all titles that are part of the title row
+     */
+    private static int[] getColumnIndices(final String[] titleRow, final Collection<String> columnTitles, final int columnShift)
+    {
+        final List<String> titleList = Arrays.asList(titleRow);
 
+        return columnTitles.stream()
+               .mapToInt(titleList::indexOf)
+               .filter((final int titleIndex) -> titleIndex != -1)
+               .map((final int titleIndex) -> titleIndex + columnShift)
+               .toArray();
     }
 }
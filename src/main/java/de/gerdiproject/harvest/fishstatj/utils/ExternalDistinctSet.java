@@ -0,0 +1,251 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+import de.gerdiproject.harvest.utils.file.FileUtils;
+
+/**
+ * This class determines the exact distinct values of a stream of strings within a
+ * memory budget. Values are collected in a sorted set until their estimated size
+ * exceeds the budget. The set is then written to disk as a sorted run and cleared.
+ * Finally, all runs are merged, and each distinct value is passed on exactly once,
+ * in ascending order.
+ * <br>
+ * Run files are removed when this class is closed. This class is not thread-safe.
+ *
+ * @author Robin Weiss
+ */
+public class ExternalDistinctSet implements Closeable
+{
+    // estimated heap usage of a string in a tree set, excluding its characters
+    private static final long ENTRY_OVERHEAD = 96;
+    private static final String RUN_FILE_PREFIX = "values";
+    private static final String RUN_FILE_SUFFIX = ".run";
+    private static final int BUFFER_SIZE = 65536;
+
+    private final File spillFolder;
+    private final long memoryBudget;
+    private final TreeSet<String> values = new TreeSet<>();
+    private final List<File> runFiles = new ArrayList<>();
+    private long usedMemory;
+
+
+    /**
+     * Constructor that sets the memory budget and the folder for sorted runs.
+     *
+     * @param spillFolder the folder to which sorted runs are written
+     * @param memoryBudget the estimated number of bytes that the values may occupy in memory
+     */
+    public ExternalDistinctSet(final File spillFolder, final long memoryBudget)
+    {
+        this.spillFolder = spillFolder;
+        this.memoryBudget = memoryBudget;
+    }
+
+
+    /**
+     * Adds a value, and writes all values to a sorted run if the memory budget is exceeded.
+     *
+     * @param value the value that is to be added
+     *
+     * @throws UncheckedIOException thrown when a sorted run cannot be written
+     */
+    public void add(final String value)
+    {
+        if (!values.add(value))
+            return;
+
+        usedMemory += ENTRY_OVERHEAD + 2L * value.length();
+
+        if (usedMemory > memoryBudget) {
+            try {
+                spill();
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+
+    /**
+     * Merges all sorted runs with the values in memory, and passes each distinct
+     * value to a {@linkplain Consumer} in ascending order.
+     *
+     * @param valueConsumer a function that processes a single distinct value
+     *
+     * @throws IOException thrown when a sorted run cannot be read or written
+     */
+    public void forEachDistinct(final Consumer<String> valueConsumer) throws IOException
+    {
+        if (runFiles.isEmpty()) {
+            values.forEach(valueConsumer);
+            return;
+        }
+
+        spill();
+
+        final PriorityQueue<RunReader> readers = new PriorityQueue<>(runFiles.size());
+
+        try {
+            for (final File runFile : runFiles) {
+                final RunReader reader = new RunReader(runFile);
+
+                if (reader.next())
+                    readers.add(reader);
+                else
+                    reader.close();
+            }
+
+            String previousValue = null;
+
+            while (!readers.isEmpty()) {
+                final RunReader reader = readers.poll();
+
+                // runs are distinct, but may overlap each other
+                if (!reader.currentValue.equals(previousValue)) {
+                    previousValue = reader.currentValue;
+                    valueConsumer.accept(previousValue);
+                }
+
+                if (reader.next())
+                    readers.add(reader);
+                else
+                    reader.close();
+            }
+        } finally {
+            for (final RunReader reader : readers)
+                reader.close();
+        }
+    }
+
+
+    @Override
+    public void close()
+    {
+        values.clear();
+        usedMemory = 0;
+
+        for (final File runFile : runFiles)
+            FileUtils.deleteFile(runFile);
+
+        runFiles.clear();
+    }
+
+
+    /**
+     * Writes the values in memory to a new sorted run, and clears them.
+     *
+     * @throws IOException thrown when the run cannot be written
+     */
+    private void spill() throws IOException
+    {
+        FileUtils.createDirectories(spillFolder);
+        final File runFile = Files.createTempFile(spillFolder.toPath(), RUN_FILE_PREFIX, RUN_FILE_SUFFIX).toFile();
+        runFiles.add(runFile);
+
+        try
+            (DataOutputStream runStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(runFile.toPath()), BUFFER_SIZE))) {
+            runStream.writeInt(values.size());
+
+            for (final String value : values) {
+                final byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+                runStream.writeInt(valueBytes.length);
+                runStream.write(valueBytes);
+            }
+        }
+
+        values.clear();
+        usedMemory = 0;
+    }
+
+
+    /**
+     * This class reads the values of a sorted run one by one.
+     *
+     * @author Robin Weiss
+     */
+    private static class RunReader implements Comparable<RunReader>, Closeable
+    {
+        private final DataInputStream runStream;
+        private int remainingValues;
+        private String currentValue;
+
+
+        /**
+         * Constructor that opens a sorted run.
+         *
+         * @param runFile the file of the sorted run
+         *
+         * @throws IOException thrown when the run cannot be opened
+         */
+        RunReader(final File runFile) throws IOException
+        {
+            this.runStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(runFile.toPath()), BUFFER_SIZE));
+            this.remainingValues = runStream.readInt();
+        }
+
+
+        /**
+         * Reads the next value of the run.
+         *
+         * @return false if there are no more values
+         *
+         * @throws IOException thrown when the run cannot be read
+         */
+        boolean next() throws IOException
+        {
+            if (remainingValues == 0)
+                return false;
+
+            final byte[] valueBytes = new byte[runStream.readInt()];
+            runStream.readFully(valueBytes);
+            currentValue = new String(valueBytes, StandardCharsets.UTF_8);
+            remainingValues--;
+            return true;
+        }
+
+
+        @Override
+        public int compareTo(final RunReader other)
+        {
+            return currentValue.compareTo(other.currentValue);
+        }
+
+
+        @Override
+        public void close() throws IOException
+        {
+            runStream.close();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import de.gerdiproject.harvest.utils.file.FileUtils;
+
+/**
+ * This class persists the fingerprints of harvested FishStatJ collections,
+ * allowing unchanged collections to be skipped in subsequent harvests.
+ * A collection is only marked as harvested after it was extracted completely
+ * and its document was passed on to the loader, so that collections which fail
+ * or are aborted are harvested again next time.
+ *
+ * @author Robin Weiss
+ */
+public class FishStatJCollectionStates
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(FishStatJCollectionStates.class);
+    private static final String LOAD_ERROR = "Could not load collection states from: %s";
+    private static final String SAVE_ERROR = "Could not save collection states to: %s";
+    private static final Type STATE_MAP_TYPE = new TypeToken<Map<String, String>>() {}.getType();
+
+    private final Gson gson = new Gson();
+    private final Map<String, String> fingerprints = new ConcurrentHashMap<>();
+    private final Map<String, String> extractedFingerprints = new ConcurrentHashMap<>();
+    private volatile File stateFile;
+    private volatile boolean hasChanges;
+
+
+    /**
+     * Loads previously saved collection states, discarding the states of a previous harvest.
+     *
+     * @param stateFile the file in which the collection states are stored
+     */
+    public synchronized void load(final File stateFile)
+    {
+        clear();
+        this.stateFile = stateFile;
+        this.fingerprints.putAll(loadFingerprints());
+    }
+
+
+    /**
+     * Checks if collection states were loaded, which is only the case for incremental harvests.
+     *
+     * @return true if collection states were loaded
+     */
+    public boolean isLoaded()
+    {
+        return stateFile != null;
+    }
+
+
+    /**
+     * Checks if a collection was already harvested with the same fingerprint.
+     *
+     * @param collectionUrl the URL of the collection
+     * @param fingerprint the current fingerprint of the collection, or null if it is unknown
+     *
+     * @return true if the collection has not changed since it was last harvested
+     */
+    public boolean isUnchanged(final String collectionUrl, final String fingerprint)
+    {
+        return fingerprint != null && fingerprint.equals(fingerprints.get(collectionUrl));
+    }
+
+
+    /**
+     * Marks a collection as completely extracted. It is not considered to
+     * be harvested until {@linkplain #setHarvested(String)} is called.
+     *
+     * @param collectionUrl the URL of the collection
+     * @param fingerprint the fingerprint of the extracted collection, or null if it is unknown
+     */
+    public void setExtracted(final String collectionUrl, final String fingerprint)
+    {
+        if (isLoaded() && fingerprint != null)
+            extractedFingerprints.put(collectionUrl, fingerprint);
+    }
+
+
+    /**
+     * Marks a previously extracted collection as harvested.
+     *
+     * @param collectionUrl the URL of the collection
+     */
+    public void setHarvested(final String collectionUrl)
+    {
+        final String fingerprint = extractedFingerprints.remove(collectionUrl);
+
+        if (fingerprint != null) {
+            fingerprints.put(collectionUrl, fingerprint);
+            hasChanges = true;
+        }
+    }
+
+
+    /**
+     * Writes the collection states to disk, if collections were harvested since
+     * they were loaded. Collections that were extracted, but not harvested are omitted.
+     */
+    public synchronized void save()
+    {
+        if (!hasChanges || stateFile == null)
+            return;
+
+        FileUtils.createDirectories(stateFile.getParentFile());
+
+        try
+            (Writer writer = Files.newBufferedWriter(stateFile.toPath(), StandardCharsets.UTF_8)) {
+            gson.toJson(new HashMap<>(fingerprints), STATE_MAP_TYPE, writer);
+            hasChanges = false;
+
+        } catch (final IOException e) {
+            LOGGER.error(String.format(SAVE_ERROR, stateFile), e);
+        }
+    }
+
+
+    /**
+     * Discards all collection states without saving them.
+     */
+    public synchronized void clear()
+    {
+        fingerprints.clear();
+        extractedFingerprints.clear();
+        stateFile = null;
+        hasChanges = false;
+    }
+
+
+    /**
+     * Reads the collection fingerprints from the state file.
+     *
+     * @return a map of collection URLs to fingerprints
+     */
+    private Map<String, String> loadFingerprints()
+    {
+        if (stateFile.exists()) {
+            try
+                (Reader reader = Files.newBufferedReader(stateFile.toPath(), StandardCharsets.UTF_8)) {
+                final Map<String, String> loadedFingerprints = gson.fromJson(reader, STATE_MAP_TYPE);
+
+                if (loadedFingerprints != null)
+                    return loadedFingerprints;
+
+            } catch (IOException | JsonParseException e) {
+                LOGGER.error(String.format(LOAD_ERROR, stateFile), e);
+            }
+        }
+
+        return new HashMap<>();
+    }
+}
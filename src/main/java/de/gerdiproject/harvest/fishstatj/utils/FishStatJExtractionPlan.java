@@ -0,0 +1,318 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.NodeVisitor;
+
+import com.google.gson.Gson;
+
+import de.gerdiproject.harvest.etls.FishStatJLanguageVO;
+import de.gerdiproject.harvest.etls.extractors.FishStatJLinkVO;
+import de.gerdiproject.harvest.etls.extractors.FishStatJPageVO;
+import de.gerdiproject.harvest.etls.extractors.FishStatJSectionVO;
+import de.gerdiproject.harvest.fishstatj.constants.FishStatJSourceConstants;
+
+/**
+ * This class reduces a FishStatJ collection page to a compact {@linkplain FishStatJPageVO}
+ * in a single traversal of the page. It replaces separate selections of titles,
+ * sections, sidebar links, and the zip link, each of which would traverse the whole
+ * page. The language dependent sidebar titles are prepared once per {@linkplain FishStatJLanguageVO}.
+ *
+ * @author Robin Weiss
+ */
+public class FishStatJExtractionPlan
+{
+    private static final String ZIP_FILE_SUFFIX = ".zip";
+
+    private final Gson gson = new Gson();
+    private final String[] sidebarTitles;
+
+
+    /**
+     * Constructor that prepares the extraction of language dependent elements.
+     *
+     * @param languageVo the language of the collection pages
+     */
+    public FishStatJExtractionPlan(final FishStatJLanguageVO languageVo)
+    {
+        final List<String> titles = languageVo.getSidebarTitles();
+        this.sidebarTitles = new String[titles.size()];
+
+        // link texts are compared case-insensitively, like the ":contains" selector
+        for (int i = 0; i < sidebarTitles.length; i++)
+            sidebarTitles[i] = titles.get(i).toLowerCase(Locale.ENGLISH);
+    }
+
+
+    /**
+     * Traverses a collection page once and reduces it, together with its contacts
+     * page, to a value object that does not retain any HTML elements.
+     *
+     * @param collectionPage the main web page of the FishStatJ collection
+     * @param contactsPage the web page with contact information of the collection, or null
+     *
+     * @return a value object containing the content of the pages
+     */
+    public FishStatJPageVO scan(final Document collectionPage, final Document contactsPage)
+    {
+        return addContacts(scan(collectionPage), contactsPage);
+    }
+
+
+    /**
+     * Traverses a collection page once and reduces it to a value object that does
+     * not retain any HTML elements. The contacts can be added later, allowing the
+     * contacts page to be retrieved while the links of the collection page are followed.
+     *
+     * @param collectionPage the main web page of the FishStatJ collection
+     *
+     * @return a value object containing the content of the collection page, without contacts
+     */
+    public FishStatJPageVO scan(final Document collectionPage)
+    {
+        final PageVisitor visitor = new PageVisitor();
+        collectionPage.traverse(visitor);
+
+        // pair up section titles with their succeeding section bodies
+        final Map<String, FishStatJSectionVO> sections = new HashMap<>();
+        final int sectionElementCount = visitor.sectionElements.size() & ~1;
+
+        for (int i = 0; i < sectionElementCount; i += 2) {
+            final Element sectionBody = visitor.sectionElements.get(i + 1);
+            sections.put(
+                visitor.sectionElements.get(i).text().trim(),
+                new FishStatJSectionVO(sectionBody.text(), Collections.unmodifiableList(visitor.sectionLinks.get(i + 1))));
+        }
+
+        // keep the order of the sidebar titles
+        final List<FishStatJLinkVO> sidebarLinks = new ArrayList<>(sidebarTitles.length);
+
+        for (final FishStatJLinkVO sidebarLink : visitor.sidebarLinks) {
+            if (sidebarLink != null)
+                sidebarLinks.add(sidebarLink);
+        }
+
+        final String title = visitor.mainTitle == null ? null : visitor.mainTitle.text();
+        final String subTitle = visitor.subTitle == null ? null : visitor.subTitle.text();
+
+        return createPage(
+                   title,
+                   subTitle,
+                   Collections.unmodifiableMap(sections),
+                   Collections.unmodifiableList(sidebarLinks),
+                   Collections.emptyList(),
+                   visitor.zipLink);
+    }
+
+
+    /**
+     * Adds the contacts of a contacts page to the content of a collection page.
+     *
+     * @param page the content of a collection page without contacts
+     * @param contactsPage the web page with contact information of the collection, or null
+     *
+     * @return a value object containing the content of both pages
+     */
+    public FishStatJPageVO addContacts(final FishStatJPageVO page, final Document contactsPage)
+    {
+        return createPage(
+                   page.getTitle(),
+                   page.getSubTitle(),
+                   page.getSections(),
+                   page.getSidebarLinks(),
+                   getContactNames(contactsPage),
+                   page.getZipLink());
+    }
+
+
+    /**
+     * Creates a value object of the content of a collection page, and computes
+     * a hash of the content.
+     *
+     * @param title the main title of the collection
+     * @param subTitle the category of the collection
+     * @param sections the bodies of the sections of the page, mapped by their titles
+     * @param sidebarLinks the sidebar links, in the order of the sidebar titles
+     * @param contactNames the names of all contacts that have an e-mail address
+     * @param zipLink the link to the archive of the collection, or null
+     *
+     * @return a value object containing the content of the page
+     */
+    private FishStatJPageVO createPage(final String title, final String subTitle, final Map<String, FishStatJSectionVO> sections, final List<FishStatJLinkVO> sidebarLinks, final List<String> contactNames, final FishStatJLinkVO zipLink)
+    {
+        final String contentHash = FishStatJFingerprinter.getHash(gson.toJson(
+                                                                      Arrays.asList(title, subTitle, sections, sidebarLinks, contactNames, zipLink)));
+
+        return new FishStatJPageVO(
+                   title,
+                   subTitle,
+                   sections,
+                   sidebarLinks,
+                   contactNames,
+                   zipLink,
+                   contentHash);
+    }
+
+
+    /**
+     * Retrieves the names of all contacts that have an e-mail address.
+     * Each name is listed once per e-mail link that follows it.
+     *
+     * @param contactsPage the web page with contact information of the collection, or null
+     *
+     * @return a list of contact names
+     */
+    private static List<String> getContactNames(final Document contactsPage)
+    {
+        final List<String> contactNames = new ArrayList<>();
+
+        if (contactsPage != null) {
+            String fullName = null;
+
+            for (final Element item : contactsPage.select(FishStatJSourceConstants.CONTACTS_AND_MAILS_SELECTION)) {
+                // if the element is a div, it can be the name of the upcoming mailto link
+                if (item.tagName().equals(FishStatJSourceConstants.DIV))
+                    fullName = item.text().trim();
+
+                else if (fullName != null)
+                    contactNames.add(fullName);
+            }
+        }
+
+        return Collections.unmodifiableList(contactNames);
+    }
+
+
+    /**
+     * Checks if an element is the title or body of a collection section.
+     *
+     * @param element the element that is to be checked
+     *
+     * @return true if the element is a direct child of the sections container
+     *          and either a section title or a section body
+     */
+    private static boolean isSectionElement(final Element element)
+    {
+        final Element parent = element.parent();
+
+        if (parent == null || !parent.id().equals(FishStatJSourceConstants.SECTIONS_CONTAINER_ID))
+            return false;
+
+        return element.attr(FishStatJSourceConstants.CLASS_ATTRIBUTE).trim().equalsIgnoreCase(FishStatJSourceConstants.SECTION_TITLE_CLASS)
+               || element.tagName().equals(FishStatJSourceConstants.DIV) && !element.id().equals(FishStatJSourceConstants.PAGE_HEADER_ID);
+    }
+
+
+    /**
+     * This {@linkplain NodeVisitor} collects the content of a collection page
+     * in document order.
+     *
+     * @author Robin Weiss
+     */
+    private class PageVisitor implements NodeVisitor
+    {
+        private final List<Element> sectionElements = new ArrayList<>();
+        private final List<List<FishStatJLinkVO>> sectionLinks = new ArrayList<>();
+        private final FishStatJLinkVO[] sidebarLinks = new FishStatJLinkVO[sidebarTitles.length];
+        private Element mainTitle;
+        private Element subTitle;
+        private FishStatJLinkVO zipLink;
+
+        private Element currentSection;
+        private String currentCaption;
+
+
+        @Override
+        public void head(final Node node, final int depth)
+        {
+            if (!(node instanceof Element))
+                return;
+
+            final Element element = (Element) node;
+            final String id = element.id();
+
+            if (mainTitle == null && id.equals(FishStatJSourceConstants.MAIN_TITLE_ID))
+                mainTitle = element;
+
+            else if (subTitle == null && id.equals(FishStatJSourceConstants.SUB_TITLE_ID))
+                subTitle = element;
+
+            if (currentSection == null && isSectionElement(element)) {
+                currentSection = element;
+                currentCaption = "";
+                sectionElements.add(element);
+                sectionLinks.add(new ArrayList<>());
+
+            } else if (currentSection != null
+                       && element.tagName().equals(FishStatJSourceConstants.SPAN)
+                       && element.hasClass(FishStatJSourceConstants.CAPTION_CLASS))
+                currentCaption = element.text().trim();
+
+            if (element.tagName().equals(FishStatJSourceConstants.LINK_TAG))
+                visitLink(element);
+        }
+
+
+        @Override
+        public void tail(final Node node, final int depth)
+        {
+            if (node == currentSection)
+                currentSection = null;
+        }
+
+
+        /**
+         * Adds a link to the current section, and checks if it is the zip link or
+         * the first link that contains one of the sidebar titles.
+         *
+         * @param link an a-tag of the collection page
+         */
+        private void visitLink(final Element link)
+        {
+            final String url = link.hasAttr(FishStatJSourceConstants.HREF_ATTRIBUTE)
+                               ? link.attr(FishStatJSourceConstants.HREF_ATTRIBUTE)
+                               : null;
+            final String linkText = link.text();
+            final FishStatJLinkVO linkVo = new FishStatJLinkVO(url, linkText, currentCaption);
+
+            if (currentSection != null)
+                sectionLinks.get(sectionLinks.size() - 1).add(linkVo);
+
+            // URLs are compared case-insensitively, like the "$=" selector
+            if (zipLink == null && url != null && url.toLowerCase(Locale.ENGLISH).endsWith(ZIP_FILE_SUFFIX))
+                zipLink = linkVo;
+
+            final String lowerCaseLinkText = linkText.toLowerCase(Locale.ENGLISH);
+
+            for (int i = 0; i < sidebarTitles.length; i++) {
+                if (sidebarLinks[i] == null && lowerCaseLinkText.contains(sidebarTitles[i]))
+                    sidebarLinks[i] = linkVo;
+            }
+        }
+    }
+}
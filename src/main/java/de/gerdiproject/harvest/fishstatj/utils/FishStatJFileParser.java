@@ -16,21 +16,36 @@
  */
 package de.gerdiproject.harvest.fishstatj.utils;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
-import com.google.gson.Gson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import de.gerdiproject.harvest.etls.extractors.FishStatJArchiveVO;
 import de.gerdiproject.harvest.fishstatj.constants.FishStatJDataCiteConstants;
 import de.gerdiproject.harvest.fishstatj.constants.FishStatJFileConstants;
 import de.gerdiproject.harvest.fishstatj.constants.FishStatJLanguageConstants;
 import de.gerdiproject.harvest.fishstatj.constants.FishStatJSourceConstants;
-import de.gerdiproject.harvest.utils.data.DiskIO;
+import de.gerdiproject.harvest.utils.file.FileUtils;
 import de.gerdiproject.json.datacite.Date;
 import de.gerdiproject.json.datacite.Rights;
 import de.gerdiproject.json.datacite.Subject;
@@ -44,42 +59,198 @@ import de.gerdiproject.json.datacite.enums.DateType;
  */
 public class FishStatJFileParser
 {
-    private final DiskIO diskReader = new DiskIO(new Gson(), StandardCharsets.UTF_8);
+    private static final Logger LOGGER = LoggerFactory.getLogger(FishStatJFileParser.class);
+
+    private boolean isMappingCsvFiles;
+    private int csvParsingThreads = 1;
+    private SubjectDictionary subjectDictionary;
+    private int maxSubjects;
+    private long subjectMemoryBudget;
+    private File spillFolder;
+    private boolean isComputingCsvStatistics;
+
+
+    /**
+     * Changes how csv files on disk are parsed.
+     *
+     * @param isMappingCsvFiles if true, csv files are memory-mapped and tokenized
+     *          at byte level, otherwise they are parsed via OpenCSV
+     */
+    public void setMappingCsvFiles(final boolean isMappingCsvFiles)
+    {
+        this.isMappingCsvFiles = isMappingCsvFiles;
+    }
+
+
+    /**
+     * Changes the number of threads that parse csv files on disk in parallel.
+     *
+     * @param csvParsingThreads the number of parsing threads, or 1 if csv files are
+     *          to be parsed sequentially by the calling thread
+     */
+    public void setCsvParsingThreads(final int csvParsingThreads)
+    {
+        this.csvParsingThreads = csvParsingThreads;
+    }
+
+
+    /**
+     * Changes the dictionary that is used for interning parsed {@linkplain Subject}s.
+     *
+     * @param subjectDictionary a dictionary that is shared by all collections of a harvest,
+     *          or null if each parsed subject is to be a new instance
+     */
+    public void setSubjectDictionary(final SubjectDictionary subjectDictionary)
+    {
+        this.subjectDictionary = subjectDictionary;
+    }
+
+
+    /**
+     * Changes the maximum number of csv subjects per collection. If the number is
+     * limited, only the most frequent subjects are retained, and csv files are always
+     * parsed sequentially.
+     *
+     * @param maxSubjects the maximum number of csv subjects per collection,
+     *          or 0 if all distinct subjects are to be retained
+     */
+    public void setMaxSubjects(final int maxSubjects)
+    {
+        this.maxSubjects = maxSubjects;
+    }
+
+
+    /**
+     * Changes how much memory may be occupied by the distinct csv subjects of a
+     * collection while they are determined. If the budget is exceeded, the subjects
+     * are sorted and written to disk, and csv files are always parsed sequentially.
+     *
+     * @param subjectMemoryBudget the estimated number of bytes that distinct subject values
+     *          may occupy, or 0 if they are collected in memory
+     * @param spillFolder the folder to which sorted subject values are written
+     */
+    public void setSubjectMemoryBudget(final long subjectMemoryBudget, final File spillFolder)
+    {
+        this.subjectMemoryBudget = subjectMemoryBudget;
+        this.spillFolder = spillFolder;
+    }
+
+
+    /**
+     * Changes whether statistics of the csv files of collection archives are
+     * computed while the archives are parsed via {@linkplain #parseFile(String, InputStream, FishStatJArchiveVO)}.
+     *
+     * @param isComputingCsvStatistics if true, each created archive value object
+     *          aggregates {@linkplain CsvColumnStatistics} of its csv files
+     */
+    public void setComputingCsvStatistics(final boolean isComputingCsvStatistics)
+    {
+        this.isComputingCsvStatistics = isComputingCsvStatistics;
+    }
+
+
+    /**
+     * Creates an empty value object to which the metadata of the files of a
+     * collection archive can be added one by one.
+     *
+     * @return an empty value object
+     */
+    public FishStatJArchiveVO createArchive()
+    {
+        return new FishStatJArchiveVO(
+                   new LinkedList<>(),
+                   new LinkedList<>(),
+                   createSubjectCollection(),
+                   isComputingCsvStatistics ? new CsvColumnStatistics() : null);
+    }
 
 
     /**
      * Reads the Notes.txt from the downloaded collection archive and extracts
-     * copyright information.
+     * copyright and date information.
      *
      * @param unzippedFolder the folder containing unzipped collection archive files
      *
-     * @return a {@linkplain List} of {@linkplain Rights}
+     * @return a value object containing the {@linkplain Rights} and {@linkplain AbstractDate}s
+     *          of the collection
      */
-    public List<Rights> getRights(final File unzippedFolder)
+    public FishStatJArchiveVO getNotes(final File unzippedFolder)
     {
-        final List<Rights> rightsList = new LinkedList<>();
-
-        // prepare file reader
+        final FishStatJArchiveVO notes = new FishStatJArchiveVO();
         final File readmeFile = new File(unzippedFolder, FishStatJFileConstants.README_FILE_NAME);
 
         if (readmeFile.exists()) {
-            // read file
-            final String text = new DiskIO(new Gson(), StandardCharsets.UTF_8).getString(readmeFile);
-            final int subStringFrom = text.indexOf(FishStatJFileConstants.RIGHTS_TEXT_EXCLUDED_PREFIX);
-
-            // check if the file contains the required text area
-            if (subStringFrom != -1) {
-                final int subStringTo = text.indexOf(FishStatJFileConstants.RIGHTS_TEXT_EXCLUDED_SUFFIX, subStringFrom);
-                final String rightsText = text.substring(
-                                              subStringFrom + FishStatJFileConstants.RIGHTS_TEXT_EXCLUDED_PREFIX.length(),
-                                              subStringTo);
-
-                // this file is always in English
-                rightsList.add(new Rights(rightsText, FishStatJLanguageConstants.ENGLISH_API_NAME));
+            try
+                (BufferedReader notesReader = FileUtils.getReader(readmeFile, StandardCharsets.UTF_8)) {
+                parseNotes(notesReader, notes);
+
+            } catch (final IOException e) {
+                LOGGER.error(String.format(FishStatJFileConstants.NOTES_PARSING_ERROR, readmeFile), e);
             }
         }
 
-        return rightsList;
+        return notes;
+    }
+
+
+    /**
+     * Reads a Notes.txt line by line in a single pass and adds the copyright and
+     * date information to a value object. Only the lines of the copyright and
+     * version history sections are retained, all other lines are skipped as soon
+     * as it is clear that they do not start one of these sections.
+     * The reader is not closed by this method.
+     *
+     * @param notesReader a reader of a Notes.txt file
+     * @param notes the value object to which the parsed metadata is added
+     *
+     * @throws IOException thrown when the reader cannot be read
+     */
+    public void parseNotes(final Reader notesReader, final FishStatJArchiveVO notes) throws IOException
+    {
+        final StringBuilder line = new StringBuilder();
+        StringBuilder rightsText = null;
+        boolean isReadingDates = false;
+
+        while (readLine(notesReader, line)) {
+            if (rightsText != null) {
+                final int suffixIndex = line.indexOf(FishStatJFileConstants.RIGHTS_TEXT_EXCLUDED_SUFFIX);
+
+                // skip the empty line below the header
+                if (rightsText.length() == 0 && line.length() == 0)
+                    continue;
+
+                if (suffixIndex == -1)
+                    rightsText.append(line).append('\n');
+                else {
+                    rightsText.append(line, 0, suffixIndex);
+
+                    // this file is always in English
+                    notes.getRights().add(new Rights(rightsText.toString(), FishStatJLanguageConstants.ENGLISH_API_NAME));
+                    rightsText = null;
+                }
+            } else if (isReadingDates) {
+                final int suffixIndex = line.indexOf(FishStatJFileConstants.DATES_TEXT_EXCLUDED_SUFFIX);
+
+                if (suffixIndex != -1) {
+                    line.setLength(suffixIndex);
+                    isReadingDates = false;
+                }
+
+                addDate(line.toString(), notes.getDates());
+
+            } else if (FishStatJFileConstants.RIGHTS_HEADER.contentEquals(line))
+                rightsText = new StringBuilder();
+
+            else {
+                final int prefixIndex = line.indexOf(FishStatJFileConstants.DATES_TEXT_EXCLUDED_PREFIX);
+
+                // the first date may be on the same line as the section title
+                if (prefixIndex != -1) {
+                    isReadingDates = true;
+                    addDate(line.substring(prefixIndex + FishStatJFileConstants.DATES_TEXT_EXCLUDED_PREFIX.length()), notes.getDates());
+                }
+            }
+        }
     }
 
 
@@ -89,39 +260,64 @@ public class FishStatJFileParser
      *
      * @param unzippedFolder the folder containing unzipped collection archive files
      *
-     * @return a {@linkplain List} of {@linkplain Subject}s
+     * @return a {@linkplain Collection} of {@linkplain Subject}s
      */
     public Collection<Subject> getSubjects(final File unzippedFolder)
     {
-        final Set<Subject> subjectSet = new HashSet<Subject>();
+        return getSubjects(unzippedFolder, null);
+    }
 
-        final File[] csvFiles = unzippedFolder.listFiles(FishStatJFileConstants.CSV_FILE_FILTER);
 
-        if (csvFiles != null) {
-            final int len = csvFiles.length;
+    /**
+     * Reads csv files from the downloaded collection archive and extracts
+     * metadata from them, while passing all csv rows to a {@linkplain CsvRowAggregator}
+     * in the same pass. If there is an aggregator, the files are read sequentially via OpenCSV.
+     *
+     * @param unzippedFolder the folder containing unzipped collection archive files
+     * @param aggregator an aggregator of all csv rows, or null
+     *
+     * @return a {@linkplain Collection} of {@linkplain Subject}s
+     */
+    public Collection<Subject> getSubjects(final File unzippedFolder, final CsvRowAggregator aggregator)
+    {
+        // limited, spilled, or aggregated subjects are determined sequentially, and are distinct already
+        if (maxSubjects > 0 || subjectMemoryBudget > 0 || aggregator != null) {
+            final List<Subject> subjectList = new LinkedList<>();
+            forEachSubject(unzippedFolder, (final String value) -> subjectList.add(createSubject(value)), aggregator);
+            return subjectList;
+        }
+
+        final Set<Subject> subjectSet = new HashSet<>();
 
-            for (int i = 0; i < len; i++) {
-                // retrieve title row
-                final List<String> titleRow = CsvUtils.getRow(0, csvFiles[i], StandardCharsets.UTF_8);
+        final File[] csvFiles = unzippedFolder.listFiles(FishStatJFileConstants.CSV_FILE_FILTER);
 
-                if (titleRow == null)
-                    continue;
+        if (csvFiles == null)
+            return subjectSet;
 
-                // calculate column shift
-                final int headerShift = csvFiles[i].getName().contains(FishStatJFileConstants.CSV_FILE_WITH_SHIFTED_HEADER) ? 1 : 0;
+        if (csvParsingThreads <= 1)
+            forEachSubject(csvFiles, (final String value) -> subjectSet.add(createSubject(value)), null);
+        else {
+            // parse files in parallel, collecting the subjects of each file separately
+            final ForkJoinPool csvParsingPool = new ForkJoinPool(csvParsingThreads);
 
-                // retrieve interesting columns
-                for (final String colTitle : FishStatJSourceConstants.VALID_SUBJECTS) {
-                    final int columnIndex = titleRow.indexOf(colTitle) + headerShift;
+            try {
+                final List<Set<Subject>> fileSubjects = csvParsingPool.submit(() ->
+                                                                              Arrays.stream(csvFiles)
+                                                                              .parallel()
+                                                                              .map(this::getSubjectsOfFile)
+                                                                              .collect(Collectors.toList()))
+                                                        .get();
 
-                    if (columnIndex == -1)
-                        continue;
+                fileSubjects.forEach(subjectSet::addAll);
 
-                    final List<String> column = CsvUtils.getColumn(columnIndex, csvFiles[i], StandardCharsets.UTF_8);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
 
-                    if (column != null)
-                        column.forEach((final String element) -> subjectSet.add(new Subject(element)));
-                }
+            } catch (final ExecutionException e) {
+                LOGGER.error(String.format(FishStatJFileConstants.CSV_PARSING_ERROR, unzippedFolder), e.getCause());
+
+            } finally {
+                csvParsingPool.shutdown();
             }
         }
 
@@ -130,56 +326,353 @@ public class FishStatJFileParser
 
 
     /**
-     * Reads the Notes.txt from the downloaded collection archive and extracts
-     * date information.
+     * Reads csv files from the downloaded collection archive sequentially, and passes
+     * each distinct value of the subject columns to a {@linkplain Consumer} once.
+     * If the number of subjects is limited, only the most frequent values are passed
+     * after all files were read. If there is a memory budget, the distinct values are
+     * merged from disk after all files were read. Otherwise, each value is passed as
+     * soon as it is parsed for the first time.
      *
      * @param unzippedFolder the folder containing unzipped collection archive files
+     * @param subjectConsumer a function that processes a single subject value
+     */
+    public void forEachSubject(final File unzippedFolder, final Consumer<String> subjectConsumer)
+    {
+        forEachSubject(unzippedFolder, subjectConsumer, null);
+    }
+
+
+    /**
+     * Reads csv files from the downloaded collection archive sequentially, and passes
+     * each distinct value of the subject columns to a {@linkplain Consumer} once,
+     * while passing all csv rows to a {@linkplain CsvRowAggregator} in the same pass.
+     * If there is an aggregator, the files are read via OpenCSV.
      *
-     * @return a {@linkplain List} of {@linkplain AbstractDate}s
+     * @param unzippedFolder the folder containing unzipped collection archive files
+     * @param subjectConsumer a function that processes a single subject value
+     * @param aggregator an aggregator of all csv rows, or null
      */
-    public List<AbstractDate> getDates(final File unzippedFolder)
+    public void forEachSubject(final File unzippedFolder, final Consumer<String> subjectConsumer, final CsvRowAggregator aggregator)
     {
-        final List<AbstractDate> dateList = new LinkedList<>();
+        final File[] csvFiles = unzippedFolder.listFiles(FishStatJFileConstants.CSV_FILE_FILTER);
 
-        // prepare file reader
-        final File readmeFile = new File(unzippedFolder, FishStatJFileConstants.README_FILE_NAME);
+        if (csvFiles == null)
+            return;
 
-        if (readmeFile.exists()) {
-            // read file
-            final String text = diskReader.getString(readmeFile);
-            final int subStringFrom = text.indexOf(FishStatJFileConstants.DATES_TEXT_EXCLUDED_PREFIX);
-
-            // check if the file contains the required text area
-            if (subStringFrom != -1) {
-                final int subStringTo = text.indexOf(FishStatJFileConstants.DATES_TEXT_EXCLUDED_SUFFIX, subStringFrom);
-
-                // retrieve the text lines that contain dates
-                final String[] dateTextLines = text
-                                               .substring(subStringFrom + FishStatJFileConstants.DATES_TEXT_EXCLUDED_PREFIX.length(), subStringTo)
-                                               .trim()
-                                               .split("\n");
-
-                // parse each date line
-                final int len = dateTextLines.length;
-
-                for (int i = 0; i < len; i++) {
-                    final String[] dateInfo = dateTextLines[i].split("  ");
-                    final String version = dateInfo[0];
-                    final String dateString = dateInfo[1];
-                    final String description = dateInfo[2];
-
-                    final String dateInformation = String.format(FishStatJDataCiteConstants.DATE_INFORMATION, version, description);
-                    final DateType dateType = description.contains(FishStatJFileConstants.ISSUED_DATE_KEYWORD)
-                                              ? DateType.Issued
-                                              : DateType.Updated;
-
-                    final Date date = new Date(dateString, dateType);
-                    date.setInformation(dateInformation);
-                    dateList.add(date);
-                }
+        if (maxSubjects > 0) {
+            final TopKSketch<String> topValues = new TopKSketch<>(maxSubjects);
+            forEachSubject(csvFiles, topValues::add, aggregator);
+            topValues.forEach(subjectConsumer);
+
+        } else if (subjectMemoryBudget > 0) {
+            try
+                (ExternalDistinctSet distinctValues = new ExternalDistinctSet(spillFolder, subjectMemoryBudget)) {
+                forEachSubject(csvFiles, distinctValues::add, aggregator);
+                distinctValues.forEachDistinct(subjectConsumer);
+
+            } catch (IOException | UncheckedIOException e) {
+                LOGGER.error(String.format(FishStatJFileConstants.CSV_PARSING_ERROR, unzippedFolder), e);
             }
+        } else {
+            final Set<String> distinctValues = new HashSet<>();
+            forEachSubject(csvFiles, (final String value) -> {
+                if (distinctValues.add(value))
+                    subjectConsumer.accept(value);
+            }, aggregator);
+        }
+    }
+
+
+    /**
+     * Reads csv files sequentially and passes the value of each subject column
+     * to a {@linkplain Consumer}. Memory-mapped files are only tokenized if there is
+     * no aggregator, because the aggregator requires all fields of each row.
+     *
+     * @param csvFiles the csv files that are to be read
+     * @param subjectConsumer a function that processes a single subject value
+     * @param aggregator an aggregator of all csv rows, or null
+     */
+    private void forEachSubject(final File[] csvFiles, final Consumer<String> subjectConsumer, final CsvRowAggregator aggregator)
+    {
+        for (final File csvFile : csvFiles) {
+            final int columnShift = getColumnShift(csvFile.getName());
+
+            if (isMappingCsvFiles && aggregator == null)
+                CsvUtils.projectMappedColumns(csvFile, StandardCharsets.UTF_8, FishStatJSourceConstants.VALID_SUBJECTS, columnShift, subjectConsumer);
+            else
+                CsvUtils.projectColumns(csvFile, StandardCharsets.UTF_8, FishStatJSourceConstants.VALID_SUBJECTS, columnShift, subjectConsumer, aggregator);
         }
+    }
+
+
+    /**
+     * Reads a single csv file and retrieves the values of all columns that are listed in
+     * {@linkplain FishStatJSourceConstants#VALID_SUBJECTS} as {@linkplain Subject}s.
+     * If csv files are memory-mapped, large files are split into chunks that are parsed
+     * in parallel by the {@linkplain ForkJoinPool} that calls this method.
+     *
+     * @param csvFile the csv file that is to be read
+     *
+     * @return a {@linkplain Set} of {@linkplain Subject}s
+     */
+    private Set<Subject> getSubjectsOfFile(final File csvFile)
+    {
+        final Set<Subject> subjectSet = new HashSet<>();
+        final int columnShift = getColumnShift(csvFile.getName());
+
+        if (isMappingCsvFiles) {
+            final int chunkCount = (int) Math.max(1, Math.min(csvParsingThreads, csvFile.length() / FishStatJFileConstants.CSV_CHUNK_SIZE));
+            final List<Set<Subject>> chunkSubjects = CsvUtils.projectMappedColumnsInChunks(
+                                                         csvFile,
+                                                         StandardCharsets.UTF_8,
+                                                         FishStatJSourceConstants.VALID_SUBJECTS,
+                                                         columnShift,
+                                                         chunkCount,
+                                                         HashSet::new,
+                                                         (final Set<Subject> chunkSet, final String value) -> chunkSet.add(createSubject(value)));
+
+            if (chunkSubjects != null)
+                chunkSubjects.forEach(subjectSet::addAll);
+        } else
+            CsvUtils.projectColumns(
+                csvFile,
+                StandardCharsets.UTF_8,
+                FishStatJSourceConstants.VALID_SUBJECTS,
+                columnShift,
+                (final String value) -> subjectSet.add(createSubject(value)));
+
+        return subjectSet;
+    }
+
+
+    /**
+     * Creates an empty collection for the csv subjects of a single collection.
+     *
+     * @return a set of distinct subjects, or a sketch that retains only the most
+     *          frequent subjects if their number is limited
+     */
+    private Collection<Subject> createSubjectCollection()
+    {
+        return maxSubjects > 0
+               ? new TopKSketch<>(maxSubjects)
+               : new HashSet<>();
+    }
+
+
+    /**
+     * Creates a {@linkplain Subject} of a csv value, or retrieves it from the
+     * subject dictionary if there is one.
+     *
+     * @param value the value of a subject column
+     *
+     * @return a {@linkplain Subject} without language
+     */
+    private Subject createSubject(final String value)
+    {
+        return subjectDictionary == null
+               ? new Subject(value)
+               : subjectDictionary.getSubject(value, null);
+    }
+
+
+    /**
+     * Parses a line of the version history of a Notes.txt file and adds it as a date.
+     * Lines that do not consist of a version, a date, and a description are ignored.
+     *
+     * @param dateLine a line of the version history
+     * @param dateList the list to which the date is added
+     */
+    private static void addDate(final String dateLine, final List<AbstractDate> dateList)
+    {
+        final String[] dateInfo = dateLine.trim().split(FishStatJFileConstants.DATE_LINE_SEPARATOR);
+
+        if (dateInfo.length < 3)
+            return;
+
+        final String version = dateInfo[0];
+        final String dateString = dateInfo[1];
+        final String description = dateInfo[2];
+
+        final String dateInformation = String.format(FishStatJDataCiteConstants.DATE_INFORMATION, version, description);
+        final DateType dateType = description.contains(FishStatJFileConstants.ISSUED_DATE_KEYWORD)
+                                  ? DateType.Issued
+                                  : DateType.Updated;
+
+        final Date date = new Date(dateString, dateType);
+        date.setInformation(dateInformation);
+        dateList.add(date);
+    }
+
+
+    /**
+     * Reads the next line of a text into a reusable buffer, dropping carriage returns.
+     *
+     * @param reader the reader of the text
+     * @param line the buffer to which the line is written
+     *
+     * @return false if the end of the text was reached before any character was read
+     *
+     * @throws IOException thrown when the reader cannot be read
+     */
+    private static boolean readLine(final Reader reader, final StringBuilder line) throws IOException
+    {
+        line.setLength(0);
+        int c = reader.read();
+
+        if (c == -1)
+            return false;
+
+        while (c != -1 && c != '\n') {
+            if (c != '\r')
+                line.append((char) c);
+
+            c = reader.read();
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Reads the files of a collection archive directly from a zip stream, without
+     * writing them to disk, and extracts rights, dates, and subjects in a single pass.
+     *
+     * @param zipStream a stream of a collection archive
+     *
+     * @return a value object containing the metadata that was parsed from the archive
+     *
+     * @throws IOException thrown when the zip stream cannot be read
+     */
+    public FishStatJArchiveVO parseArchive(final ZipInputStream zipStream) throws IOException
+    {
+        final FishStatJArchiveVO archive = createArchive();
 
-        return dateList;
+        while (true) {
+            final ZipEntry entry = zipStream.getNextEntry();
+
+            if (entry == null)
+                break;
+
+            final String fileName = new File(entry.getName()).getName();
+
+            if (isRequiredFile(fileName))
+                parseFile(fileName, zipStream, archive);
+        }
+
+        return archive;
+    }
+
+
+    /**
+     * Parses a single file of a collection archive and adds the retrieved metadata
+     * to a value object. If the value object aggregates statistics, all rows of
+     * csv files are passed to them as well. The stream is not closed by this method.
+     *
+     * @param fileName the name of the archived file
+     * @param fileStream a stream of the uncompressed file content
+     * @param archive the value object to which the parsed metadata is added
+     *
+     * @throws IOException thrown when the stream cannot be read
+     */
+    public void parseFile(final String fileName, final InputStream fileStream, final FishStatJArchiveVO archive) throws IOException
+    {
+        if (fileName.equals(FishStatJFileConstants.README_FILE_NAME)) {
+            // do not close the reader, because it would close the zip stream as well
+            final Reader notesReader = new BufferedReader(new InputStreamReader(fileStream, StandardCharsets.UTF_8));
+            parseNotes(notesReader, archive);
+
+        } else if (FishStatJFileConstants.CSV_FILE_FILTER.accept(null, fileName)) {
+            // do not close the reader, because it would close the zip stream as well
+            final Reader csvReader = new InputStreamReader(fileStream, StandardCharsets.UTF_8);
+            addSubjects(csvReader, fileName, archive.getSubjects(), archive.getStatistics());
+        }
+    }
+
+
+    /**
+     * Parses the distinct values of all columns that are listed in
+     * {@linkplain FishStatJSourceConstants#VALID_SUBJECTS} from a single csv file
+     * of a collection archive. The stream is not closed by this method.
+     *
+     * @param fileName the name of the archived csv file
+     * @param fileStream a stream of the uncompressed file content
+     *
+     * @return the distinct subject values of the csv file
+     *
+     * @throws IOException thrown when the stream cannot be read
+     */
+    public Set<String> parseSubjectValues(final String fileName, final InputStream fileStream) throws IOException
+    {
+        final Set<String> values = new HashSet<>();
+
+        // do not close the reader, because it would close the zip stream as well
+        final Reader csvReader = new InputStreamReader(fileStream, StandardCharsets.UTF_8);
+        CsvUtils.projectColumns(csvReader, FishStatJSourceConstants.VALID_SUBJECTS, getColumnShift(fileName), values::add);
+
+        return values;
+    }
+
+
+    /**
+     * Adds subject values that were parsed from a csv file beforehand to a value object.
+     *
+     * @param values the subject values of a csv file
+     * @param archive the value object to which the subjects are added
+     */
+    public void addSubjectValues(final Collection<String> values, final FishStatJArchiveVO archive)
+    {
+        for (final String value : values)
+            archive.getSubjects().add(createSubject(value));
+    }
+
+
+    /**
+     * Checks if a file of a collection archive is parsed by this class.
+     * Files that are not required do not need to be extracted.
+     *
+     * @param fileName the name of a file within a collection archive
+     *
+     * @return true if the file is parsed for metadata
+     */
+    public boolean isRequiredFile(final String fileName)
+    {
+        return fileName.equals(FishStatJFileConstants.README_FILE_NAME)
+               || FishStatJFileConstants.CSV_FILE_FILTER.accept(null, fileName);
+    }
+
+
+    /**
+     * Reads a csv stream once and adds the values of all columns that are listed in
+     * {@linkplain FishStatJSourceConstants#VALID_SUBJECTS} as {@linkplain Subject}s.
+     *
+     * @param csvReader a reader of the csv file
+     * @param csvFileName the name of the csv file
+     * @param subjectSet the set to which the subjects are added
+     * @param aggregator an aggregator of all csv rows, or null
+     *
+     * @throws IOException thrown when the csv stream cannot be read
+     */
+    private void addSubjects(final Reader csvReader, final String csvFileName, final Collection<Subject> subjectSet, final CsvRowAggregator aggregator) throws IOException
+    {
+        CsvUtils.projectColumns(
+            csvReader,
+            FishStatJSourceConstants.VALID_SUBJECTS,
+            getColumnShift(csvFileName),
+            (final String value) -> subjectSet.add(createSubject(value)),
+            aggregator);
+    }
+
+
+    /**
+     * Calculates by how many columns the values of a csv file are shifted
+     * relative to its title row.
+     *
+     * @param csvFileName the name of the csv file
+     *
+     * @return the number of columns by which the values are shifted
+     */
+    private static int getColumnShift(final String csvFileName)
+    {
+        return csvFileName.contains(FishStatJFileConstants.CSV_FILE_WITH_SHIFTED_HEADER) ? 1 : 0;
     }
 }
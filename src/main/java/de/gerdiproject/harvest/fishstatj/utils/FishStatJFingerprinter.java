@@ -0,0 +1,234 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import java.io.IOException;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.gerdiproject.harvest.fishstatj.constants.FishStatJSourceConstants;
+
+/**
+ * This class computes content fingerprints of FishStatJ collections, which
+ * change whenever the relevant parts of a collection page or its archive change.
+ * The headers of archives are retrieved like all other requests of the harvest,
+ * via the {@linkplain PooledHttpClient} and the {@linkplain RequestThrottle} of the host, if requests are throttled.
+ * If the headers of an archive have no validators, the central directory of the archive
+ * is fingerprinted instead. Collections that cannot be fingerprinted have no fingerprint,
+ * so that they are never considered to be unchanged.
+ *
+ * @author Robin Weiss
+ */
+public class FishStatJFingerprinter
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(FishStatJFingerprinter.class);
+
+    private static final String FINGERPRINT_FIELDS = "%s|%d|%d";
+    private static final String ARCHIVE_HEADER_ERROR = "Could not retrieve the headers of archive: %s";
+    private static final String CENTRAL_DIRECTORY_ERROR = "Could not retrieve the central directory of archive: %s";
+    private static final String UNKNOWN_ARCHIVE_FINGERPRINT = "Could not fingerprint archive %s, so its collection is harvested again.";
+
+    private final PooledHttpClient httpClient;
+    private final Function<String, RequestThrottle> requestThrottles;
+
+
+    /**
+     * Constructor that sets up archive header requests.
+     *
+     * @param httpClient the client that sends archive header requests
+     * @param requestThrottles a function that retrieves the request throttle of the host
+     *          of a URL, returning null if requests are not throttled
+     */
+    public FishStatJFingerprinter(final PooledHttpClient httpClient, final Function<String, RequestThrottle> requestThrottles)
+    {
+        this.httpClient = httpClient;
+        this.requestThrottles = requestThrottles;
+    }
+
+
+    /**
+     * Computes a fingerprint of a collection, consisting of the titles and sections
+     * of the collection page, and the headers of the collection archive.
+     *
+     * @param collectionPage the main web page of a FishStatJ collection
+     *
+     * @return a hexadecimal hash of the relevant collection content, or null if
+     *          the collection page or its archive could not be fingerprinted
+     */
+    public String getCollectionFingerprint(final Document collectionPage)
+    {
+        if (collectionPage == null)
+            return null;
+
+        final MessageDigest digest = HttpUtils.createDigest();
+
+        for (final Element relevantElement : collectionPage.select(FishStatJSourceConstants.FINGERPRINT_SELECTION))
+            update(digest, relevantElement.outerHtml());
+
+        final Element zipLink = collectionPage.selectFirst(FishStatJSourceConstants.ZIP_LINKS_SELECTION);
+
+        if (zipLink != null) {
+            final String archiveFingerprint = getArchiveFingerprint(zipLink.attr(FishStatJSourceConstants.HREF_ATTRIBUTE));
+
+            if (archiveFingerprint == null)
+                return null;
+
+            update(digest, archiveFingerprint);
+        }
+
+        return HttpUtils.toHash(digest);
+    }
+
+
+    /**
+     * Combines multiple fingerprints to a single fingerprint. Unknown fingerprints
+     * are replaced by random values, so that the combined fingerprint never
+     * matches a previous one.
+     *
+     * @param fingerprints the fingerprints that are to be combined, which may be null
+     *
+     * @return a hexadecimal hash of all fingerprints
+     */
+    public String combine(final Iterable<String> fingerprints)
+    {
+        final MessageDigest digest = HttpUtils.createDigest();
+
+        for (final String fingerprint : fingerprints)
+            update(digest, fingerprint != null ? fingerprint : UUID.randomUUID().toString());
+
+        return HttpUtils.toHash(digest);
+    }
+
+
+    /**
+     * Computes a hexadecimal hash of a single string.
+     *
+     * @param value the string that is to be hashed
+     *
+     * @return a hexadecimal hash of the string
+     */
+    public static String getHash(final String value)
+    {
+        final MessageDigest digest = HttpUtils.createDigest();
+        update(digest, value);
+        return HttpUtils.toHash(digest);
+    }
+
+
+    /**
+     * Retrieves the headers of an archive without downloading it, and
+     * combines ETag, Last-Modified, and Content-Length to a fingerprint.
+     * If the headers cannot be retrieved or have neither an ETag nor a Last-Modified
+     * header, the central directory of the archive is fingerprinted instead.
+     *
+     * @param zipUrl the URL of a collection archive
+     *
+     * @return a fingerprint of the archive, or null if it could not be fingerprinted
+     */
+    private String getArchiveFingerprint(final String zipUrl)
+    {
+        try {
+            final URLConnection headers = RequestThrottle.send(requestThrottles.apply(zipUrl), () -> httpClient.head(zipUrl));
+
+            // the length of an archive does not change if only its values change
+            if (headers.getHeaderField(HttpUtils.ETAG_HEADER) != null || headers.getLastModified() != 0)
+                return toArchiveFingerprint(headers);
+
+        } catch (final IOException e) {
+            LOGGER.warn(String.format(ARCHIVE_HEADER_ERROR, zipUrl), e);
+        }
+
+        final String centralDirectoryFingerprint = getCentralDirectoryFingerprint(zipUrl);
+
+        if (centralDirectoryFingerprint == null)
+            LOGGER.warn(String.format(UNKNOWN_ARCHIVE_FINGERPRINT, zipUrl));
+
+        return centralDirectoryFingerprint;
+    }
+
+
+    /**
+     * Retrieves the central directory of an archive via range requests, and
+     * combines the names, CRCs, and sizes of all archived files to a fingerprint.
+     *
+     * @param zipUrl the URL of a collection archive
+     *
+     * @return a fingerprint of the archive, or null if the central directory could not be retrieved
+     */
+    private String getCentralDirectoryFingerprint(final String zipUrl)
+    {
+        final List<RemoteZipEntry> entries;
+
+        try {
+            entries = new RemoteZipReader(zipUrl, httpClient, requestThrottles).readCentralDirectory();
+
+        } catch (final IOException e) {
+            LOGGER.warn(String.format(CENTRAL_DIRECTORY_ERROR, zipUrl), e);
+            return null;
+        }
+
+        // the server does not support range requests
+        if (entries == null)
+            return null;
+
+        final MessageDigest digest = HttpUtils.createDigest();
+
+        for (final RemoteZipEntry entry : entries)
+            update(digest, String.format(FINGERPRINT_FIELDS, entry.getName(), entry.getCrc(), entry.getUncompressedSize()));
+
+        return HttpUtils.toHash(digest);
+    }
+
+
+    /**
+     * Combines ETag, Last-Modified, and Content-Length of an archive to a fingerprint.
+     *
+     * @param connection a connection of which the response headers can be read
+     *
+     * @return a fingerprint of the archive
+     */
+    private static String toArchiveFingerprint(final URLConnection connection)
+    {
+        return String.format(
+                   FINGERPRINT_FIELDS,
+                   connection.getHeaderField(HttpUtils.ETAG_HEADER),
+                   connection.getLastModified(),
+                   connection.getContentLengthLong());
+    }
+
+
+    /**
+     * Adds a string to a digest, followed by a separator.
+     *
+     * @param digest the digest that is to be updated
+     * @param value the string that is to be added to the digest
+     */
+    private static void update(final MessageDigest digest, final String value)
+    {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+/**
+ * This exception is thrown when a server responds with an HTTP error status,
+ * so that callers can tell client errors apart from server errors.
+ *
+ * @author Robin Weiss
+ */
+public class HttpStatusException extends IOException
+{
+    private static final long serialVersionUID = 4212968391836459105L;
+    private static final String RESPONSE_CODE_ERROR = "Server responded with HTTP status %d: %s";
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private final int statusCode;
+
+
+    /**
+     * Constructor that creates the error message from the status code and the URL.
+     *
+     * @param statusCode the HTTP status code of the response
+     * @param url the URL to which the request was sent
+     */
+    public HttpStatusException(final int statusCode, final Object url)
+    {
+        super(String.format(RESPONSE_CODE_ERROR, statusCode, url));
+        this.statusCode = statusCode;
+    }
+
+
+    /**
+     * Retrieves the HTTP status code of the response.
+     *
+     * @return the HTTP status code
+     */
+    public int getStatusCode()
+    {
+        return statusCode;
+    }
+
+
+    /**
+     * Checks if the request itself is at fault, such as a request of a missing file,
+     * so that sending it again would fail the same way. Too many requests are not
+     * considered a client error, because they may succeed later.
+     *
+     * @return true if the status code is a client error
+     */
+    public boolean isClientError()
+    {
+        return statusCode >= HttpURLConnection.HTTP_BAD_REQUEST
+               && statusCode < HttpURLConnection.HTTP_INTERNAL_ERROR
+               && statusCode != HTTP_TOO_MANY_REQUESTS;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * This utility class offers static methods and header names that are shared
+ * by the classes which transfer and validate pages and archives.
+ *
+ * @author Robin Weiss
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class HttpUtils
+{
+    public static final String ETAG_HEADER = "ETag";
+    public static final String LAST_MODIFIED_HEADER = "Last-Modified";
+    public static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+    public static final String IF_MODIFIED_SINCE_HEADER = "If-Modified-Since";
+    public static final String RANGE_HEADER = "Range";
+    public static final String IF_RANGE_HEADER = "If-Range";
+    public static final String CONTENT_RANGE_HEADER = "Content-Range";
+
+    public static final int BUFFER_SIZE = 8192;
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final String HASH_FORMAT = "%064x";
+
+
+    /**
+     * Reads all bytes of a stream.
+     *
+     * @param inputStream the stream that is to be read
+     *
+     * @return all bytes of the stream
+     *
+     * @throws IOException thrown when the stream cannot be read
+     */
+    public static byte[] readFully(final InputStream inputStream) throws IOException
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+
+        while (true) {
+            final int readByteCount = inputStream.read(buffer, 0, buffer.length);
+
+            if (readByteCount == -1)
+                break;
+            else
+                bytes.write(buffer, 0, readByteCount);
+        }
+
+        return bytes.toByteArray();
+    }
+
+
+    /**
+     * Reads an exact number of bytes from a stream.
+     *
+     * @param inputStream the stream that is to be read
+     * @param length the number of bytes to read
+     *
+     * @return the read bytes
+     *
+     * @throws IOException thrown when the stream ends prematurely
+     */
+    public static byte[] readFully(final InputStream inputStream, final int length) throws IOException
+    {
+        final byte[] bytes = new byte[length];
+        int offset = 0;
+
+        while (offset < length) {
+            final int readByteCount = inputStream.read(bytes, offset, length - offset);
+
+            if (readByteCount == -1)
+                throw new EOFException();
+
+            offset += readByteCount;
+        }
+
+        return bytes;
+    }
+
+
+    /**
+     * Creates a new SHA-256 {@linkplain MessageDigest} for computing fingerprints and hashes.
+     *
+     * @return a new {@linkplain MessageDigest}
+     */
+    public static MessageDigest createDigest()
+    {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (final NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    /**
+     * Completes a digest that was created via {@linkplain #createDigest()}
+     * and formats the resulting hash.
+     *
+     * @param digest the digest that is to be completed
+     *
+     * @return the hexadecimal SHA-256 hash
+     */
+    public static String toHash(final MessageDigest digest)
+    {
+        return String.format(HASH_FORMAT, new BigInteger(1, digest.digest()));
+    }
+
+
+    /**
+     * Computes the SHA-256 hash of all bytes of a stream.
+     *
+     * @param inputStream the stream that is to be hashed
+     *
+     * @return the hexadecimal SHA-256 hash of the stream content
+     *
+     * @throws IOException thrown when the stream cannot be read
+     */
+    public static String getHash(final InputStream inputStream) throws IOException
+    {
+        final MessageDigest digest = createDigest();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+
+        while (true) {
+            final int readByteCount = inputStream.read(buffer, 0, buffer.length);
+
+            if (readByteCount == -1)
+                break;
+            else
+                digest.update(buffer, 0, readByteCount);
+        }
+
+        return toHash(digest);
+    }
+}
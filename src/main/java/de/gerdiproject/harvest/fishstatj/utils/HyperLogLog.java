@@ -0,0 +1,146 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+/**
+ * This class estimates the number of distinct strings in a stream, using a fixed
+ * number of one-byte registers. With the default precision of 12 bits, it occupies
+ * 4 KiB and has a standard error of about 1.6 percent.
+ * This class is not thread-safe.
+ *
+ * @author Robin Weiss
+ */
+public class HyperLogLog
+{
+    private static final int DEFAULT_PRECISION = 12;
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    private final int precision;
+    private final byte[] registers;
+
+
+    /**
+     * Constructor that uses the default precision.
+     */
+    public HyperLogLog()
+    {
+        this(DEFAULT_PRECISION);
+    }
+
+
+    /**
+     * Constructor that sets the number of registers.
+     *
+     * @param precision the number of hash bits that select a register,
+     *          resulting in 2^precision registers
+     */
+    public HyperLogLog(final int precision)
+    {
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+
+    /**
+     * Adds a string to the estimation.
+     *
+     * @param value the string that is to be added
+     */
+    public void offer(final String value)
+    {
+        final long hash = hash(value);
+        final int registerIndex = (int) (hash >>> (Long.SIZE - precision));
+
+        // the rank is the position of the first set bit of the remaining hash bits
+        final long remainingBits = (hash << precision) | (1L << (precision - 1));
+        final byte rank = (byte) (Long.numberOfLeadingZeros(remainingBits) + 1);
+
+        if (rank > registers[registerIndex])
+            registers[registerIndex] = rank;
+    }
+
+
+    /**
+     * Adds all strings of another estimation with the same precision to this estimation.
+     *
+     * @param other the estimation that is to be merged
+     */
+    public void merge(final HyperLogLog other)
+    {
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i])
+                registers[i] = other.registers[i];
+        }
+    }
+
+
+    /**
+     * Estimates the number of distinct strings that were added.
+     *
+     * @return the estimated number of distinct strings
+     */
+    public long cardinality()
+    {
+        final int registerCount = registers.length;
+        double inverseSum = 0;
+        int emptyRegisters = 0;
+
+        for (final byte register : registers) {
+            inverseSum += 1.0 / (1L << register);
+
+            if (register == 0)
+                emptyRegisters++;
+        }
+
+        final double alpha = 0.7213 / (1 + 1.079 / registerCount);
+        final double estimate = alpha * registerCount * registerCount / inverseSum;
+
+        // use linear counting for small cardinalities
+        if (estimate <= 2.5 * registerCount && emptyRegisters > 0)
+            return Math.round(registerCount * Math.log((double) registerCount / emptyRegisters));
+
+        return Math.round(estimate);
+    }
+
+
+    /**
+     * Computes a 64 bit hash of a string, using FNV-1a followed by the
+     * finalizer of MurmurHash3 to spread the bits.
+     *
+     * @param value the string that is to be hashed
+     *
+     * @return a 64 bit hash of the string
+     */
+    private static long hash(final String value)
+    {
+        long h = FNV_OFFSET_BASIS;
+        final int length = value.length();
+
+        for (int i = 0; i < length; i++) {
+            h ^= value.charAt(i);
+            h *= FNV_PRIME;
+        }
+
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+/**
+ * This class accumulates the minimum and maximum of a stream of
+ * primitive integers, without boxing them.
+ * This class is not thread-safe.
+ *
+ * @author Robin Weiss
+ */
+public class IntRange
+{
+    private int min = Integer.MAX_VALUE;
+    private int max = Integer.MIN_VALUE;
+
+
+    /**
+     * Adds an integer to the range.
+     *
+     * @param value the integer that is to be added
+     */
+    public void accept(final int value)
+    {
+        if (value < min)
+            min = value;
+
+        if (value > max)
+            max = value;
+    }
+
+
+    /**
+     * Adds all integers of another range to this range.
+     *
+     * @param other the range that is to be merged
+     */
+    public void merge(final IntRange other)
+    {
+        if (!other.isEmpty()) {
+            accept(other.min);
+            accept(other.max);
+        }
+    }
+
+
+    /**
+     * Checks if no integer was added yet.
+     *
+     * @return true if no integer was added yet
+     */
+    public boolean isEmpty()
+    {
+        return min > max;
+    }
+
+
+    /**
+     * Retrieves the smallest integer that was added.
+     *
+     * @return the smallest integer, or {@linkplain Integer#MAX_VALUE} if the range is empty
+     */
+    public int getMin()
+    {
+        return min;
+    }
+
+
+    /**
+     * Retrieves the largest integer that was added.
+     *
+     * @return the largest integer, or {@linkplain Integer#MIN_VALUE} if the range is empty
+     */
+    public int getMax()
+    {
+        return max;
+    }
+}
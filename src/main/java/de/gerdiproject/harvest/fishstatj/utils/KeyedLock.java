@@ -0,0 +1,99 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class provides one lock per key, such as per URL or per file, so that
+ * threads only wait for each other if they access the same resource.
+ * The lock of a key is removed when it is no longer held or awaited by any thread,
+ * so that the number of locks does not grow with the number of keys.
+ *
+ * @author Robin Weiss
+ */
+public class KeyedLock
+{
+    private final Map<String, LockEntry> locks = new HashMap<>();
+
+
+    /**
+     * Acquires the lock of a key, waiting until no other thread holds it.
+     *
+     * @param key the key of the locked resource
+     */
+    public void lock(final String key)
+    {
+        final LockEntry entry;
+
+        synchronized (locks) {
+            entry = locks.computeIfAbsent(key, (final String k) -> new LockEntry());
+            entry.userCount++;
+        }
+
+        entry.lock.lock();
+    }
+
+
+    /**
+     * Releases the lock of a key that was acquired via {@linkplain #lock(String)},
+     * and removes it if no other thread holds or awaits it.
+     *
+     * @param key the key of the locked resource
+     */
+    public void unlock(final String key)
+    {
+        synchronized (locks) {
+            final LockEntry entry = locks.get(key);
+
+            if (entry == null || !entry.lock.isHeldByCurrentThread())
+                throw new IllegalMonitorStateException(key);
+
+            entry.lock.unlock();
+
+            if (--entry.userCount == 0)
+                locks.remove(key);
+        }
+    }
+
+
+    /**
+     * Retrieves the number of keys of which the locks are held or awaited.
+     *
+     * @return the number of locks that are in use
+     */
+    public int size()
+    {
+        synchronized (locks) {
+            return locks.size();
+        }
+    }
+
+
+    /**
+     * This class counts the threads that hold or await the lock of a key.
+     *
+     * @author Robin Weiss
+     */
+    private static class LockEntry
+    {
+        private final ReentrantLock lock = new ReentrantLock();
+        private int userCount;
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * This class splits csv formatted bytes into fields without decoding them to
+ * characters first. Delimiters, quotes, and line breaks are detected at byte level,
+ * and only the fields that are requested by the caller are turned into strings.
+ * Therefore, it is meant to be used on memory-mapped files, and only supports charsets
+ * that encode these characters as single ASCII bytes, such as UTF-8.
+ * <br>
+ * Quoted fields may contain delimiters and line breaks, and two consecutive
+ * quotes within a quoted field are read as a single quote. Large buffers can be
+ * split into chunks of whole rows, which can be tokenized in parallel.
+ *
+ * @author Robin Weiss
+ */
+public class MappedCsvTokenizer
+{
+    private static final byte DELIMITER = ',';
+    private static final byte QUOTE = '"';
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final int INITIAL_FIELD_CAPACITY = 256;
+
+    private final ByteBuffer buffer;
+    private final Charset charset;
+    private final int limit;
+    private int position;
+
+    private byte[] fieldBytes = new byte[INITIAL_FIELD_CAPACITY];
+    private int fieldLength;
+    private boolean isEndOfRow;
+
+
+    /**
+     * Constructor that starts tokenizing at the current position of a buffer.
+     *
+     * @param buffer the csv formatted bytes
+     * @param charset the charset that is used to decode fields
+     */
+    public MappedCsvTokenizer(final ByteBuffer buffer, final Charset charset)
+    {
+        this.buffer = buffer;
+        this.charset = charset;
+        this.limit = buffer.limit();
+        this.position = buffer.position();
+    }
+
+
+    /**
+     * Splits a range of csv formatted bytes into chunks that each start at the
+     * beginning of a row. Line breaks within quoted fields are not considered to be
+     * row boundaries. For this purpose, the number of quotes within each chunk is
+     * counted in parallel, so that each chunk knows whether it starts inside of a
+     * quoted field, before the first row boundary of each chunk is searched in parallel.
+     *
+     * @param buffer the csv formatted bytes
+     * @param start the index of the first byte, which must be the start of a row
+     * @param chunkCount the maximum number of chunks
+     *
+     * @return an array of the start indices of each chunk, followed by the limit of the buffer
+     */
+    public static int[] findRowBoundaries(final ByteBuffer buffer, final int start, final int chunkCount)
+    {
+        final int limit = buffer.limit();
+        final long chunkSize = Math.max(1, (limit - start) / chunkCount);
+
+        // split the buffer evenly, ignoring rows
+        final int[] boundaries = new int[chunkCount + 1];
+
+        for (int i = 0; i < chunkCount; i++)
+            boundaries[i] = (int) Math.min(limit, start + i * chunkSize);
+
+        boundaries[chunkCount] = limit;
+
+        // check which chunks start within a quoted field
+        final boolean[] hasOddQuoteCount = new boolean[chunkCount];
+        IntStream.range(0, chunkCount).parallel().forEach((final int i) -> {
+            boolean isOdd = false;
+
+            for (int j = boundaries[i]; j < boundaries[i + 1]; j++)
+                isOdd ^= buffer.get(j) == QUOTE;
+
+            hasOddQuoteCount[i] = isOdd;
+        });
+
+        final boolean[] startsQuoted = new boolean[chunkCount];
+
+        for (int i = 1; i < chunkCount; i++)
+            startsQuoted[i] = startsQuoted[i - 1] ^ hasOddQuoteCount[i - 1];
+
+        // move the boundaries behind the next line break that is not quoted
+        final int[] rowBoundaries = new int[chunkCount + 1];
+        rowBoundaries[0] = start;
+        rowBoundaries[chunkCount] = limit;
+
+        IntStream.range(1, chunkCount).parallel().forEach((final int i) -> {
+            boolean isQuoted = startsQuoted[i];
+            int j = boundaries[i];
+
+            while (j < limit) {
+                final byte b = buffer.get(j++);
+
+                if (b == QUOTE)
+                    isQuoted = !isQuoted;
+
+                else if (!isQuoted && (b == LINE_FEED || b == CARRIAGE_RETURN)) {
+                    if (b == CARRIAGE_RETURN && j < limit && buffer.get(j) == LINE_FEED)
+                        j++;
+
+                    break;
+                }
+            }
+
+            rowBoundaries[i] = j;
+        });
+
+        return rowBoundaries;
+    }
+
+
+    /**
+     * Retrieves the index of the next byte that is to be read.
+     *
+     * @return the index of the next byte that is to be read
+     */
+    public int getPosition()
+    {
+        return position;
+    }
+
+
+    /**
+     * Checks if there are more rows to be read.
+     *
+     * @return true if there are more rows
+     */
+    public boolean hasNextRow()
+    {
+        return position < limit;
+    }
+
+
+    /**
+     * Reads all fields of the next row.
+     *
+     * @return the fields of the row, or null if there are no more rows
+     */
+    public List<String> readRow()
+    {
+        if (!hasNextRow())
+            return null;
+
+        final List<String> row = new ArrayList<>();
+        isEndOfRow = false;
+
+        while (!isEndOfRow)
+            row.add(readField(true));
+
+        return row;
+    }
+
+
+    /**
+     * Reads the next row and passes the fields of the projected columns to a
+     * {@linkplain Consumer}, in the order in which they appear in the row.
+     * All other fields are skipped without being copied or decoded.
+     *
+     * @param projectedColumns an array that is true at the indices of projected columns
+     * @param fieldConsumer a function that processes a single projected field
+     *
+     * @return false if there were no more rows to be read
+     */
+    public boolean readRow(final boolean[] projectedColumns, final Consumer<String> fieldConsumer)
+    {
+        if (!hasNextRow())
+            return false;
+
+        isEndOfRow = false;
+
+        for (int columnIndex = 0; !isEndOfRow; columnIndex++) {
+            final boolean isProjected = columnIndex < projectedColumns.length && projectedColumns[columnIndex];
+            final String field = readField(isProjected);
+
+            if (isProjected)
+                fieldConsumer.accept(field);
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Reads the next field of the current row and moves the position behind the
+     * delimiter or line break that terminates it.
+     *
+     * @param isMaterialized if true, the field is decoded to a string
+     *
+     * @return the decoded field, or null if the field is not materialized
+     */
+    private String readField(final boolean isMaterialized)
+    {
+        fieldLength = 0;
+        boolean isQuoted = position < limit && buffer.get(position) == QUOTE;
+
+        if (isQuoted)
+            position++;
+
+        while (position < limit) {
+            final byte b = buffer.get(position++);
+
+            if (isQuoted) {
+                if (b != QUOTE) {
+                    if (isMaterialized)
+                        append(b);
+                } else if (position < limit && buffer.get(position) == QUOTE) {
+                    // an escaped quote
+                    position++;
+
+                    if (isMaterialized)
+                        append(QUOTE);
+                } else
+                    isQuoted = false;
+
+            } else if (b == DELIMITER)
+                return isMaterialized ? getField() : null;
+
+            else if (b == LINE_FEED || b == CARRIAGE_RETURN) {
+                if (b == CARRIAGE_RETURN && position < limit && buffer.get(position) == LINE_FEED)
+                    position++;
+
+                isEndOfRow = true;
+                return isMaterialized ? getField() : null;
+
+            } else if (isMaterialized)
+                append(b);
+        }
+
+        isEndOfRow = true;
+        return isMaterialized ? getField() : null;
+    }
+
+
+    /**
+     * Appends a byte to the field that is currently read.
+     *
+     * @param b the byte that is to be appended
+     */
+    private void append(final byte b)
+    {
+        if (fieldLength == fieldBytes.length)
+            fieldBytes = Arrays.copyOf(fieldBytes, fieldLength * 2);
+
+        fieldBytes[fieldLength++] = b;
+    }
+
+
+    /**
+     * Decodes the bytes of the field that is currently read.
+     *
+     * @return the decoded field
+     */
+    private String getField()
+    {
+        return new String(fieldBytes, 0, fieldLength, charset);
+    }
+}
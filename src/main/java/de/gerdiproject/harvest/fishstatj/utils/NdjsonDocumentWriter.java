@@ -0,0 +1,223 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+
+import de.gerdiproject.harvest.utils.file.FileUtils;
+import de.gerdiproject.json.GsonUtils;
+import de.gerdiproject.json.datacite.DataCiteJson;
+import de.gerdiproject.json.datacite.Subject;
+
+/**
+ * This class writes {@linkplain DataCiteJson} documents to a newline delimited
+ * JSON file. The subjects of a document do not need to be added to the document
+ * beforehand, but can be streamed into the file while they are parsed, so the
+ * memory that is required per document does not grow with the number of subjects.
+ * <br>
+ * Each document is prepared in a temporary file first, and appended to the output
+ * file afterwards. Documents can be prepared concurrently, while the order of the
+ * lines in the output file is determined by the order in which they are appended.
+ *
+ * @author Robin Weiss
+ */
+public class NdjsonDocumentWriter
+{
+    private static final String SUBJECTS_FIELD = "subjects";
+    private static final String PART_FILE_SUFFIX = ".part";
+    private static final String UNPREPARED_DOCUMENT_ERROR = "Cannot append document '%s', because it was not prepared!";
+
+    private final Gson gson = GsonUtils.createGerdiDocumentGsonBuilder().create();
+    private final Map<DataCiteJson, File> partFiles = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final File outputFile;
+
+
+    /**
+     * Constructor that removes documents of previous harvests from the output file.
+     *
+     * @param outputFile the file to which the documents are written
+     */
+    public NdjsonDocumentWriter(final File outputFile)
+    {
+        this.outputFile = outputFile;
+        FileUtils.deleteFile(outputFile);
+    }
+
+
+    /**
+     * Writes a document as a single line to the output file, appending subjects
+     * that are retrieved while writing.
+     *
+     * @param document the document that is to be written
+     * @param subjectSource a function that passes distinct subject values to a {@linkplain Consumer}
+     *
+     * @throws IOException thrown when the document cannot be written
+     */
+    public void write(final DataCiteJson document, final Consumer<Consumer<String>> subjectSource) throws IOException
+    {
+        prepare(document, subjectSource);
+        append(document);
+    }
+
+
+    /**
+     * Writes a document as a single line to a temporary file, appending subjects
+     * that are retrieved while writing. The line is added to the output file
+     * when the document is appended.
+     *
+     * @param document the document that is to be prepared
+     * @param subjectSource a function that passes distinct subject values to a {@linkplain Consumer}
+     *
+     * @throws IOException thrown when the document cannot be written
+     */
+    public void prepare(final DataCiteJson document, final Consumer<Consumer<String>> subjectSource) throws IOException
+    {
+        FileUtils.createDirectories(outputFile.getParentFile());
+        final File partFile = Files.createTempFile(
+                                  outputFile.getParentFile().toPath(),
+                                  outputFile.getName(),
+                                  PART_FILE_SUFFIX).toFile();
+
+        try {
+            try
+                (Writer partWriter = Files.newBufferedWriter(partFile.toPath(), StandardCharsets.UTF_8)) {
+                final JsonWriter jsonWriter = gson.newJsonWriter(partWriter);
+                writeDocument(document, subjectSource, jsonWriter);
+                jsonWriter.flush();
+                partWriter.write('\n');
+            }
+
+            partFiles.put(document, partFile);
+
+        } catch (final IOException | RuntimeException e) {
+            FileUtils.deleteFile(partFile);
+            throw e;
+        }
+    }
+
+
+    /**
+     * Appends the line of a prepared document to the output file.
+     *
+     * @param document a document that was prepared
+     *
+     * @throws IOException thrown when the document cannot be appended
+     * @throws IllegalStateException thrown when the document was not prepared, or was appended already
+     */
+    public synchronized void append(final DataCiteJson document) throws IOException
+    {
+        final File partFile = partFiles.remove(document);
+
+        if (partFile == null)
+            throw new IllegalStateException(String.format(UNPREPARED_DOCUMENT_ERROR, document.getSourceId()));
+
+        try {
+            try
+                (OutputStream outputStream = Files.newOutputStream(
+                                                 outputFile.toPath(),
+                                                 StandardOpenOption.CREATE,
+                                                 StandardOpenOption.APPEND)) {
+                Files.copy(partFile.toPath(), outputStream);
+            }
+        } finally {
+            FileUtils.deleteFile(partFile);
+        }
+    }
+
+
+    /**
+     * Removes the temporary file of a prepared document that is not going to be appended.
+     *
+     * @param document a document that was prepared, or a document that was not prepared
+     */
+    public void discard(final DataCiteJson document)
+    {
+        final File partFile = partFiles.remove(document);
+
+        if (partFile != null)
+            FileUtils.deleteFile(partFile);
+    }
+
+
+    /**
+     * Removes the temporary files of all prepared documents that were not appended.
+     */
+    public void clear()
+    {
+        synchronized (partFiles) {
+            for (final File partFile : partFiles.values())
+                FileUtils.deleteFile(partFile);
+
+            partFiles.clear();
+        }
+    }
+
+
+    /**
+     * Writes the fields of a document to a {@linkplain JsonWriter}, followed by
+     * the subjects of the document and the streamed subjects.
+     *
+     * @param document the document that is to be written
+     * @param subjectSource a function that passes distinct subject values to a {@linkplain Consumer}
+     * @param jsonWriter the writer to which the document is written
+     *
+     * @throws IOException thrown when the document cannot be written
+     */
+    private void writeDocument(final DataCiteJson document, final Consumer<Consumer<String>> subjectSource, final JsonWriter jsonWriter) throws IOException
+    {
+        final JsonObject documentObject = gson.toJsonTree(document).getAsJsonObject();
+        jsonWriter.beginObject();
+
+        for (final Map.Entry<String, JsonElement> field : documentObject.entrySet()) {
+            if (!field.getKey().equals(SUBJECTS_FIELD)) {
+                jsonWriter.name(field.getKey());
+                gson.toJson(field.getValue(), jsonWriter);
+            }
+        }
+
+        jsonWriter.name(SUBJECTS_FIELD);
+        jsonWriter.beginArray();
+
+        final JsonElement documentSubjects = documentObject.get(SUBJECTS_FIELD);
+
+        if (documentSubjects != null && documentSubjects.isJsonArray()) {
+            for (final JsonElement subject : documentSubjects.getAsJsonArray())
+                gson.toJson(subject, jsonWriter);
+        }
+
+        subjectSource.accept((final String value) ->
+                             gson.toJson(new Subject(value), Subject.class, jsonWriter));
+
+        jsonWriter.endArray();
+        jsonWriter.endObject();
+    }
+}
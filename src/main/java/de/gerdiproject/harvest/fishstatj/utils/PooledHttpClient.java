@@ -0,0 +1,294 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+/**
+ * This class retrieves HTML pages and files via HTTP, reusing keep-alive connections
+ * across requests, and transferring HTML pages gzip-compressed. Connections are only
+ * returned to the keep-alive pool of the JVM if their responses are read completely and
+ * closed, which is why this class always drains responses, including error responses.
+ * Requests are sent via blocking {@linkplain HttpURLConnection}s, because the harvester
+ * targets Java 8, which has no non-blocking HTTP client. Tasks that send requests can
+ * instead be run concurrently by a fixed number of threads.
+ *
+ * @author Robin Weiss
+ */
+public class PooledHttpClient
+{
+    private static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+    private static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+    private static final String CONNECTION_HEADER = "Connection";
+    private static final String GZIP_ENCODING = "gzip";
+    private static final String IDENTITY_ENCODING = "identity";
+    private static final String KEEP_ALIVE = "keep-alive";
+    private static final String HEAD_METHOD = "HEAD";
+
+    private final ExecutorService executor;
+    private final int timeout;
+    private final Charset charset;
+
+
+    /**
+     * Constructor that creates the threads which run tasks that send requests.
+     *
+     * @param threadCount the number of tasks that are run concurrently,
+     *         or 0 if tasks are run by the threads that submit them
+     * @param timeout the connection and read timeout of requests in milliseconds
+     * @param charset the charset of the HTML pages
+     */
+    public PooledHttpClient(final int threadCount, final int timeout, final Charset charset)
+    {
+        this.executor = threadCount > 0 ? Executors.newFixedThreadPool(threadCount) : null;
+        this.timeout = timeout;
+        this.charset = charset;
+    }
+
+
+    /**
+     * Runs a task by one of the threads of this client, or by the current thread
+     * if this client has no threads.
+     *
+     * @param task a task that sends requests
+     * @param <T> the type of the result of the task
+     *
+     * @return a future of the result of the task
+     */
+    public <T> CompletableFuture<T> supplyAsync(final Supplier<T> task)
+    {
+        return executor == null
+               ? CompletableFuture.completedFuture(task.get())
+               : CompletableFuture.supplyAsync(task, executor);
+    }
+
+
+    /**
+     * Retrieves an HTML page, requesting it to be gzip-compressed.
+     *
+     * @param url the URL of the HTML page
+     *
+     * @return the parsed HTML page
+     *
+     * @throws IOException thrown when the server responds with an error or cannot be reached
+     */
+    public Document requestHtml(final String url) throws IOException
+    {
+        return Jsoup.parse(readHtml(openHtmlConnection(url)), url);
+    }
+
+
+    /**
+     * Creates a keep-alive connection to an HTML page that is transferred gzip-compressed.
+     * Request headers, such as the headers of a conditional request, can be added
+     * before the connection is opened.
+     *
+     * @param url the URL of the HTML page
+     *
+     * @return an unopened connection
+     *
+     * @throws IOException thrown when the URL is malformed
+     */
+    public URLConnection openHtmlConnection(final String url) throws IOException
+    {
+        return openConnection(url, GZIP_ENCODING);
+    }
+
+
+    /**
+     * Reads and decodes the HTML page of a connection.
+     *
+     * @param connection an unopened connection that was created via {@linkplain #openHtmlConnection(String)}
+     *
+     * @return the unparsed HTML page
+     *
+     * @throws IOException thrown when the server responds with an error or cannot be reached
+     */
+    public String readHtml(final URLConnection connection) throws IOException
+    {
+        try
+            (InputStream responseStream = getResponseStream(connection)) {
+            return new String(HttpUtils.readFully(responseStream), charset);
+        }
+    }
+
+
+    /**
+     * Opens a stream of a file without compression, because files such as zip
+     * archives are compressed already. The connection can only be reused if
+     * the stream is read completely before it is closed.
+     *
+     * @param url the URL of the file
+     *
+     * @return a stream of the file
+     *
+     * @throws IOException thrown when the file could not be retrieved
+     */
+    public InputStream openStream(final String url) throws IOException
+    {
+        return getResponseStream(openConnection(url));
+    }
+
+
+    /**
+     * Retrieves the response headers of a file via a HEAD request, without transferring the file.
+     *
+     * @param url the URL of the file
+     *
+     * @return a connection of which the response headers can be read
+     *
+     * @throws IOException thrown when the server responds with an error or cannot be reached
+     */
+    public URLConnection head(final String url) throws IOException
+    {
+        return head(openConnection(url));
+    }
+
+
+    /**
+     * Sends a HEAD request via a connection, which may have additional request headers,
+     * such as the headers of a conditional request.
+     *
+     * @param connection an unopened connection that was opened via {@linkplain #openConnection(String)}
+     *
+     * @return the connection, of which the response headers can be read
+     *
+     * @throws IOException thrown when the server responds with an error or cannot be reached
+     */
+    public URLConnection head(final URLConnection connection) throws IOException
+    {
+        if (connection instanceof HttpURLConnection)
+            ((HttpURLConnection) connection).setRequestMethod(HEAD_METHOD);
+
+        // HEAD responses have no content, but closing the stream returns the connection to the pool
+        getResponseStream(connection).close();
+
+        return connection;
+    }
+
+
+    /**
+     * Stops all request threads, aborting tasks that were not started yet.
+     */
+    public void shutdown()
+    {
+        if (executor != null)
+            executor.shutdownNow();
+    }
+
+
+    /**
+     * Creates a keep-alive connection to a file that is transferred without compression.
+     * Request headers, such as Range headers, can be added before the connection is opened.
+     *
+     * @param url the URL to which the connection is opened
+     *
+     * @return an unopened connection
+     *
+     * @throws IOException thrown when the URL is malformed
+     */
+    public URLConnection openConnection(final String url) throws IOException
+    {
+        return openConnection(url, IDENTITY_ENCODING);
+    }
+
+
+    /**
+     * Sends the request of a connection and checks the response status. If the server responds
+     * with an error, the error response is drained, so that the connection can be reused.
+     *
+     * @param connection an unopened connection
+     *
+     * @throws IOException thrown when the server responds with an error or cannot be reached
+     */
+    public void connect(final URLConnection connection) throws IOException
+    {
+        if (connection instanceof HttpURLConnection) {
+            final HttpURLConnection httpConnection = (HttpURLConnection) connection;
+            final int responseCode = httpConnection.getResponseCode();
+
+            if (responseCode >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                final InputStream errorStream = httpConnection.getErrorStream();
+
+                if (errorStream != null) {
+                    try
+                        (InputStream drainedStream = errorStream) {
+                        HttpUtils.readFully(drainedStream);
+                    }
+                }
+
+                throw new HttpStatusException(responseCode, connection.getURL());
+            }
+        }
+    }
+
+
+    /**
+     * Retrieves the decoded response stream of a connection. If the server responds
+     * with an error, the error response is drained, so that the connection can be reused.
+     *
+     * @param connection an unopened connection, or a connection that was connected
+     *          via {@linkplain #connect(URLConnection)}
+     *
+     * @return the decoded response stream
+     *
+     * @throws IOException thrown when the server responds with an error or cannot be reached
+     */
+    public InputStream getResponseStream(final URLConnection connection) throws IOException
+    {
+        connect(connection);
+        final InputStream responseStream = connection.getInputStream();
+
+        return GZIP_ENCODING.equalsIgnoreCase(connection.getHeaderField(CONTENT_ENCODING_HEADER))
+               ? new GZIPInputStream(responseStream, HttpUtils.BUFFER_SIZE)
+               : responseStream;
+    }
+
+
+    /**
+     * Opens a keep-alive connection to a URL.
+     *
+     * @param url the URL to which the connection is opened
+     * @param acceptedEncoding the value of the Accept-Encoding header
+     *
+     * @return an unopened connection
+     *
+     * @throws IOException thrown when the URL is malformed
+     */
+    private URLConnection openConnection(final String url, final String acceptedEncoding) throws IOException
+    {
+        final URLConnection connection = new URL(url).openConnection();
+        connection.setConnectTimeout(timeout);
+        connection.setReadTimeout(timeout);
+        connection.setRequestProperty(ACCEPT_ENCODING_HEADER, acceptedEncoding);
+        connection.setRequestProperty(CONNECTION_HEADER, KEEP_ALIVE);
+        return connection;
+    }
+}
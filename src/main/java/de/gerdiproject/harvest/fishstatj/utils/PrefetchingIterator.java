@@ -0,0 +1,227 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import lombok.AllArgsConstructor;
+
+/**
+ * This {@linkplain Iterator} maps the elements of a source {@linkplain Iterator}
+ * asynchronously, keeping a fixed number of mappings in flight. The mapped
+ * elements are returned in the same order as their source elements. Mapped
+ * elements that are never returned, because the iterator was cancelled, are
+ * passed to a discard function, which can free resources that they hold.
+ *
+ * @param <S> the type of the source elements
+ * @param <T> the type of the mapped elements
+ *
+ * @author Robin Weiss
+ */
+public class PrefetchingIterator<S, T> implements Iterator<T>
+{
+    private static final String INTERRUPTED_ERROR = "Interrupted while waiting for a prefetched element!";
+
+    private final Iterator<S> sourceIterator;
+    private final Function<S, T> mappingFunction;
+    private final Consumer<T> discardFunction;
+    private final ExecutorService executor;
+    private final int capacity;
+    private final Queue<PendingResult> pendingResults;
+    private volatile boolean isCancelled;
+
+
+    /**
+     * Constructor that sets up the iterator without submitting any tasks yet.
+     *
+     * @param sourceIterator the iterator of which the elements are to be mapped
+     * @param mappingFunction a function that maps a source element to a target element
+     * @param executor the executor that runs the mapping functions
+     * @param capacity the maximum number of elements that are mapped concurrently
+     */
+    public PrefetchingIterator(final Iterator<S> sourceIterator, final Function<S, T> mappingFunction, final ExecutorService executor, final int capacity)
+    {
+        this(sourceIterator, mappingFunction, (final T element) -> {}, executor, capacity);
+    }
+
+
+    /**
+     * Constructor that sets up the iterator without submitting any tasks yet.
+     *
+     * @param sourceIterator the iterator of which the elements are to be mapped
+     * @param mappingFunction a function that maps a source element to a target element
+     * @param discardFunction a function that frees the resources of a mapped element that is never returned
+     * @param executor the executor that runs the mapping functions
+     * @param capacity the maximum number of elements that are mapped concurrently
+     */
+    public PrefetchingIterator(final Iterator<S> sourceIterator, final Function<S, T> mappingFunction, final Consumer<T> discardFunction, final ExecutorService executor, final int capacity)
+    {
+        this.sourceIterator = sourceIterator;
+        this.mappingFunction = mappingFunction;
+        this.discardFunction = discardFunction;
+        this.executor = executor;
+        this.capacity = Math.max(1, capacity);
+        this.pendingResults = new ArrayDeque<>(this.capacity);
+    }
+
+
+    @Override
+    public boolean hasNext()
+    {
+        fillQueue();
+        return !pendingResults.isEmpty();
+    }
+
+
+    @Override
+    public T next()
+    {
+        fillQueue();
+
+        final PendingResult nextResult = pendingResults.poll();
+
+        if (nextResult == null)
+            throw new NoSuchElementException();
+
+        final T result = getResult(nextResult.future);
+
+        // keep the pipeline busy while the caller is processing the element,
+        // refilling only after the mapping has finished in order to not exceed the capacity
+        fillQueue();
+
+        return result;
+    }
+
+
+    /**
+     * Cancels all mappings that have not been retrieved yet. Elements that were
+     * mapped already, or that are mapped despite the cancellation, are discarded.
+     */
+    public void cancel()
+    {
+        isCancelled = true;
+
+        for (final PendingResult pendingResult : pendingResults) {
+            // completed mappings cannot be cancelled, and their elements would be lost otherwise
+            if (!pendingResult.future.cancel(true) && pendingResult.isClaimed.compareAndSet(false, true))
+                discardCompletedResult(pendingResult.future);
+        }
+
+        pendingResults.clear();
+    }
+
+
+    /**
+     * Submits mapping tasks until either the capacity is reached or the
+     * source iterator is exhausted.
+     */
+    private void fillQueue()
+    {
+        while (pendingResults.size() < capacity && sourceIterator.hasNext()) {
+            final S source = sourceIterator.next();
+            final AtomicBoolean isClaimed = new AtomicBoolean();
+
+            final Future<T> future = executor.submit(() -> {
+                final T result = mappingFunction.apply(source);
+
+                // running mappings may finish after their futures were cancelled
+                if (isCancelled && isClaimed.compareAndSet(false, true))
+                    discardFunction.accept(result);
+
+                return result;
+            });
+
+            pendingResults.add(new PendingResult(future, isClaimed));
+        }
+    }
+
+
+    /**
+     * Waits for a mapping task to finish and returns its result.
+     * Exceptions that were thrown by the mapping function are re-thrown.
+     *
+     * @param result the future result of a mapping task
+     *
+     * @return the mapped element
+     */
+    private T getResult(final Future<T> result)
+    {
+        try {
+            return result.get();
+
+        } catch (final InterruptedException e) {
+            cancel();
+            Thread.currentThread().interrupt();
+            throw new CancellationException(INTERRUPTED_ERROR);
+
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            else if (cause instanceof Error)
+                throw (Error) cause;
+            else
+                throw new IllegalStateException(cause);
+        }
+    }
+
+
+    /**
+     * Passes the result of a completed mapping task to the discard function.
+     * Results of failed mapping tasks are ignored.
+     *
+     * @param result the future result of a completed mapping task
+     */
+    private void discardCompletedResult(final Future<T> result)
+    {
+        try {
+            discardFunction.accept(result.get());
+
+        } catch (ExecutionException | CancellationException e) {
+            // failed mappings hold no resources
+            return;
+
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * This class is the future result of a mapping task, together with a flag
+     * that is set by whichever side discards the result, if it is discarded.
+     *
+     * @author Robin Weiss
+     */
+    @AllArgsConstructor
+    private class PendingResult
+    {
+        private final Future<T> future;
+        private final AtomicBoolean isClaimed;
+    }
+}
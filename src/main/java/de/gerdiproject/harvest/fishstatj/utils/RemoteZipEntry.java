@@ -0,0 +1,36 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import lombok.Value;
+
+/**
+ * This value object describes a file of a remote zip archive, as it
+ * is listed in the central directory of the archive.
+ *
+ * @author Robin Weiss
+ */
+@Value
+public class RemoteZipEntry
+{
+    private final String name;
+    private final int compressionMethod;
+    private final long crc;
+    private final long compressedSize;
+    private final long uncompressedSize;
+    private final long localHeaderOffset;
+}
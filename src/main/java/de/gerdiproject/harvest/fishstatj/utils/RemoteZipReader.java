@@ -0,0 +1,473 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.HttpURLConnection;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * This class reads single files of a remote zip archive via HTTP range requests.
+ * Only the central directory and the byte ranges of requested files are transferred.
+ * Range requests are sent via the {@linkplain RequestThrottle} of the host, if requests are throttled.
+ *
+ * @author Robin Weiss
+ */
+public class RemoteZipReader
+{
+    private static final String SUFFIX_RANGE = "bytes=-%d";
+    private static final String BYTE_RANGE = "bytes=%d-%d";
+    private static final Pattern CONTENT_RANGE_PATTERN = Pattern.compile("^bytes (\\d+)-(\\d+)/(\\d+)$");
+
+    private static final String NO_EOCD_ERROR = "Could not find the end of the central directory of: %s";
+    private static final String ZIP64_ERROR = "ZIP64 archives are not supported: %s";
+    private static final String CENTRAL_DIRECTORY_ERROR = "Invalid central directory header in: %s";
+    private static final String LOCAL_HEADER_ERROR = "Invalid local file header of '%s' in: %s";
+    private static final String COMPRESSION_ERROR = "Unsupported compression method %d of '%s' in: %s";
+    private static final String RANGE_ERROR = "The server ignored a range request for: %s";
+
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int EOCD_MIN_SIZE = 22;
+    private static final int EOCD_MAX_SIZE = EOCD_MIN_SIZE + 0xFFFF;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final long ZIP64_MARKER = 0xFFFFFFFFL;
+
+    private final String zipUrl;
+    private final PooledHttpClient httpClient;
+    private final RequestThrottle requestThrottle;
+    private long archiveSize = -1;
+    private long centralDirectoryOffset = -1;
+    private final NavigableSet<Long> localHeaderOffsets = new TreeSet<>();
+
+
+    /**
+     * Constructor that requires the URL of the zip archive.
+     *
+     * @param zipUrl the URL of a remote zip archive
+     * @param httpClient the client that sends the range requests
+     * @param requestThrottles a function that retrieves the request throttle of the host
+     *          of a URL, returning null if requests are not throttled
+     */
+    public RemoteZipReader(final String zipUrl, final PooledHttpClient httpClient, final Function<String, RequestThrottle> requestThrottles)
+    {
+        this.zipUrl = zipUrl;
+        this.httpClient = httpClient;
+        this.requestThrottle = requestThrottles.apply(zipUrl);
+    }
+
+
+    /**
+     * Retrieves the end of the remote archive and parses its central directory.
+     *
+     * @return a list of all files of the archive, or null if the server does not
+     *          support HTTP range requests
+     *
+     * @throws IOException thrown when the archive cannot be retrieved or is not a valid zip archive
+     */
+    public List<RemoteZipEntry> readCentralDirectory() throws IOException
+    {
+        // retrieve the end of the archive, which contains the end of the central directory record
+        final ByteBuffer archiveEnd = requestSuffix(EOCD_MAX_SIZE);
+
+        if (archiveEnd == null)
+            return null;
+
+        final int eocdPosition = findEndOfCentralDirectory(archiveEnd);
+        final int entryCount = archiveEnd.getShort(eocdPosition + 10) & 0xFFFF;
+        final long centralDirectorySize = archiveEnd.getInt(eocdPosition + 12) & ZIP64_MARKER;
+        this.centralDirectoryOffset = archiveEnd.getInt(eocdPosition + 16) & ZIP64_MARKER;
+
+        if (centralDirectoryOffset == ZIP64_MARKER || centralDirectorySize == ZIP64_MARKER)
+            throw new ZipException(String.format(ZIP64_ERROR, zipUrl));
+
+        // the central directory is often small enough to be part of the retrieved bytes already
+        final long archiveEndOffset = archiveSize - archiveEnd.capacity();
+        final ByteBuffer centralDirectory;
+
+        if (centralDirectoryOffset >= archiveEndOffset) {
+            archiveEnd.position((int)(centralDirectoryOffset - archiveEndOffset));
+            centralDirectory = archiveEnd.slice().order(ByteOrder.LITTLE_ENDIAN);
+        } else
+            centralDirectory = requestRange(centralDirectoryOffset, centralDirectoryOffset + centralDirectorySize - 1);
+
+        return parseCentralDirectory(centralDirectory, entryCount);
+    }
+
+
+    /**
+     * Retrieves the uncompressed content of a single file of the archive.
+     * The central directory must have been read before calling this method.
+     *
+     * @param entry a file of the archive
+     *
+     * @return a stream of the uncompressed file content
+     *
+     * @throws IOException thrown when the file cannot be retrieved or decompressed
+     */
+    @SuppressWarnings("resource") // the returned stream closes all wrapped streams
+    public InputStream openEntry(final RemoteZipEntry entry) throws IOException
+    {
+        // the file ends where the next file or the central directory begins
+        final long rangeFrom = entry.getLocalHeaderOffset();
+        final Long nextHeaderOffset = localHeaderOffsets.higher(rangeFrom);
+        final long rangeTo = (nextHeaderOffset == null ? centralDirectoryOffset : nextHeaderOffset) - 1;
+
+        final InputStream rangeStream = openRange(rangeFrom, rangeTo);
+
+        try {
+            // parse the local header in order to skip the file name and extra field
+            final ByteBuffer localHeader = ByteBuffer.wrap(HttpUtils.readFully(rangeStream, LOCAL_HEADER_SIZE)).order(ByteOrder.LITTLE_ENDIAN);
+
+            if (localHeader.getInt(0) != LOCAL_HEADER_SIGNATURE)
+                throw new ZipException(String.format(LOCAL_HEADER_ERROR, entry.getName(), zipUrl));
+
+            final int nameLength = localHeader.getShort(26) & 0xFFFF;
+            final int extraLength = localHeader.getShort(28) & 0xFFFF;
+            HttpUtils.readFully(rangeStream, nameLength + extraLength);
+
+            final InputStream compressedStream = new BoundedInputStream(rangeStream, entry.getCompressedSize());
+
+            switch (entry.getCompressionMethod()) {
+                case ZipEntry.STORED:
+                    return compressedStream;
+
+                case ZipEntry.DEFLATED:
+                    return new RawInflaterInputStream(compressedStream);
+
+                default:
+                    throw new ZipException(String.format(COMPRESSION_ERROR, entry.getCompressionMethod(), entry.getName(), zipUrl));
+            }
+        } catch (final IOException e) {
+            rangeStream.close();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Looks for the signature of the end of central directory record, starting
+     * from the end of the buffer.
+     *
+     * @param archiveEnd the last bytes of the archive
+     *
+     * @return the position of the end of central directory record within the buffer
+     *
+     * @throws ZipException thrown when the record could not be found
+     */
+    private int findEndOfCentralDirectory(final ByteBuffer archiveEnd) throws ZipException
+    {
+        for (int i = archiveEnd.capacity() - EOCD_MIN_SIZE; i >= 0; i--) {
+            if (archiveEnd.getInt(i) == EOCD_SIGNATURE)
+                return i;
+        }
+
+        throw new ZipException(String.format(NO_EOCD_ERROR, zipUrl));
+    }
+
+
+    /**
+     * Parses all file headers of a central directory.
+     *
+     * @param centralDirectory the bytes of the central directory
+     * @param entryCount the number of files that are listed in the central directory
+     *
+     * @return a list of all files of the archive
+     *
+     * @throws ZipException thrown when the central directory is invalid
+     */
+    private List<RemoteZipEntry> parseCentralDirectory(final ByteBuffer centralDirectory, final int entryCount) throws ZipException
+    {
+        final List<RemoteZipEntry> entries = new LinkedList<>();
+        int position = 0;
+
+        for (int i = 0; i < entryCount; i++) {
+            if (position + CENTRAL_HEADER_SIZE > centralDirectory.capacity()
+                || centralDirectory.getInt(position) != CENTRAL_HEADER_SIGNATURE)
+                throw new ZipException(String.format(CENTRAL_DIRECTORY_ERROR, zipUrl));
+
+            final int nameLength = centralDirectory.getShort(position + 28) & 0xFFFF;
+            final int extraLength = centralDirectory.getShort(position + 30) & 0xFFFF;
+            final int commentLength = centralDirectory.getShort(position + 32) & 0xFFFF;
+
+            final byte[] nameBytes = new byte[nameLength];
+            centralDirectory.position(position + CENTRAL_HEADER_SIZE);
+            centralDirectory.get(nameBytes);
+
+            final RemoteZipEntry entry = new RemoteZipEntry(
+                new String(nameBytes, StandardCharsets.UTF_8),
+                centralDirectory.getShort(position + 10) & 0xFFFF,
+                centralDirectory.getInt(position + 16) & ZIP64_MARKER,
+                centralDirectory.getInt(position + 20) & ZIP64_MARKER,
+                centralDirectory.getInt(position + 24) & ZIP64_MARKER,
+                centralDirectory.getInt(position + 42) & ZIP64_MARKER);
+
+            if (entry.getCompressedSize() == ZIP64_MARKER || entry.getLocalHeaderOffset() == ZIP64_MARKER)
+                throw new ZipException(String.format(ZIP64_ERROR, zipUrl));
+
+            entries.add(entry);
+            localHeaderOffsets.add(entry.getLocalHeaderOffset());
+            position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+
+        return entries;
+    }
+
+
+    /**
+     * Requests the last bytes of the archive and determines the archive size.
+     *
+     * @param suffixLength the maximum number of bytes to be retrieved
+     *
+     * @return the last bytes of the archive, or null if ranges are not supported
+     *
+     * @throws IOException thrown when the bytes could not be retrieved
+     */
+    private ByteBuffer requestSuffix(final int suffixLength) throws IOException
+    {
+        return RequestThrottle.send(requestThrottle, () -> sendSuffixRequest(suffixLength));
+    }
+
+
+    /**
+     * Sends a single request of the last bytes of the archive and determines the archive size.
+     *
+     * @param suffixLength the maximum number of bytes to be retrieved
+     *
+     * @return the last bytes of the archive, or null if ranges are not supported
+     *
+     * @throws IOException thrown when the bytes could not be retrieved
+     */
+    private ByteBuffer sendSuffixRequest(final int suffixLength) throws IOException
+    {
+        final URLConnection connection = httpClient.openConnection(zipUrl);
+
+        if (!(connection instanceof HttpURLConnection))
+            return null;
+
+        final HttpURLConnection httpConnection = (HttpURLConnection) connection;
+        httpConnection.setRequestProperty(HttpUtils.RANGE_HEADER, String.format(SUFFIX_RANGE, suffixLength));
+
+        final InputStream responseStream = httpClient.getResponseStream(httpConnection);
+        final Matcher contentRange = getContentRange(httpConnection);
+
+        // do not transfer the whole archive if the server ignored the range
+        if (contentRange == null) {
+            httpConnection.disconnect();
+            return null;
+        }
+
+        this.archiveSize = Long.parseLong(contentRange.group(3));
+        final int rangeLength = (int)(Long.parseLong(contentRange.group(2)) - Long.parseLong(contentRange.group(1)) + 1);
+
+        try
+            (InputStream rangeStream = responseStream) {
+            return ByteBuffer.wrap(HttpUtils.readFully(rangeStream, rangeLength)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+
+    /**
+     * Requests a range of bytes of the archive and reads them to memory.
+     *
+     * @param from the index of the first byte
+     * @param to the index of the last byte
+     *
+     * @return the requested bytes
+     *
+     * @throws IOException thrown when the bytes could not be retrieved
+     */
+    private ByteBuffer requestRange(final long from, final long to) throws IOException
+    {
+        try
+            (InputStream rangeStream = openRange(from, to)) {
+            return ByteBuffer.wrap(HttpUtils.readFully(rangeStream, (int)(to - from + 1))).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+
+    /**
+     * Opens a stream of a range of bytes of the archive.
+     *
+     * @param from the index of the first byte
+     * @param to the index of the last byte
+     *
+     * @return a stream of the requested bytes
+     *
+     * @throws IOException thrown when the bytes could not be retrieved or the server ignored the range
+     */
+    private InputStream openRange(final long from, final long to) throws IOException
+    {
+        // only opening the stream is throttled, not reading it
+        return RequestThrottle.send(requestThrottle, () -> {
+            final HttpURLConnection httpConnection = (HttpURLConnection) httpClient.openConnection(zipUrl);
+            httpConnection.setRequestProperty(HttpUtils.RANGE_HEADER, String.format(BYTE_RANGE, from, to));
+
+            final InputStream rangeStream = httpClient.getResponseStream(httpConnection);
+
+            if (getContentRange(httpConnection) == null) {
+                httpConnection.disconnect();
+                throw new IOException(String.format(RANGE_ERROR, zipUrl));
+            }
+
+            return rangeStream;
+        });
+    }
+
+
+    /**
+     * Checks if a response is a partial content response and parses its content range.
+     *
+     * @param httpConnection the connection of which the response is checked
+     *
+     * @return a matcher of the content range header, or null if the response is not a valid partial content response
+     *
+     * @throws IOException thrown when the response could not be retrieved
+     */
+    private static Matcher getContentRange(final HttpURLConnection httpConnection) throws IOException
+    {
+        if (httpConnection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL)
+            return null;
+
+        final String contentRangeHeader = httpConnection.getHeaderField(HttpUtils.CONTENT_RANGE_HEADER);
+
+        if (contentRangeHeader == null)
+            return null;
+
+        final Matcher contentRange = CONTENT_RANGE_PATTERN.matcher(contentRangeHeader.trim());
+        return contentRange.matches() ? contentRange : null;
+    }
+
+
+    /**
+     * This {@linkplain FilterInputStream} ends after a fixed number of bytes.
+     *
+     * @author Robin Weiss
+     */
+    private static class BoundedInputStream extends FilterInputStream
+    {
+        private long remainingBytes;
+
+
+        /**
+         * Constructor that wraps a stream.
+         *
+         * @param inputStream the wrapped stream
+         * @param length the maximum number of bytes that can be read
+         */
+        BoundedInputStream(final InputStream inputStream, final long length)
+        {
+            super(inputStream);
+            this.remainingBytes = length;
+        }
+
+
+        @Override
+        public int read() throws IOException
+        {
+            if (remainingBytes <= 0)
+                return -1;
+
+            final int readByte = super.read();
+
+            if (readByte != -1)
+                remainingBytes--;
+
+            return readByte;
+        }
+
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException
+        {
+            if (remainingBytes <= 0)
+                return -1;
+
+            final int readByteCount = super.read(b, off, (int) Math.min(len, remainingBytes));
+
+            if (readByteCount != -1)
+                remainingBytes -= readByteCount;
+
+            return readByteCount;
+        }
+
+
+        @Override
+        public long skip(final long n) throws IOException
+        {
+            final long skippedBytes = super.skip(Math.min(n, remainingBytes));
+            remainingBytes -= skippedBytes;
+            return skippedBytes;
+        }
+
+
+        @Override
+        public int available() throws IOException
+        {
+            return (int) Math.min(super.available(), remainingBytes);
+        }
+    }
+
+
+    /**
+     * This {@linkplain InflaterInputStream} decompresses raw deflate streams
+     * and releases its {@linkplain Inflater} when it is closed.
+     *
+     * @author Robin Weiss
+     */
+    private static class RawInflaterInputStream extends InflaterInputStream
+    {
+        /**
+         * Constructor that wraps a stream of raw deflated bytes.
+         *
+         * @param compressedStream a stream of raw deflated bytes
+         */
+        RawInflaterInputStream(final InputStream compressedStream)
+        {
+            // raw deflate streams require an additional dummy byte at the end
+            super(new SequenceInputStream(compressedStream, new ByteArrayInputStream(new byte[1])), new Inflater(true));
+        }
+
+
+        @Override
+        public void close() throws IOException
+        {
+            super.close();
+            inf.end();
+        }
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class controls the requests that are sent to a single host. The request rate
+ * is limited by a {@linkplain TokenBucket}, and the number of concurrent requests is
+ * adapted to the responsiveness of the host: the limit is increased additively for
+ * every fast and successful request, and halved for every slow or failed request.
+ * Failed requests are retried after an exponentially growing, randomly jittered delay,
+ * and a {@linkplain CircuitBreaker} suspends all requests after consecutive failures.
+ * Client errors, such as a missing file, are neither retried nor counted as failures,
+ * because the host responded.
+ *
+ * @author Robin Weiss
+ */
+public class RequestThrottle
+{
+    private static final long RETRY_BASE_DELAY = 1000;
+    private static final long RETRY_MAX_DELAY = 30000;
+    private static final long SLOW_REQUEST_LATENCY = 10000;
+    private static final int CIRCUIT_BREAKER_THRESHOLD = 5;
+    private static final long CIRCUIT_BREAKER_OPEN_DURATION = 60000;
+    private static final String INTERRUPTED_ERROR = "Interrupted while waiting to send a request to %s!";
+
+    private final String host;
+    private final TokenBucket tokenBucket;
+    private final CircuitBreaker circuitBreaker;
+    private final int maxConcurrentRequests;
+    private final int maxRetries;
+
+    private double concurrencyLimit = 1;
+    private int runningRequests;
+
+
+    /**
+     * Constructor that starts with a single concurrent request.
+     *
+     * @param host the name of the host to which the requests are sent
+     * @param requestsPerSecond the maximum number of requests per second
+     * @param maxConcurrentRequests the upper bound of the number of concurrent requests
+     * @param maxRetries the number of times a failed request is retried
+     */
+    public RequestThrottle(final String host, final int requestsPerSecond, final int maxConcurrentRequests, final int maxRetries)
+    {
+        this.host = host;
+        this.tokenBucket = new TokenBucket(requestsPerSecond);
+        this.circuitBreaker = new CircuitBreaker(host, CIRCUIT_BREAKER_THRESHOLD, CIRCUIT_BREAKER_OPEN_DURATION);
+        this.maxConcurrentRequests = Math.max(1, maxConcurrentRequests);
+        this.maxRetries = maxRetries;
+    }
+
+
+    /**
+     * Sends a request as soon as the circuit breaker, the rate and concurrency limits
+     * allow it, and retries it if it fails due to a timeout, a connection error, a server
+     * error, or any other error that is not a client error.
+     *
+     * @param request a function that sends the request and retrieves the response
+     * @param <T> the type of the response
+     *
+     * @return the response of the first successful attempt
+     *
+     * @throws IOException the error of the last attempt, a client error, or an error
+     *          that is thrown when the thread was interrupted
+     */
+    public <T> T execute(final Request<T> request) throws IOException
+    {
+        IOException lastError = null;
+
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            if (attempt > 0)
+                sleep(getRetryDelay(attempt));
+
+            final boolean isTrial = awaitCircuitBreaker();
+
+            try {
+                acquire();
+            } catch (final InterruptedIOException e) {
+                if (isTrial)
+                    circuitBreaker.abortTrial();
+
+                throw e;
+            }
+
+            final long startTime = System.currentTimeMillis();
+            boolean isCompleted = false;
+            IOException error = null;
+
+            try {
+                final T response = request.send();
+                isCompleted = true;
+                return response;
+
+            } catch (final IOException e) {
+                isCompleted = true;
+                error = e;
+
+                if (!isRetryable(e))
+                    throw e;
+
+                lastError = e;
+
+            } finally {
+                release(isTrial, isCompleted, error, System.currentTimeMillis() - startTime);
+            }
+        }
+
+        throw lastError;
+    }
+
+
+    /**
+     * Sends a request via the request throttle of its host, or right away if requests are not throttled.
+     *
+     * @param throttle the request throttle of the host, or null if requests are not throttled
+     * @param request a function that sends the request and retrieves the response
+     * @param <T> the type of the response
+     *
+     * @return the response of the first successful attempt
+     *
+     * @throws IOException thrown when the request failed
+     */
+    public static <T> T send(final RequestThrottle throttle, final Request<T> request) throws IOException
+    {
+        return throttle == null
+               ? request.send()
+               : throttle.execute(request);
+    }
+
+
+    /**
+     * Retrieves the current number of requests that may be sent concurrently.
+     *
+     * @return the current concurrency limit
+     */
+    public synchronized int getConcurrencyLimit()
+    {
+        return (int) concurrencyLimit;
+    }
+
+
+    /**
+     * Checks if a failed request may succeed when it is sent again. Client errors
+     * are not retried, and neither are requests that were interrupted.
+     *
+     * @param error the error of the failed request
+     *
+     * @return true if the request is to be retried
+     */
+    private static boolean isRetryable(final IOException error)
+    {
+        if (error instanceof HttpStatusException)
+            return !((HttpStatusException) error).isClientError();
+
+        // URLConnections throw this exception if a file is missing or gone
+        if (error instanceof FileNotFoundException)
+            return false;
+
+        return !isInterruption(error);
+    }
+
+
+    /**
+     * Checks if a request failed because its thread was interrupted, rather than
+     * because the host did not respond in time.
+     *
+     * @param error the error of the failed request
+     *
+     * @return true if the request was interrupted
+     */
+    private static boolean isInterruption(final IOException error)
+    {
+        return error instanceof InterruptedIOException && !(error instanceof SocketTimeoutException);
+    }
+
+
+    /**
+     * Waits until the circuit breaker allows another request.
+     *
+     * @return true if the request is the trial request of the circuit breaker
+     *
+     * @throws InterruptedIOException thrown when the thread is interrupted while waiting
+     */
+    private boolean awaitCircuitBreaker() throws InterruptedIOException
+    {
+        try {
+            return circuitBreaker.awaitAllowed();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(String.format(INTERRUPTED_ERROR, host));
+        }
+    }
+
+
+    /**
+     * Waits until the concurrency limit and the request rate allow another request.
+     *
+     * @throws InterruptedIOException thrown when the thread is interrupted while waiting
+     */
+    private void acquire() throws InterruptedIOException
+    {
+        try {
+            synchronized (this) {
+                while (runningRequests >= (int) concurrencyLimit)
+                    wait();
+
+                runningRequests++;
+            }
+
+            try {
+                tokenBucket.acquire();
+            } catch (final InterruptedException e) {
+                synchronized (this) {
+                    runningRequests--;
+                    notifyAll();
+                }
+                throw e;
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(String.format(INTERRUPTED_ERROR, host));
+        }
+    }
+
+
+    /**
+     * Records the outcome of a finished request in the circuit breaker, adapts the
+     * concurrency limit to it, and allows waiting requests to be sent. Requests that
+     * were interrupted or aborted by an unexpected exception have no outcome.
+     *
+     * @param isTrial true if the request was the trial request of the circuit breaker
+     * @param isCompleted true if the request returned a response or threw an {@linkplain IOException}
+     * @param error the error of the request, or null if it succeeded
+     * @param latency the duration of the request in milliseconds
+     */
+    private void release(final boolean isTrial, final boolean isCompleted, final IOException error, final long latency)
+    {
+        final boolean hasOutcome = isCompleted && (error == null || !isInterruption(error));
+        final boolean isSuccessful = error == null || !isRetryable(error);
+
+        if (hasOutcome)
+            circuitBreaker.record(isTrial, isSuccessful);
+
+        else if (isTrial)
+            circuitBreaker.abortTrial();
+
+        synchronized (this) {
+            runningRequests--;
+
+            if (hasOutcome) {
+                if (isSuccessful && latency < SLOW_REQUEST_LATENCY)
+                    concurrencyLimit = Math.min(maxConcurrentRequests, concurrencyLimit + 1 / concurrencyLimit);
+                else
+                    concurrencyLimit = Math.max(1, concurrencyLimit / 2);
+            }
+
+            notifyAll();
+        }
+    }
+
+
+    /**
+     * Calculates a random delay before a request is retried, which is at most
+     * exponentially longer than the base delay, using "full jitter".
+     *
+     * @param attempt the number of the retry attempt, starting at 1
+     *
+     * @return a delay in milliseconds
+     */
+    private static long getRetryDelay(final int attempt)
+    {
+        final long maxDelay = Math.min(RETRY_MAX_DELAY, RETRY_BASE_DELAY << Math.min(attempt - 1, Integer.SIZE));
+        return ThreadLocalRandom.current().nextLong(maxDelay + 1);
+    }
+
+
+    /**
+     * Pauses the current thread before a request is retried.
+     *
+     * @param delay the delay in milliseconds
+     *
+     * @throws InterruptedIOException thrown when the thread is interrupted while waiting
+     */
+    private void sleep(final long delay) throws InterruptedIOException
+    {
+        try {
+            TimeUnit.MILLISECONDS.sleep(delay);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(String.format(INTERRUPTED_ERROR, host));
+        }
+    }
+
+
+    /**
+     * This functional interface represents a request that may fail with an {@linkplain IOException}.
+     *
+     * @param <T> the type of the response
+     *
+     * @author Robin Weiss
+     */
+    @FunctionalInterface
+    public interface Request<T>
+    {
+        /**
+         * Sends the request and retrieves the response.
+         *
+         * @return the response
+         *
+         * @throws IOException thrown when the request fails
+         */
+        T send() throws IOException;
+    }
+}
@@ -0,0 +1,501 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.gerdiproject.harvest.fishstatj.constants.FishStatJFileConstants;
+import de.gerdiproject.harvest.utils.file.FileUtils;
+
+/**
+ * This class downloads zip archives to a partial file first, and resumes interrupted
+ * downloads from the last written byte via HTTP Range requests, so that a dropped
+ * connection only costs the missing bytes. Partial files are kept across harvests,
+ * together with the ETag or Last-Modified header of the archive, which is required to
+ * resume them, until they expire. Partial files of downloads that failed for good are
+ * deleted. A download is only moved to its target file after its length and the CRCs
+ * of all of its entries were verified. Requests are sent via the {@linkplain RequestThrottle}
+ * of the host, if requests are throttled.
+ *
+ * @author Robin Weiss
+ */
+public class ResumableDownloader
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResumableDownloader.class);
+
+    private static final String PART_FILE_SUFFIX = ".part";
+    private static final String VALIDATOR_FILE_SUFFIX = ".validator";
+    private static final String RANGE_FORMAT = "bytes=%d-";
+    private static final Pattern CONTENT_RANGE_LENGTH_PATTERN = Pattern.compile("/(\\d+)$");
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+    private static final long RETRY_DELAY = 1000;
+
+    private static final String INCOMPLETE_ERROR = "Could not complete the download of %s after %d attempts without progress!";
+    private static final String VERIFICATION_ERROR = "Downloaded archive %s is corrupt!";
+    private static final String CRC_ERROR = "Entry %s of archive %s does not match its CRC!";
+    private static final String RESUMING_DOWNLOAD = "Resuming the download of %s at byte %d.";
+    private static final String INTERRUPTED_ERROR = "Interrupted while downloading %s!";
+    private static final String VALIDATOR_ERROR = "Could not access the validator of the partial download: %s";
+
+    private final PooledHttpClient httpClient;
+    private final Function<String, RequestThrottle> requestThrottles;
+    private final int maxAttempts;
+    private final long partFileLifetime;
+    private final KeyedLock fileLocks = new KeyedLock();
+
+
+    /**
+     * Constructor that sets the limits of downloads.
+     *
+     * @param httpClient the client that sends the requests
+     * @param requestThrottles a function that retrieves the request throttle of the host
+     *          of a URL, returning null if requests are not throttled
+     * @param maxAttempts the number of consecutive attempts without progress,
+     *         after which a download is aborted
+     * @param partFileLifetime the number of milliseconds after the last progress,
+     *         after which a partial file is no longer resumed
+     */
+    public ResumableDownloader(final PooledHttpClient httpClient, final Function<String, RequestThrottle> requestThrottles, final int maxAttempts, final long partFileLifetime)
+    {
+        this.httpClient = httpClient;
+        this.requestThrottles = requestThrottles;
+        this.maxAttempts = maxAttempts;
+        this.partFileLifetime = partFileLifetime;
+    }
+
+
+    /**
+     * Downloads a zip archive to a file, resuming the download if the connection
+     * is dropped, and verifying the archive before the target file is written.
+     *
+     * @param zipUrl the URL of the zip archive
+     * @param targetFile the file to which the verified archive is moved
+     *
+     * @throws IOException thrown when the download could not be completed or verified
+     */
+    public void download(final String zipUrl, final File targetFile) throws IOException
+    {
+        final File partFile = new File(targetFile.getPath() + PART_FILE_SUFFIX);
+
+        // prevent the same file from being downloaded by multiple threads at once
+        final String lockKey = partFile.getAbsolutePath();
+        fileLocks.lock(lockKey);
+
+        try {
+            FileUtils.createDirectories(partFile.getParentFile());
+
+            final Transfer transfer = new Transfer(zipUrl, partFile);
+
+            // partial files of previous harvests cannot be resumed safely if they are outdated or cannot be validated
+            if (partFile.exists() && (isExpired(partFile) || transfer.validator == null))
+                transfer.discard();
+
+            boolean mayRestart = true;
+            int failedAttempts = 0;
+            IOException lastError = null;
+
+            while (true) {
+                final long previousLength = partFile.length();
+                boolean isComplete = false;
+
+                try {
+                    isComplete = transfer.resume();
+                } catch (final IOException e) {
+                    // aborted harvests must not be resumed, whereas timeouts are
+                    if (Thread.currentThread().isInterrupted())
+                        throw e;
+
+                    // client errors, such as a missing archive, cannot be resolved by resuming the download
+                    if (e instanceof HttpStatusException && ((HttpStatusException) e).isClientError()) {
+                        transfer.discard();
+                        throw e;
+                    }
+
+                    lastError = e;
+                }
+
+                if (isComplete) {
+                    if (isValidArchive(partFile)) {
+                        Files.move(partFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                        transfer.discard();
+                        return;
+                    }
+
+                    // the partial file may have been combined from different versions of the archive
+                    transfer.discard();
+
+                    if (!mayRestart)
+                        throw new IOException(String.format(VERIFICATION_ERROR, zipUrl));
+
+                    mayRestart = false;
+                    continue;
+                }
+
+                // only attempts that did not write any bytes count as failed
+                if (partFile.length() > previousLength)
+                    failedAttempts = 0;
+                else if (++failedAttempts >= maxAttempts) {
+                    final IOException incompleteError = new IOException(String.format(INCOMPLETE_ERROR, zipUrl, failedAttempts));
+
+                    if (lastError != null)
+                        incompleteError.addSuppressed(lastError);
+
+                    throw incompleteError;
+                }
+
+                sleep(RETRY_DELAY * failedAttempts, zipUrl);
+                LOGGER.info(String.format(RESUMING_DOWNLOAD, zipUrl, partFile.length()));
+            }
+        } finally {
+            fileLocks.unlock(lockKey);
+        }
+    }
+
+
+    /**
+     * Deletes all partial files in a folder that expired, along with their validators,
+     * so that partial files of archives that are no longer downloaded do not pile up.
+     *
+     * @param folder the folder to which archives are downloaded
+     */
+    public void deleteExpiredPartFiles(final File folder)
+    {
+        final File[] files = folder.listFiles();
+
+        if (files == null)
+            return;
+
+        for (final File file : files) {
+            final String fileName = file.getName();
+
+            if (fileName.endsWith(PART_FILE_SUFFIX) && isExpired(file)) {
+                FileUtils.deleteFile(file);
+                FileUtils.deleteFile(new File(file.getPath() + VALIDATOR_FILE_SUFFIX));
+            }
+
+            // validators of partial files that were deleted or moved
+            else if (fileName.endsWith(PART_FILE_SUFFIX + VALIDATOR_FILE_SUFFIX)) {
+                final String partFileName = fileName.substring(0, fileName.length() - VALIDATOR_FILE_SUFFIX.length());
+
+                if (!new File(folder, partFileName).exists())
+                    FileUtils.deleteFile(file);
+            }
+        }
+    }
+
+
+    /**
+     * Checks if a partial file was not written to for longer than the lifetime of partial files.
+     *
+     * @param partFile the partial file that is to be checked
+     *
+     * @return true if the partial file is not to be resumed
+     */
+    private boolean isExpired(final File partFile)
+    {
+        return System.currentTimeMillis() - partFile.lastModified() > partFileLifetime;
+    }
+
+
+    /**
+     * Checks if a zip archive is complete by reading all of its entries and
+     * comparing them to the CRCs and sizes that are listed in the archive.
+     *
+     * @param zipFile the zip archive that is to be checked
+     *
+     * @return true if all entries of the archive are intact
+     */
+    private static boolean isValidArchive(final File zipFile)
+    {
+        try
+            (ZipFile archive = new ZipFile(zipFile)) {
+            final Enumeration<? extends ZipEntry> entries = archive.entries();
+            final byte[] buffer = new byte[HttpUtils.BUFFER_SIZE];
+
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+
+                if (entry.isDirectory())
+                    continue;
+
+                final CRC32 crc = new CRC32();
+                long size = 0;
+
+                try
+                    (InputStream entryStream = archive.getInputStream(entry)) {
+                    while (true) {
+                        final int readByteCount = entryStream.read(buffer, 0, buffer.length);
+
+                        if (readByteCount == -1)
+                            break;
+
+                        crc.update(buffer, 0, readByteCount);
+                        size += readByteCount;
+                    }
+                }
+
+                if (entry.getCrc() != -1 && entry.getCrc() != crc.getValue()
+                    || entry.getSize() != -1 && entry.getSize() != size) {
+                    LOGGER.warn(String.format(CRC_ERROR, entry.getName(), zipFile));
+                    return false;
+                }
+            }
+
+            return true;
+
+        } catch (final IOException e) {
+            LOGGER.warn(String.format(VERIFICATION_ERROR, zipFile), e);
+            return false;
+        }
+    }
+
+
+    /**
+     * Pauses the current thread before a download is resumed.
+     *
+     * @param delay the delay in milliseconds
+     * @param zipUrl the URL of the downloaded archive
+     *
+     * @throws InterruptedIOException thrown when the thread is interrupted while waiting
+     */
+    private static void sleep(final long delay, final String zipUrl) throws InterruptedIOException
+    {
+        try {
+            TimeUnit.MILLISECONDS.sleep(delay);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(String.format(INTERRUPTED_ERROR, zipUrl));
+        }
+    }
+
+
+    /**
+     * This class represents the transfer of a single archive to a partial file.
+     * The validator of the archive is stored next to the partial file, so that
+     * the transfer can be resumed by another harvest.
+     *
+     * @author Robin Weiss
+     */
+    private class Transfer
+    {
+        private final String zipUrl;
+        private final File partFile;
+        private final File validatorFile;
+        private String validator;
+
+
+        /**
+         * Constructor that does not start the transfer yet, but reads the
+         * validator of a previous transfer, if there is one.
+         *
+         * @param zipUrl the URL of the archive
+         * @param partFile the file to which the archive is written
+         */
+        Transfer(final String zipUrl, final File partFile)
+        {
+            this.zipUrl = zipUrl;
+            this.partFile = partFile;
+            this.validatorFile = new File(partFile.getPath() + VALIDATOR_FILE_SUFFIX);
+            this.validator = readValidator();
+        }
+
+
+        /**
+         * Deletes the partial file and its validator, so that the
+         * next attempt starts from the beginning.
+         */
+        void discard()
+        {
+            FileUtils.deleteFile(partFile);
+            FileUtils.deleteFile(validatorFile);
+            validator = null;
+        }
+
+
+        /**
+         * Requests the bytes that are missing from the partial file and appends them.
+         * If the server does not support range requests, or if the archive was modified
+         * since the previous attempt, the partial file is overwritten instead.
+         *
+         * @return true if the partial file has the length of the archive
+         *
+         * @throws IOException thrown when the connection fails
+         */
+        boolean resume() throws IOException
+        {
+            final long offset = partFile.length();
+            final URLConnection connection;
+
+            try {
+                connection = RequestThrottle.send(requestThrottles.apply(zipUrl), () -> connect(offset));
+            } catch (final HttpStatusException e) {
+                // the partial file is complete already
+                if (e.getStatusCode() == HTTP_RANGE_NOT_SATISFIABLE)
+                    return true;
+
+                throw e;
+            }
+
+            final int responseCode = connection instanceof HttpURLConnection
+                                     ? ((HttpURLConnection) connection).getResponseCode()
+                                     : HttpURLConnection.HTTP_OK;
+            final boolean isPartial = responseCode == HttpURLConnection.HTTP_PARTIAL;
+
+            if (offset > 0 && !isPartial)
+                LOGGER.info(String.format(FishStatJFileConstants.RANGES_NOT_SUPPORTED, zipUrl));
+
+            final String eTag = connection.getHeaderField(HttpUtils.ETAG_HEADER);
+            final String responseValidator = eTag != null ? eTag : connection.getHeaderField(HttpUtils.LAST_MODIFIED_HEADER);
+
+            final long archiveLength = isPartial
+                                       ? getLengthFromContentRange(connection.getHeaderField(HttpUtils.CONTENT_RANGE_HEADER))
+                                       : connection.getContentLengthLong();
+
+            try
+                (InputStream archiveStream = connection.getInputStream();
+                 OutputStream fileStream = Files.newOutputStream(
+                                               partFile.toPath(),
+                                               StandardOpenOption.CREATE,
+                                               StandardOpenOption.WRITE,
+                                               isPartial ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)) {
+                // the validator must belong to the bytes of the partial file, which may have been truncated just now
+                writeValidator(responseValidator);
+
+                final byte[] buffer = new byte[HttpUtils.BUFFER_SIZE];
+
+                while (true) {
+                    final int readByteCount = archiveStream.read(buffer, 0, buffer.length);
+
+                    if (readByteCount == -1)
+                        break;
+                    else
+                        fileStream.write(buffer, 0, readByteCount);
+                }
+            }
+
+            // connections can be closed before all bytes were sent
+            return archiveLength == -1 || partFile.length() >= archiveLength;
+        }
+
+
+        /**
+         * Sends a single request of the bytes that are missing from the partial file.
+         *
+         * @param offset the length of the partial file
+         *
+         * @return a connection of which the response can be read
+         *
+         * @throws IOException thrown when the server responds with an error or cannot be reached
+         */
+        private URLConnection connect(final long offset) throws IOException
+        {
+            final URLConnection connection = httpClient.openConnection(zipUrl);
+
+            if (offset > 0) {
+                connection.setRequestProperty(HttpUtils.RANGE_HEADER, String.format(RANGE_FORMAT, offset));
+
+                // if the archive was modified, the server responds with the whole new archive
+                if (validator != null)
+                    connection.setRequestProperty(HttpUtils.IF_RANGE_HEADER, validator);
+            }
+
+            httpClient.connect(connection);
+            return connection;
+        }
+
+
+        /**
+         * Reads the validator of a previous transfer from disk.
+         *
+         * @return the ETag or Last-Modified header of the partial file, or null if it is unknown
+         */
+        private String readValidator()
+        {
+            if (!validatorFile.exists())
+                return null;
+
+            try {
+                final String storedValidator = new String(Files.readAllBytes(validatorFile.toPath()), StandardCharsets.UTF_8);
+                return storedValidator.isEmpty() ? null : storedValidator;
+
+            } catch (final IOException e) {
+                LOGGER.warn(String.format(VALIDATOR_ERROR, partFile), e);
+                return null;
+            }
+        }
+
+
+        /**
+         * Stores the validator of the archive next to the partial file, or removes
+         * the stored validator if the archive has none.
+         *
+         * @param newValidator the ETag or Last-Modified header of the archive, or null
+         *
+         * @throws IOException thrown when the validator cannot be written
+         */
+        private void writeValidator(final String newValidator) throws IOException
+        {
+            validator = newValidator;
+
+            if (newValidator == null)
+                FileUtils.deleteFile(validatorFile);
+            else
+                Files.write(validatorFile.toPath(), newValidator.getBytes(StandardCharsets.UTF_8));
+        }
+
+
+        /**
+         * Retrieves the length of the whole archive from a Content-Range header.
+         *
+         * @param contentRange the value of a Content-Range header, such as "bytes 100-199/200"
+         *
+         * @return the length of the whole archive, or -1 if it is unknown
+         */
+        private long getLengthFromContentRange(final String contentRange)
+        {
+            if (contentRange == null)
+                return -1;
+
+            final Matcher lengthMatcher = CONTENT_RANGE_LENGTH_PATTERN.matcher(contentRange.trim());
+
+            return lengthMatcher.find()
+                   ? Long.parseLong(lengthMatcher.group(1))
+                   : -1;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.gerdiproject.json.datacite.Subject;
+
+/**
+ * This class interns {@linkplain Subject}s and their values for the duration of a harvest.
+ * Since most species and scientific names occur in many collections, each distinct
+ * subject is only kept in memory once, and is shared by all documents that contain it.
+ * The interned subjects must therefore not be modified.
+ * <br>
+ * This class is thread-safe, and counts how often an interned subject could be reused.
+ *
+ * @author Robin Weiss
+ */
+public class SubjectDictionary
+{
+    private static final String NO_LANGUAGE = "";
+    private static final String STATISTICS = "Subject dictionary: %d distinct subjects, %d hits, %d misses";
+
+    private final Map<String, String> values = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Subject>> subjectsByLanguage = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+
+    /**
+     * Retrieves the interned instance of a string.
+     *
+     * @param value the string that is to be interned
+     *
+     * @return a string that is equal to the value
+     */
+    public String intern(final String value)
+    {
+        final String internedValue = values.putIfAbsent(value, value);
+        return internedValue == null ? value : internedValue;
+    }
+
+
+    /**
+     * Retrieves the interned {@linkplain Subject} of a value, creating it if
+     * it does not exist yet.
+     *
+     * @param value the value of the subject
+     * @param language the language of the subject, or null
+     *
+     * @return a shared {@linkplain Subject} that must not be modified
+     */
+    public Subject getSubject(final String value, final String language)
+    {
+        final Map<String, Subject> subjects = subjectsByLanguage.computeIfAbsent(
+                                                  language == null ? NO_LANGUAGE : language,
+                                                  (final String key) -> new ConcurrentHashMap<>());
+        final Subject subject = subjects.get(value);
+
+        if (subject != null) {
+            hits.increment();
+            return subject;
+        }
+
+        misses.increment();
+        return subjects.computeIfAbsent(intern(value), (final String key) -> language == null
+                                         ? new Subject(key)
+                                         : new Subject(key, language));
+    }
+
+
+    /**
+     * Retrieves the number of requested subjects that were interned already.
+     *
+     * @return the number of dictionary hits
+     */
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+
+    /**
+     * Retrieves the number of requested subjects that had to be created.
+     *
+     * @return the number of dictionary misses
+     */
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+
+    /**
+     * Retrieves the number of distinct interned subjects of all languages.
+     *
+     * @return the number of distinct interned subjects
+     */
+    public int size()
+    {
+        int size = 0;
+
+        for (final Map<String, Subject> subjects : subjectsByLanguage.values())
+            size += subjects.size();
+
+        return size;
+    }
+
+
+    /**
+     * Retrieves a human readable summary of the dictionary statistics.
+     *
+     * @return a summary of the dictionary statistics
+     */
+    public String getStatistics()
+    {
+        return String.format(STATISTICS, size(), getHits(), getMisses());
+    }
+
+
+    /**
+     * Removes all interned subjects and values, and resets the statistics.
+     */
+    public void clear()
+    {
+        values.clear();
+        subjectsByLanguage.clear();
+        hits.reset();
+        misses.reset();
+    }
+}
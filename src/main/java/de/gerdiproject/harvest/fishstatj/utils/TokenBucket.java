@@ -0,0 +1,73 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class limits the rate of requests to a fixed number of requests per second,
+ * allowing short bursts of up to one second worth of requests. Callers that exceed
+ * the rate reserve a future token and sleep until it becomes available, so that
+ * waiting callers are served in the order of their reservations.
+ *
+ * @author Robin Weiss
+ */
+public class TokenBucket
+{
+    private final double capacity;
+    private final double nanosPerToken;
+    private double tokens;
+    private long lastRefill;
+
+
+    /**
+     * Constructor that starts with a full bucket.
+     *
+     * @param tokensPerSecond the number of tokens that are added per second
+     */
+    public TokenBucket(final int tokensPerSecond)
+    {
+        this.capacity = Math.max(1, tokensPerSecond);
+        this.nanosPerToken = TimeUnit.SECONDS.toNanos(1) / capacity;
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+
+    /**
+     * Takes a token from the bucket, waiting until one is available if necessary.
+     *
+     * @throws InterruptedException thrown when the thread is interrupted while waiting
+     */
+    public void acquire() throws InterruptedException
+    {
+        final long waitingNanos;
+
+        synchronized (this) {
+            final long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) / nanosPerToken);
+            lastRefill = now;
+
+            // a negative number of tokens reserves tokens that are not yet available
+            tokens -= 1;
+            waitingNanos = tokens >= 0 ? 0 : (long) (-tokens * nanosPerToken);
+        }
+
+        if (waitingNanos > 0)
+            TimeUnit.NANOSECONDS.sleep(waitingNanos);
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import java.util.AbstractCollection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * This collection retains only the K most frequently added elements in fixed memory.
+ * The frequency of each added element is estimated by a count-min sketch, and the
+ * elements with the highest estimates are kept as heavy hitters. An element that is
+ * added for the first time replaces the least frequent heavy hitter if its estimate
+ * is higher. Since the sketch never underestimates, frequent elements are retained
+ * reliably, while the order of rare elements is approximate.
+ * <br>
+ * The sketch consists of int counters that saturate instead of overflowing, and
+ * its width is capped, so that it never occupies more than 4 MB.
+ * <br>
+ * Adding an element does not guarantee that it is contained afterwards, and the
+ * collection is iterated from the most to the least frequent element.
+ * This class is not thread-safe.
+ *
+ * @param <T> the type of the collected elements
+ *
+ * @author Robin Weiss
+ */
+public class TopKSketch<T> extends AbstractCollection<T>
+{
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+    private static final int MIN_WIDTH = 1024;
+    private static final int MAX_WIDTH = 1 << 18;
+    private static final int WIDTH_PER_ELEMENT = 16;
+
+    private final int maxSize;
+    private final int widthMask;
+    private final int[][] counts;
+    private final Map<T, Candidate<T>> candidates = new HashMap<>();
+    private final TreeSet<Candidate<T>> candidatesByCount = new TreeSet<>(
+        Comparator.<Candidate<T>>comparingInt((final Candidate<T> c) -> c.count).thenComparingLong((final Candidate<T> c) -> c.sequence));
+    private long sequence;
+
+
+    /**
+     * Constructor that allocates a sketch which is wide enough to estimate the
+     * frequencies of the heavy hitters accurately.
+     *
+     * @param maxSize the maximum number of retained elements
+     */
+    public TopKSketch(final int maxSize)
+    {
+        this.maxSize = maxSize;
+
+        // the width must be a power of two, so that hashes can be masked
+        final long minWidth = Math.min(MAX_WIDTH, Math.max(MIN_WIDTH, (long) maxSize * WIDTH_PER_ELEMENT));
+        final int width = Integer.highestOneBit((int) minWidth - 1) << 1;
+
+        this.widthMask = width - 1;
+        this.counts = new int[SEEDS.length][width];
+    }
+
+
+    @Override
+    public boolean add(final T element)
+    {
+        final int estimate = increment(element);
+        final Candidate<T> candidate = candidates.get(element);
+
+        // update the count of an existing heavy hitter
+        if (candidate != null) {
+            candidatesByCount.remove(candidate);
+            candidate.count = estimate;
+            candidatesByCount.add(candidate);
+            return false;
+        }
+
+        if (candidates.size() >= maxSize) {
+            final Candidate<T> leastFrequent = candidatesByCount.first();
+
+            if (estimate <= leastFrequent.count)
+                return false;
+
+            candidatesByCount.pollFirst();
+            candidates.remove(leastFrequent.element);
+        }
+
+        final Candidate<T> newCandidate = new Candidate<>(element, estimate, sequence++);
+        candidates.put(element, newCandidate);
+        candidatesByCount.add(newCandidate);
+        return true;
+    }
+
+
+    @Override
+    public Iterator<T> iterator()
+    {
+        final Iterator<Candidate<T>> candidateIter = candidatesByCount.descendingIterator();
+
+        return new Iterator<T>()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return candidateIter.hasNext();
+            }
+
+
+            @Override
+            public T next()
+            {
+                return candidateIter.next().element;
+            }
+        };
+    }
+
+
+    @Override
+    public boolean contains(final Object o)
+    {
+        return candidates.containsKey(o);
+    }
+
+
+    @Override
+    public int size()
+    {
+        return candidates.size();
+    }
+
+
+    /**
+     * Increments the counters of an element in each row of the sketch.
+     * Counters that reached the maximum int value are not incremented any further.
+     *
+     * @param element the element that was added
+     *
+     * @return the estimated frequency of the element, which is the minimum of its counters
+     */
+    private int increment(final T element)
+    {
+        final int hashCode = element == null ? 0 : element.hashCode();
+        int estimate = Integer.MAX_VALUE;
+
+        for (int row = 0; row < SEEDS.length; row++) {
+            final int column = mix(hashCode ^ SEEDS[row]) & widthMask;
+
+            if (counts[row][column] != Integer.MAX_VALUE)
+                counts[row][column]++;
+
+            estimate = Math.min(estimate, counts[row][column]);
+        }
+
+        return estimate;
+    }
+
+
+    /**
+     * Scrambles the bits of a hash code, using the finalizer of MurmurHash3.
+     *
+     * @param hash the hash code that is to be scrambled
+     *
+     * @return the scrambled hash code
+     */
+    private static int mix(final int hash)
+    {
+        int h = hash;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+
+    /**
+     * This class is a heavy hitter with its estimated frequency.
+     *
+     * @param <T> the type of the collected elements
+     *
+     * @author Robin Weiss
+     */
+    private static class Candidate<T>
+    {
+        private final T element;
+        private int count;
+        private final long sequence;
+
+
+        /**
+         * Constructor that sets all fields.
+         *
+         * @param element the collected element
+         * @param count the estimated frequency of the element
+         * @param sequence a unique number that distinguishes candidates with equal counts
+         */
+        Candidate(final T element, final int count, final long sequence)
+        {
+            this.element = element;
+            this.count = count;
+            this.sequence = sequence;
+        }
+    }
+}
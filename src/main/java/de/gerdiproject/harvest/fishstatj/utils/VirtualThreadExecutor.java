@@ -0,0 +1,196 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This {@linkplain ExecutorService} runs each task on its own virtual thread, and
+ * uses a {@linkplain Semaphore} to limit the number of tasks that run at once.
+ * Tasks that exceed the limit block their virtual thread, which does not occupy a
+ * platform thread. Tasks that are still waiting for the {@linkplain Semaphore} are
+ * returned by {@linkplain #shutdownNow()}. Virtual threads are created via reflection,
+ * so that this class can be compiled for JDKs that do not support them.
+ *
+ * @author Robin Weiss
+ */
+public class VirtualThreadExecutor extends AbstractExecutorService
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadExecutor.class);
+    private static final String VIRTUAL_EXECUTOR_FACTORY = "newVirtualThreadPerTaskExecutor";
+    private static final String UNSUPPORTED_WARNING = "Virtual threads are not supported by this JVM! Using %d platform threads instead.";
+
+    private final ExecutorService virtualExecutor;
+    private final Semaphore permits;
+    private final Set<WaitingTask> waitingTasks = ConcurrentHashMap.newKeySet();
+
+
+    /**
+     * Constructor that wraps an executor which creates a virtual thread per task.
+     *
+     * @param virtualExecutor an executor that creates a virtual thread per task
+     * @param maxRunningTasks the maximum number of tasks that run at once
+     */
+    VirtualThreadExecutor(final ExecutorService virtualExecutor, final int maxRunningTasks)
+    {
+        this.virtualExecutor = virtualExecutor;
+        this.permits = new Semaphore(Math.max(1, maxRunningTasks));
+    }
+
+
+    /**
+     * Creates an executor that runs each task on its own virtual thread, or a fixed
+     * pool of platform threads if the JVM does not support virtual threads.
+     *
+     * @param maxRunningTasks the maximum number of tasks that run at once
+     *
+     * @return an executor that runs up to the specified number of tasks at once
+     */
+    public static ExecutorService create(final int maxRunningTasks)
+    {
+        try {
+            final ExecutorService virtualExecutor =
+                (ExecutorService) Executors.class.getMethod(VIRTUAL_EXECUTOR_FACTORY).invoke(null);
+            return new VirtualThreadExecutor(virtualExecutor, maxRunningTasks);
+
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            LOGGER.warn(String.format(UNSUPPORTED_WARNING, maxRunningTasks));
+            return Executors.newFixedThreadPool(maxRunningTasks);
+        }
+    }
+
+
+    @Override
+    public void execute(final Runnable command)
+    {
+        final WaitingTask waitingTask = new WaitingTask(command);
+        waitingTasks.add(waitingTask);
+
+        try {
+            virtualExecutor.execute(waitingTask);
+        } catch (final RejectedExecutionException e) {
+            waitingTasks.remove(waitingTask);
+            throw e;
+        }
+    }
+
+
+    @Override
+    public void shutdown()
+    {
+        virtualExecutor.shutdown();
+    }
+
+
+    @Override
+    public List<Runnable> shutdownNow()
+    {
+        final List<Runnable> unstartedTasks = new ArrayList<>();
+
+        // claim the waiting tasks before their threads are interrupted, so that they are not run
+        for (final WaitingTask waitingTask : waitingTasks) {
+            if (waitingTasks.remove(waitingTask))
+                unstartedTasks.add(waitingTask.command);
+        }
+
+        virtualExecutor.shutdownNow();
+        return unstartedTasks;
+    }
+
+
+    @Override
+    public boolean isShutdown()
+    {
+        return virtualExecutor.isShutdown();
+    }
+
+
+    @Override
+    public boolean isTerminated()
+    {
+        return virtualExecutor.isTerminated();
+    }
+
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException
+    {
+        return virtualExecutor.awaitTermination(timeout, unit);
+    }
+
+
+    /**
+     * This {@linkplain Runnable} waits for a permit of the {@linkplain Semaphore}
+     * on its own thread, and runs a task unless the task was claimed by
+     * {@linkplain #shutdownNow()} in the meantime.
+     *
+     * @author Robin Weiss
+     */
+    private class WaitingTask implements Runnable
+    {
+        private final Runnable command;
+
+
+        /**
+         * Constructor that wraps a task that is yet to be run.
+         *
+         * @param command the task that is to be run
+         */
+        WaitingTask(final Runnable command)
+        {
+            this.command = command;
+        }
+
+
+        @Override
+        public void run()
+        {
+            try {
+                permits.acquire();
+
+            } catch (final InterruptedException e) {
+                // tasks that were not claimed by shutdownNow() would never complete otherwise
+                if (waitingTasks.remove(this) && command instanceof Future)
+                    ((Future<?>) command).cancel(false);
+
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            try {
+                if (waitingTasks.remove(this))
+                    command.run();
+            } finally {
+                permits.release();
+            }
+        }
+    }
+}
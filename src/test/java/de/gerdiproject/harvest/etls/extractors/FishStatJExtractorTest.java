@@ -29,6 +29,8 @@ import de.gerdiproject.harvest.application.MainContextUtils;
 import de.gerdiproject.harvest.etls.AbstractIteratorETL;
 import de.gerdiproject.harvest.etls.FishStatJETL;
 import de.gerdiproject.harvest.fishstatj.constants.FishStatJFileConstants;
+import de.gerdiproject.harvest.fishstatj.constants.FishStatJLanguageConstants;
+import de.gerdiproject.harvest.fishstatj.utils.FishStatJExtractionPlan;
 import de.gerdiproject.harvest.utils.data.DiskIO;
 import de.gerdiproject.harvest.utils.data.HttpRequesterUtils;
 import de.gerdiproject.harvest.utils.file.FileUtils;
@@ -52,10 +54,13 @@ public class FishStatJExtractorTest extends AbstractIteratorExtractorTest<FishSt
     private static final String CACHED_CONTACTS_URL = HttpRequesterUtils.urlToFilePath(CONTACTS_URL, MOCKED_RESPONSE_FOLDER).toString();
 
     private static final String MOCKED_ZIP_PATH = "mockedZip.zip";
-    private static final String MOCKED_UNZIP_PATH = FishStatJFileConstants.UNZIP_FOLDER + "MockedDatasetCSV";
+    private static final String MOCKED_UNZIP_PATH = FishStatJFileConstants.UNZIP_FOLDER
+                                                    + String.format(FishStatJFileConstants.UNZIP_FOLDER_NAME, "MockedDatasetCSV", Integer.toHexString(COLLECTION_URL.hashCode()));
 
 
     private final DiskIO diskReader = new DiskIO(GsonUtils.createGerdiDocumentGsonBuilder().create(), StandardCharsets.UTF_8);
+    private final FishStatJExtractionPlan extractionPlan = new FishStatJExtractionPlan(
+        FishStatJLanguageConstants.LANGUAGE_MAP.get(FishStatJLanguageConstants.ENGLISH_API_NAME));
 
 
     @Override
@@ -102,9 +107,11 @@ public class FishStatJExtractorTest extends AbstractIteratorExtractorTest<FishSt
     {
         return new FishStatJCollectionVO(
                    COLLECTION_URL,
-                   diskReader.getHtml(getResource(CACHED_COLLECTION_URL).toString()),
-                   diskReader.getHtml(getResource(CACHED_CONTACTS_URL).toString()),
-                   new File(MainContextUtils.getCacheDirectory(getClass()), MOCKED_UNZIP_PATH));
+                   extractionPlan.scan(
+                       diskReader.getHtml(getResource(CACHED_COLLECTION_URL).toString()),
+                       diskReader.getHtml(getResource(CACHED_CONTACTS_URL).toString())),
+                   new File(MainContextUtils.getCacheDirectory(getClass()), MOCKED_UNZIP_PATH),
+                   null);
     }
 
 
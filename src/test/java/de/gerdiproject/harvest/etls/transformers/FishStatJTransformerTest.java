@@ -26,6 +26,8 @@ import de.gerdiproject.harvest.etls.AbstractIteratorETL;
 import de.gerdiproject.harvest.etls.FishStatJETL;
 import de.gerdiproject.harvest.etls.extractors.FishStatJCollectionVO;
 import de.gerdiproject.harvest.fishstatj.constants.FishStatJFileConstants;
+import de.gerdiproject.harvest.fishstatj.constants.FishStatJLanguageConstants;
+import de.gerdiproject.harvest.fishstatj.utils.FishStatJExtractionPlan;
 import de.gerdiproject.harvest.utils.data.DiskIO;
 import de.gerdiproject.harvest.utils.data.constants.DataOperationConstants;
 import de.gerdiproject.harvest.utils.file.FileUtils;
@@ -40,6 +42,8 @@ import de.gerdiproject.json.datacite.DataCiteJson;
 public class FishStatJTransformerTest extends AbstractIteratorTransformerTest<FishStatJCollectionVO, DataCiteJson>
 {
     final DiskIO diskReader = new DiskIO(GsonUtils.createGerdiDocumentGsonBuilder().create(), StandardCharsets.UTF_8);
+    final FishStatJExtractionPlan extractionPlan = new FishStatJExtractionPlan(
+        FishStatJLanguageConstants.LANGUAGE_MAP.get(FishStatJLanguageConstants.ENGLISH_API_NAME));
 
     private static final String MOCKED_RESPONSE_FOLDER = "mockedHttpResponses";
     private static final String CACHED_COLLECTION_URL = MOCKED_RESPONSE_FOLDER + "/collection.html";
@@ -75,9 +79,11 @@ public class FishStatJTransformerTest extends AbstractIteratorTransformerTest<Fi
     {
         return new FishStatJCollectionVO(
                    "http://www.mock.ed/collection",
-                   diskReader.getHtml(getResource(CACHED_COLLECTION_URL).toString()),
-                   diskReader.getHtml(getResource(CACHED_CONTACTS_URL).toString()),
-                   getTemporaryUnzipFolder());
+                   extractionPlan.scan(
+                       diskReader.getHtml(getResource(CACHED_COLLECTION_URL).toString()),
+                       diskReader.getHtml(getResource(CACHED_CONTACTS_URL).toString())),
+                   getTemporaryUnzipFolder(),
+                   null);
     }
 
 
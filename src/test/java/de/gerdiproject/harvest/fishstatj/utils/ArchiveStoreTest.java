@@ -0,0 +1,382 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import de.gerdiproject.harvest.utils.file.FileUtils;
+
+/**
+ * This class provides Unit Tests for the {@linkplain ArchiveStore}.
+ * The archives are served by a local HTTP server that responds to
+ * conditional requests with the ETag of the served archive.
+ *
+ * @author Robin Weiss
+ */
+public class ArchiveStoreTest
+{
+    private static final String FIRST_PATH = "/first.zip";
+    private static final String SECOND_PATH = "/second.zip";
+    private static final String THIRD_PATH = "/third.zip";
+    private static final String ZIP_URL = "http://%s:%d%s";
+    private static final String ETAG = "\"v%d\"";
+    private static final String HEAD_METHOD = "HEAD";
+    private static final int TIMEOUT = 5000;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long PART_FILE_LIFETIME = 60000;
+    private static final int ENTRY_SIZE = 4096;
+
+    private final Map<String, byte[]> servedArchives = new ConcurrentHashMap<>();
+    private final Map<String, String> servedETags = new ConcurrentHashMap<>();
+    private final List<String> downloadedPaths = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> ifNoneMatchHeaders = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger archiveVersion = new AtomicInteger();
+    private HttpServer server;
+    private File storeFolder;
+    private PooledHttpClient httpClient;
+    private long archiveSize;
+
+
+    /**
+     * Serves three different archives via HTTP.
+     *
+     * @throws IOException thrown when the archives cannot be created or the server cannot be started
+     */
+    @Before
+    public void before() throws IOException
+    {
+        storeFolder = Files.createTempDirectory("ArchiveStoreTest").toFile();
+        httpClient = new PooledHttpClient(0, TIMEOUT, StandardCharsets.UTF_8);
+
+        serveArchive(FIRST_PATH, createArchive(1));
+        serveArchive(SECOND_PATH, createArchive(2));
+        serveArchive(THIRD_PATH, createArchive(3));
+        archiveSize = servedArchives.get(FIRST_PATH).length;
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::serve);
+        server.start();
+    }
+
+
+    /**
+     * Stops the HTTP server and removes the store folder.
+     */
+    @After
+    public void after()
+    {
+        server.stop(0);
+        FileUtils.deleteFile(storeFolder);
+    }
+
+
+    /**
+     * Tests if a retrieved archive has the content of the served archive, and
+     * if no download files remain in the store folder.
+     *
+     * @throws IOException thrown when the archive cannot be retrieved
+     */
+    @Test(timeout = TIMEOUT)
+    public void testGetArchive() throws IOException
+    {
+        final ArchiveStore store = createStore(10 * archiveSize);
+
+        try
+            (InputStream archiveStream = store.openArchive(getUrl(FIRST_PATH))) {
+            assertArrayEquals(servedArchives.get(FIRST_PATH), HttpUtils.readFully(archiveStream));
+        }
+
+        assertEquals(1, countStoredArchives());
+        assertEquals(1, storeFolder.listFiles().length);
+    }
+
+
+    /**
+     * Tests if identical archives that are linked by different URLs are only stored once.
+     *
+     * @throws IOException thrown when the archives cannot be retrieved
+     */
+    @Test(timeout = TIMEOUT)
+    public void testDeduplication() throws IOException
+    {
+        serveArchive(SECOND_PATH, servedArchives.get(FIRST_PATH));
+        final ArchiveStore store = createStore(10 * archiveSize);
+
+        final File firstArchive = store.getArchive(getUrl(FIRST_PATH));
+        final File secondArchive = store.getArchive(getUrl(SECOND_PATH));
+
+        assertEquals(firstArchive, secondArchive);
+        assertEquals(1, countStoredArchives());
+    }
+
+
+    /**
+     * Tests if a stored archive is revalidated via its ETag, also after the index
+     * was reloaded, and if it is only downloaded again when it was modified.
+     *
+     * @throws IOException thrown when the archive cannot be retrieved
+     */
+    @Test(timeout = TIMEOUT)
+    public void testRevalidation() throws IOException
+    {
+        final ArchiveStore store = createStore(10 * archiveSize);
+        final File storedArchive = store.getArchive(getUrl(FIRST_PATH));
+        store.releaseArchive(storedArchive);
+        store.save();
+
+        final ArchiveStore reloadedStore = createStore(10 * archiveSize);
+        final File revalidatedArchive = reloadedStore.getArchive(getUrl(FIRST_PATH));
+        reloadedStore.releaseArchive(revalidatedArchive);
+
+        assertEquals(storedArchive, revalidatedArchive);
+        assertEquals(Collections.singletonList(FIRST_PATH), downloadedPaths);
+        assertEquals(servedETags.get(FIRST_PATH), ifNoneMatchHeaders.get(ifNoneMatchHeaders.size() - 1));
+
+        serveArchive(FIRST_PATH, createArchive(4));
+        final File modifiedArchive = reloadedStore.getArchive(getUrl(FIRST_PATH));
+
+        assertNotEquals(storedArchive, modifiedArchive);
+        assertArrayEquals(servedArchives.get(FIRST_PATH), Files.readAllBytes(modifiedArchive.toPath()));
+        assertEquals(2, downloadedPaths.size());
+    }
+
+
+    /**
+     * Tests if pinned archives are not evicted when the quota is exceeded,
+     * and if they are evicted as soon as they are released.
+     *
+     * @throws IOException thrown when the archive cannot be retrieved
+     */
+    @Test(timeout = TIMEOUT)
+    public void testPinning() throws IOException
+    {
+        final ArchiveStore store = createStore(archiveSize / 2);
+
+        final File pinnedArchive = store.getArchive(getUrl(FIRST_PATH));
+        final File twicePinnedArchive = store.getArchive(getUrl(FIRST_PATH));
+        assertEquals(pinnedArchive, twicePinnedArchive);
+
+        store.releaseArchive(pinnedArchive);
+        store.save();
+        assertTrue(pinnedArchive.exists());
+
+        store.releaseArchive(twicePinnedArchive);
+        assertFalse(pinnedArchive.exists());
+    }
+
+
+    /**
+     * Tests if the least recently used archives are evicted when the quota is exceeded.
+     *
+     * @throws IOException thrown when the archives cannot be retrieved
+     * @throws InterruptedException thrown when the test is interrupted
+     */
+    @Test(timeout = TIMEOUT)
+    public void testLruEviction() throws IOException, InterruptedException
+    {
+        // the compressed sizes of the archives may differ slightly
+        final ArchiveStore store = createStore(2 * archiveSize + archiveSize / 2);
+
+        final File firstArchive = retrieveAndRelease(store, FIRST_PATH);
+        final File secondArchive = retrieveAndRelease(store, SECOND_PATH);
+
+        // using the first archive again makes the second one the least recently used archive
+        assertEquals(firstArchive, retrieveAndRelease(store, FIRST_PATH));
+
+        final File thirdArchive = retrieveAndRelease(store, THIRD_PATH);
+
+        assertTrue(firstArchive.exists());
+        assertFalse(secondArchive.exists());
+        assertTrue(thirdArchive.exists());
+        assertEquals(2, countStoredArchives());
+    }
+
+
+    /**
+     * Creates an archive store in the store folder.
+     *
+     * @param quota the maximum number of bytes of all stored archives
+     *
+     * @return a new archive store
+     */
+    private ArchiveStore createStore(final long quota)
+    {
+        return new ArchiveStore(
+                   storeFolder,
+                   quota,
+                   httpClient,
+                   (final String url) -> null,
+                   new ResumableDownloader(httpClient, (final String url) -> null, MAX_ATTEMPTS, PART_FILE_LIFETIME));
+    }
+
+
+    /**
+     * Retrieves an archive from the store and releases it right away.
+     * Waits briefly before, so that each access has a distinct time.
+     *
+     * @param store the archive store
+     * @param path the path of the archive on the local HTTP server
+     *
+     * @return the stored archive file
+     *
+     * @throws IOException thrown when the archive cannot be retrieved
+     * @throws InterruptedException thrown when the test is interrupted
+     */
+    private File retrieveAndRelease(final ArchiveStore store, final String path) throws IOException, InterruptedException
+    {
+        TimeUnit.MILLISECONDS.sleep(10);
+        final File archive = store.getArchive(getUrl(path));
+        store.releaseArchive(archive);
+        return archive;
+    }
+
+
+    /**
+     * Counts the archive files in the store folder.
+     *
+     * @return the number of stored archives
+     */
+    private int countStoredArchives()
+    {
+        return storeFolder.listFiles((final File dir, final String name) -> name.endsWith(".zip")).length;
+    }
+
+
+    /**
+     * Serves an archive with a new ETag.
+     *
+     * @param path the path of the archive on the local HTTP server
+     * @param archive the bytes of the archive
+     */
+    private void serveArchive(final String path, final byte[] archive)
+    {
+        servedArchives.put(path, archive);
+        servedETags.put(path, String.format(ETAG, archiveVersion.incrementAndGet()));
+    }
+
+
+    /**
+     * Responds to a HEAD or GET request of an archive, or with 304
+     * if the request is conditional and the ETag matches.
+     *
+     * @param exchange the HTTP request and response
+     *
+     * @throws IOException thrown when the response cannot be sent
+     */
+    private void serve(final HttpExchange exchange) throws IOException
+    {
+        final String path = exchange.getRequestURI().getPath();
+        final byte[] archive = servedArchives.get(path);
+        final String eTag = servedETags.get(path);
+        final String ifNoneMatch = exchange.getRequestHeaders().getFirst(HttpUtils.IF_NONE_MATCH_HEADER);
+
+        if (ifNoneMatch != null)
+            ifNoneMatchHeaders.add(ifNoneMatch);
+
+        exchange.getResponseHeaders().set(HttpUtils.ETAG_HEADER, eTag);
+
+        if (eTag.equals(ifNoneMatch))
+            exchange.sendResponseHeaders(304, -1);
+
+        else if (HEAD_METHOD.equals(exchange.getRequestMethod()))
+            exchange.sendResponseHeaders(200, -1);
+
+        else {
+            downloadedPaths.add(path);
+            exchange.sendResponseHeaders(200, archive.length);
+
+            try
+                (OutputStream responseStream = exchange.getResponseBody()) {
+                responseStream.write(archive);
+            }
+        }
+
+        exchange.close();
+    }
+
+
+    /**
+     * Creates a zip archive with a single entry of random bytes.
+     *
+     * @param seed the seed of the random bytes
+     *
+     * @return the bytes of the zip archive
+     *
+     * @throws IOException thrown when the archive cannot be created
+     */
+    private static byte[] createArchive(final long seed) throws IOException
+    {
+        final byte[] content = new byte[ENTRY_SIZE];
+        new Random(seed).nextBytes(content);
+
+        final ByteArrayOutputStream zipOut = new ByteArrayOutputStream();
+
+        try
+            (ZipOutputStream zipStream = new ZipOutputStream(zipOut)) {
+            zipStream.putNextEntry(new ZipEntry("Values.bin"));
+            zipStream.write(content);
+            zipStream.closeEntry();
+        }
+
+        return zipOut.toByteArray();
+    }
+
+
+    /**
+     * Assembles the URL of a path of the local HTTP server.
+     *
+     * @param path the path of the URL
+     *
+     * @return the URL of the path
+     */
+    private String getUrl(final String path)
+    {
+        final InetSocketAddress address = server.getAddress();
+        return String.format(ZIP_URL, address.getHostString(), address.getPort(), path);
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+/**
+ * This class provides Unit Tests for the {@linkplain CircuitBreaker}.
+ *
+ * @author Robin Weiss
+ */
+public class CircuitBreakerTest
+{
+    private static final String HOST = "localhost";
+    private static final int FAILURE_THRESHOLD = 3;
+    private static final long OPEN_DURATION = 300;
+    private static final long TIMEOUT = 5000;
+
+
+    /**
+     * Tests if requests are allowed right away as long as there are
+     * fewer consecutive failures than the threshold.
+     *
+     * @throws InterruptedException thrown when the test is interrupted
+     */
+    @Test(timeout = TIMEOUT)
+    public void testBelowThreshold() throws InterruptedException
+    {
+        final CircuitBreaker breaker = new CircuitBreaker(HOST, FAILURE_THRESHOLD, TIMEOUT);
+
+        for (int i = 0; i < 2 * FAILURE_THRESHOLD; i++) {
+            assertFalse(breaker.awaitAllowed());
+            breaker.record(false, i % FAILURE_THRESHOLD == FAILURE_THRESHOLD - 1);
+        }
+
+        assertFalse(breaker.awaitAllowed());
+    }
+
+
+    /**
+     * Tests if requests wait for the cool-down period after consecutive failures,
+     * and if a successful trial request allows all requests again.
+     *
+     * @throws InterruptedException thrown when the test is interrupted
+     */
+    @Test(timeout = TIMEOUT)
+    public void testSuccessfulTrial() throws InterruptedException
+    {
+        final CircuitBreaker breaker = openCircuitBreaker();
+
+        final long startTime = System.currentTimeMillis();
+        assertTrue(breaker.awaitAllowed());
+        assertTrue(System.currentTimeMillis() - startTime >= OPEN_DURATION - 50);
+
+        breaker.record(true, true);
+
+        assertFalse(breaker.awaitAllowed());
+    }
+
+
+    /**
+     * Tests if a failed trial request starts the cool-down period anew.
+     *
+     * @throws InterruptedException thrown when the test is interrupted
+     */
+    @Test(timeout = TIMEOUT)
+    public void testFailedTrial() throws InterruptedException
+    {
+        final CircuitBreaker breaker = openCircuitBreaker();
+        assertTrue(breaker.awaitAllowed());
+
+        breaker.record(true, false);
+
+        final long startTime = System.currentTimeMillis();
+        assertTrue(breaker.awaitAllowed());
+        assertTrue(System.currentTimeMillis() - startTime >= OPEN_DURATION - 50);
+    }
+
+
+    /**
+     * Tests if requests wait while a trial request is pending,
+     * and are allowed when it succeeds.
+     *
+     * @throws Exception thrown when the waiting request fails
+     */
+    @Test(timeout = TIMEOUT)
+    public void testWaitingForTrial() throws Exception
+    {
+        final CircuitBreaker breaker = openCircuitBreaker();
+        assertTrue(breaker.awaitAllowed());
+
+        final CompletableFuture<Boolean> waitingRequest = awaitAllowedAsync(breaker);
+        assertStillWaiting(waitingRequest);
+
+        breaker.record(true, true);
+
+        assertFalse(waitingRequest.get());
+    }
+
+
+    /**
+     * Tests if a waiting request becomes the trial request if the
+     * previous trial request is aborted without an outcome.
+     *
+     * @throws Exception thrown when the waiting request fails
+     */
+    @Test(timeout = TIMEOUT)
+    public void testAbortedTrial() throws Exception
+    {
+        final CircuitBreaker breaker = openCircuitBreaker();
+        assertTrue(breaker.awaitAllowed());
+
+        final CompletableFuture<Boolean> waitingRequest = awaitAllowedAsync(breaker);
+        assertStillWaiting(waitingRequest);
+
+        breaker.abortTrial();
+
+        assertTrue(waitingRequest.get());
+    }
+
+
+    /**
+     * Creates a circuit breaker that suspends requests after
+     * the threshold of consecutive failures was reached.
+     *
+     * @return an open circuit breaker
+     *
+     * @throws InterruptedException thrown when the test is interrupted
+     */
+    private static CircuitBreaker openCircuitBreaker() throws InterruptedException
+    {
+        final CircuitBreaker breaker = new CircuitBreaker(HOST, FAILURE_THRESHOLD, OPEN_DURATION);
+
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            assertFalse(breaker.awaitAllowed());
+            breaker.record(false, false);
+        }
+
+        return breaker;
+    }
+
+
+    /**
+     * Waits for a circuit breaker to allow a request in another thread.
+     *
+     * @param breaker the circuit breaker
+     *
+     * @return a future that is completed when the request is allowed
+     */
+    private static CompletableFuture<Boolean> awaitAllowedAsync(final CircuitBreaker breaker)
+    {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return breaker.awaitAllowed();
+            } catch (final InterruptedException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+
+    /**
+     * Asserts that a request is still waiting after the cool-down period is over.
+     *
+     * @param waitingRequest a future that is completed when the request is allowed
+     *
+     * @throws InterruptedException thrown when the test is interrupted
+     * @throws ExecutionException thrown when the waiting request fails
+     */
+    private static void assertStillWaiting(final CompletableFuture<Boolean> waitingRequest)
+    throws InterruptedException, ExecutionException
+    {
+        try {
+            waitingRequest.get(2 * OPEN_DURATION, TimeUnit.MILLISECONDS);
+            fail("The request was allowed while the trial request was pending!");
+        } catch (final TimeoutException e) {
+            assertFalse(waitingRequest.isDone());
+        }
+    }
+}
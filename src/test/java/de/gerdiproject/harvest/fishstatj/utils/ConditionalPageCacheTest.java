@@ -0,0 +1,278 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import de.gerdiproject.harvest.utils.file.FileUtils;
+
+/**
+ * This class provides Unit Tests for the {@linkplain ConditionalPageCache}.
+ * The pages are served by a local HTTP server that responds to conditional
+ * requests with 304, if the ETag of the page matches.
+ *
+ * @author Robin Weiss
+ */
+public class ConditionalPageCacheTest
+{
+    private static final String PAGE_PATH = "/page%d.html";
+    private static final String UNVALIDATED_PATH = "/unvalidated.html";
+    private static final String PAGE_URL = "http://%s:%d%s";
+    private static final String PAGE_HTML = "<html><head><title>%s</title></head><body></body></html>";
+    private static final String ETAG = "\"%s\"";
+    private static final String PAGE_FILE_FILTER = ".html";
+    private static final int TIMEOUT = 5000;
+    private static final int MAX_ENTRIES = 2;
+
+    private final List<String> fullResponses = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> ifNoneMatchHeaders = Collections.synchronizedList(new ArrayList<>());
+    private HttpServer server;
+    private File cacheFolder;
+    private PooledHttpClient httpClient;
+
+
+    /**
+     * Starts a local HTTP server that serves HTML pages.
+     *
+     * @throws IOException thrown when the server cannot be started
+     */
+    @Before
+    public void before() throws IOException
+    {
+        cacheFolder = Files.createTempDirectory("ConditionalPageCacheTest").toFile();
+        httpClient = new PooledHttpClient(0, TIMEOUT, StandardCharsets.UTF_8);
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::serve);
+        server.start();
+    }
+
+
+    /**
+     * Stops the HTTP server and removes the cache folder.
+     */
+    @After
+    public void after()
+    {
+        server.stop(0);
+        FileUtils.deleteFile(cacheFolder);
+    }
+
+
+    /**
+     * Tests if a page that was not modified is served from the cache.
+     *
+     * @throws IOException thrown when the page cannot be retrieved
+     */
+    @Test(timeout = TIMEOUT)
+    public void testNotModifiedPage() throws IOException
+    {
+        final ConditionalPageCache cache = new ConditionalPageCache(cacheFolder, MAX_ENTRIES, httpClient);
+        final String path = getPagePath(1);
+
+        assertEquals(path, cache.requestHtml(getUrl(path)).title());
+        assertEquals(path, cache.requestHtml(getUrl(path)).title());
+
+        assertEquals(Collections.singletonList(path), fullResponses);
+        assertEquals(Collections.singletonList(String.format(ETAG, path)), ifNoneMatchHeaders);
+    }
+
+
+    /**
+     * Tests if pages without ETag and Last-Modified headers are not stored,
+     * because they cannot be revalidated.
+     *
+     * @throws IOException thrown when the page cannot be retrieved
+     */
+    @Test(timeout = TIMEOUT)
+    public void testPageWithoutValidators() throws IOException
+    {
+        final ConditionalPageCache cache = new ConditionalPageCache(cacheFolder, MAX_ENTRIES, httpClient);
+
+        assertEquals(UNVALIDATED_PATH, cache.requestHtml(getUrl(UNVALIDATED_PATH)).title());
+        assertEquals(UNVALIDATED_PATH, cache.requestHtml(getUrl(UNVALIDATED_PATH)).title());
+
+        assertEquals(2, fullResponses.size());
+        assertEquals(Collections.emptyList(), ifNoneMatchHeaders);
+        assertEquals(0, countCachedPages());
+    }
+
+
+    /**
+     * Tests if the least recently used page is evicted when the cache is full.
+     *
+     * @throws IOException thrown when the pages cannot be retrieved
+     */
+    @Test(timeout = TIMEOUT)
+    public void testLruEviction() throws IOException
+    {
+        final ConditionalPageCache cache = new ConditionalPageCache(cacheFolder, MAX_ENTRIES, httpClient);
+
+        cache.requestHtml(getUrl(getPagePath(1)));
+        cache.requestHtml(getUrl(getPagePath(2)));
+
+        // using the first page again makes the second one the least recently used page
+        cache.requestHtml(getUrl(getPagePath(1)));
+        cache.requestHtml(getUrl(getPagePath(3)));
+        assertEquals(MAX_ENTRIES, countCachedPages());
+
+        ifNoneMatchHeaders.clear();
+        cache.requestHtml(getUrl(getPagePath(1)));
+        assertEquals(Collections.singletonList(String.format(ETAG, getPagePath(1))), ifNoneMatchHeaders);
+
+        ifNoneMatchHeaders.clear();
+        cache.requestHtml(getUrl(getPagePath(2)));
+        assertEquals(Collections.emptyList(), ifNoneMatchHeaders);
+    }
+
+
+    /**
+     * Tests if pages that were cached by a previous harvest are revalidated
+     * and served from the cache after the index was reloaded.
+     *
+     * @throws IOException thrown when the page cannot be retrieved
+     */
+    @Test(timeout = TIMEOUT)
+    public void testIndexReload() throws IOException
+    {
+        final String path = getPagePath(1);
+        final ConditionalPageCache cache = new ConditionalPageCache(cacheFolder, MAX_ENTRIES, httpClient);
+        cache.requestHtml(getUrl(path));
+        cache.save();
+
+        final ConditionalPageCache reloadedCache = new ConditionalPageCache(cacheFolder, MAX_ENTRIES, httpClient);
+
+        assertEquals(path, reloadedCache.requestHtml(getUrl(path)).title());
+        assertEquals(Collections.singletonList(path), fullResponses);
+        assertEquals(Collections.singletonList(String.format(ETAG, path)), ifNoneMatchHeaders);
+    }
+
+
+    /**
+     * Tests if a stored page is requested unconditionally if it was deleted from disk.
+     *
+     * @throws IOException thrown when the page cannot be retrieved
+     */
+    @Test(timeout = TIMEOUT)
+    public void testDeletedPage() throws IOException
+    {
+        final String path = getPagePath(1);
+        final ConditionalPageCache cache = new ConditionalPageCache(cacheFolder, MAX_ENTRIES, httpClient);
+        cache.requestHtml(getUrl(path));
+
+        for (final File pageFile : cacheFolder.listFiles())
+            FileUtils.deleteFile(pageFile);
+
+        assertEquals(path, cache.requestHtml(getUrl(path)).title());
+        assertEquals(2, fullResponses.size());
+        assertEquals(Collections.emptyList(), ifNoneMatchHeaders);
+    }
+
+
+    /**
+     * Counts the page files in the cache folder.
+     *
+     * @return the number of cached pages
+     */
+    private int countCachedPages()
+    {
+        final File[] pageFiles = cacheFolder.listFiles((final File dir, final String name) -> name.endsWith(PAGE_FILE_FILTER));
+        return pageFiles == null ? 0 : pageFiles.length;
+    }
+
+
+    /**
+     * Responds with an HTML page that has its path as title and as ETag, or with
+     * 304 if the ETag matches. The unvalidated page is served without an ETag.
+     *
+     * @param exchange the HTTP request and response
+     *
+     * @throws IOException thrown when the response cannot be sent
+     */
+    private void serve(final HttpExchange exchange) throws IOException
+    {
+        final String path = exchange.getRequestURI().getPath();
+        final String eTag = UNVALIDATED_PATH.equals(path) ? null : String.format(ETAG, path);
+        final String ifNoneMatch = exchange.getRequestHeaders().getFirst(HttpUtils.IF_NONE_MATCH_HEADER);
+
+        if (ifNoneMatch != null)
+            ifNoneMatchHeaders.add(ifNoneMatch);
+
+        if (eTag != null)
+            exchange.getResponseHeaders().set(HttpUtils.ETAG_HEADER, eTag);
+
+        if (eTag != null && eTag.equals(ifNoneMatch))
+            exchange.sendResponseHeaders(304, -1);
+        else {
+            fullResponses.add(path);
+            final byte[] html = String.format(PAGE_HTML, path).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, html.length);
+
+            try
+                (OutputStream responseStream = exchange.getResponseBody()) {
+                responseStream.write(html);
+            }
+        }
+
+        exchange.close();
+    }
+
+
+    /**
+     * Assembles the path of a numbered page.
+     *
+     * @param pageNumber the number of the page
+     *
+     * @return the path of the page on the local HTTP server
+     */
+    private static String getPagePath(final int pageNumber)
+    {
+        return String.format(PAGE_PATH, pageNumber);
+    }
+
+
+    /**
+     * Assembles the URL of a path of the local HTTP server.
+     *
+     * @param path the path of the URL
+     *
+     * @return the URL of the path
+     */
+    private String getUrl(final String path)
+    {
+        final InetSocketAddress address = server.getAddress();
+        return String.format(PAGE_URL, address.getHostString(), address.getPort(), path);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import de.gerdiproject.harvest.fishstatj.constants.FishStatJDataCiteConstants;
+import de.gerdiproject.harvest.fishstatj.constants.FishStatJSourceConstants;
+import de.gerdiproject.json.datacite.Date;
+
+/**
+ * This class provides Unit Tests for the {@linkplain CsvColumnStatistics}.
+ * The statistics are aggregated from csv fixtures while their subjects are projected.
+ *
+ * @author Robin Weiss
+ */
+public class CsvColumnStatisticsTest
+{
+    private static final String PRODUCTION_FILE = "CsvColumnStatisticsTest/Production.csv";
+    private static final String SPECIES_FILE = "CsvColumnStatisticsTest/Species.csv";
+
+
+    /**
+     * Tests if the range of years only covers rows with valid years.
+     *
+     * @throws IOException thrown when the fixture cannot be read
+     */
+    @Test
+    public void testYearRange() throws IOException
+    {
+        final CsvColumnStatistics statistics = new CsvColumnStatistics();
+        aggregate(PRODUCTION_FILE, statistics);
+
+        final Date collectedDate = statistics.getCollectedDate();
+        assertEquals(String.format(FishStatJDataCiteConstants.COLLECTED_DATE_RANGE, 1950, 2017), collectedDate.getValue());
+    }
+
+
+    /**
+     * Tests if all data rows are counted, and if the distinct countries and species are estimated.
+     *
+     * @throws IOException thrown when the fixture cannot be read
+     */
+    @Test
+    public void testDescription() throws IOException
+    {
+        final CsvColumnStatistics statistics = new CsvColumnStatistics();
+        aggregate(PRODUCTION_FILE, statistics);
+
+        assertEquals(
+            String.format(FishStatJDataCiteConstants.STATISTICS_DESCRIPTION, 6, 3, 3),
+            statistics.getDescription().getValue());
+    }
+
+
+    /**
+     * Tests if files without statistical columns, such as code lists, are not aggregated.
+     *
+     * @throws IOException thrown when the fixture cannot be read
+     */
+    @Test
+    public void testFileWithoutStatisticalColumns() throws IOException
+    {
+        final CsvColumnStatistics statistics = new CsvColumnStatistics();
+        aggregate(SPECIES_FILE, statistics);
+
+        assertNull(statistics.getCollectedDate());
+        assertNull(statistics.getDescription());
+    }
+
+
+    /**
+     * Tests if the statistics of multiple files of a collection are combined.
+     *
+     * @throws IOException thrown when the fixtures cannot be read
+     */
+    @Test
+    public void testMultipleFiles() throws IOException
+    {
+        final CsvColumnStatistics statistics = new CsvColumnStatistics();
+        aggregate(SPECIES_FILE, statistics);
+        aggregate(PRODUCTION_FILE, statistics);
+        aggregate(PRODUCTION_FILE, statistics);
+
+        assertEquals(String.format(FishStatJDataCiteConstants.COLLECTED_DATE_RANGE, 1950, 2017), statistics.getCollectedDate().getValue());
+        assertEquals(
+            String.format(FishStatJDataCiteConstants.STATISTICS_DESCRIPTION, 12, 3, 3),
+            statistics.getDescription().getValue());
+    }
+
+
+    /**
+     * Projects the subject columns of a csv fixture, aggregating all rows.
+     *
+     * @param fileName the path of the fixture, relative to this class
+     * @param statistics the aggregator of the rows
+     *
+     * @throws IOException thrown when the fixture cannot be read
+     */
+    private void aggregate(final String fileName, final CsvColumnStatistics statistics) throws IOException
+    {
+        try
+            (Reader reader = new InputStreamReader(getClass().getResourceAsStream(fileName), StandardCharsets.UTF_8)) {
+            CsvUtils.projectColumns(reader, FishStatJSourceConstants.VALID_SUBJECTS, 0, (final String value) -> {}, statistics);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.gerdiproject.harvest.utils.file.FileUtils;
+
+/**
+ * This class provides Unit Tests for the {@linkplain CsvSubjectCache}.
+ *
+ * @author Robin Weiss
+ */
+public class CsvSubjectCacheTest
+{
+    private static final String ZIP_URL = "http://localhost/archive.zip";
+    private static final String OTHER_ZIP_URL = "http://localhost/other.zip";
+    private static final String CSV_NAME = "FishStatJ/Values.csv";
+    private static final long CRC = 0x1234abcdL;
+    private static final long SIZE = 4096;
+    private static final List<String> VALUES = Arrays.asList("Norway", "Atlantic cod", "1950");
+
+    private File cacheFolder;
+
+
+    /**
+     * Creates a temporary cache folder.
+     *
+     * @throws IOException thrown when the folder cannot be created
+     */
+    @Before
+    public void before() throws IOException
+    {
+        cacheFolder = Files.createTempDirectory("CsvSubjectCacheTest").toFile();
+    }
+
+
+    /**
+     * Removes the cache folder.
+     */
+    @After
+    public void after()
+    {
+        FileUtils.deleteFile(cacheFolder);
+    }
+
+
+    /**
+     * Tests if the subject values of a csv file are retrieved by another cache
+     * instance, even if the file was compressed or positioned differently.
+     */
+    @Test
+    public void testCachedValues()
+    {
+        new CsvSubjectCache(cacheFolder).put(ZIP_URL, createEntry(CSV_NAME, CRC, SIZE), VALUES);
+
+        final CsvSubjectCache cache = new CsvSubjectCache(cacheFolder);
+        final RemoteZipEntry movedEntry = new RemoteZipEntry(CSV_NAME, ZipEntry.STORED, CRC, SIZE, SIZE, SIZE);
+
+        assertEquals(VALUES, cache.get(ZIP_URL, createEntry(CSV_NAME, CRC, SIZE)));
+        assertEquals(VALUES, cache.get(ZIP_URL, movedEntry));
+    }
+
+
+    /**
+     * Tests if the subject values of a csv file are not retrieved if the
+     * file or the archive that contains it is a different one.
+     */
+    @Test
+    public void testChangedCsvFile()
+    {
+        final CsvSubjectCache cache = new CsvSubjectCache(cacheFolder);
+        cache.put(ZIP_URL, createEntry(CSV_NAME, CRC, SIZE), VALUES);
+
+        assertNull(cache.get(ZIP_URL, createEntry(CSV_NAME, CRC + 1, SIZE)));
+        assertNull(cache.get(ZIP_URL, createEntry(CSV_NAME, CRC, SIZE + 1)));
+        assertNull(cache.get(ZIP_URL, createEntry("FishStatJ/Other.csv", CRC, SIZE)));
+        assertNull(cache.get(OTHER_ZIP_URL, createEntry(CSV_NAME, CRC, SIZE)));
+    }
+
+
+    /**
+     * Tests if corrupted cache entries are treated as missing.
+     *
+     * @throws IOException thrown when the cache entry cannot be corrupted
+     */
+    @Test
+    public void testCorruptedEntry() throws IOException
+    {
+        final CsvSubjectCache cache = new CsvSubjectCache(cacheFolder);
+        cache.put(ZIP_URL, createEntry(CSV_NAME, CRC, SIZE), VALUES);
+
+        for (final File entryFile : cacheFolder.listFiles())
+            Files.write(entryFile.toPath(), "[\"unterminated".getBytes(StandardCharsets.UTF_8));
+
+        assertNull(cache.get(ZIP_URL, createEntry(CSV_NAME, CRC, SIZE)));
+    }
+
+
+    /**
+     * Tests if only entries that have not been used within the retention time are removed,
+     * and if retrieving an entry counts as a use.
+     */
+    @Test
+    public void testRemoveUnusedEntries()
+    {
+        final CsvSubjectCache cache = new CsvSubjectCache(cacheFolder);
+        final RemoteZipEntry usedEntry = createEntry(CSV_NAME, CRC, SIZE);
+        final RemoteZipEntry unusedEntry = createEntry(CSV_NAME, CRC + 1, SIZE);
+        cache.put(ZIP_URL, usedEntry, VALUES);
+        cache.put(ZIP_URL, unusedEntry, VALUES);
+
+        final long expiredTime = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(31);
+
+        for (final File entryFile : cacheFolder.listFiles())
+            entryFile.setLastModified(expiredTime);
+
+        assertEquals(VALUES, cache.get(ZIP_URL, usedEntry));
+        cache.removeUnusedEntries();
+
+        assertEquals(1, cacheFolder.listFiles().length);
+        assertEquals(VALUES, cache.get(ZIP_URL, usedEntry));
+        assertNull(cache.get(ZIP_URL, unusedEntry));
+    }
+
+
+    /**
+     * Creates a central directory entry of a compressed file.
+     *
+     * @param name the path of the file within the archive
+     * @param crc the CRC-32 of the uncompressed file
+     * @param size the uncompressed size of the file
+     *
+     * @return a central directory entry
+     */
+    private static RemoteZipEntry createEntry(final String name, final long crc, final long size)
+    {
+        return new RemoteZipEntry(name, ZipEntry.DEFLATED, crc, size / 2, size, 0);
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This class provides Unit Tests for the {@linkplain CsvUtils}.
+ * The values that are projected from memory-mapped files, in one pass
+ * or in parallel chunks, are compared to the values that are read by OpenCSV.
+ *
+ * @author Robin Weiss
+ */
+public class CsvUtilsTest
+{
+    private static final List<String> TITLE_ROW = Arrays.asList("Country", "Species", "Unit", "1950", "1951");
+    private static final Collection<String> PROJECTED_TITLES = Arrays.asList("Country", "Species");
+    private static final String[] COUNTRIES = { "Norway", "Côte d'Ivoire", "Korea, Republic of" };
+    private static final String[] SPECIES = { "Atlantic cod", "Sardine \"Pilchard\"", "Marine fishes\nnei" };
+    private static final int ROW_COUNT = 1000;
+    private static final int MAX_CHUNK_COUNT = 8;
+
+    private File csvFile;
+
+
+    /**
+     * Writes a csv file with quoted values that contain delimiters, quotes and line breaks.
+     *
+     * @throws IOException thrown when the file cannot be written
+     */
+    @Before
+    public void before() throws IOException
+    {
+        final Random random = new Random(0);
+        final StringBuilder csv = new StringBuilder();
+        appendRow(csv, TITLE_ROW);
+
+        for (int i = 0; i < ROW_COUNT; i++) {
+            appendRow(csv, Arrays.asList(
+                          COUNTRIES[random.nextInt(COUNTRIES.length)],
+                          SPECIES[random.nextInt(SPECIES.length)],
+                          "t",
+                          String.valueOf(random.nextInt(1000)),
+                          String.valueOf(random.nextInt(1000))));
+        }
+
+        csvFile = File.createTempFile("CsvUtilsTest", ".csv");
+        Files.write(csvFile.toPath(), csv.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    /**
+     * Removes the csv file.
+     */
+    @After
+    public void after()
+    {
+        csvFile.delete();
+    }
+
+
+    /**
+     * Tests if projecting the columns of a memory-mapped file retrieves the same
+     * values as projecting them via OpenCSV.
+     */
+    @Test
+    public void testMappedColumns()
+    {
+        final List<String> expectedValues = new ArrayList<>();
+        assertTrue(CsvUtils.projectColumns(csvFile, StandardCharsets.UTF_8, PROJECTED_TITLES, 0, expectedValues::add));
+
+        final List<String> mappedValues = new ArrayList<>();
+        assertTrue(CsvUtils.projectMappedColumns(csvFile, StandardCharsets.UTF_8, PROJECTED_TITLES, 0, mappedValues::add));
+
+        assertEquals(ROW_COUNT * PROJECTED_TITLES.size(), expectedValues.size());
+        assertEquals(expectedValues, mappedValues);
+    }
+
+
+    /**
+     * Tests if projecting the columns of a file in parallel chunks retrieves the
+     * same values as projecting them via OpenCSV, for different numbers of chunks.
+     */
+    @Test
+    public void testMappedColumnsInChunks()
+    {
+        final List<String> expectedValues = new ArrayList<>();
+        assertTrue(CsvUtils.projectColumns(csvFile, StandardCharsets.UTF_8, PROJECTED_TITLES, 0, expectedValues::add));
+
+        for (int chunkCount = 1; chunkCount <= MAX_CHUNK_COUNT; chunkCount++) {
+            final List<List<String>> chunkValues = CsvUtils.projectMappedColumnsInChunks(
+                                                       csvFile,
+                                                       StandardCharsets.UTF_8,
+                                                       PROJECTED_TITLES,
+                                                       0,
+                                                       chunkCount,
+                                                       ArrayList::new,
+                                                       List::add);
+            assertNotNull(chunkValues);
+            assertEquals(chunkCount, chunkValues.size());
+
+            final List<String> mergedValues = new ArrayList<>();
+            chunkValues.forEach(mergedValues::addAll);
+
+            assertEquals(expectedValues, mergedValues);
+        }
+    }
+
+
+    /**
+     * Tests if the column shift is applied to the projected columns of a file
+     * that is read in parallel chunks.
+     */
+    @Test
+    public void testColumnShiftInChunks()
+    {
+        final List<String> expectedValues = new ArrayList<>();
+        assertTrue(CsvUtils.projectColumns(csvFile, StandardCharsets.UTF_8, Arrays.asList("1950"), 1, expectedValues::add));
+
+        final List<List<String>> chunkValues = CsvUtils.projectMappedColumnsInChunks(
+                                                   csvFile,
+                                                   StandardCharsets.UTF_8,
+                                                   Arrays.asList("1950"),
+                                                   1,
+                                                   MAX_CHUNK_COUNT,
+                                                   ArrayList::new,
+                                                   List::add);
+
+        final List<String> mergedValues = new ArrayList<>();
+        chunkValues.forEach(mergedValues::addAll);
+
+        assertEquals(ROW_COUNT, mergedValues.size());
+        assertEquals(expectedValues, mergedValues);
+    }
+
+
+    /**
+     * Tests if no chunks are read if none of the projected columns exist.
+     */
+    @Test
+    public void testMissingColumnsInChunks()
+    {
+        final List<List<String>> chunkValues = CsvUtils.projectMappedColumnsInChunks(
+                                                   csvFile,
+                                                   StandardCharsets.UTF_8,
+                                                   Arrays.asList("Missing"),
+                                                   0,
+                                                   MAX_CHUNK_COUNT,
+                                                   ArrayList::new,
+                                                   List::add);
+
+        assertNotNull(chunkValues);
+        assertTrue(chunkValues.isEmpty());
+    }
+
+
+    /**
+     * Appends a csv row to a {@linkplain StringBuilder}, quoting all values.
+     *
+     * @param csv the builder of the csv text
+     * @param row the values of the row
+     */
+    private static void appendRow(final StringBuilder csv, final List<String> row)
+    {
+        for (int i = 0; i < row.size(); i++) {
+            if (i != 0)
+                csv.append(',');
+
+            csv.append('"').append(row.get(i).replace("\"", "\"\"")).append('"');
+        }
+
+        csv.append("\r\n");
+    }
+}
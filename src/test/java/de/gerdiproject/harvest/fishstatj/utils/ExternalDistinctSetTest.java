@@ -0,0 +1,165 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.gerdiproject.harvest.utils.file.FileUtils;
+
+/**
+ * This class provides Unit Tests for the {@linkplain ExternalDistinctSet}.
+ *
+ * @author Robin Weiss
+ */
+public class ExternalDistinctSetTest
+{
+    private static final long LARGE_MEMORY_BUDGET = 1024L * 1024L;
+    private static final long SMALL_MEMORY_BUDGET = 2048L;
+    private static final int VALUE_COUNT = 5000;
+    private static final int DISTINCT_VALUE_COUNT = 700;
+
+    private File spillFolder;
+
+
+    /**
+     * Creates an empty folder for sorted runs.
+     *
+     * @throws IOException thrown when the folder cannot be created
+     */
+    @Before
+    public void before() throws IOException
+    {
+        spillFolder = Files.createTempDirectory("ExternalDistinctSetTest").toFile();
+    }
+
+
+    /**
+     * Removes the folder of sorted runs.
+     */
+    @After
+    public void after()
+    {
+        FileUtils.deleteFile(spillFolder);
+    }
+
+
+    /**
+     * Tests if distinct values are passed on in ascending order, without
+     * writing anything to disk, if they fit into the memory budget.
+     *
+     * @throws IOException thrown when the distinct values cannot be retrieved
+     */
+    @Test
+    public void testWithinMemoryBudget() throws IOException
+    {
+        final List<String> values = generateValues();
+
+        try
+            (ExternalDistinctSet distinctSet = new ExternalDistinctSet(spillFolder, LARGE_MEMORY_BUDGET)) {
+            values.forEach(distinctSet::add);
+
+            assertEquals(0, spillFolder.list().length);
+            assertEquals(new ArrayList<>(new TreeSet<>(values)), getDistinctValues(distinctSet));
+        }
+    }
+
+
+    /**
+     * Tests if distinct values are passed on exactly once and in ascending order,
+     * if they exceed the memory budget and are merged from multiple overlapping runs.
+     *
+     * @throws IOException thrown when the distinct values cannot be retrieved
+     */
+    @Test
+    public void testSpilledRuns() throws IOException
+    {
+        final List<String> values = generateValues();
+
+        try
+            (ExternalDistinctSet distinctSet = new ExternalDistinctSet(spillFolder, SMALL_MEMORY_BUDGET)) {
+            values.forEach(distinctSet::add);
+
+            assertTrue(spillFolder.list().length > 1);
+            assertEquals(new ArrayList<>(new TreeSet<>(values)), getDistinctValues(distinctSet));
+        }
+    }
+
+
+    /**
+     * Tests if the sorted runs are removed when the set is closed.
+     */
+    @Test
+    public void testClose()
+    {
+        final ExternalDistinctSet distinctSet = new ExternalDistinctSet(spillFolder, SMALL_MEMORY_BUDGET);
+        generateValues().forEach(distinctSet::add);
+
+        assertTrue(spillFolder.list().length > 0);
+
+        distinctSet.close();
+
+        assertEquals(0, spillFolder.list().length);
+    }
+
+
+    /**
+     * Generates a reproducible list of values with many duplicates,
+     * including non-ASCII characters.
+     *
+     * @return a list of values
+     */
+    private static List<String> generateValues()
+    {
+        final Random random = new Random(0);
+        final List<String> values = new ArrayList<>(VALUE_COUNT);
+
+        for (int i = 0; i < VALUE_COUNT; i++)
+            values.add("Espèce " + random.nextInt(DISTINCT_VALUE_COUNT));
+
+        return values;
+    }
+
+
+    /**
+     * Retrieves all distinct values of a set in the order in which they are passed on.
+     *
+     * @param distinctSet the set of which the values are retrieved
+     *
+     * @return a list of the distinct values
+     *
+     * @throws IOException thrown when the distinct values cannot be retrieved
+     */
+    private static List<String> getDistinctValues(final ExternalDistinctSet distinctSet) throws IOException
+    {
+        final List<String> distinctValues = new ArrayList<>();
+        distinctSet.forEachDistinct(distinctValues::add);
+        return distinctValues;
+    }
+}
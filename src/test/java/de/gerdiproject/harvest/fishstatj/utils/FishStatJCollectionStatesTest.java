@@ -0,0 +1,171 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.gerdiproject.harvest.utils.file.FileUtils;
+
+/**
+ * This class provides Unit Tests for the {@linkplain FishStatJCollectionStates}.
+ *
+ * @author Robin Weiss
+ */
+public class FishStatJCollectionStatesTest
+{
+    private static final String FIRST_URL = "http://localhost/collection1";
+    private static final String SECOND_URL = "http://localhost/collection2";
+    private static final String FINGERPRINT = "fingerprint";
+    private static final String CHANGED_FINGERPRINT = "changedFingerprint";
+
+    private File stateFolder;
+    private File stateFile;
+
+
+    /**
+     * Creates a temporary folder for the state file.
+     *
+     * @throws IOException thrown when the folder cannot be created
+     */
+    @Before
+    public void before() throws IOException
+    {
+        stateFolder = Files.createTempDirectory("FishStatJCollectionStatesTest").toFile();
+        stateFile = new File(stateFolder, "states.json");
+    }
+
+
+    /**
+     * Removes the state file.
+     */
+    @After
+    public void after()
+    {
+        FileUtils.deleteFile(stateFolder);
+    }
+
+
+    /**
+     * Tests if a harvested collection is unchanged in the next harvest,
+     * unless its fingerprint changed.
+     */
+    @Test
+    public void testHarvestedCollection()
+    {
+        final FishStatJCollectionStates states = new FishStatJCollectionStates();
+        states.load(stateFile);
+        states.setExtracted(FIRST_URL, FINGERPRINT);
+        states.setHarvested(FIRST_URL);
+        states.save();
+
+        final FishStatJCollectionStates loadedStates = new FishStatJCollectionStates();
+        loadedStates.load(stateFile);
+
+        assertTrue(loadedStates.isUnchanged(FIRST_URL, FINGERPRINT));
+        assertFalse(loadedStates.isUnchanged(FIRST_URL, CHANGED_FINGERPRINT));
+        assertFalse(loadedStates.isUnchanged(SECOND_URL, FINGERPRINT));
+    }
+
+
+    /**
+     * Tests if collections that were extracted, but not harvested,
+     * are harvested again in the next harvest.
+     */
+    @Test
+    public void testExtractedCollection()
+    {
+        final FishStatJCollectionStates states = new FishStatJCollectionStates();
+        states.load(stateFile);
+        states.setExtracted(FIRST_URL, FINGERPRINT);
+        states.setExtracted(SECOND_URL, FINGERPRINT);
+        states.setHarvested(SECOND_URL);
+        states.save();
+
+        final FishStatJCollectionStates loadedStates = new FishStatJCollectionStates();
+        loadedStates.load(stateFile);
+
+        assertFalse(loadedStates.isUnchanged(FIRST_URL, FINGERPRINT));
+        assertTrue(loadedStates.isUnchanged(SECOND_URL, FINGERPRINT));
+    }
+
+
+    /**
+     * Tests if collections without a fingerprint are never unchanged,
+     * and do not replace the fingerprint of a previous harvest.
+     */
+    @Test
+    public void testUnknownFingerprint()
+    {
+        final FishStatJCollectionStates states = new FishStatJCollectionStates();
+        states.load(stateFile);
+        states.setExtracted(FIRST_URL, FINGERPRINT);
+        states.setHarvested(FIRST_URL);
+
+        assertFalse(states.isUnchanged(SECOND_URL, null));
+        assertFalse(states.isUnchanged(FIRST_URL, null));
+
+        states.setExtracted(FIRST_URL, null);
+        states.setHarvested(FIRST_URL);
+
+        assertTrue(states.isUnchanged(FIRST_URL, FINGERPRINT));
+    }
+
+
+    /**
+     * Tests if no states are recorded or written if they were not loaded,
+     * which is the case for harvests that are not incremental.
+     */
+    @Test
+    public void testNonIncrementalHarvest()
+    {
+        final FishStatJCollectionStates states = new FishStatJCollectionStates();
+        states.setExtracted(FIRST_URL, FINGERPRINT);
+        states.setHarvested(FIRST_URL);
+        states.save();
+
+        assertFalse(states.isLoaded());
+        assertFalse(states.isUnchanged(FIRST_URL, FINGERPRINT));
+        assertFalse(stateFile.exists());
+    }
+
+
+    /**
+     * Tests if clearing the states discards harvested collections without saving them.
+     */
+    @Test
+    public void testClear()
+    {
+        final FishStatJCollectionStates states = new FishStatJCollectionStates();
+        states.load(stateFile);
+        states.setExtracted(FIRST_URL, FINGERPRINT);
+        states.setHarvested(FIRST_URL);
+        states.clear();
+        states.save();
+
+        assertFalse(states.isUnchanged(FIRST_URL, FINGERPRINT));
+        assertFalse(stateFile.exists());
+    }
+}
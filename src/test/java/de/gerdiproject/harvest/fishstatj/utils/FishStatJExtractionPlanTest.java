@@ -0,0 +1,167 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.gerdiproject.harvest.etls.FishStatJLanguageVO;
+import de.gerdiproject.harvest.etls.extractors.FishStatJLinkVO;
+import de.gerdiproject.harvest.etls.extractors.FishStatJPageVO;
+import de.gerdiproject.harvest.fishstatj.constants.FishStatJLanguageConstants;
+import de.gerdiproject.harvest.fishstatj.constants.FishStatJSourceConstants;
+
+/**
+ * This class provides Unit Tests for the {@linkplain FishStatJExtractionPlan}.
+ * The content that is retrieved by the plan is compared to the content of the
+ * separate selections that were previously used by the transformer.
+ *
+ * @author Robin Weiss
+ */
+public class FishStatJExtractionPlanTest
+{
+    private static final String ZIP_LINKS_PAGE =
+        "<html><body><a href=\"notes.txt\">Notes</a><a href=\"DATA.ZIP\">Data</a><a href=\"other.zip\">Other</a></body></html>";
+    private static final String COLLECTION_PAGE_PATH =
+        "src/test/resources/de/gerdiproject/harvest/etls/transformers/FishStatJTransformerTest/mockedHttpResponses/collection.html";
+
+    private FishStatJLanguageVO languageVo;
+    private FishStatJExtractionPlan extractionPlan;
+    private Document collectionPage;
+
+
+    /**
+     * Parses the mocked collection page and prepares the extraction plan.
+     *
+     * @throws IOException thrown when the collection page cannot be read
+     */
+    @Before
+    public void before() throws IOException
+    {
+        languageVo = FishStatJLanguageConstants.LANGUAGE_MAP.get(FishStatJLanguageConstants.ENGLISH_API_NAME);
+        extractionPlan = new FishStatJExtractionPlan(languageVo);
+        collectionPage = Jsoup.parse(new File(COLLECTION_PAGE_PATH), StandardCharsets.UTF_8.name());
+    }
+
+
+    /**
+     * Tests if the extraction plan retrieves the same content as the separate selections.
+     */
+    @Test
+    public void testSameContent()
+    {
+        final FishStatJPageVO page = extractionPlan.scan(collectionPage, null);
+
+        assertEquals(collectionPage.selectFirst(FishStatJSourceConstants.MAIN_TITLE_SELECTION).text(), page.getTitle());
+        assertEquals(collectionPage.selectFirst(FishStatJSourceConstants.SUB_TITLE_SELECTION).text(), page.getSubTitle());
+
+        final Map<String, Element> legacySections = getLegacySections();
+        assertEquals(legacySections.keySet(), page.getSections().keySet());
+
+        for (final Map.Entry<String, Element> legacySection : legacySections.entrySet()) {
+            final Element sectionBody = legacySection.getValue();
+            assertEquals(sectionBody.text(), page.getSections().get(legacySection.getKey()).getText());
+            assertEquals(
+                sectionBody.select(FishStatJSourceConstants.LINKS_SELECTION).size(),
+                page.getSections().get(legacySection.getKey()).getLinks().size());
+        }
+
+        final List<Element> legacySidebarLinks = getLegacySidebarLinks();
+        assertEquals(legacySidebarLinks.size(), page.getSidebarLinks().size());
+
+        for (int i = 0; i < legacySidebarLinks.size(); i++) {
+            final FishStatJLinkVO sidebarLink = page.getSidebarLinks().get(i);
+            assertEquals(legacySidebarLinks.get(i).attr(FishStatJSourceConstants.HREF_ATTRIBUTE), sidebarLink.getUrl());
+            assertEquals(legacySidebarLinks.get(i).text(), sidebarLink.getText());
+        }
+    }
+
+
+    /**
+     * Tests if the extraction plan retrieves the same zip link as the zip link selection,
+     * which compares the ends of URLs case-insensitively.
+     */
+    @Test
+    public void testSameZipLink()
+    {
+        final Document zipLinksPage = Jsoup.parse(ZIP_LINKS_PAGE);
+        final FishStatJPageVO page = extractionPlan.scan(zipLinksPage);
+
+        assertEquals(
+            zipLinksPage.selectFirst(FishStatJSourceConstants.ZIP_LINKS_SELECTION).attr(FishStatJSourceConstants.HREF_ATTRIBUTE),
+            page.getZipLink().getUrl());
+    }
+
+
+    /**
+     * Retrieves the sections of the collection page via a selection, as the transformer
+     * previously did for every field that required them.
+     *
+     * @return a map of collection section titles to corresponding body elements
+     */
+    private Map<String, Element> getLegacySections()
+    {
+        final Map<String, Element> map = new HashMap<>();
+        final Elements subSections = collectionPage.select(FishStatJSourceConstants.ALL_SECTIONS_SELECTION);
+
+        int i = 0;
+        final int subSectionCount = subSections.size();
+
+        while (i < subSectionCount) {
+            final String sectionTitle = subSections.get(i++).text().trim();
+            final Element sectionBody = subSections.get(i++);
+            map.put(sectionTitle, sectionBody);
+        }
+
+        return map;
+    }
+
+
+    /**
+     * Retrieves the sidebar links of the collection page via one selection per sidebar title.
+     *
+     * @return a list of sidebar links
+     */
+    private List<Element> getLegacySidebarLinks()
+    {
+        final List<Element> sidebarLinks = new LinkedList<>();
+
+        for (final String sideBarTitle : languageVo.getSidebarTitles()) {
+            final String sideBarSelection = String.format(FishStatJSourceConstants.CONTAINS_TEXT_SELECTION, sideBarTitle);
+            final Element sideBar = collectionPage.selectFirst(sideBarSelection);
+
+            if (sideBar != null)
+                sidebarLinks.add(sideBar);
+        }
+
+        return sidebarLinks;
+    }
+}
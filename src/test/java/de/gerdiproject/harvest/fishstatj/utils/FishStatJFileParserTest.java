@@ -0,0 +1,403 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.gerdiproject.harvest.etls.extractors.FishStatJArchiveVO;
+import de.gerdiproject.harvest.fishstatj.constants.FishStatJDataCiteConstants;
+import de.gerdiproject.harvest.fishstatj.constants.FishStatJFileConstants;
+import de.gerdiproject.harvest.fishstatj.constants.FishStatJLanguageConstants;
+import de.gerdiproject.harvest.utils.file.FileUtils;
+import de.gerdiproject.json.datacite.Date;
+import de.gerdiproject.json.datacite.Rights;
+import de.gerdiproject.json.datacite.Subject;
+import de.gerdiproject.json.datacite.enums.DateType;
+
+/**
+ * This class provides Unit Tests for the {@linkplain FishStatJFileParser}.
+ *
+ * @author Robin Weiss
+ */
+public class FishStatJFileParserTest
+{
+    private static final String FIXTURE_FOLDER = "FishStatJFileParserTest/";
+    private static final String NOTES_FIXTURE = FIXTURE_FOLDER + FishStatJFileConstants.README_FILE_NAME;
+    private static final List<String> ARCHIVE_FIXTURES = Arrays.asList(
+                                                             FishStatJFileConstants.README_FILE_NAME,
+                                                             "CL_FI_SPECIES_GROUPS.csv",
+                                                             "CL_FI_COUNTRY_GROUPS.csv",
+                                                             "TS_FI_PRODUCTION.csv");
+    private static final String UNREQUIRED_FILE_NAME = "FSJ_WORKSPACE.fsj";
+    private static final Set<String> EXPECTED_SUBJECTS = new HashSet<>(Arrays.asList(
+                                                                           "Atlantic cod",
+                                                                           "Gadus morhua",
+                                                                           "Skipjack tuna",
+                                                                           "Katsuwonus pelamis",
+                                                                           "Tunas, bonitos, billfishes nei",
+                                                                           "Thunnini",
+                                                                           "Afghanistan",
+                                                                           "Albania"));
+    private static final String EXPECTED_RIGHTS = "All rights reserved. FAO encourages the reproduction of material in this dataset.\n"
+                                                  + "Non-commercial uses will be authorized free of charge. ";
+
+    private final FishStatJFileParser parser = new FishStatJFileParser();
+    private File unzippedFolder;
+
+
+    /**
+     * Creates a temporary folder for unzipped collection files.
+     *
+     * @throws IOException thrown when the folder cannot be created
+     */
+    @Before
+    public void before() throws IOException
+    {
+        unzippedFolder = Files.createTempDirectory("FishStatJFileParserTest").toFile();
+    }
+
+
+    /**
+     * Removes the temporary folder.
+     */
+    @After
+    public void after()
+    {
+        FileUtils.deleteFile(unzippedFolder);
+    }
+
+
+    /**
+     * Tests if the copyright section of a Notes.txt is parsed as rights,
+     * excluding the header and the contact suffix.
+     *
+     * @throws IOException thrown when the fixture cannot be read
+     */
+    @Test
+    public void testNotesRights() throws IOException
+    {
+        final FishStatJArchiveVO notes = parseNotesFixture();
+
+        assertEquals(
+            Collections.singletonList(new Rights(EXPECTED_RIGHTS, FishStatJLanguageConstants.ENGLISH_API_NAME)),
+            notes.getRights());
+    }
+
+
+    /**
+     * Tests if each line of the version history of a Notes.txt is parsed as a date,
+     * including a line that is followed by the copyright notice.
+     *
+     * @throws IOException thrown when the fixture cannot be read
+     */
+    @Test
+    public void testNotesDates() throws IOException
+    {
+        final FishStatJArchiveVO notes = parseNotesFixture();
+
+        assertEquals(
+            Arrays.asList(
+                createDate("v1.0", "2016.03", "Initial release of the dataset", DateType.Issued),
+                createDate("v1.1", "2017.03", "Data for 2015 added", DateType.Updated)),
+            notes.getDates());
+    }
+
+
+    /**
+     * Tests if a date on the same line as the version history title is parsed,
+     * and if malformed version lines are ignored.
+     *
+     * @throws IOException thrown when the text cannot be read
+     */
+    @Test
+    public void testDateOnTitleLine() throws IOException
+    {
+        final FishStatJArchiveVO notes = new FishStatJArchiveVO();
+        parser.parseNotes(new StringReader("Version History:\\nv2.0  2019.03  Data for 2017 added\nv2.1 2020.03\n"), notes);
+
+        assertEquals(
+            Collections.singletonList(createDate("v2.0", "2019.03", "Data for 2017 added", DateType.Updated)),
+            notes.getDates());
+    }
+
+
+    /**
+     * Tests if a Notes.txt without copyright and version history sections yields no metadata.
+     *
+     * @throws IOException thrown when the text cannot be read
+     */
+    @Test
+    public void testNotesWithoutSections() throws IOException
+    {
+        final FishStatJArchiveVO notes = new FishStatJArchiveVO();
+        parser.parseNotes(new StringReader("GLOBAL CAPTURE PRODUCTION\r\n\r\nNo further notes.\r\n"), notes);
+
+        assertTrue(notes.getRights().isEmpty());
+        assertTrue(notes.getDates().isEmpty());
+    }
+
+
+    /**
+     * Tests if an unzipped Notes.txt and a streamed Notes.txt yield the same metadata
+     * as the parsed fixture.
+     *
+     * @throws IOException thrown when the fixture cannot be copied or read
+     */
+    @Test
+    public void testNotesFile() throws IOException
+    {
+        final FishStatJArchiveVO expectedNotes = parseNotesFixture();
+
+        try
+            (InputStream fixtureStream = getClass().getResourceAsStream(NOTES_FIXTURE)) {
+            Files.copy(fixtureStream, new File(unzippedFolder, FishStatJFileConstants.README_FILE_NAME).toPath());
+        }
+
+        final FishStatJArchiveVO unzippedNotes = parser.getNotes(unzippedFolder);
+        assertEquals(expectedNotes.getRights(), unzippedNotes.getRights());
+        assertEquals(expectedNotes.getDates(), unzippedNotes.getDates());
+
+        final FishStatJArchiveVO streamedNotes = parser.createArchive();
+
+        try
+            (InputStream fixtureStream = getClass().getResourceAsStream(NOTES_FIXTURE)) {
+            parser.parseFile(FishStatJFileConstants.README_FILE_NAME, fixtureStream, streamedNotes);
+        }
+
+        assertEquals(expectedNotes.getRights(), streamedNotes.getRights());
+        assertEquals(expectedNotes.getDates(), streamedNotes.getDates());
+    }
+
+
+    /**
+     * Tests if a collection without Notes.txt yields no metadata.
+     */
+    @Test
+    public void testMissingNotesFile()
+    {
+        final FishStatJArchiveVO notes = parser.getNotes(unzippedFolder);
+
+        assertTrue(notes.getRights().isEmpty());
+        assertTrue(notes.getDates().isEmpty());
+    }
+
+
+    /**
+     * Tests if a collection archive that is parsed while it is streamed yields the same
+     * subjects, rights, and dates as the unzipped archive, including the values of
+     * quoted fields and of csv files with shifted headers.
+     *
+     * @throws IOException thrown when the archive cannot be created, unzipped, or parsed
+     */
+    @Test
+    public void testStreamedArchive() throws IOException
+    {
+        final byte[] zipBytes = createArchiveFixture();
+        final FishStatJArchiveVO streamedArchive;
+
+        try
+            (ZipInputStream zipStream = new ZipInputStream(new ByteArrayInputStream(zipBytes))) {
+            streamedArchive = parser.parseArchive(zipStream);
+        }
+
+        assertEquals(EXPECTED_SUBJECTS, getSubjectValues(streamedArchive.getSubjects()));
+
+        unzip(zipBytes, (final String fileName) -> true);
+        assertEquals(EXPECTED_SUBJECTS, getSubjectValues(parser.getSubjects(unzippedFolder)));
+
+        final FishStatJFileParser mappingParser = new FishStatJFileParser();
+        mappingParser.setMappingCsvFiles(true);
+        mappingParser.setCsvParsingThreads(2);
+        assertEquals(EXPECTED_SUBJECTS, getSubjectValues(mappingParser.getSubjects(unzippedFolder)));
+
+        final FishStatJArchiveVO unzippedNotes = parser.getNotes(unzippedFolder);
+        assertEquals(unzippedNotes.getRights(), streamedArchive.getRights());
+        assertEquals(unzippedNotes.getDates(), streamedArchive.getDates());
+        assertEquals(parseNotesFixture().getDates(), streamedArchive.getDates());
+    }
+
+
+    /**
+     * Tests if a collection archive of which only the required files are extracted yields
+     * the same subjects, rights, and dates as the fully unzipped archive, regardless of
+     * whether the csv files are extracted or parsed directly for the csv subject cache.
+     *
+     * @throws IOException thrown when the archive cannot be created, unzipped, or parsed
+     */
+    @Test
+    public void testSelectivelyExtractedArchive() throws IOException
+    {
+        final byte[] zipBytes = createArchiveFixture();
+
+        unzip(zipBytes, parser::isRequiredFile);
+        assertFalse(new File(unzippedFolder, UNREQUIRED_FILE_NAME).exists());
+        assertEquals(EXPECTED_SUBJECTS, getSubjectValues(parser.getSubjects(unzippedFolder)));
+
+        final FishStatJArchiveVO extractedNotes = parser.getNotes(unzippedFolder);
+        assertEquals(parseNotesFixture().getRights(), extractedNotes.getRights());
+        assertEquals(parseNotesFixture().getDates(), extractedNotes.getDates());
+
+        // csv files that are parsed for the cache are never written to disk
+        final FishStatJArchiveVO cachedArchive = parser.createArchive();
+
+        try
+            (ZipInputStream zipStream = new ZipInputStream(new ByteArrayInputStream(zipBytes))) {
+            for (ZipEntry entry = zipStream.getNextEntry(); entry != null; entry = zipStream.getNextEntry()) {
+                if (FishStatJFileConstants.CSV_FILE_FILTER.accept(null, entry.getName()))
+                    parser.addSubjectValues(parser.parseSubjectValues(entry.getName(), zipStream), cachedArchive);
+            }
+        }
+
+        assertEquals(EXPECTED_SUBJECTS, getSubjectValues(cachedArchive.getSubjects()));
+    }
+
+
+    /**
+     * Parses the Notes.txt fixture.
+     *
+     * @return the metadata that was parsed from the fixture
+     *
+     * @throws IOException thrown when the fixture cannot be read
+     */
+    private FishStatJArchiveVO parseNotesFixture() throws IOException
+    {
+        final FishStatJArchiveVO notes = new FishStatJArchiveVO();
+
+        try
+            (Reader notesReader = new InputStreamReader(getClass().getResourceAsStream(NOTES_FIXTURE), StandardCharsets.UTF_8)) {
+            parser.parseNotes(notesReader, notes);
+        }
+
+        return notes;
+    }
+
+
+    /**
+     * Creates a date as it is expected to be parsed from a line of a version history.
+     *
+     * @param version the version of the line
+     * @param dateString the date of the line
+     * @param description the description of the line
+     * @param dateType the expected type of the date
+     *
+     * @return the expected date
+     */
+    private static Date createDate(final String version, final String dateString, final String description, final DateType dateType)
+    {
+        final Date date = new Date(dateString, dateType);
+        date.setInformation(String.format(FishStatJDataCiteConstants.DATE_INFORMATION, version, description));
+        return date;
+    }
+
+
+    /**
+     * Creates a collection archive of the fixture files and a file that is not
+     * required for parsing metadata.
+     *
+     * @return the bytes of the zip archive
+     *
+     * @throws IOException thrown when the fixtures cannot be read
+     */
+    private byte[] createArchiveFixture() throws IOException
+    {
+        final ByteArrayOutputStream zipOut = new ByteArrayOutputStream();
+
+        try
+            (ZipOutputStream zipStream = new ZipOutputStream(zipOut)) {
+            for (final String fileName : ARCHIVE_FIXTURES) {
+                zipStream.putNextEntry(new ZipEntry(fileName));
+
+                try
+                    (InputStream fixtureStream = getClass().getResourceAsStream(FIXTURE_FOLDER + fileName)) {
+                    final byte[] buffer = new byte[FishStatJFileConstants.ZIP_EXTRACT_BUFFER_SIZE];
+
+                    for (int readByteCount = fixtureStream.read(buffer); readByteCount != -1; readByteCount = fixtureStream.read(buffer))
+                        zipStream.write(buffer, 0, readByteCount);
+                }
+
+                zipStream.closeEntry();
+            }
+
+            zipStream.putNextEntry(new ZipEntry(UNREQUIRED_FILE_NAME));
+            zipStream.write(new byte[FishStatJFileConstants.ZIP_EXTRACT_BUFFER_SIZE]);
+            zipStream.closeEntry();
+        }
+
+        return zipOut.toByteArray();
+    }
+
+
+    /**
+     * Extracts the files of a collection archive to the temporary folder.
+     *
+     * @param zipBytes the bytes of the zip archive
+     * @param fileFilter a filter of the names of the files that are extracted
+     *
+     * @throws IOException thrown when the archive cannot be extracted
+     */
+    private void unzip(final byte[] zipBytes, final Predicate<String> fileFilter) throws IOException
+    {
+        try
+            (ZipInputStream zipStream = new ZipInputStream(new ByteArrayInputStream(zipBytes))) {
+            for (ZipEntry entry = zipStream.getNextEntry(); entry != null; entry = zipStream.getNextEntry()) {
+                if (fileFilter.test(entry.getName()))
+                    Files.copy(zipStream, new File(unzippedFolder, entry.getName()).toPath());
+            }
+        }
+    }
+
+
+    /**
+     * Retrieves the values of subjects.
+     *
+     * @param subjects the subjects of a collection
+     *
+     * @return the distinct values of the subjects
+     */
+    private static Set<String> getSubjectValues(final Collection<Subject> subjects)
+    {
+        return subjects.stream().map(Subject::getValue).collect(Collectors.toSet());
+    }
+}
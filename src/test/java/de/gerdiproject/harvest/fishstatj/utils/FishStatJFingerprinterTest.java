@@ -0,0 +1,315 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * This class provides Unit Tests for the {@linkplain FishStatJFingerprinter}.
+ * The archive of the collection is served by a local HTTP server, which can omit
+ * validators, fail HEAD requests, and ignore range requests.
+ *
+ * @author Robin Weiss
+ */
+public class FishStatJFingerprinterTest
+{
+    private static final String ZIP_PATH = "/archive.zip";
+    private static final String MISSING_ZIP_PATH = "/missing.zip";
+    private static final String ZIP_URL = "http://%s:%d%s";
+    private static final String COLLECTION_PAGE = "<html><body>"
+                                                  + "<div id=\"head_title_instance\">%s</div>"
+                                                  + "<div id=\"allWidth\"><div>Section</div><a href=\"%s\">Data</a></div>"
+                                                  + "</body></html>";
+    private static final String TITLE = "Title";
+    private static final String CHANGED_TITLE = "Changed Title";
+    private static final String ETAG = "\"v1\"";
+    private static final String CHANGED_ETAG = "\"v2\"";
+    private static final String HEAD_METHOD = "HEAD";
+    private static final int TIMEOUT = 5000;
+    private static final int ENTRY_SIZE = 1024;
+
+    private static final Pattern SUFFIX_RANGE_PATTERN = Pattern.compile("bytes=-(\\d+)");
+    private static final Pattern BYTE_RANGE_PATTERN = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+    private HttpServer server;
+    private FishStatJFingerprinter fingerprinter;
+    private volatile byte[] zipBytes;
+    private volatile String eTag;
+    private volatile int headStatus;
+    private volatile boolean isSupportingRanges;
+
+
+    /**
+     * Starts a local HTTP server that serves an archive with an ETag.
+     *
+     * @throws IOException thrown when the archive cannot be created or the server cannot be started
+     */
+    @Before
+    public void before() throws IOException
+    {
+        zipBytes = createArchive(1);
+        eTag = ETAG;
+        headStatus = 200;
+        isSupportingRanges = true;
+
+        fingerprinter = new FishStatJFingerprinter(
+            new PooledHttpClient(0, TIMEOUT, StandardCharsets.UTF_8),
+            (final String url) -> null);
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(ZIP_PATH, this::serve);
+        server.start();
+    }
+
+
+    /**
+     * Stops the HTTP server.
+     */
+    @After
+    public void after()
+    {
+        server.stop(0);
+    }
+
+
+    /**
+     * Tests if the fingerprint changes when the page or the ETag of the archive changes.
+     */
+    @Test(timeout = TIMEOUT)
+    public void testArchiveHeaders()
+    {
+        final String fingerprint = fingerprinter.getCollectionFingerprint(createPage(TITLE, ZIP_PATH));
+
+        assertNotNull(fingerprint);
+        assertEquals(fingerprint, fingerprinter.getCollectionFingerprint(createPage(TITLE, ZIP_PATH)));
+        assertNotEquals(fingerprint, fingerprinter.getCollectionFingerprint(createPage(CHANGED_TITLE, ZIP_PATH)));
+
+        eTag = CHANGED_ETAG;
+        assertNotEquals(fingerprint, fingerprinter.getCollectionFingerprint(createPage(TITLE, ZIP_PATH)));
+    }
+
+
+    /**
+     * Tests if the central directory of an archive without validators is fingerprinted,
+     * which changes when the archived files change, even if the archive length does not.
+     *
+     * @throws IOException thrown when the modified archive cannot be created
+     */
+    @Test(timeout = TIMEOUT)
+    public void testArchiveWithoutValidators() throws IOException
+    {
+        eTag = null;
+        final String fingerprint = fingerprinter.getCollectionFingerprint(createPage(TITLE, ZIP_PATH));
+
+        assertNotNull(fingerprint);
+        assertEquals(fingerprint, fingerprinter.getCollectionFingerprint(createPage(TITLE, ZIP_PATH)));
+
+        zipBytes = createArchive(2);
+        assertNotEquals(fingerprint, fingerprinter.getCollectionFingerprint(createPage(TITLE, ZIP_PATH)));
+    }
+
+
+    /**
+     * Tests if the central directory of an archive is fingerprinted if the HEAD request fails.
+     */
+    @Test(timeout = TIMEOUT)
+    public void testFailedHeadRequest()
+    {
+        eTag = null;
+        final String centralDirectoryFingerprint = fingerprinter.getCollectionFingerprint(createPage(TITLE, ZIP_PATH));
+
+        headStatus = 503;
+        assertEquals(centralDirectoryFingerprint, fingerprinter.getCollectionFingerprint(createPage(TITLE, ZIP_PATH)));
+    }
+
+
+    /**
+     * Tests if collections of which the archive cannot be fingerprinted have no fingerprint.
+     */
+    @Test(timeout = TIMEOUT)
+    public void testUnknownFingerprint()
+    {
+        assertNull(fingerprinter.getCollectionFingerprint(createPage(TITLE, MISSING_ZIP_PATH)));
+
+        eTag = null;
+        isSupportingRanges = false;
+        assertNull(fingerprinter.getCollectionFingerprint(createPage(TITLE, ZIP_PATH)));
+
+        assertNull(fingerprinter.getCollectionFingerprint(null));
+    }
+
+
+    /**
+     * Tests if combined fingerprints are only equal if none of them is unknown.
+     */
+    @Test
+    public void testCombine()
+    {
+        assertEquals(
+            fingerprinter.combine(Arrays.asList(ETAG, CHANGED_ETAG)),
+            fingerprinter.combine(Arrays.asList(ETAG, CHANGED_ETAG)));
+
+        assertNotEquals(
+            fingerprinter.combine(Arrays.asList(ETAG, CHANGED_ETAG)),
+            fingerprinter.combine(Arrays.asList(CHANGED_ETAG, ETAG)));
+
+        assertNotEquals(
+            fingerprinter.combine(Arrays.asList(ETAG, null)),
+            fingerprinter.combine(Arrays.asList(ETAG, null)));
+    }
+
+
+    /**
+     * Creates a collection page that links an archive of the local HTTP server.
+     *
+     * @param title the title of the collection
+     * @param zipPath the path of the archive on the local HTTP server
+     *
+     * @return a parsed collection page
+     */
+    private Document createPage(final String title, final String zipPath)
+    {
+        final InetSocketAddress address = server.getAddress();
+        final String zipUrl = String.format(ZIP_URL, address.getHostString(), address.getPort(), zipPath);
+        return Jsoup.parse(String.format(COLLECTION_PAGE, title, zipUrl));
+    }
+
+
+    /**
+     * Responds to a HEAD request with the ETag of the archive, and to a GET
+     * request with the archive or with the requested byte range.
+     *
+     * @param exchange the HTTP request and response
+     *
+     * @throws IOException thrown when the response cannot be sent
+     */
+    private void serve(final HttpExchange exchange) throws IOException
+    {
+        if (eTag != null)
+            exchange.getResponseHeaders().set(HttpUtils.ETAG_HEADER, eTag);
+
+        if (HEAD_METHOD.equals(exchange.getRequestMethod()))
+            exchange.sendResponseHeaders(headStatus, -1);
+        else
+            sendArchive(exchange);
+
+        exchange.close();
+    }
+
+
+    /**
+     * Sends the archive, or the requested byte range of the archive if range requests are supported.
+     *
+     * @param exchange the HTTP request and response
+     *
+     * @throws IOException thrown when the response cannot be sent
+     */
+    private void sendArchive(final HttpExchange exchange) throws IOException
+    {
+        final byte[] archive = zipBytes;
+        final String range = exchange.getRequestHeaders().getFirst(HttpUtils.RANGE_HEADER);
+        int from = 0;
+        int to = archive.length - 1;
+        int status = 200;
+
+        if (isSupportingRanges && range != null) {
+            final Matcher suffixRange = SUFFIX_RANGE_PATTERN.matcher(range);
+            final Matcher byteRange = BYTE_RANGE_PATTERN.matcher(range);
+
+            if (suffixRange.matches())
+                from = Math.max(0, archive.length - Integer.parseInt(suffixRange.group(1)));
+            else if (byteRange.matches()) {
+                from = Integer.parseInt(byteRange.group(1));
+                to = Math.min(to, Integer.parseInt(byteRange.group(2)));
+            }
+
+            status = 206;
+            exchange.getResponseHeaders().add(HttpUtils.CONTENT_RANGE_HEADER, String.format("bytes %d-%d/%d", from, to, archive.length));
+        }
+
+        final int length = to - from + 1;
+        exchange.sendResponseHeaders(status, length);
+
+        try
+            (OutputStream responseStream = exchange.getResponseBody()) {
+            responseStream.write(archive, from, length);
+        }
+    }
+
+
+    /**
+     * Creates a zip archive with a single uncompressed file of random bytes,
+     * so that archives of different seeds have the same length.
+     *
+     * @param seed the seed of the random bytes
+     *
+     * @return the bytes of the zip archive
+     *
+     * @throws IOException thrown when the archive cannot be created
+     */
+    private static byte[] createArchive(final long seed) throws IOException
+    {
+        final byte[] content = new byte[ENTRY_SIZE];
+        new Random(seed).nextBytes(content);
+
+        final CRC32 crc = new CRC32();
+        crc.update(content);
+
+        final ZipEntry entry = new ZipEntry("Values.bin");
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(content.length);
+        entry.setCompressedSize(content.length);
+        entry.setCrc(crc.getValue());
+
+        final ByteArrayOutputStream zipOut = new ByteArrayOutputStream();
+
+        try
+            (ZipOutputStream zipStream = new ZipOutputStream(zipOut)) {
+            zipStream.putNextEntry(entry);
+            zipStream.write(content);
+            zipStream.closeEntry();
+        }
+
+        return zipOut.toByteArray();
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * This class provides Unit Tests for the {@linkplain HyperLogLog}.
+ * Since the hash function is deterministic, the estimations are too.
+ *
+ * @author Robin Weiss
+ */
+public class HyperLogLogTest
+{
+    private static final String VALUE = "value%d";
+    private static final int[] CARDINALITIES = { 500, 5000, 50000, 500000 };
+
+    // three times the standard error of 1.04 / sqrt(registers)
+    private static final double DEFAULT_ERROR_BOUND = 3 * 1.04 / Math.sqrt(1 << 12);
+    private static final double HIGH_PRECISION_ERROR_BOUND = 3 * 1.04 / Math.sqrt(1 << 14);
+
+
+    /**
+     * Tests if nothing is estimated if no string was added.
+     */
+    @Test
+    public void testEmptyEstimation()
+    {
+        assertEquals(0, new HyperLogLog().cardinality());
+    }
+
+
+    /**
+     * Tests if small numbers of distinct strings are counted almost exactly.
+     */
+    @Test
+    public void testSmallCardinality()
+    {
+        final HyperLogLog estimation = new HyperLogLog();
+
+        for (int i = 0; i < 10; i++)
+            estimation.offer(String.format(VALUE, i));
+
+        assertEquals(10, estimation.cardinality(), 1);
+    }
+
+
+    /**
+     * Tests if duplicate strings do not change the estimation.
+     */
+    @Test
+    public void testDuplicates()
+    {
+        final HyperLogLog estimation = createEstimation(12, 5000);
+        final long cardinality = estimation.cardinality();
+
+        for (int i = 0; i < 5000; i++)
+            estimation.offer(String.format(VALUE, i));
+
+        assertEquals(cardinality, estimation.cardinality());
+    }
+
+
+    /**
+     * Tests if the estimations of the default precision are within three
+     * standard errors of the actual numbers of distinct strings.
+     */
+    @Test
+    public void testDefaultErrorBound()
+    {
+        for (final int cardinality : CARDINALITIES)
+            assertWithinErrorBound(cardinality, createEstimation(12, cardinality), DEFAULT_ERROR_BOUND);
+    }
+
+
+    /**
+     * Tests if the estimations of a higher precision are within three
+     * standard errors of the actual numbers of distinct strings.
+     */
+    @Test
+    public void testHighPrecisionErrorBound()
+    {
+        for (final int cardinality : CARDINALITIES)
+            assertWithinErrorBound(cardinality, createEstimation(14, cardinality), HIGH_PRECISION_ERROR_BOUND);
+    }
+
+
+    /**
+     * Tests if merging two estimations results in the same estimation as adding
+     * all strings to a single estimation.
+     */
+    @Test
+    public void testMerge()
+    {
+        final HyperLogLog estimation = new HyperLogLog();
+        final HyperLogLog otherEstimation = new HyperLogLog();
+
+        for (int i = 0; i < 20000; i++) {
+            if (i % 2 == 0)
+                estimation.offer(String.format(VALUE, i));
+            else
+                otherEstimation.offer(String.format(VALUE, i));
+        }
+
+        estimation.merge(otherEstimation);
+
+        assertEquals(createEstimation(12, 20000).cardinality(), estimation.cardinality());
+        assertWithinErrorBound(20000, estimation, DEFAULT_ERROR_BOUND);
+    }
+
+
+    /**
+     * Creates an estimation of a number of distinct strings.
+     *
+     * @param precision the number of hash bits that select a register
+     * @param cardinality the number of distinct strings that are added
+     *
+     * @return an estimation of the added strings
+     */
+    private static HyperLogLog createEstimation(final int precision, final int cardinality)
+    {
+        final HyperLogLog estimation = new HyperLogLog(precision);
+
+        for (int i = 0; i < cardinality; i++)
+            estimation.offer(String.format(VALUE, i));
+
+        return estimation;
+    }
+
+
+    /**
+     * Asserts that the relative error of an estimation does not exceed a bound.
+     *
+     * @param cardinality the actual number of distinct strings
+     * @param estimation the estimation of the distinct strings
+     * @param errorBound the maximum relative error
+     */
+    private static void assertWithinErrorBound(final int cardinality, final HyperLogLog estimation, final double errorBound)
+    {
+        final double relativeError = Math.abs(estimation.cardinality() - cardinality) / (double) cardinality;
+        assertTrue(
+            String.format("Estimated %d instead of %d distinct strings!", estimation.cardinality(), cardinality),
+            relativeError <= errorBound);
+    }
+}
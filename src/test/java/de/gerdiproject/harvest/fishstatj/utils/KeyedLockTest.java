@@ -0,0 +1,128 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+/**
+ * This class provides Unit Tests for the {@linkplain KeyedLock}.
+ *
+ * @author Robin Weiss
+ */
+public class KeyedLockTest
+{
+    private static final String FIRST_KEY = "first";
+    private static final String SECOND_KEY = "second";
+    private static final long WAIT_DURATION = 200;
+    private static final long TIMEOUT = 5000;
+
+
+    /**
+     * Tests if a thread waits for the lock of a key that is held by another thread,
+     * but not for the lock of another key.
+     *
+     * @throws Exception thrown when the waiting thread fails
+     */
+    @Test(timeout = TIMEOUT)
+    public void testMutualExclusion() throws Exception
+    {
+        final KeyedLock locks = new KeyedLock();
+        locks.lock(FIRST_KEY);
+
+        final CompletableFuture<Void> otherKey = lockAsync(locks, SECOND_KEY);
+        otherKey.get();
+
+        final CompletableFuture<Void> sameKey = lockAsync(locks, FIRST_KEY);
+
+        try {
+            sameKey.get(WAIT_DURATION, TimeUnit.MILLISECONDS);
+            fail("The lock was acquired while another thread held it!");
+        } catch (final TimeoutException e) {
+            assertFalse(sameKey.isDone());
+        }
+
+        locks.unlock(FIRST_KEY);
+        sameKey.get();
+    }
+
+
+    /**
+     * Tests if the locks of keys are removed when they are no longer held or awaited.
+     *
+     * @throws InterruptedException thrown when the test is interrupted
+     * @throws ExecutionException thrown when the waiting thread fails
+     */
+    @Test(timeout = TIMEOUT)
+    public void testRemovalOfReleasedLocks() throws InterruptedException, ExecutionException
+    {
+        final KeyedLock locks = new KeyedLock();
+
+        for (int i = 0; i < 100; i++) {
+            final String key = String.valueOf(i);
+            locks.lock(key);
+            locks.unlock(key);
+        }
+
+        assertEquals(0, locks.size());
+
+        locks.lock(FIRST_KEY);
+        final CompletableFuture<Void> waitingThread = lockAsync(locks, FIRST_KEY);
+
+        // the lock must not be removed while another thread awaits it
+        TimeUnit.MILLISECONDS.sleep(WAIT_DURATION);
+        locks.unlock(FIRST_KEY);
+
+        waitingThread.get();
+        assertEquals(0, locks.size());
+    }
+
+
+    /**
+     * Tests if releasing a lock that is not held by the current thread fails.
+     */
+    @Test(timeout = TIMEOUT, expected = IllegalMonitorStateException.class)
+    public void testUnlockWithoutLock()
+    {
+        new KeyedLock().unlock(FIRST_KEY);
+    }
+
+
+    /**
+     * Acquires and releases the lock of a key in another thread.
+     *
+     * @param locks the locks of all keys
+     * @param key the key of which the lock is acquired
+     *
+     * @return a future that is completed when the lock was acquired and released
+     */
+    private static CompletableFuture<Void> lockAsync(final KeyedLock locks, final String key)
+    {
+        return CompletableFuture.runAsync(() -> {
+            locks.lock(key);
+            locks.unlock(key);
+        });
+    }
+}
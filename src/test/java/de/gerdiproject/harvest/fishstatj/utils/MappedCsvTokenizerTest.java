@@ -0,0 +1,252 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.opencsv.CSVReader;
+
+/**
+ * This class provides Unit Tests for the {@linkplain MappedCsvTokenizer}.
+ * The tokenized rows are compared to the rows that are read by OpenCSV.
+ *
+ * @author Robin Weiss
+ */
+public class MappedCsvTokenizerTest
+{
+    private static final String[] FIELD_VALUES = {
+        "Norway",
+        "Côte d'Ivoire",
+        "Atlantic cod, frozen",
+        "Sardine \"Pilchard\"",
+        "Inland waters\nAfrica",
+        "\"",
+        "",
+        "12345.67"
+    };
+    private static final int GENERATED_ROW_COUNT = 500;
+    private static final int GENERATED_COLUMN_COUNT = 5;
+    private static final int MAX_CHUNK_COUNT = 16;
+
+
+    /**
+     * Tests if quoted fields, escaped quotes, empty fields and all kinds of
+     * line breaks are tokenized correctly.
+     */
+    @Test
+    public void testRows()
+    {
+        final String csv = "\"Country\",\"Species\",Value\r\n"
+                           + "Norway,\"Atlantic cod, frozen\",12\n"
+                           + "\"Sardine \"\"Pilchard\"\"\",,\r"
+                           + "\"Inland waters\r\nAfrica\",\"\",7";
+
+        final MappedCsvTokenizer tokenizer = createTokenizer(csv);
+
+        assertEquals(Arrays.asList("Country", "Species", "Value"), tokenizer.readRow());
+        assertEquals(Arrays.asList("Norway", "Atlantic cod, frozen", "12"), tokenizer.readRow());
+        assertEquals(Arrays.asList("Sardine \"Pilchard\"", "", ""), tokenizer.readRow());
+        assertEquals(Arrays.asList("Inland waters\r\nAfrica", "", "7"), tokenizer.readRow());
+        assertFalse(tokenizer.hasNextRow());
+        assertNull(tokenizer.readRow());
+    }
+
+
+    /**
+     * Tests if only the fields of projected columns are passed to the consumer,
+     * including the fields of quoted values that contain delimiters and line breaks.
+     */
+    @Test
+    public void testProjectedRow()
+    {
+        final String csv = "\"a,1\",b1,\"c\n1\",d1\n"
+                           + "a2,\"b,2\",c2\r\n"
+                           + "a3\n";
+
+        final MappedCsvTokenizer tokenizer = createTokenizer(csv);
+        final boolean[] projectedColumns = { false, true, true };
+        final List<String> projectedFields = new ArrayList<>();
+
+        while (tokenizer.hasNextRow())
+            assertTrue(tokenizer.readRow(projectedColumns, projectedFields::add));
+
+        assertFalse(tokenizer.readRow(projectedColumns, projectedFields::add));
+
+        assertEquals(Arrays.asList("b1", "c\n1", "b,2", "c2"), projectedFields);
+    }
+
+
+    /**
+     * Tests if a randomly generated csv file is tokenized to the same rows as
+     * the rows that are read by OpenCSV.
+     *
+     * @throws IOException thrown when OpenCSV cannot read the csv file
+     */
+    @Test
+    public void testSameRowsAsOpenCsv() throws IOException
+    {
+        final String csv = generateCsv();
+
+        final List<List<String>> expectedRows = new ArrayList<>();
+
+        try
+            (CSVReader csvReader = new CSVReader(new StringReader(csv))) {
+            while (true) {
+                final String[] row = csvReader.readNext();
+
+                if (row == null)
+                    break;
+
+                expectedRows.add(Arrays.asList(row));
+            }
+        }
+
+        assertEquals(GENERATED_ROW_COUNT, expectedRows.size());
+        assertEquals(expectedRows, readRows(createTokenizer(csv)));
+    }
+
+
+    /**
+     * Tests if the chunks of a csv file start at row boundaries, by checking if
+     * the rows of all chunks are the same as the rows of the whole file, for
+     * different numbers of chunks.
+     */
+    @Test
+    public void testChunkBoundaries()
+    {
+        final String csv = generateCsv();
+        final ByteBuffer buffer = ByteBuffer.wrap(csv.getBytes(StandardCharsets.UTF_8));
+        final List<List<String>> expectedRows = readRows(new MappedCsvTokenizer(buffer.duplicate(), StandardCharsets.UTF_8));
+
+        for (int chunkCount = 1; chunkCount <= MAX_CHUNK_COUNT; chunkCount++) {
+            final int[] chunkBoundaries = MappedCsvTokenizer.findRowBoundaries(buffer, 0, chunkCount);
+            final List<List<String>> chunkedRows = new ArrayList<>();
+
+            assertEquals(chunkCount + 1, chunkBoundaries.length);
+
+            for (int i = 0; i < chunkCount; i++) {
+                assertTrue(chunkBoundaries[i] <= chunkBoundaries[i + 1]);
+
+                final ByteBuffer chunk = buffer.duplicate();
+                chunk.limit(chunkBoundaries[i + 1]);
+                chunk.position(chunkBoundaries[i]);
+
+                chunkedRows.addAll(readRows(new MappedCsvTokenizer(chunk, StandardCharsets.UTF_8)));
+            }
+
+            assertEquals(expectedRows, chunkedRows);
+        }
+    }
+
+
+    /**
+     * Tests if the chunks of a csv file start behind the title row.
+     */
+    @Test
+    public void testChunksAfterTitleRow()
+    {
+        final ByteBuffer buffer = ByteBuffer.wrap("\"Title, 1\",Title 2\r\nv1,v2\nv3,v4\n".getBytes(StandardCharsets.UTF_8));
+        final MappedCsvTokenizer titleTokenizer = new MappedCsvTokenizer(buffer.duplicate(), StandardCharsets.UTF_8);
+        titleTokenizer.readRow();
+
+        final int[] chunkBoundaries = MappedCsvTokenizer.findRowBoundaries(buffer, titleTokenizer.getPosition(), 2);
+
+        final ByteBuffer firstChunk = buffer.duplicate();
+        firstChunk.limit(chunkBoundaries[1]);
+        firstChunk.position(chunkBoundaries[0]);
+
+        assertEquals(Arrays.asList("v1", "v2"), new MappedCsvTokenizer(firstChunk, StandardCharsets.UTF_8).readRow());
+        assertEquals(buffer.limit(), chunkBoundaries[2]);
+    }
+
+
+    /**
+     * Creates a tokenizer of UTF-8 encoded csv text.
+     *
+     * @param csv the csv formatted text
+     *
+     * @return a tokenizer of the csv text
+     */
+    private static MappedCsvTokenizer createTokenizer(final String csv)
+    {
+        return new MappedCsvTokenizer(ByteBuffer.wrap(csv.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Reads all remaining rows of a tokenizer.
+     *
+     * @param tokenizer the tokenizer of which the rows are read
+     *
+     * @return a list of rows
+     */
+    private static List<List<String>> readRows(final MappedCsvTokenizer tokenizer)
+    {
+        final List<List<String>> rows = new ArrayList<>();
+
+        while (tokenizer.hasNextRow())
+            rows.add(tokenizer.readRow());
+
+        return rows;
+    }
+
+
+    /**
+     * Generates a reproducible csv file with quoted and unquoted fields,
+     * using both LF and CRLF line breaks at the end of rows.
+     *
+     * @return the csv formatted text
+     */
+    private static String generateCsv()
+    {
+        final Random random = new Random(0);
+        final StringBuilder csv = new StringBuilder();
+
+        for (int row = 0; row < GENERATED_ROW_COUNT; row++) {
+            for (int column = 0; column < GENERATED_COLUMN_COUNT; column++) {
+                if (column != 0)
+                    csv.append(',');
+
+                final String value = FIELD_VALUES[random.nextInt(FIELD_VALUES.length)];
+                final boolean mustBeQuoted = value.indexOf(',') != -1 || value.indexOf('"') != -1 || value.indexOf('\n') != -1;
+
+                if (mustBeQuoted || random.nextBoolean())
+                    csv.append('"').append(value.replace("\"", "\"\"")).append('"');
+                else
+                    csv.append(value);
+            }
+
+            csv.append(random.nextBoolean() ? "\r\n" : "\n");
+        }
+
+        return csv.toString();
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import de.gerdiproject.harvest.utils.file.FileUtils;
+import de.gerdiproject.json.GsonUtils;
+import de.gerdiproject.json.datacite.DataCiteJson;
+import de.gerdiproject.json.datacite.Subject;
+
+/**
+ * This class provides Unit Tests for the {@linkplain NdjsonDocumentWriter}.
+ *
+ * @author Robin Weiss
+ */
+public class NdjsonDocumentWriterTest
+{
+    private static final String SOURCE_ID = "http://localhost/collection%d";
+    private static final String SUBJECTS_FIELD = "subjects";
+    private static final String DOCUMENT_SUBJECT = "Fish";
+    private static final String FIRST_STREAMED_SUBJECT = "Norway";
+    private static final String SECOND_STREAMED_SUBJECT = "Atlantic cod";
+    private static final int DOCUMENT_COUNT = 8;
+    private static final int CONCURRENT_PREPARATIONS = 4;
+    private static final long DELAY = 20;
+    private static final long TIMEOUT = 5000;
+
+    private final Gson gson = GsonUtils.createGerdiDocumentGsonBuilder().create();
+    private File outputFolder;
+    private File outputFile;
+    private ExecutorService executor;
+
+
+    /**
+     * Creates a temporary folder for the output file, and the
+     * executor that prepares documents concurrently.
+     *
+     * @throws IOException thrown when the folder cannot be created
+     */
+    @Before
+    public void before() throws IOException
+    {
+        outputFolder = Files.createTempDirectory("NdjsonDocumentWriterTest").toFile();
+        outputFile = new File(outputFolder, "documents.ndjson");
+        executor = Executors.newFixedThreadPool(CONCURRENT_PREPARATIONS);
+    }
+
+
+    /**
+     * Stops the executor and removes the output folder.
+     */
+    @After
+    public void after()
+    {
+        executor.shutdownNow();
+        FileUtils.deleteFile(outputFolder);
+    }
+
+
+    /**
+     * Tests if each document is written as a single line, which contains the subjects
+     * of the document followed by the streamed subjects.
+     *
+     * @throws IOException thrown when the output file cannot be written or read
+     */
+    @Test
+    public void testWrite() throws IOException
+    {
+        final NdjsonDocumentWriter writer = new NdjsonDocumentWriter(outputFile);
+
+        final DataCiteJson firstDocument = new DataCiteJson(String.format(SOURCE_ID, 1));
+        firstDocument.addSubjects(Arrays.asList(new Subject(DOCUMENT_SUBJECT)));
+        writer.write(firstDocument, (final Consumer<String> subjectConsumer) -> {
+            subjectConsumer.accept(FIRST_STREAMED_SUBJECT);
+            subjectConsumer.accept(SECOND_STREAMED_SUBJECT);
+        });
+
+        final DataCiteJson secondDocument = new DataCiteJson(String.format(SOURCE_ID, 2));
+        writer.write(secondDocument, (final Consumer<String> subjectConsumer) -> {});
+
+        final List<String> lines = Files.readAllLines(outputFile.toPath(), StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertEquals(
+            createSubjects(DOCUMENT_SUBJECT, FIRST_STREAMED_SUBJECT, SECOND_STREAMED_SUBJECT),
+            getSubjects(lines.get(0)));
+        assertEquals(createSubjects(), getSubjects(lines.get(1)));
+    }
+
+
+    /**
+     * Tests if the output file of a previous harvest is replaced.
+     *
+     * @throws IOException thrown when the output file cannot be written or read
+     */
+    @Test
+    public void testReplacedOutputFile() throws IOException
+    {
+        new NdjsonDocumentWriter(outputFile).write(
+            new DataCiteJson(String.format(SOURCE_ID, 1)),
+            (final Consumer<String> subjectConsumer) -> {});
+
+        new NdjsonDocumentWriter(outputFile).write(
+            new DataCiteJson(String.format(SOURCE_ID, 2)),
+            (final Consumer<String> subjectConsumer) -> subjectConsumer.accept(DOCUMENT_SUBJECT));
+
+        final List<String> lines = Files.readAllLines(outputFile.toPath(), StandardCharsets.UTF_8);
+        assertEquals(1, lines.size());
+        assertEquals(createSubjects(DOCUMENT_SUBJECT), getSubjects(lines.get(0)));
+    }
+
+
+    /**
+     * Tests if prepared documents that are discarded or cleared are
+     * not written, and leave no temporary files behind.
+     *
+     * @throws IOException thrown when the documents cannot be prepared
+     */
+    @Test
+    public void testDiscardedDocuments() throws IOException
+    {
+        final NdjsonDocumentWriter writer = new NdjsonDocumentWriter(outputFile);
+        final DataCiteJson discardedDocument = new DataCiteJson(String.format(SOURCE_ID, 1));
+        final DataCiteJson clearedDocument = new DataCiteJson(String.format(SOURCE_ID, 2));
+
+        writer.prepare(discardedDocument, (final Consumer<String> subjectConsumer) -> {});
+        writer.prepare(clearedDocument, (final Consumer<String> subjectConsumer) -> {});
+        assertEquals(2, outputFolder.listFiles().length);
+
+        writer.discard(discardedDocument);
+        writer.clear();
+
+        assertEquals(0, outputFolder.listFiles().length);
+        assertFalse(outputFile.exists());
+    }
+
+
+    /**
+     * Tests if appending a document that was not prepared fails.
+     *
+     * @throws IOException thrown when the document cannot be appended
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testUnpreparedDocument() throws IOException
+    {
+        new NdjsonDocumentWriter(outputFile).append(new DataCiteJson(String.format(SOURCE_ID, 1)));
+    }
+
+
+    /**
+     * Tests if documents that are prepared concurrently are written in the order
+     * in which they are appended, even if later documents are prepared faster
+     * than earlier ones.
+     *
+     * @throws IOException thrown when the output file cannot be written or read
+     */
+    @Test(timeout = TIMEOUT)
+    public void testOrderOfConcurrentDocuments() throws IOException
+    {
+        final NdjsonDocumentWriter writer = new NdjsonDocumentWriter(outputFile);
+        final List<Integer> documentIndices = new ArrayList<>();
+
+        for (int i = 0; i < DOCUMENT_COUNT; i++)
+            documentIndices.add(i);
+
+        final Iterator<DataCiteJson> preparedDocuments = new PrefetchingIterator<>(
+            documentIndices.iterator(),
+            (final Integer index) -> prepareDelayed(writer, index),
+            executor,
+            CONCURRENT_PREPARATIONS);
+
+        while (preparedDocuments.hasNext())
+            writer.append(preparedDocuments.next());
+
+        final List<String> lines = Files.readAllLines(outputFile.toPath(), StandardCharsets.UTF_8);
+        assertEquals(DOCUMENT_COUNT, lines.size());
+
+        for (int i = 0; i < DOCUMENT_COUNT; i++)
+            assertEquals(createSubjects(String.valueOf(i)), getSubjects(lines.get(i)));
+
+        assertEquals(Collections.singletonList(outputFile), Arrays.asList(outputFolder.listFiles()));
+    }
+
+
+    /**
+     * Prepares a document with a single streamed subject after a delay that
+     * decreases with the index of the document.
+     *
+     * @param writer the writer that prepares the document
+     * @param index the index of the document, which is also its subject
+     *
+     * @return the prepared document
+     */
+    private static DataCiteJson prepareDelayed(final NdjsonDocumentWriter writer, final int index)
+    {
+        final DataCiteJson document = new DataCiteJson(String.format(SOURCE_ID, index));
+
+        try {
+            TimeUnit.MILLISECONDS.sleep((DOCUMENT_COUNT - index) * DELAY);
+            writer.prepare(document, (final Consumer<String> subjectConsumer) ->
+                           subjectConsumer.accept(String.valueOf(index)));
+
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return document;
+    }
+
+
+    /**
+     * Retrieves the subjects of a line of the output file.
+     *
+     * @param line a line of the output file
+     *
+     * @return the JSON array of the subjects of the line
+     */
+    private JsonArray getSubjects(final String line)
+    {
+        return gson.fromJson(line, JsonObject.class).getAsJsonArray(SUBJECTS_FIELD);
+    }
+
+
+    /**
+     * Creates the JSON array of subjects that are expected in a line of the output file.
+     *
+     * @param values the values of the subjects
+     *
+     * @return the JSON array of the subjects
+     */
+    private JsonArray createSubjects(final String... values)
+    {
+        final JsonArray subjects = new JsonArray();
+
+        for (final String value : values)
+            subjects.add(gson.toJsonTree(new Subject(value), Subject.class));
+
+        return subjects;
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This class provides Unit Tests for the {@linkplain PrefetchingIterator}.
+ *
+ * @author Robin Weiss
+ */
+public class PrefetchingIteratorTest
+{
+    private static final int CAPACITY = 3;
+    private static final long TIMEOUT = 5000;
+
+    private ExecutorService executor;
+
+
+    /**
+     * Creates the executor that runs the mapping functions.
+     */
+    @Before
+    public void before()
+    {
+        executor = Executors.newFixedThreadPool(CAPACITY);
+    }
+
+
+    /**
+     * Stops the executor.
+     */
+    @After
+    public void after()
+    {
+        executor.shutdownNow();
+    }
+
+
+    /**
+     * Tests if the mapped elements are returned in the order of their source elements,
+     * even if later elements are mapped faster than earlier ones.
+     */
+    @Test(timeout = TIMEOUT)
+    public void testOrder()
+    {
+        final List<Integer> sources = Arrays.asList(5, 4, 3, 2, 1, 0);
+        final PrefetchingIterator<Integer, String> iter = new PrefetchingIterator<>(
+            sources.iterator(),
+            (final Integer source) -> {
+                sleep(source * 20L);
+                return String.valueOf(source);
+            },
+            executor,
+            CAPACITY);
+
+        final List<String> results = new ArrayList<>();
+
+        while (iter.hasNext())
+            results.add(iter.next());
+
+        assertEquals(Arrays.asList("5", "4", "3", "2", "1", "0"), results);
+    }
+
+
+    /**
+     * Tests if no more than the capacity of elements are mapped concurrently.
+     */
+    @Test(timeout = TIMEOUT)
+    public void testCapacity()
+    {
+        final AtomicInteger runningMappings = new AtomicInteger();
+        final AtomicInteger maxRunningMappings = new AtomicInteger();
+        final ExecutorService largeExecutor = Executors.newFixedThreadPool(CAPACITY * 2);
+
+        try {
+            final PrefetchingIterator<Integer, Integer> iter = new PrefetchingIterator<>(
+                Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9).iterator(),
+                (final Integer source) -> {
+                    maxRunningMappings.accumulateAndGet(runningMappings.incrementAndGet(), Math::max);
+                    sleep(20);
+                    runningMappings.decrementAndGet();
+                    return source;
+                },
+                largeExecutor,
+                CAPACITY);
+
+            while (iter.hasNext())
+                iter.next();
+
+        } finally {
+            largeExecutor.shutdownNow();
+        }
+
+        assertTrue(maxRunningMappings.get() <= CAPACITY);
+    }
+
+
+    /**
+     * Tests if an exception of a mapping function is re-thrown when its element is retrieved,
+     * and if the preceding elements are still returned.
+     */
+    @Test(timeout = TIMEOUT)
+    public void testExceptionPropagation()
+    {
+        final PrefetchingIterator<Integer, Integer> iter = new PrefetchingIterator<>(
+            Arrays.asList(0, 1, 2).iterator(),
+            (final Integer source) -> {
+                if (source == 1)
+                    throw new IllegalArgumentException(String.valueOf(source));
+
+                return source;
+            },
+            executor,
+            CAPACITY);
+
+        assertEquals(Integer.valueOf(0), iter.next());
+
+        try {
+            iter.next();
+            fail("The exception of the mapping function was not re-thrown!");
+        } catch (final IllegalArgumentException e) {
+            assertEquals("1", e.getMessage());
+        }
+
+        assertEquals(Integer.valueOf(2), iter.next());
+        assertFalse(iter.hasNext());
+    }
+
+
+    /**
+     * Tests if cancelling the iterator interrupts running mappings and discards
+     * all elements that were not retrieved yet.
+     *
+     * @throws InterruptedException thrown when the test is interrupted
+     */
+    @Test(timeout = TIMEOUT)
+    public void testCancel() throws InterruptedException
+    {
+        final CountDownLatch startedMappings = new CountDownLatch(CAPACITY);
+        final CountDownLatch interruptedMappings = new CountDownLatch(CAPACITY);
+
+        final PrefetchingIterator<Integer, Integer> iter = new PrefetchingIterator<>(
+            Arrays.asList(0, 1, 2).iterator(),
+            (final Integer source) -> {
+                startedMappings.countDown();
+
+                try {
+                    Thread.sleep(TIMEOUT);
+                } catch (final InterruptedException e) {
+                    interruptedMappings.countDown();
+                }
+
+                return source;
+            },
+            executor,
+            CAPACITY);
+
+        // submits all mappings
+        assertTrue(iter.hasNext());
+        assertTrue(startedMappings.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+        iter.cancel();
+
+        assertTrue(interruptedMappings.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertFalse(iter.hasNext());
+    }
+
+
+    /**
+     * Tests if cancelling the iterator discards each element that was not retrieved exactly once,
+     * including elements that were mapped before the cancellation, and elements of running
+     * mappings that ignore the interruption.
+     *
+     * @throws InterruptedException thrown when the test is interrupted
+     */
+    @Test(timeout = TIMEOUT)
+    public void testCancelDiscardsElements() throws InterruptedException
+    {
+        final CountDownLatch startedMappings = new CountDownLatch(CAPACITY);
+        final CountDownLatch discardedElements = new CountDownLatch(CAPACITY);
+        final List<Integer> discarded = Collections.synchronizedList(new ArrayList<>());
+
+        final PrefetchingIterator<Integer, Integer> iter = new PrefetchingIterator<>(
+            Arrays.asList(0, 1, 2).iterator(),
+            (final Integer source) -> {
+                startedMappings.countDown();
+
+                if (source == 2)
+                    sleep(TIMEOUT);
+
+                return source;
+            },
+            (final Integer element) -> {
+                discarded.add(element);
+                discardedElements.countDown();
+            },
+            executor,
+            CAPACITY);
+
+        // submits all mappings
+        assertTrue(iter.hasNext());
+        assertTrue(startedMappings.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+        iter.cancel();
+
+        assertTrue(discardedElements.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        Collections.sort(discarded);
+        assertEquals(Arrays.asList(0, 1, 2), discarded);
+    }
+
+
+    /**
+     * Tests if retrieving an element of an exhausted iterator fails.
+     */
+    @Test(expected = NoSuchElementException.class, timeout = TIMEOUT)
+    public void testExhausted()
+    {
+        final Iterator<Integer> iter = new PrefetchingIterator<>(
+            Arrays.asList(0).iterator(),
+            (final Integer source) -> source,
+            executor,
+            CAPACITY);
+
+        iter.next();
+        iter.next();
+    }
+
+
+    /**
+     * Pauses the current thread, ignoring interruptions.
+     *
+     * @param millis the number of milliseconds to pause
+     */
+    private static void sleep(final long millis)
+    {
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * This class provides Unit Tests for the {@linkplain RemoteZipReader}.
+ * The archive is served by a local HTTP server that supports range requests.
+ *
+ * @author Robin Weiss
+ */
+public class RemoteZipReaderTest
+{
+    private static final String ZIP_PATH = "/archive.zip";
+    private static final String NO_RANGES_ZIP_PATH = "/no-ranges/archive.zip";
+    private static final String ZIP_URL = "http://%s:%d%s";
+    private static final int TIMEOUT = 5000;
+
+    private static final String NOTES_FILE = "Notes.txt";
+    private static final String CSV_FILE = "data/Values.csv";
+    private static final String LARGE_FILE = "Large.bin";
+    private static final int LARGE_FILE_SIZE = 1 << 20;
+
+    private static final Pattern SUFFIX_RANGE_PATTERN = Pattern.compile("bytes=-(\\d+)");
+    private static final Pattern BYTE_RANGE_PATTERN = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+    private final AtomicLong transferredBytes = new AtomicLong();
+    private HttpServer server;
+    private PooledHttpClient httpClient;
+    private byte[] zipBytes;
+    private byte[] notesContent;
+    private byte[] csvContent;
+
+
+    /**
+     * Creates a zip archive with a stored and two deflated files, and serves it via HTTP.
+     *
+     * @throws IOException thrown when the archive cannot be created or the server cannot be started
+     */
+    @Before
+    public void before() throws IOException
+    {
+        notesContent = "Release date: 2019-03-01\r\nCopyright FAO".getBytes(StandardCharsets.UTF_8);
+        csvContent = "\"Country\",\"Species\"\n\"Norway\",\"Atlantic cod\"\n".getBytes(StandardCharsets.UTF_8);
+
+        final byte[] largeContent = new byte[LARGE_FILE_SIZE];
+        new Random(0).nextBytes(largeContent);
+
+        final ByteArrayOutputStream zipOut = new ByteArrayOutputStream();
+
+        try
+            (ZipOutputStream zipStream = new ZipOutputStream(zipOut)) {
+            addStoredEntry(zipStream, NOTES_FILE, notesContent);
+
+            zipStream.putNextEntry(new ZipEntry(LARGE_FILE));
+            zipStream.write(largeContent);
+            zipStream.closeEntry();
+
+            zipStream.putNextEntry(new ZipEntry(CSV_FILE));
+            zipStream.write(csvContent);
+            zipStream.closeEntry();
+        }
+
+        zipBytes = zipOut.toByteArray();
+        httpClient = new PooledHttpClient(0, TIMEOUT, StandardCharsets.UTF_8);
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(ZIP_PATH, (final HttpExchange exchange) -> serve(exchange, true));
+        server.createContext(NO_RANGES_ZIP_PATH, (final HttpExchange exchange) -> serve(exchange, false));
+        server.start();
+    }
+
+
+    /**
+     * Stops the HTTP server.
+     */
+    @After
+    public void after()
+    {
+        server.stop(0);
+    }
+
+
+    /**
+     * Tests if all files are listed with the names and sizes of the central directory.
+     *
+     * @throws IOException thrown when the archive cannot be read
+     */
+    @Test
+    public void testCentralDirectory() throws IOException
+    {
+        final List<RemoteZipEntry> entries = new RemoteZipReader(getUrl(ZIP_PATH), httpClient, (final String url) -> null).readCentralDirectory();
+
+        assertEquals(3, entries.size());
+        assertEquals(NOTES_FILE, entries.get(0).getName());
+        assertEquals(ZipEntry.STORED, entries.get(0).getCompressionMethod());
+        assertEquals(notesContent.length, entries.get(0).getUncompressedSize());
+        assertEquals(LARGE_FILE, entries.get(1).getName());
+        assertEquals(LARGE_FILE_SIZE, entries.get(1).getUncompressedSize());
+        assertEquals(CSV_FILE, entries.get(2).getName());
+        assertEquals(ZipEntry.DEFLATED, entries.get(2).getCompressionMethod());
+        assertEquals(csvContent.length, entries.get(2).getUncompressedSize());
+    }
+
+
+    /**
+     * Tests if stored and deflated files are retrieved with their original content.
+     *
+     * @throws IOException thrown when the archive cannot be read
+     */
+    @Test
+    public void testEntryContent() throws IOException
+    {
+        final RemoteZipReader zipReader = new RemoteZipReader(getUrl(ZIP_PATH), httpClient, (final String url) -> null);
+        final List<RemoteZipEntry> entries = zipReader.readCentralDirectory();
+
+        assertArrayEquals(notesContent, readEntry(zipReader, entries.get(0)));
+        assertArrayEquals(csvContent, readEntry(zipReader, entries.get(2)));
+
+        final CRC32 largeFileCrc = new CRC32();
+        largeFileCrc.update(readEntry(zipReader, entries.get(1)));
+        assertEquals(entries.get(1).getCrc(), largeFileCrc.getValue());
+    }
+
+
+    /**
+     * Tests if only the central directory and the requested file are transferred,
+     * and not the large file that precedes it.
+     *
+     * @throws IOException thrown when the archive cannot be read
+     */
+    @Test
+    public void testPartialTransfer() throws IOException
+    {
+        final RemoteZipReader zipReader = new RemoteZipReader(getUrl(ZIP_PATH), httpClient, (final String url) -> null);
+        final List<RemoteZipEntry> entries = zipReader.readCentralDirectory();
+        readEntry(zipReader, entries.get(2));
+
+        assertTrue(transferredBytes.get() < zipBytes.length - LARGE_FILE_SIZE / 2);
+    }
+
+
+    /**
+     * Tests if the central directory cannot be read if the server ignores range requests.
+     *
+     * @throws IOException thrown when the archive cannot be requested
+     */
+    @Test
+    public void testRangesNotSupported() throws IOException
+    {
+        assertNull(new RemoteZipReader(getUrl(NO_RANGES_ZIP_PATH), httpClient, (final String url) -> null).readCentralDirectory());
+    }
+
+
+    /**
+     * Responds to a request of the zip archive, serving either the requested range
+     * or the whole archive.
+     *
+     * @param exchange the request and response
+     * @param isSupportingRanges if false, range requests are ignored
+     *
+     * @throws IOException thrown when the response cannot be sent
+     */
+    private void serve(final HttpExchange exchange, final boolean isSupportingRanges) throws IOException
+    {
+        final String range = exchange.getRequestHeaders().getFirst("Range");
+        int from = 0;
+        int to = zipBytes.length - 1;
+        int status = 200;
+
+        if (isSupportingRanges && range != null) {
+            final Matcher suffixRange = SUFFIX_RANGE_PATTERN.matcher(range);
+            final Matcher byteRange = BYTE_RANGE_PATTERN.matcher(range);
+
+            if (suffixRange.matches())
+                from = Math.max(0, zipBytes.length - Integer.parseInt(suffixRange.group(1)));
+            else if (byteRange.matches()) {
+                from = Integer.parseInt(byteRange.group(1));
+                to = Math.min(to, Integer.parseInt(byteRange.group(2)));
+            }
+
+            status = 206;
+            exchange.getResponseHeaders().add("Content-Range", String.format("bytes %d-%d/%d", from, to, zipBytes.length));
+        }
+
+        final int length = to - from + 1;
+        exchange.sendResponseHeaders(status, length);
+
+        try
+            (OutputStream responseStream = exchange.getResponseBody()) {
+            responseStream.write(zipBytes, from, length);
+        }
+
+        transferredBytes.addAndGet(length);
+    }
+
+
+    /**
+     * Adds an uncompressed file to a zip archive.
+     *
+     * @param zipStream the stream of the zip archive
+     * @param name the name of the file
+     * @param content the content of the file
+     *
+     * @throws IOException thrown when the file cannot be written
+     */
+    private static void addStoredEntry(final ZipOutputStream zipStream, final String name, final byte[] content) throws IOException
+    {
+        final CRC32 crc = new CRC32();
+        crc.update(content);
+
+        final ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(content.length);
+        entry.setCompressedSize(content.length);
+        entry.setCrc(crc.getValue());
+
+        zipStream.putNextEntry(entry);
+        zipStream.write(content);
+        zipStream.closeEntry();
+    }
+
+
+    /**
+     * Reads the whole content of a file of the remote archive.
+     *
+     * @param zipReader the reader of the remote archive
+     * @param entry the file that is to be read
+     *
+     * @return the uncompressed content of the file
+     *
+     * @throws IOException thrown when the file cannot be read
+     */
+    private static byte[] readEntry(final RemoteZipReader zipReader, final RemoteZipEntry entry) throws IOException
+    {
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+
+        try
+            (InputStream entryStream = zipReader.openEntry(entry)) {
+            while (true) {
+                final int readByteCount = entryStream.read(buffer);
+
+                if (readByteCount == -1)
+                    break;
+
+                content.write(buffer, 0, readByteCount);
+            }
+        }
+
+        return content.toByteArray();
+    }
+
+
+    /**
+     * Assembles the URL of a path of the local HTTP server.
+     *
+     * @param path the path of the URL
+     *
+     * @return the URL of the path
+     */
+    private String getUrl(final String path)
+    {
+        final InetSocketAddress address = server.getAddress();
+        return String.format(ZIP_URL, address.getHostString(), address.getPort(), path);
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * This class provides Unit Tests for the {@linkplain RequestThrottle}.
+ *
+ * @author Robin Weiss
+ */
+public class RequestThrottleTest
+{
+    private static final String HOST = "localhost";
+    private static final String RESPONSE = "response";
+    private static final int REQUESTS_PER_SECOND = 1000;
+    private static final int MAX_CONCURRENT_REQUESTS = 4;
+    private static final int MAX_RETRIES = 2;
+    private static final long TIMEOUT = 10000;
+
+
+    /**
+     * Tests if requests that fail with a server error are retried.
+     *
+     * @throws IOException thrown when the request is not retried
+     */
+    @Test(timeout = TIMEOUT)
+    public void testRetryOfServerError() throws IOException
+    {
+        final RequestThrottle throttle = new RequestThrottle(HOST, REQUESTS_PER_SECOND, MAX_CONCURRENT_REQUESTS, MAX_RETRIES);
+        final AtomicInteger attempts = new AtomicInteger();
+
+        final String response = throttle.execute(() -> {
+            if (attempts.incrementAndGet() == 1)
+                throw new HttpStatusException(503, HOST);
+
+            if (attempts.get() == 2)
+                throw new HttpStatusException(429, HOST);
+
+            return RESPONSE;
+        });
+
+        assertEquals(RESPONSE, response);
+        assertEquals(3, attempts.get());
+    }
+
+
+    /**
+     * Tests if requests that time out are retried.
+     *
+     * @throws IOException thrown when the request is not retried
+     */
+    @Test(timeout = TIMEOUT)
+    public void testRetryOfTimeout() throws IOException
+    {
+        final RequestThrottle throttle = new RequestThrottle(HOST, REQUESTS_PER_SECOND, MAX_CONCURRENT_REQUESTS, MAX_RETRIES);
+        final AtomicInteger attempts = new AtomicInteger();
+
+        final String response = throttle.execute(() -> {
+            if (attempts.incrementAndGet() == 1)
+                throw new SocketTimeoutException();
+
+            return RESPONSE;
+        });
+
+        assertEquals(RESPONSE, response);
+        assertEquals(2, attempts.get());
+    }
+
+
+    /**
+     * Tests if the error of the last attempt is thrown when all retries failed.
+     */
+    @Test(timeout = TIMEOUT)
+    public void testExhaustedRetries()
+    {
+        final RequestThrottle throttle = new RequestThrottle(HOST, REQUESTS_PER_SECOND, MAX_CONCURRENT_REQUESTS, 1);
+        final AtomicInteger attempts = new AtomicInteger();
+        final HttpStatusException serverError = new HttpStatusException(500, HOST);
+
+        assertSame(serverError, executeRequest(throttle, attempts, serverError));
+        assertEquals(2, attempts.get());
+    }
+
+
+    /**
+     * Tests if requests that fail with a client error are not retried.
+     */
+    @Test(timeout = TIMEOUT)
+    public void testNoRetryOfClientError()
+    {
+        final RequestThrottle throttle = new RequestThrottle(HOST, REQUESTS_PER_SECOND, MAX_CONCURRENT_REQUESTS, MAX_RETRIES);
+
+        final AtomicInteger statusAttempts = new AtomicInteger();
+        final HttpStatusException statusError = new HttpStatusException(404, HOST);
+        assertSame(statusError, executeRequest(throttle, statusAttempts, statusError));
+        assertEquals(1, statusAttempts.get());
+
+        final AtomicInteger missingFileAttempts = new AtomicInteger();
+        final FileNotFoundException missingFileError = new FileNotFoundException(HOST);
+        assertSame(missingFileError, executeRequest(throttle, missingFileAttempts, missingFileError));
+        assertEquals(1, missingFileAttempts.get());
+    }
+
+
+    /**
+     * Tests if requests that were interrupted are not retried.
+     */
+    @Test(timeout = TIMEOUT)
+    public void testNoRetryOfInterruption()
+    {
+        final RequestThrottle throttle = new RequestThrottle(HOST, REQUESTS_PER_SECOND, MAX_CONCURRENT_REQUESTS, MAX_RETRIES);
+        final AtomicInteger attempts = new AtomicInteger();
+        final InterruptedIOException interruption = new InterruptedIOException();
+
+        assertSame(interruption, executeRequest(throttle, attempts, interruption));
+        assertEquals(1, attempts.get());
+    }
+
+
+    /**
+     * Tests if client errors do not suspend requests, because the
+     * circuit breaker does not count them as failures.
+     *
+     * @throws IOException thrown when the request is suspended
+     */
+    @Test(timeout = TIMEOUT)
+    public void testClientErrorsDoNotSuspendRequests() throws IOException
+    {
+        final RequestThrottle throttle = new RequestThrottle(HOST, REQUESTS_PER_SECOND, MAX_CONCURRENT_REQUESTS, MAX_RETRIES);
+
+        for (int i = 0; i < 10; i++)
+            executeRequest(throttle, new AtomicInteger(), new HttpStatusException(404, HOST));
+
+        // a suspended request would wait for a minute, exceeding the timeout of the test
+        assertEquals(RESPONSE, throttle.execute(() -> RESPONSE));
+    }
+
+
+    /**
+     * Tests if the concurrency limit is increased by successful requests up
+     * to its upper bound, and halved by failed requests.
+     */
+    @Test(timeout = TIMEOUT)
+    public void testConcurrencyLimit()
+    {
+        final RequestThrottle throttle = new RequestThrottle(HOST, REQUESTS_PER_SECOND, MAX_CONCURRENT_REQUESTS, 0);
+        assertEquals(1, throttle.getConcurrencyLimit());
+
+        for (int i = 0; i < 20; i++)
+            executeRequest(throttle, new AtomicInteger(), null);
+
+        assertEquals(MAX_CONCURRENT_REQUESTS, throttle.getConcurrencyLimit());
+
+        executeRequest(throttle, new AtomicInteger(), new HttpStatusException(503, HOST));
+        assertEquals(MAX_CONCURRENT_REQUESTS / 2, throttle.getConcurrencyLimit());
+
+        // client errors are responses of a healthy host
+        executeRequest(throttle, new AtomicInteger(), new HttpStatusException(404, HOST));
+        assertEquals(MAX_CONCURRENT_REQUESTS / 2, throttle.getConcurrencyLimit());
+    }
+
+
+    /**
+     * Tests if requests are sent right away and are not retried if there is no throttle.
+     */
+    @Test(timeout = TIMEOUT)
+    public void testUnthrottledRequest()
+    {
+        final AtomicInteger attempts = new AtomicInteger();
+        final HttpStatusException serverError = new HttpStatusException(503, HOST);
+
+        try {
+            RequestThrottle.send(null, () -> {
+                attempts.incrementAndGet();
+                throw serverError;
+            });
+            fail("The request did not fail!");
+
+        } catch (final IOException e) {
+            assertSame(serverError, e);
+        }
+
+        assertEquals(1, attempts.get());
+    }
+
+
+    /**
+     * Executes a request that always fails with the same error, or always succeeds.
+     *
+     * @param throttle the throttle that executes the request
+     * @param attempts a counter of the attempts to send the request
+     * @param error the error of the request, or null if the request is to succeed
+     *
+     * @return the error that was thrown by the throttle, or null if the request succeeded
+     */
+    private static IOException executeRequest(final RequestThrottle throttle, final AtomicInteger attempts, final IOException error)
+    {
+        try {
+            throttle.execute(() -> {
+                attempts.incrementAndGet();
+
+                if (error != null)
+                    throw error;
+
+                return RESPONSE;
+            });
+
+            if (error != null)
+                fail("The request did not fail!");
+
+            return null;
+
+        } catch (final IOException e) {
+            return e;
+        }
+    }
+}
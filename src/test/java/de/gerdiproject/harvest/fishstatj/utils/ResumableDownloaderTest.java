@@ -0,0 +1,415 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import de.gerdiproject.harvest.utils.file.FileUtils;
+
+/**
+ * This class provides Unit Tests for the {@linkplain ResumableDownloader}.
+ * The archive is served by a local HTTP server that supports range requests
+ * and If-Range headers, and that can drop the connection during the transfer.
+ *
+ * @author Robin Weiss
+ */
+public class ResumableDownloaderTest
+{
+    private static final String ZIP_PATH = "/archive.zip";
+    private static final String MISSING_ZIP_PATH = "/missing.zip";
+    private static final String ZIP_URL = "http://%s:%d%s";
+    private static final String ETAG = "\"v2\"";
+    private static final String OUTDATED_ETAG = "\"v1\"";
+    private static final int TIMEOUT = 5000;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long PART_FILE_LIFETIME = 60000;
+    private static final int ENTRY_SIZE = 1 << 18;
+
+    private static final Pattern BYTE_RANGE_PATTERN = Pattern.compile("bytes=(\\d+)-");
+
+    private final List<String> rangeHeaders = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> ifRangeHeaders = Collections.synchronizedList(new ArrayList<>());
+    private HttpServer server;
+    private File downloadFolder;
+    private File targetFile;
+    private File partFile;
+    private File validatorFile;
+    private ResumableDownloader downloader;
+    private byte[] zipBytes;
+    private volatile int droppedConnectionOffset;
+
+
+    /**
+     * Creates a zip archive and serves it via HTTP.
+     *
+     * @throws IOException thrown when the archive cannot be created or the server cannot be started
+     */
+    @Before
+    public void before() throws IOException
+    {
+        zipBytes = createArchive(0);
+        droppedConnectionOffset = -1;
+
+        downloadFolder = Files.createTempDirectory("ResumableDownloaderTest").toFile();
+        targetFile = new File(downloadFolder, "archive.zip");
+        partFile = new File(downloadFolder, "archive.zip.part");
+        validatorFile = new File(downloadFolder, "archive.zip.part.validator");
+        downloader = new ResumableDownloader(
+            new PooledHttpClient(0, TIMEOUT, StandardCharsets.UTF_8),
+            (final String url) -> null,
+            MAX_ATTEMPTS,
+            PART_FILE_LIFETIME);
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(ZIP_PATH, this::serve);
+        server.createContext(MISSING_ZIP_PATH, (final HttpExchange exchange) -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+
+    /**
+     * Stops the HTTP server and removes the downloaded files.
+     */
+    @After
+    public void after()
+    {
+        server.stop(0);
+        FileUtils.deleteFile(downloadFolder);
+    }
+
+
+    /**
+     * Tests if an archive is downloaded completely, and if no partial files remain.
+     *
+     * @throws IOException thrown when the archive cannot be downloaded
+     */
+    @Test(timeout = TIMEOUT)
+    public void testDownload() throws IOException
+    {
+        downloader.download(getUrl(ZIP_PATH), targetFile);
+
+        assertArrayEquals(zipBytes, Files.readAllBytes(targetFile.toPath()));
+        assertEquals(Arrays.asList((String) null), rangeHeaders);
+        assertFalse(partFile.exists());
+        assertFalse(validatorFile.exists());
+    }
+
+
+    /**
+     * Tests if a download is resumed from the last written byte after the
+     * connection was dropped, using the ETag of the archive as If-Range header.
+     *
+     * @throws IOException thrown when the archive cannot be downloaded
+     */
+    @Test(timeout = TIMEOUT)
+    public void testResume() throws IOException
+    {
+        droppedConnectionOffset = zipBytes.length / 2;
+
+        downloader.download(getUrl(ZIP_PATH), targetFile);
+
+        assertArrayEquals(zipBytes, Files.readAllBytes(targetFile.toPath()));
+        assertEquals(2, rangeHeaders.size());
+        assertNull(rangeHeaders.get(0));
+        assertEquals("bytes=" + zipBytes.length / 2 + "-", rangeHeaders.get(1));
+        assertEquals(ETAG, ifRangeHeaders.get(1));
+    }
+
+
+    /**
+     * Tests if the partial file of a previous harvest is resumed, using the
+     * ETag that was stored next to it as If-Range header.
+     *
+     * @throws IOException thrown when the archive cannot be downloaded
+     */
+    @Test(timeout = TIMEOUT)
+    public void testResumeOfPreviousDownload() throws IOException
+    {
+        writePartialDownload(zipBytes, ETAG);
+
+        downloader.download(getUrl(ZIP_PATH), targetFile);
+
+        assertArrayEquals(zipBytes, Files.readAllBytes(targetFile.toPath()));
+        assertEquals(Arrays.asList("bytes=" + zipBytes.length / 2 + "-"), rangeHeaders);
+        assertEquals(Arrays.asList(ETAG), ifRangeHeaders);
+    }
+
+
+    /**
+     * Tests if the whole archive is downloaded again if it was modified since
+     * the partial file of a previous harvest was written.
+     *
+     * @throws IOException thrown when the archive cannot be downloaded
+     */
+    @Test(timeout = TIMEOUT)
+    public void testResumeOfModifiedArchive() throws IOException
+    {
+        writePartialDownload(createArchive(1), OUTDATED_ETAG);
+
+        downloader.download(getUrl(ZIP_PATH), targetFile);
+
+        assertArrayEquals(zipBytes, Files.readAllBytes(targetFile.toPath()));
+        assertEquals(Arrays.asList(OUTDATED_ETAG), ifRangeHeaders);
+    }
+
+
+    /**
+     * Tests if partial files of previous harvests are not resumed
+     * if their validator is unknown.
+     *
+     * @throws IOException thrown when the archive cannot be downloaded
+     */
+    @Test(timeout = TIMEOUT)
+    public void testPartialDownloadWithoutValidator() throws IOException
+    {
+        writePartialDownload(createArchive(1), null);
+
+        downloader.download(getUrl(ZIP_PATH), targetFile);
+
+        assertArrayEquals(zipBytes, Files.readAllBytes(targetFile.toPath()));
+        assertEquals(Arrays.asList((String) null), rangeHeaders);
+    }
+
+
+    /**
+     * Tests if an archive that does not match the CRCs of its entries is
+     * rejected, and if its partial file is deleted.
+     *
+     * @throws IOException thrown when the test files cannot be written
+     */
+    @Test(timeout = TIMEOUT)
+    public void testVerification() throws IOException
+    {
+        // corrupt a byte of the uncompressed file, so that it no longer matches its CRC
+        zipBytes[zipBytes.length / 2] ^= 1;
+
+        try {
+            downloader.download(getUrl(ZIP_PATH), targetFile);
+            fail("The corrupt archive was not rejected!");
+        } catch (final IOException e) {
+            assertFalse(e instanceof HttpStatusException);
+        }
+
+        // the archive is downloaded again once, because the partial file may have been outdated
+        assertEquals(2, rangeHeaders.size());
+        assertFalse(targetFile.exists());
+        assertFalse(partFile.exists());
+        assertFalse(validatorFile.exists());
+    }
+
+
+    /**
+     * Tests if a missing archive is neither retried nor kept as a partial file.
+     *
+     * @throws IOException thrown when the test files cannot be written
+     */
+    @Test(timeout = TIMEOUT)
+    public void testMissingArchive() throws IOException
+    {
+        writePartialDownload(zipBytes, ETAG);
+
+        try {
+            downloader.download(getUrl(MISSING_ZIP_PATH), targetFile);
+            fail("The missing archive was downloaded!");
+        } catch (final HttpStatusException e) {
+            assertEquals(404, e.getStatusCode());
+        }
+
+        assertFalse(partFile.exists());
+        assertFalse(validatorFile.exists());
+    }
+
+
+    /**
+     * Tests if expired partial files and orphaned validators are deleted,
+     * and if recent partial files are kept.
+     *
+     * @throws IOException thrown when the test files cannot be written
+     */
+    @Test(timeout = TIMEOUT)
+    public void testDeleteExpiredPartFiles() throws IOException
+    {
+        writePartialDownload(zipBytes, ETAG);
+
+        final File expiredPartFile = new File(downloadFolder, "expired.zip.part");
+        final File expiredValidatorFile = new File(downloadFolder, "expired.zip.part.validator");
+        final File orphanedValidatorFile = new File(downloadFolder, "orphaned.zip.part.validator");
+
+        Files.write(expiredPartFile.toPath(), zipBytes);
+        Files.write(expiredValidatorFile.toPath(), ETAG.getBytes(StandardCharsets.UTF_8));
+        Files.write(orphanedValidatorFile.toPath(), ETAG.getBytes(StandardCharsets.UTF_8));
+        assertTrue(expiredPartFile.setLastModified(System.currentTimeMillis() - 2 * PART_FILE_LIFETIME));
+
+        downloader.deleteExpiredPartFiles(downloadFolder);
+
+        assertFalse(expiredPartFile.exists());
+        assertFalse(expiredValidatorFile.exists());
+        assertFalse(orphanedValidatorFile.exists());
+        assertTrue(partFile.exists());
+        assertTrue(validatorFile.exists());
+    }
+
+
+    /**
+     * Responds to a request of the zip archive, serving the requested range if the
+     * If-Range header matches the ETag, and the whole archive otherwise. If the
+     * connection is to be dropped, the transfer is aborted at that offset once.
+     *
+     * @param exchange the request and response
+     *
+     * @throws IOException thrown when the response cannot be sent
+     */
+    private void serve(final HttpExchange exchange) throws IOException
+    {
+        final String range = exchange.getRequestHeaders().getFirst("Range");
+        final String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        rangeHeaders.add(range);
+        ifRangeHeaders.add(ifRange);
+
+        final Matcher byteRange = range == null ? null : BYTE_RANGE_PATTERN.matcher(range);
+        final boolean isPartial = byteRange != null && byteRange.matches() && (ifRange == null || ifRange.equals(ETAG));
+        final int from = isPartial ? Integer.parseInt(byteRange.group(1)) : 0;
+        final int length = zipBytes.length - from;
+
+        exchange.getResponseHeaders().add("ETag", ETAG);
+
+        if (isPartial)
+            exchange.getResponseHeaders().add("Content-Range", String.format("bytes %d-%d/%d", from, zipBytes.length - 1, zipBytes.length));
+
+        exchange.sendResponseHeaders(isPartial ? 206 : 200, length);
+
+        final int droppedOffset = droppedConnectionOffset;
+        droppedConnectionOffset = -1;
+
+        try
+            (OutputStream responseStream = exchange.getResponseBody()) {
+            if (droppedOffset > from) {
+                responseStream.write(zipBytes, from, droppedOffset - from);
+                responseStream.flush();
+
+                // closing the exchange before all bytes were sent drops the connection
+                exchange.close();
+                return;
+            }
+
+            responseStream.write(zipBytes, from, length);
+        }
+    }
+
+
+    /**
+     * Writes the first half of an archive to the partial file, as if it
+     * was left over from a previous harvest.
+     *
+     * @param archive the bytes of the archive
+     * @param validator the ETag that is stored next to the partial file, or null
+     *
+     * @throws IOException thrown when the files cannot be written
+     */
+    private void writePartialDownload(final byte[] archive, final String validator) throws IOException
+    {
+        Files.write(partFile.toPath(), Arrays.copyOf(archive, archive.length / 2));
+
+        if (validator != null)
+            Files.write(validatorFile.toPath(), validator.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    /**
+     * Creates a zip archive with a single file of random content,
+     * which is stored without compression.
+     *
+     * @param seed the seed of the random content
+     *
+     * @return the bytes of the archive
+     *
+     * @throws IOException thrown when the archive cannot be created
+     */
+    private static byte[] createArchive(final long seed) throws IOException
+    {
+        final byte[] content = new byte[ENTRY_SIZE];
+        new Random(seed).nextBytes(content);
+
+        final CRC32 crc = new CRC32();
+        crc.update(content);
+
+        final ZipEntry entry = new ZipEntry("Values.bin");
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(content.length);
+        entry.setCompressedSize(content.length);
+        entry.setCrc(crc.getValue());
+
+        final ByteArrayOutputStream zipOut = new ByteArrayOutputStream();
+
+        try
+            (ZipOutputStream zipStream = new ZipOutputStream(zipOut)) {
+            zipStream.putNextEntry(entry);
+            zipStream.write(content);
+            zipStream.closeEntry();
+        }
+
+        return zipOut.toByteArray();
+    }
+
+
+    /**
+     * Assembles the URL of a path of the local HTTP server.
+     *
+     * @param path the path of the URL
+     *
+     * @return the URL of the path
+     */
+    private String getUrl(final String path)
+    {
+        final InetSocketAddress address = server.getAddress();
+        return String.format(ZIP_URL, address.getHostString(), address.getPort(), path);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import de.gerdiproject.json.datacite.Subject;
+
+/**
+ * This class provides Unit Tests for the {@linkplain SubjectDictionary}.
+ *
+ * @author Robin Weiss
+ */
+public class SubjectDictionaryTest
+{
+    private static final String VALUE = "Atlantic cod";
+    private static final String OTHER_VALUE = "Norway";
+    private static final String LANGUAGE = "en";
+    private static final int THREAD_COUNT = 4;
+    private static final long TIMEOUT = 5000;
+
+
+    /**
+     * Tests if equal strings are interned as the same instance.
+     */
+    @Test
+    public void testInternedValue()
+    {
+        final SubjectDictionary dictionary = new SubjectDictionary();
+        final String value = dictionary.intern(copy(VALUE));
+
+        assertSame(value, dictionary.intern(copy(VALUE)));
+        assertNotSame(value, dictionary.intern(copy(OTHER_VALUE)));
+    }
+
+
+    /**
+     * Tests if subjects with equal values and languages are the same instance,
+     * and if their values are interned.
+     */
+    @Test
+    public void testInternedSubject()
+    {
+        final SubjectDictionary dictionary = new SubjectDictionary();
+        final Subject subject = dictionary.getSubject(copy(VALUE), null);
+
+        assertSame(subject, dictionary.getSubject(copy(VALUE), null));
+        assertSame(subject.getValue(), dictionary.intern(copy(VALUE)));
+        assertEquals(1, dictionary.getHits());
+        assertEquals(1, dictionary.getMisses());
+    }
+
+
+    /**
+     * Tests if subjects of different languages are different instances,
+     * which share the same interned value.
+     */
+    @Test
+    public void testSubjectLanguages()
+    {
+        final SubjectDictionary dictionary = new SubjectDictionary();
+        final Subject subject = dictionary.getSubject(copy(VALUE), null);
+        final Subject englishSubject = dictionary.getSubject(copy(VALUE), LANGUAGE);
+
+        assertNotSame(subject, englishSubject);
+        assertSame(englishSubject, dictionary.getSubject(copy(VALUE), copy(LANGUAGE)));
+        assertSame(subject.getValue(), englishSubject.getValue());
+        assertEquals(2, dictionary.size());
+    }
+
+
+    /**
+     * Tests if subjects that are requested concurrently are interned as a single instance.
+     *
+     * @throws InterruptedException thrown when the test is interrupted
+     * @throws ExecutionException thrown when a subject cannot be retrieved
+     */
+    @Test(timeout = TIMEOUT)
+    public void testConcurrentInterning() throws InterruptedException, ExecutionException
+    {
+        final SubjectDictionary dictionary = new SubjectDictionary();
+        final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        final List<Future<Subject>> subjects = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < THREAD_COUNT * 100; i++)
+                subjects.add(executor.submit(() -> dictionary.getSubject(copy(VALUE), null)));
+
+            final Subject subject = subjects.get(0).get();
+
+            for (final Future<Subject> otherSubject : subjects)
+                assertSame(subject, otherSubject.get());
+
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, dictionary.size());
+        assertEquals(subjects.size(), dictionary.getHits() + dictionary.getMisses());
+    }
+
+
+    /**
+     * Tests if clearing the dictionary removes all subjects and resets the statistics.
+     */
+    @Test
+    public void testClear()
+    {
+        final SubjectDictionary dictionary = new SubjectDictionary();
+        final Subject subject = dictionary.getSubject(VALUE, null);
+        dictionary.getSubject(VALUE, null);
+        dictionary.clear();
+
+        assertEquals(0, dictionary.size());
+        assertEquals(0, dictionary.getHits());
+        assertEquals(0, dictionary.getMisses());
+        assertNotSame(subject, dictionary.getSubject(VALUE, null));
+    }
+
+
+    /**
+     * Creates a new string instance that is equal to a string.
+     *
+     * @param value the string that is to be copied
+     *
+     * @return a new string that is not interned
+     */
+    private static String copy(final String value)
+    {
+        return new String(value.toCharArray());
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * This class provides Unit Tests for the {@linkplain TokenBucket}.
+ *
+ * @author Robin Weiss
+ */
+public class TokenBucketTest
+{
+    private static final int TOKENS_PER_SECOND = 20;
+    private static final long TIMEOUT = 5000;
+
+
+    /**
+     * Tests if one second worth of tokens can be taken without waiting.
+     *
+     * @throws InterruptedException thrown when the test is interrupted
+     */
+    @Test(timeout = TIMEOUT)
+    public void testBurst() throws InterruptedException
+    {
+        final TokenBucket bucket = new TokenBucket(TOKENS_PER_SECOND);
+        final long startTime = System.nanoTime();
+
+        for (int i = 0; i < TOKENS_PER_SECOND; i++)
+            bucket.acquire();
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) < 500);
+    }
+
+
+    /**
+     * Tests if tokens that exceed the burst are only taken at the rate of the bucket.
+     *
+     * @throws InterruptedException thrown when the test is interrupted
+     */
+    @Test(timeout = TIMEOUT)
+    public void testRate() throws InterruptedException
+    {
+        final TokenBucket bucket = new TokenBucket(TOKENS_PER_SECOND);
+        final long startTime = System.nanoTime();
+
+        // the first second worth of tokens is taken from the full bucket
+        for (int i = 0; i < 2 * TOKENS_PER_SECOND; i++)
+            bucket.acquire();
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) >= 900);
+    }
+
+
+    /**
+     * Tests if a thread that waits for a token can be interrupted.
+     *
+     * @throws InterruptedException thrown when the bucket is not interrupted
+     */
+    @Test(timeout = TIMEOUT, expected = InterruptedException.class)
+    public void testInterruption() throws InterruptedException
+    {
+        final TokenBucket bucket = new TokenBucket(1);
+        bucket.acquire();
+
+        Thread.currentThread().interrupt();
+
+        try {
+            bucket.acquire();
+        } finally {
+            Thread.interrupted();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * This class provides Unit Tests for the {@linkplain TopKSketch}.
+ *
+ * @author Robin Weiss
+ */
+public class TopKSketchTest
+{
+    private static final int MAX_SIZE = 10;
+    private static final int HEAVY_HITTER_COUNT = 5;
+    private static final int RARE_ELEMENT_COUNT = 20000;
+
+
+    /**
+     * Tests if all elements are retained and ordered by their frequency,
+     * as long as there are not more distinct elements than the maximum size.
+     */
+    @Test
+    public void testFewElements()
+    {
+        final TopKSketch<String> sketch = new TopKSketch<>(MAX_SIZE);
+
+        addRepeatedly(sketch, "Atlantic cod", 3);
+        addRepeatedly(sketch, "Norway", 5);
+        addRepeatedly(sketch, "Sardine", 1);
+
+        assertEquals(3, sketch.size());
+        assertEquals(Arrays.asList("Norway", "Atlantic cod", "Sardine"), new ArrayList<>(sketch));
+    }
+
+
+    /**
+     * Tests if the most frequent elements are retained, even if they are
+     * interleaved with a large number of rare elements.
+     */
+    @Test
+    public void testHeavyHitters()
+    {
+        final List<String> elements = new ArrayList<>();
+
+        for (int i = 0; i < RARE_ELEMENT_COUNT; i++)
+            elements.add("rare" + i);
+
+        // the heavy hitter with the lowest index is the most frequent one
+        for (int i = 0; i < HEAVY_HITTER_COUNT; i++) {
+            for (int j = 0; j < 100 * (HEAVY_HITTER_COUNT - i); j++)
+                elements.add("frequent" + i);
+        }
+
+        Collections.shuffle(elements, new Random(0));
+
+        final TopKSketch<String> sketch = new TopKSketch<>(MAX_SIZE);
+        elements.forEach(sketch::add);
+
+        assertEquals(MAX_SIZE, sketch.size());
+
+        final List<String> retainedElements = new ArrayList<>(sketch);
+
+        for (int i = 0; i < HEAVY_HITTER_COUNT; i++) {
+            assertTrue(sketch.contains("frequent" + i));
+            assertEquals("frequent" + i, retainedElements.get(i));
+        }
+    }
+
+
+    /**
+     * Tests if adding an element reports whether it became a heavy hitter.
+     */
+    @Test
+    public void testAdd()
+    {
+        final TopKSketch<String> sketch = new TopKSketch<>(1);
+
+        assertTrue(sketch.add("Norway"));
+        assertFalse(sketch.add("Norway"));
+
+        // an element with a lower frequency does not replace the heavy hitter
+        assertFalse(sketch.add("Sardine"));
+        assertFalse(sketch.contains("Sardine"));
+
+        // an element that becomes more frequent replaces it
+        addRepeatedly(sketch, "Sardine", 2);
+        assertTrue(sketch.contains("Sardine"));
+        assertFalse(sketch.contains("Norway"));
+        assertEquals(1, sketch.size());
+    }
+
+
+    /**
+     * Adds an element to a sketch multiple times.
+     *
+     * @param sketch the sketch to which the element is added
+     * @param element the element that is to be added
+     * @param count the number of times the element is added
+     */
+    private static void addRepeatedly(final TopKSketch<String> sketch, final String element, final int count)
+    {
+        for (int i = 0; i < count; i++)
+            sketch.add(element);
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.fishstatj.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * This class provides Unit Tests for the {@linkplain VirtualThreadExecutor}.
+ * The tests wrap an executor of platform threads, which behaves like an
+ * executor of virtual threads, so that they can run on any JVM.
+ *
+ * @author Robin Weiss
+ */
+public class VirtualThreadExecutorTest
+{
+    private static final String VIRTUAL_EXECUTOR_FACTORY = "newVirtualThreadPerTaskExecutor";
+    private static final int MAX_RUNNING_TASKS = 3;
+    private static final int TASK_COUNT = 12;
+    private static final long TIMEOUT = 5000;
+
+    private ExecutorService executor;
+
+
+    /**
+     * Stops the executor.
+     */
+    @After
+    public void after()
+    {
+        if (executor != null)
+            executor.shutdownNow();
+    }
+
+
+    /**
+     * Tests if no more tasks run at once than the number of permits.
+     *
+     * @throws Exception thrown when a task fails
+     */
+    @Test(timeout = TIMEOUT)
+    public void testMaxRunningTasks() throws Exception
+    {
+        executor = new VirtualThreadExecutor(Executors.newCachedThreadPool(), MAX_RUNNING_TASKS);
+
+        final AtomicInteger runningTasks = new AtomicInteger();
+        final AtomicInteger maxRunningTasks = new AtomicInteger();
+        final List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < TASK_COUNT; i++) {
+            futures.add(executor.submit(() -> {
+                maxRunningTasks.accumulateAndGet(runningTasks.incrementAndGet(), Math::max);
+                Thread.sleep(20);
+                runningTasks.decrementAndGet();
+                return null;
+            }));
+        }
+
+        for (final Future<?> future : futures)
+            future.get();
+
+        assertEquals(MAX_RUNNING_TASKS, maxRunningTasks.get());
+    }
+
+
+    /**
+     * Tests if tasks that are waiting for a permit are returned by shutdownNow(),
+     * instead of being dropped without ever completing.
+     *
+     * @throws Exception thrown when the running task fails
+     */
+    @Test(timeout = TIMEOUT)
+    public void testShutdownNowReturnsWaitingTasks() throws Exception
+    {
+        executor = new VirtualThreadExecutor(Executors.newCachedThreadPool(), 1);
+
+        final CountDownLatch isRunning = new CountDownLatch(1);
+        executor.submit(() -> {
+            isRunning.countDown();
+            Thread.sleep(TIMEOUT);
+            return null;
+        });
+        isRunning.await();
+
+        final List<Runnable> waitingTasks = new ArrayList<>();
+
+        for (int i = 0; i < TASK_COUNT; i++)
+            waitingTasks.add((Runnable) executor.submit(() -> null));
+
+        assertEquals(TASK_COUNT, executor.shutdownNow().size());
+        assertTrue(executor.awaitTermination(TIMEOUT, TimeUnit.MILLISECONDS));
+
+        // the waiting tasks did not run, but can still be run by the caller
+        for (final Runnable waitingTask : waitingTasks) {
+            assertFalse(((Future<?>) waitingTask).isDone());
+            waitingTask.run();
+            ((Future<?>) waitingTask).get();
+        }
+    }
+
+
+    /**
+     * Tests if a task whose thread is interrupted while waiting for a permit is cancelled,
+     * so that callers that wait for its result are not blocked forever.
+     *
+     * @throws Exception thrown when the executor fails
+     */
+    @Test(timeout = TIMEOUT)
+    public void testInterruptedWaitingTask() throws Exception
+    {
+        final ExecutorService threadExecutor = Executors.newCachedThreadPool();
+        executor = new VirtualThreadExecutor(threadExecutor, 1);
+
+        final CountDownLatch isRunning = new CountDownLatch(1);
+        final CountDownLatch isFinished = new CountDownLatch(1);
+        executor.submit(() -> {
+            isRunning.countDown();
+            isFinished.await();
+            return null;
+        });
+        isRunning.await();
+
+        final Future<?> waitingTask = executor.submit(() -> null);
+
+        // interrupt the waiting thread without claiming the waiting task
+        ((ThreadPoolExecutor) threadExecutor).shutdownNow();
+
+        try {
+            waitingTask.get();
+            fail("The interrupted task was completed!");
+        } catch (final CancellationException e) {
+            assertTrue(waitingTask.isCancelled());
+        }
+        isFinished.countDown();
+    }
+
+
+    /**
+     * Tests if a fixed pool of platform threads is created if the JVM does
+     * not support virtual threads.
+     */
+    @Test(timeout = TIMEOUT)
+    public void testPlatformThreadFallback()
+    {
+        executor = VirtualThreadExecutor.create(MAX_RUNNING_TASKS);
+
+        if (hasVirtualThreads())
+            assertTrue(executor instanceof VirtualThreadExecutor);
+        else
+            assertEquals(MAX_RUNNING_TASKS, ((ThreadPoolExecutor) executor).getMaximumPoolSize());
+    }
+
+
+    /**
+     * Checks if the JVM supports virtual threads.
+     *
+     * @return true if the JVM supports virtual threads
+     */
+    private static boolean hasVirtualThreads()
+    {
+        try {
+            Executors.class.getMethod(VIRTUAL_EXECUTOR_FACTORY);
+            return true;
+        } catch (final NoSuchMethodException e) {
+            return false;
+        }
+    }
+}